@@ -170,6 +170,8 @@ public abstract class AssertionCleartkAnalysisEngine extends
    protected List<FeatureExtractor1<IdentifiedAnnotation>> entityFeatureExtractors;
    protected List<FeatureExtractor1<IdentifiedAnnotation>> entityTreeExtractors;
    protected CleartkExtractor<IdentifiedAnnotation, BaseToken> cuePhraseInWindowExtractor;
+   // the token context extractor that every attribute gets by default
+   private CleartkExtractor<IdentifiedAnnotation, BaseToken> defaultTokenExtractor;
 
 
    protected List<FeatureFunctionExtractor<IdentifiedAnnotation>> featureFunctionExtractors = new ArrayList<>();
@@ -263,6 +265,7 @@ public abstract class AssertionCleartkAnalysisEngine extends
             );
 
       this.tokenCleartkExtractors.add( tokenExtraction1 );
+      defaultTokenExtractor = tokenExtraction1;
 //    this.tokenCleartkExtractors.add(posExtraction1);
 
 //    this.contextFeatureExtractors.add(new CleartkExtractor(IdentifiedAnnotation.class,
@@ -309,6 +312,62 @@ public abstract class AssertionCleartkAnalysisEngine extends
 
    @Override
    public void process( JCas jCas ) throws AnalysisEngineProcessException {
+      final String instanceDomain = initializeDocument( jCas );
+
+//    // get gold standard relation instances during testing for error analysis
+//    if (! this.isTraining() && printErrors) {
+//      JCas goldView;
+//      try {
+//        goldView = jCas.getView("GoldView");
+//      } catch(CASException e) {
+//        throw new AnalysisEngineProcessException(e);
+//      }
+//      
+//      //categoryLookup = createCategoryLookup(goldView); 
+//    }
+
+      final JCas annotationView = getAnnotationView( jCas );
+
+      forEachSentenceEntity( annotationView, ( coveringSent, identifiedAnnotation, cues, baseTokens ) -> {
+         if ( identifiedAnnotation.getPolarity() == -1 ) {
+            logger.debug( String.format( " - identified annotation: [%d-%d] polarity %d (%s)",
+                  identifiedAnnotation.getBegin(),
+                  identifiedAnnotation.getEnd(),
+                  identifiedAnnotation.getPolarity(),
+                  identifiedAnnotation.getClass().getName() ) );
+         }
+         final List<Feature> contextFeatures
+               = extractContextFeatures( annotationView, identifiedAnnotation, coveringSent, cues, baseTokens );
+         lowerCaseFeatureValues( contextFeatures );
+         Instance<String> instance = createInstance( jCas, identifiedAnnotation, instanceDomain, contextFeatures );
+         List<Feature> feats = instance.getFeatures();
+
+         // grab the output label
+         setClassLabel( identifiedAnnotation, instance );
+
+         if ( this.isTraining() ) {
+            // apply feature selection, if necessary
+            if ( this.featureSelection != null ) {
+               feats = this.featureSelection.transform( feats );
+            }
+
+            // ensures that the (possibly) transformed feats are used
+            if ( instance.getOutcome() != null ) {
+               if ( coin.nextDouble() < this.portionOfDataToUse ) {
+                  this.dataWriter.write( new Instance<>( instance.getOutcome(), feats ) );
+               }
+            }
+         }
+      } );
+   }
+
+   /**
+    * Sets up the domain adaptation and label history of this attribute for a new document.
+    *
+    * @param jCas the document
+    * @return the value of the Domain feature for the mentions of the document, or null if there is none
+    */
+   String initializeDocument( final JCas jCas ) {
       String documentId = DocumentIDAnnotationUtil.getDocumentID( jCas );
       String domainId = "";
       String domainFeature = null;
@@ -332,30 +391,49 @@ public abstract class AssertionCleartkAnalysisEngine extends
       }
 
       this.lastLabel = "<BEGIN>";
+      return domainFeature;
+   }
 
-//    // get gold standard relation instances during testing for error analysis
-//    if (! this.isTraining() && printErrors) {
-//      JCas goldView;
-//      try {
-//        goldView = jCas.getView("GoldView");
-//      } catch(CASException e) {
-//        throw new AnalysisEngineProcessException(e);
-//      }
-//      
-//      //categoryLookup = createCategoryLookup(goldView); 
-//    }
-
-      final JCas annotationView = getAnnotationView( jCas );
-
-//    Map<IdentifiedAnnotation, Collection<Sentence>> coveringSentenceMap = JCasUtil.indexCovering(annotationView, IdentifiedAnnotation.class, Sentence.class);
-//    Map<Sentence, Collection<BaseToken>> tokensCoveredInSentenceMap = JCasUtil.indexCovered(annotationView, Sentence.class, BaseToken.class);
-
-//    Map<IdentifiedAnnotation, Collection<Zone>> coveringZoneMap =
-//        JCasUtil.indexCovering(jCas, IdentifiedAnnotation.class, Zone.class);
-//    Map<IdentifiedAnnotation, Collection<Sentence>> coveringSents =
-//        JCasUtil.indexCovering(jCas, IdentifiedAnnotation.class, Sentence.class);
+   /**
+    * @param jCas                 the document
+    * @param identifiedAnnotation the mention
+    * @param domainFeature        the Domain feature value from {@link #initializeDocument(JCas)}, may be null
+    * @param contextFeatures      lower cased context features of the mention, from {@link #extractContextFeatures}
+    * @return the unlabeled instance of the mention
+    */
+   Instance<String> createInstance( final JCas jCas, final IdentifiedAnnotation identifiedAnnotation,
+                                    final String domainFeature, final List<Feature> contextFeatures )
+         throws AnalysisEngineProcessException {
+      Instance<String> instance = new Instance<>();
+
+      if ( domainFeature != null ) {
+         instance.add( new Feature( "Domain", domainFeature ) );
+         lowerCaseFeatureValues( instance.getFeatures() );
+      }
+      instance.addAll( contextFeatures );
+      final List<Feature> entityFeatures = extractEntityFeatures( jCas, identifiedAnnotation );
+      lowerCaseFeatureValues( entityFeatures );
+      instance.addAll( entityFeatures );
+
+      if ( !fileToDomain.isEmpty() && ffDomainAdaptor != null ) {
+         for ( FeatureFunctionExtractor<IdentifiedAnnotation> extractor : this.featureFunctionExtractors ) {
+            // TODO: extend to the case where the extractors take a different argument besides entityOrEventMention
+            instance.addAll( extractor.extract( jCas, identifiedAnnotation ) );
+         }
+      }
+      return instance;
+   }
 
-//    List<Instance<String>> instances = new ArrayList<Instance<String>>();
+   /**
+    * Calls the consumer with each entity and event mention in each sentence of the view,
+    * along with the assertion cues and base tokens of that sentence.
+    *
+    * @param annotationView view with sentences, mentions, cues and tokens
+    * @param consumer       handles one mention
+    * @throws AnalysisEngineProcessException if the consumer throws one
+    */
+   static void forEachSentenceEntity( final JCas annotationView, final SentenceEntityConsumer consumer )
+         throws AnalysisEngineProcessException {
       // generate a list of training instances for each sentence in the document
       // Use an indexed map.  This is faster than calling select and then selectCovering within a loop.
       final Map<Sentence, Collection<Annotation>> sentenceAnnotationMap
@@ -364,8 +442,8 @@ public abstract class AssertionCleartkAnalysisEngine extends
       final Collection<IdentifiedAnnotation> entities = new ArrayList<>();
       final Collection<AssertionCuePhraseAnnotation> cues = new ArrayList<>();
       final Collection<BaseToken> baseTokens = new ArrayList<>();
-      for(Sentence coveringSent : JCasUtil.select(annotationView, Sentence.class)){
-         Collection<Annotation> coveredAnnotations = sentenceAnnotationMap.get(coveringSent);
+      for ( Sentence coveringSent : JCasUtil.select( annotationView, Sentence.class ) ) {
+         Collection<Annotation> coveredAnnotations = sentenceAnnotationMap.get( coveringSent );
          // Sort Annotations into *Mention, assertion cues and BaseTokens in one loop.
          // Faster than calling JCasUtil methods for each which has to iterate through the full cas each time.
          entities.clear();
@@ -380,177 +458,145 @@ public abstract class AssertionCleartkAnalysisEngine extends
                baseTokens.add( (BaseToken)annotation );
             }
          }
-
          for ( IdentifiedAnnotation identifiedAnnotation : entities ) {
-            if ( identifiedAnnotation.getPolarity() == -1 ) {
-               logger.debug( String.format( " - identified annotation: [%d-%d] polarity %d (%s)",
-                     identifiedAnnotation.getBegin(),
-                     identifiedAnnotation.getEnd(),
-                     identifiedAnnotation.getPolarity(),
-                     identifiedAnnotation.getClass().getName() ) );
-            }
-            Instance<String> instance = new Instance<>();
-
-            if ( domainFeature != null ) {
-               instance.add( new Feature( "Domain", domainFeature ) );
-            }
-//      // extract all features that require only the entity mention annotation
-//      instance.addAll(tokenFeatureExtractor.extract(jCas, entityMention));
-
-            // extract all features that require the token and sentence annotations
-
-            //Sentence sentence = sentenceList.iterator().next();
-      
-      /*
-      if (sentence != null)
-      {
-        for (ContextExtractor<IdentifiedAnnotation> extractor : this.contextFeatureExtractors) {
-          instance.addAll(extractor.extractWithin(annotationView, entityMention, sentence));
-        }
-      } else
-      {
-        // TODO extract context features for annotations that don't fall within a sentence
-        logger.log(Level.WARN, "FIXME/TODO: generate context features for entities that don't fall within a sentence");
+            consumer.accept( coveringSent, identifiedAnnotation, cues, baseTokens );
+         }
       }
-      */
-      
-      /*
-      for (ContextExtractor<BaseToken> extractor : this.tokenContextFeatureExtractors) {
-          instance.addAll(extractor.extract(annotationView, entityMention));
-        }
-        */
-
-            // only use extract this version if not doing domain adaptation
-            if ( ffDomainAdaptor == null ) {
-               for ( CleartkExtractor<IdentifiedAnnotation, BaseToken> extractor : this.tokenCleartkExtractors ) {
-//    		  instance.addAll(extractor.extractWithin(annotationView, entityMention, sentence));
-//                  if ( coveringSent != null ) {
-                  instance.addAll( extractor
-                        .extractWithin( annotationView, identifiedAnnotation, coveringSent ) );
-//                  } else {
-//                     instance.addAll( extractor.extract( annotationView, identifiedAnnotation ) );
-//                  }
-               }
-            }
+   }
 
-            int closest = Integer.MAX_VALUE;
-            AssertionCuePhraseAnnotation closestCue = null;
-            for ( AssertionCuePhraseAnnotation cue : cues ) {
-               // It is much faster to count between BaseTokens already isolated within the same sentence.
-               final int betweenCount = countBetween( cue, identifiedAnnotation, baseTokens );
-               if ( betweenCount < closest ) {
-                  closestCue = cue;
-                  closest = betweenCount;
-               }
+   /**
+    * Handles one mention of {@link #forEachSentenceEntity(JCas, SentenceEntityConsumer)}.
+    */
+   @FunctionalInterface
+   interface SentenceEntityConsumer {
+      void accept( Sentence sentence, IdentifiedAnnotation identifiedAnnotation,
+                   Collection<AssertionCuePhraseAnnotation> cues,
+                   Collection<BaseToken> baseTokens ) throws AnalysisEngineProcessException;
+   }
 
-//          instance.addAll(cuePhraseInWindowExtractor.extractBetween(jCas, cue, entityOrEventMention));
-            }
-            if ( closestCue != null && closest < 21 ) {
-               instance.add( new Feature( "ClosestCue_Word", closestCue.getCoveredText() ) );
-//          instance.add(new Feature("ClosestCue_Phrase", closestCue.getCuePhrase()));
-               instance.add( new Feature( "ClosestCue_PhraseFamily", closestCue.getCuePhraseAssertionFamily() ) );
-               instance.add( new Feature( "ClosestCue_PhraseCategory", closestCue.getCuePhraseCategory() ) );
-
-               // add hack-ey domain adaptation to these hacked-in features
-               if ( !fileToDomain.isEmpty() && ffDomainAdaptor != null ) {
-                  instance.addAll( ffDomainAdaptor
-                        .apply( new Feature( "ClosestCue_Word", closestCue.getCoveredText() ) ) );
-                  instance.addAll( ffDomainAdaptor
-                        .apply( new Feature( "ClosestCue_PhraseFamily", closestCue
-                              .getCuePhraseAssertionFamily() ) ) );
-                  instance.addAll( ffDomainAdaptor
-                        .apply( new Feature( "ClosestCue_PhraseCategory", closestCue.getCuePhraseCategory() ) ) );
-               }
+   /**
+    * @return features of the mention's sentence context: surrounding tokens, the closest cue and the anatomical site type
+    */
+   List<Feature> extractContextFeatures( final JCas annotationView,
+                                         final IdentifiedAnnotation identifiedAnnotation,
+                                         final Sentence coveringSent,
+                                         final Collection<AssertionCuePhraseAnnotation> cues,
+                                         final Collection<BaseToken> baseTokens )
+         throws AnalysisEngineProcessException {
+      final List<Feature> features = new ArrayList<>();
+      // only use extract this version if not doing domain adaptation
+      if ( ffDomainAdaptor == null ) {
+         for ( CleartkExtractor<IdentifiedAnnotation, BaseToken> extractor : this.tokenCleartkExtractors ) {
+            features.addAll( extractor.extractWithin( annotationView, identifiedAnnotation, coveringSent ) );
+         }
+      }
 
-            }
-//            }
-//      if (cuePhraseFeatures != null && !cuePhraseFeatures.isEmpty())
-//      {
-//        instance.addAll(cuePhraseFeatures);
-//      }
+      int closest = Integer.MAX_VALUE;
+      AssertionCuePhraseAnnotation closestCue = null;
+      for ( AssertionCuePhraseAnnotation cue : cues ) {
+         // It is much faster to count between BaseTokens already isolated within the same sentence.
+         final int betweenCount = countBetween( cue, identifiedAnnotation, baseTokens );
+         if ( betweenCount < closest ) {
+            closestCue = cue;
+            closest = betweenCount;
+         }
+      }
+      if ( closestCue != null && closest < 21 ) {
+         features.add( new Feature( "ClosestCue_Word", closestCue.getCoveredText() ) );
+         features.add( new Feature( "ClosestCue_PhraseFamily", closestCue.getCuePhraseAssertionFamily() ) );
+         features.add( new Feature( "ClosestCue_PhraseCategory", closestCue.getCuePhraseCategory() ) );
 
+         // add hack-ey domain adaptation to these hacked-in features
+         if ( !fileToDomain.isEmpty() && ffDomainAdaptor != null ) {
+            features.addAll( ffDomainAdaptor
+                  .apply( new Feature( "ClosestCue_Word", closestCue.getCoveredText() ) ) );
+            features.addAll( ffDomainAdaptor
+                  .apply( new Feature( "ClosestCue_PhraseFamily", closestCue
+                        .getCuePhraseAssertionFamily() ) ) );
+            features.addAll( ffDomainAdaptor
+                  .apply( new Feature( "ClosestCue_PhraseCategory", closestCue.getCuePhraseCategory() ) ) );
+         }
+      }
 
-            // 7/9/13 SRH trying to make it work just for anatomical site
-            int eemTypeId = identifiedAnnotation.getTypeID();
-            if ( eemTypeId == CONST.NE_TYPE_ID_ANATOMICAL_SITE ) {
-               // 7/9/13 srh modified per tmiller so it's binary but not numeric feature
-               //instance.add(new Feature("ENTITY_TYPE_" + entityOrEventMention.getTypeID()));
-               instance.add( new Feature( "ENTITY_TYPE_ANAT_SITE" ) );
-               // add hack-ey domain adaptation to these hacked-in features
-               if ( !fileToDomain.isEmpty() && ffDomainAdaptor != null ) {
-                  instance.addAll( ffDomainAdaptor.apply( new Feature( "ENTITY_TYPE_ANAT_SITE" ) ) );
-               }
-            }
+      // 7/9/13 SRH trying to make it work just for anatomical site
+      int eemTypeId = identifiedAnnotation.getTypeID();
+      if ( eemTypeId == CONST.NE_TYPE_ID_ANATOMICAL_SITE ) {
+         // 7/9/13 srh modified per tmiller so it's binary but not numeric feature
+         features.add( new Feature( "ENTITY_TYPE_ANAT_SITE" ) );
+         // add hack-ey domain adaptation to these hacked-in features
+         if ( !fileToDomain.isEmpty() && ffDomainAdaptor != null ) {
+            features.addAll( ffDomainAdaptor.apply( new Feature( "ENTITY_TYPE_ANAT_SITE" ) ) );
+         }
+      }
       /* This hurts recall more than it helps precision
       else if (eemTypeId == CONST.NE_TYPE_ID_DRUG) {
     	  // 7/10 adding drug
     	  instance.add(new Feature("ENTITY_TYPE_DRUG"));
       }
       */
+      return features;
+   }
 
-            // only extract these features if not doing domain adaptation
-            if ( ffDomainAdaptor == null ) {
-               for ( FeatureExtractor1<IdentifiedAnnotation> extractor : this.entityFeatureExtractors ) {
-                  instance.addAll( extractor.extract( jCas, identifiedAnnotation ) );
-               }
-            }
-
-            for ( FeatureExtractor1<IdentifiedAnnotation> extractor : this.entityTreeExtractors ) {
-               instance.addAll( extractor.extract( jCas, identifiedAnnotation ) );
-            }
-
-//      List<Feature> zoneFeatures = extractZoneFeatures(coveringZoneMap, entityOrEventMention);
-//      if (zoneFeatures != null && !zoneFeatures.isEmpty())
-//      {
-//        instance.addAll(zoneFeatures);
-//      }
-
-            List<Feature> feats = instance.getFeatures();
-//      List<Feature> lcFeats = new ArrayList<Feature>();
-
-            for ( Feature feat : feats ) {
-               if ( feat instanceof TreeFeature ||
-                    (feat.getName() != null && (feat.getName().startsWith( "TreeFrag" ) ||
-                                                feat.getName().startsWith( "WORD" ) ||
-                                                feat.getName().startsWith( "NEG" ))) ) {
-                  continue;
-               }
-               if ( feat.getName() != null &&
-                    (feat.getName().contains( "_TreeFrag" ) || feat.getName().contains( "_WORD" ) ||
-                     feat.getName().contains( "_NEG" )) ) {
-                  continue;
-               }
-               if ( feat.getValue() instanceof String ) {
-                  feat.setValue( ((String)feat.getValue()).toLowerCase() );
-               }
-            }
-
-            if ( !fileToDomain.isEmpty() && ffDomainAdaptor != null ) {
-               for ( FeatureFunctionExtractor<IdentifiedAnnotation> extractor : this.featureFunctionExtractors ) {
-                  // TODO: extend to the case where the extractors take a different argument besides entityOrEventMention
-                  instance.addAll( extractor.extract( jCas, identifiedAnnotation ) );
-               }
-            }
-
-
-            // grab the output label
-            setClassLabel( identifiedAnnotation, instance );
-
-            if ( this.isTraining() ) {
-               // apply feature selection, if necessary
-               if ( this.featureSelection != null ) {
-                  feats = this.featureSelection.transform( feats );
-               }
+   /**
+    * @return features from this attribute's own entity and tree extractors
+    */
+   List<Feature> extractEntityFeatures( final JCas jCas, final IdentifiedAnnotation identifiedAnnotation )
+         throws AnalysisEngineProcessException {
+      final List<Feature> features = new ArrayList<>();
+      // only extract these features if not doing domain adaptation
+      if ( ffDomainAdaptor == null ) {
+         for ( FeatureExtractor1<IdentifiedAnnotation> extractor : this.entityFeatureExtractors ) {
+            features.addAll( extractor.extract( jCas, identifiedAnnotation ) );
+         }
+      }
+      for ( FeatureExtractor1<IdentifiedAnnotation> extractor : this.entityTreeExtractors ) {
+         features.addAll( extractor.extract( jCas, identifiedAnnotation ) );
+      }
+      return features;
+   }
 
-               // ensures that the (possibly) transformed feats are used
-               if ( instance.getOutcome() != null ) {
-                  if ( coin.nextDouble() < this.portionOfDataToUse ) {
-                     this.dataWriter.write( new Instance<>( instance.getOutcome(), feats ) );
-                  }
-               }
-            }
+   /**
+    * Lower cases string feature values, except for tree, tree fragment, word and negation features.
+    *
+    * @param feats features to change in place
+    */
+   static void lowerCaseFeatureValues( final List<Feature> feats ) {
+      for ( Feature feat : feats ) {
+         if ( feat instanceof TreeFeature ||
+              (feat.getName() != null && (feat.getName().startsWith( "TreeFrag" ) ||
+                                          feat.getName().startsWith( "WORD" ) ||
+                                          feat.getName().startsWith( "NEG" ))) ) {
+            continue;
          }
+         if ( feat.getName() != null &&
+              (feat.getName().contains( "_TreeFrag" ) || feat.getName().contains( "_WORD" ) ||
+               feat.getName().contains( "_NEG" )) ) {
+            continue;
+         }
+         if ( feat.getValue() instanceof String ) {
+            feat.setValue( ((String)feat.getValue()).toLowerCase() );
+         }
+      }
+   }
+
+   /**
+    * Attributes with equal keys extract equal context features for every mention,
+    * as they use the same token context extractors and no domain adaptation.
+    * Call after {@link #initializeDocument(JCas)}, which may turn domain adaptation off.
+    *
+    * @return a key for the context features of this attribute, or null if they can only be extracted by this attribute
+    */
+   Object getContextFeatureKey() {
+      if ( ffDomainAdaptor != null ) {
+         return null;
+      }
+      if ( this.tokenCleartkExtractors.isEmpty() ) {
+         return "NoTokenContext";
+      }
+      if ( this.tokenCleartkExtractors.size() == 1 && this.tokenCleartkExtractors.get( 0 ) == defaultTokenExtractor ) {
+         return "DefaultTokenContext";
       }
+      return null;
    }
 
   /*
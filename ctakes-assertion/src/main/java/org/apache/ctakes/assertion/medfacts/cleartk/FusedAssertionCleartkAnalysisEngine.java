@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.assertion.medfacts.cleartk;
+
+import org.apache.ctakes.core.pipeline.PipeBitInfo;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.UimaContextFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.NameValuePair;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.Instance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns polarity, uncertainty, history, conditional, generic and subject in one pass over the entities.
+ * <p>
+ * Each attribute is classified by its usual {@link AssertionCleartkAnalysisEngine} with its usual model.
+ * The sentence index is built once per document, and the sentence context features
+ * (surrounding tokens, closest cue, anatomical site) are extracted once per entity
+ * for each group of attributes that extract them with the same token extractors and no domain adaptation.
+ * Each classifier still gets exactly the feature vector it was trained on, including its own document domain
+ * and entity features.
+ * <p>
+ * Attributes are classified per entity in the same order as the separate engines in AttributeCleartkSubPipe,
+ * so uncertainty features can use the polarity that was just assigned.
+ * This engine only classifies; train the attribute engines separately.
+ */
+@PipeBitInfo(
+      name = "Fused ClearTK Attribute Annotator",
+      description = "Assigns polarity, uncertainty, history, conditional, generic and subject to Identified Annotations"
+                    + " with one shared context feature extraction per annotation.",
+      dependencies = { PipeBitInfo.TypeProduct.SENTENCE, PipeBitInfo.TypeProduct.BASE_TOKEN,
+                       PipeBitInfo.TypeProduct.IDENTIFIED_ANNOTATION },
+      usables = { PipeBitInfo.TypeProduct.DEPENDENCY_NODE }
+)
+final public class FusedAssertionCleartkAnalysisEngine extends JCasAnnotator_ImplBase {
+
+   public static final String PARAM_POLARITY_MODEL = "PolarityModel";
+   @ConfigurationParameter(
+         name = PARAM_POLARITY_MODEL,
+         description = "Path to the polarity classifier model jar.",
+         mandatory = false
+   )
+   private String _polarityModel = "/org/apache/ctakes/assertion/models/polarity/sharpi2b2mipacqnegex/model.jar";
+
+   public static final String PARAM_UNCERTAINTY_MODEL = "UncertaintyModel";
+   @ConfigurationParameter(
+         name = PARAM_UNCERTAINTY_MODEL,
+         description = "Path to the uncertainty classifier model jar.",
+         mandatory = false
+   )
+   private String _uncertaintyModel = "/org/apache/ctakes/assertion/models/uncertainty/model.jar";
+
+   public static final String PARAM_HISTORY_MODEL = "HistoryModel";
+   @ConfigurationParameter(
+         name = PARAM_HISTORY_MODEL,
+         description = "Path to the history of classifier model jar.",
+         mandatory = false
+   )
+   private String _historyModel = "/org/apache/ctakes/assertion/models/historyOf/model.jar";
+
+   public static final String PARAM_CONDITIONAL_MODEL = "ConditionalModel";
+   @ConfigurationParameter(
+         name = PARAM_CONDITIONAL_MODEL,
+         description = "Path to the conditional classifier model jar.",
+         mandatory = false
+   )
+   private String _conditionalModel = "/org/apache/ctakes/assertion/models/conditional/model.jar";
+
+   public static final String PARAM_GENERIC_MODEL = "GenericModel";
+   @ConfigurationParameter(
+         name = PARAM_GENERIC_MODEL,
+         description = "Path to the generic classifier model jar.",
+         mandatory = false
+   )
+   private String _genericModel = "/org/apache/ctakes/assertion/models/generic/model.jar";
+
+   public static final String PARAM_SUBJECT_MODEL = "SubjectModel";
+   @ConfigurationParameter(
+         name = PARAM_SUBJECT_MODEL,
+         description = "Path to the subject classifier model jar.",
+         mandatory = false
+   )
+   private String _subjectModel = "/org/apache/ctakes/assertion/models/subject/model.jar";
+
+   private final List<AssertionCleartkAnalysisEngine> _attributeEngines = new ArrayList<>();
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void initialize( final UimaContext context ) throws ResourceInitializationException {
+      super.initialize( context );
+      addAttributeEngine( new PolarityCleartkAnalysisEngine(),
+            PolarityCleartkAnalysisEngine.createAnnotatorDescription( _polarityModel ) );
+      addAttributeEngine( new UncertaintyCleartkAnalysisEngine(),
+            UncertaintyCleartkAnalysisEngine.createAnnotatorDescription( _uncertaintyModel ) );
+      addAttributeEngine( new HistoryCleartkAnalysisEngine(),
+            HistoryCleartkAnalysisEngine.createAnnotatorDescription( _historyModel ) );
+      addAttributeEngine( new ConditionalCleartkAnalysisEngine(),
+            ConditionalCleartkAnalysisEngine.createAnnotatorDescription( _conditionalModel ) );
+      addAttributeEngine( new GenericCleartkAnalysisEngine(),
+            GenericCleartkAnalysisEngine.createAnnotatorDescription( _genericModel ) );
+      addAttributeEngine( new SubjectCleartkAnalysisEngine(),
+            SubjectCleartkAnalysisEngine.createAnnotatorDescription( _subjectModel ) );
+   }
+
+   /**
+    * Initializes the attribute engine with the same parameters that its own description would give it.
+    */
+   private void addAttributeEngine( final AssertionCleartkAnalysisEngine engine,
+                                    final AnalysisEngineDescription description )
+         throws ResourceInitializationException {
+      final NameValuePair[] settings = description.getAnalysisEngineMetaData()
+                                                  .getConfigurationParameterSettings()
+                                                  .getParameterSettings();
+      final Object[] parameters = new Object[ settings.length * 2 ];
+      for ( int i = 0; i < settings.length; i++ ) {
+         parameters[ i * 2 ] = settings[ i ].getName();
+         parameters[ i * 2 + 1 ] = settings[ i ].getValue();
+      }
+      engine.initialize( UimaContextFactory.createUimaContext( parameters ) );
+      _attributeEngines.add( engine );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void process( final JCas jCas ) throws AnalysisEngineProcessException {
+      final int engineCount = _attributeEngines.size();
+      final String[] domainFeatures = new String[ engineCount ];
+      final Object[] contextKeys = new Object[ engineCount ];
+      for ( int i = 0; i < engineCount; i++ ) {
+         domainFeatures[ i ] = _attributeEngines.get( i ).initializeDocument( jCas );
+         contextKeys[ i ] = _attributeEngines.get( i ).getContextFeatureKey();
+      }
+      final Map<Object, List<Feature>> sharedContextFeatures = new HashMap<>();
+      AssertionCleartkAnalysisEngine.forEachSentenceEntity( jCas, ( sentence, identifiedAnnotation, cues, baseTokens ) -> {
+         sharedContextFeatures.clear();
+         for ( int i = 0; i < engineCount; i++ ) {
+            final AssertionCleartkAnalysisEngine engine = _attributeEngines.get( i );
+            List<Feature> contextFeatures = contextKeys[ i ] == null ? null : sharedContextFeatures.get( contextKeys[ i ] );
+            if ( contextFeatures == null ) {
+               contextFeatures = engine.extractContextFeatures( jCas, identifiedAnnotation, sentence, cues, baseTokens );
+               AssertionCleartkAnalysisEngine.lowerCaseFeatureValues( contextFeatures );
+               if ( contextKeys[ i ] != null ) {
+                  sharedContextFeatures.put( contextKeys[ i ], contextFeatures );
+               }
+            }
+            final Instance<String> instance
+                  = engine.createInstance( jCas, identifiedAnnotation, domainFeatures[ i ], contextFeatures );
+            engine.setClassLabel( identifiedAnnotation, instance );
+         }
+      } );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void collectionProcessComplete() throws AnalysisEngineProcessException {
+      for ( AssertionCleartkAnalysisEngine engine : _attributeEngines ) {
+         engine.collectionProcessComplete();
+      }
+      super.collectionProcessComplete();
+   }
+
+}
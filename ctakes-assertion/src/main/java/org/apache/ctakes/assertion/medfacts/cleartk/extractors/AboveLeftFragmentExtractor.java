@@ -22,8 +22,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.ctakes.assertion.pipelines.GenerateTreeRepresentation;
-import org.apache.ctakes.constituency.parser.util.TreeUtils;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.utils.tree.FragmentIndex;
 import org.apache.ctakes.utils.tree.SimpleTree;
 import org.apache.uima.jcas.JCas;
 import org.cleartk.ml.Feature;
@@ -34,6 +34,7 @@ public class AboveLeftFragmentExtractor extends TreeFragmentFeatureExtractor {
   public AboveLeftFragmentExtractor(String prefix, String resourceFilename)
       throws CleartkInitializationException {
     super(prefix, resourceFilename);
+    fragIndex = FragmentIndex.forTrees(frags, true);
   }
 
   @Override
@@ -42,12 +43,8 @@ public class AboveLeftFragmentExtractor extends TreeFragmentFeatureExtractor {
 //    SimpleTree tree = AssertionTreeUtils.extractAboveLeftConceptTree(jcas, annotation, sems);
     SimpleTree tree = GenerateTreeRepresentation.getNegationTree(jcas, annotation, sems);
     
-    for(SimpleTree frag : frags){
-      if(TreeUtils.containsIgnoreCase(tree, frag)){
-        features.add(new Feature("TreeFrag_" + prefix, frag.toString()));
-      }
-      
-//      features.add(new Feature("TreeFrag_" + prefix + "_" + frag.toString(), TreeUtils.countFrags(tree, frag)));
+    for(SimpleTree frag : fragIndex.getContainedFragments(tree)){
+      features.add(new Feature("TreeFrag_" + prefix, frag.toString()));
     }
   
     return features;
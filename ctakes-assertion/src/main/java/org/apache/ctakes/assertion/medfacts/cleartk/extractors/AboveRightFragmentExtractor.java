@@ -23,8 +23,8 @@ import static org.apache.ctakes.assertion.util.AssertionTreeUtils.extractAboveRi
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.ctakes.constituency.parser.util.TreeUtils;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.utils.tree.FragmentIndex;
 import org.apache.ctakes.utils.tree.SimpleTree;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
@@ -36,6 +36,7 @@ public class AboveRightFragmentExtractor extends TreeFragmentFeatureExtractor {
   public AboveRightFragmentExtractor(String prefix, String resourceFilename)
       throws CleartkInitializationException {
     super(prefix, resourceFilename);
+    fragIndex = FragmentIndex.forTrees(frags, true);
   }
 
   @Override
@@ -43,10 +44,8 @@ public class AboveRightFragmentExtractor extends TreeFragmentFeatureExtractor {
     List<Feature> features = new ArrayList<Feature>();
     SimpleTree tree = extractAboveRightConceptTree(jcas, annotation, sems);
     
-    for(SimpleTree frag : frags){
-      if(TreeUtils.containsIgnoreCase(tree, frag)){
-        features.add(new Feature("TreeFrag_" + prefix, frag.toString()));
-      }
+    for(SimpleTree frag : fragIndex.getContainedFragments(tree)){
+      features.add(new Feature("TreeFrag_" + prefix, frag.toString()));
     }
   
     return features;
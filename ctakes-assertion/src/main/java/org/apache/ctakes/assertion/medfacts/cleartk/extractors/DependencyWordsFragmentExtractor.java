@@ -24,10 +24,10 @@ import java.util.List;
 import org.apache.ctakes.assertion.pipelines.GenerateDependencyRepresentation;
 import org.apache.ctakes.assertion.util.AssertionDepUtils;
 import org.apache.ctakes.assertion.util.AssertionTreeUtils;
-import org.apache.ctakes.constituency.parser.util.TreeUtils;
 import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.ctakes.utils.tree.FragmentIndex;
 import org.apache.ctakes.utils.tree.SimpleTree;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
@@ -38,6 +38,7 @@ public class DependencyWordsFragmentExtractor extends TreeFragmentFeatureExtract
 
   public DependencyWordsFragmentExtractor(String prefix, String fragsPath) throws CleartkInitializationException {
     super(prefix, fragsPath);
+    fragIndex = FragmentIndex.forDependencyChains(frags, true);
   }
 
   @Override
@@ -55,10 +56,8 @@ public class DependencyWordsFragmentExtractor extends TreeFragmentFeatureExtract
         System.err.println("Tree is null!");
       }else{
         AssertionTreeUtils.replaceDependencyWordsWithSemanticClasses(tree, sems);
-        for(SimpleTree frag : frags){
-          if(TreeUtils.containsDepFragIgnoreCase(tree, frag)){
-            features.add(new Feature("TreeFrag_" + prefix, frag.toString()));
-          }
+        for(SimpleTree frag : fragIndex.getContainedFragments(tree)){
+          features.add(new Feature("TreeFrag_" + prefix, frag.toString()));
         }
       }
 
@@ -4,6 +4,7 @@ package org.apache.ctakes.assertion.medfacts.cleartk.windowed.context.feature.ex
 import org.apache.ctakes.assertion.util.SemanticClasses;
 import org.apache.ctakes.core.resource.FileLocator;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.utils.tree.FragmentIndex;
 import org.apache.ctakes.utils.tree.FragmentUtils;
 import org.apache.ctakes.utils.tree.SimpleTree;
 import org.apache.uima.jcas.JCas;
@@ -27,6 +28,8 @@ abstract public class AbstractTreeFragmentFeatureExtractor1
    public static final String PARAM_OUTPUTDIR = "outputDir";
    public static final String PARAM_SEMDIR = "semDir";
    protected HashSet<SimpleTree> frags = null;
+   // built by subclasses for their kind of tree, tree fragments or dependency chains
+   protected FragmentIndex fragIndex = null;
    protected SemanticClasses sems = null;
    protected String prefix = null;
 
@@ -3,10 +3,10 @@ package org.apache.ctakes.assertion.medfacts.cleartk.windowed.context.feature.ex
 import org.apache.ctakes.assertion.pipelines.GenerateDependencyRepresentation;
 import org.apache.ctakes.assertion.util.AssertionDepUtils;
 import org.apache.ctakes.assertion.util.AssertionTreeUtils;
-import org.apache.ctakes.constituency.parser.util.TreeUtils;
 import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.ctakes.utils.tree.FragmentIndex;
 import org.apache.ctakes.utils.tree.SimpleTree;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
@@ -27,6 +27,7 @@ public class WindowedDependencyWordsFragmentExtractor extends AbstractTreeFragme
    public WindowedDependencyWordsFragmentExtractor( String prefix, String fragsPath )
          throws CleartkInitializationException {
       super( prefix, fragsPath );
+      fragIndex = FragmentIndex.forDependencyChains( frags, true );
    }
 
    @Override
@@ -45,10 +46,8 @@ public class WindowedDependencyWordsFragmentExtractor extends AbstractTreeFragme
          System.err.println( "Tree is null!" );
       } else {
          AssertionTreeUtils.replaceDependencyWordsWithSemanticClasses( tree, sems );
-         for ( SimpleTree frag : frags ) {
-            if ( TreeUtils.containsDepFragIgnoreCase( tree, frag ) ) {
-               features.add( new Feature( "TreeFrag_" + prefix, frag.toString() ) );
-            }
+         for ( SimpleTree frag : fragIndex.getContainedFragments( tree ) ) {
+            features.add( new Feature( "TreeFrag_" + prefix, frag.toString() ) );
          }
       }
 
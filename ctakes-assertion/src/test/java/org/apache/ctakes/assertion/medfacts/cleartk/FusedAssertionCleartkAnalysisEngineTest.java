@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.assertion.medfacts.cleartk;
+
+import org.apache.ctakes.typesystem.type.constants.CONST;
+import org.apache.ctakes.typesystem.type.syntax.PunctuationToken;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.temporary.assertion.AssertionCuePhraseAnnotation;
+import org.apache.ctakes.typesystem.type.textsem.EntityMention;
+import org.apache.ctakes.typesystem.type.textsem.EventMention;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.fit.factory.AggregateBuilder;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.pipeline.SimplePipeline;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the attributes assigned by the fused engine with those of the separate engines of AttributeCleartkSubPipe.
+ */
+public class FusedAssertionCleartkAnalysisEngineTest {
+
+   static private final String[] SENTENCES = {
+         "The patient denies fever and has no chest pain .",
+         "Possible pneumonia in the left lung , rule out sepsis .",
+         "History of diabetes mellitus , mother had breast cancer .",
+         "If the headache returns , take aspirin .",
+         "Patients with asthma often use an inhaler ." };
+
+   static private final String[] MENTIONS = {
+         "fever", "chest pain", "pneumonia", "lung", "sepsis", "diabetes mellitus", "breast cancer",
+         "headache", "aspirin", "asthma", "inhaler" };
+
+   static private final String[][] CUES = {
+         { "denies", "negation" }, { "no", "negation" }, { "Possible", "uncertainty" }, { "rule out", "uncertainty" },
+         { "History of", "history" }, { "mother", "subject" }, { "If", "conditional" }, { "Patients", "generic" } };
+
+   static private final Pattern TOKEN_PATTERN = Pattern.compile( "\\S+" );
+
+   @Test
+   public void testSameAsSeparateEngines() throws Exception {
+      final AggregateBuilder separate = new AggregateBuilder();
+      separate.add( PolarityCleartkAnalysisEngine.createAnnotatorDescription() );
+      separate.add( UncertaintyCleartkAnalysisEngine.createAnnotatorDescription() );
+      separate.add( HistoryCleartkAnalysisEngine.createAnnotatorDescription() );
+      separate.add( ConditionalCleartkAnalysisEngine.createAnnotatorDescription() );
+      separate.add( GenericCleartkAnalysisEngine.createAnnotatorDescription() );
+      separate.add( SubjectCleartkAnalysisEngine.createAnnotatorDescription() );
+      final JCas separateCas = createCas();
+      SimplePipeline.runPipeline( separateCas, separate.createAggregateDescription() );
+
+      final AnalysisEngineDescription fused
+            = AnalysisEngineFactory.createEngineDescription( FusedAssertionCleartkAnalysisEngine.class );
+      final JCas fusedCas = createCas();
+      SimplePipeline.runPipeline( fusedCas, fused );
+
+      final List<String> expected = describeAttributes( separateCas );
+      assertEquals( MENTIONS.length, expected.size() );
+      assertEquals( expected, describeAttributes( fusedCas ) );
+   }
+
+   static private JCas createCas() throws Exception {
+      final JCas jCas = JCasFactory.createJCas();
+      final StringBuilder sb = new StringBuilder();
+      for ( String sentence : SENTENCES ) {
+         final int begin = sb.length();
+         sb.append( sentence );
+         new Sentence( jCas, begin, sb.length() ).addToIndexes();
+         sb.append( '\n' );
+      }
+      final String text = sb.toString();
+      jCas.setDocumentText( text );
+      final Matcher matcher = TOKEN_PATTERN.matcher( text );
+      while ( matcher.find() ) {
+         if ( Character.isLetterOrDigit( matcher.group().charAt( 0 ) ) ) {
+            new WordToken( jCas, matcher.start(), matcher.end() ).addToIndexes();
+         } else {
+            new PunctuationToken( jCas, matcher.start(), matcher.end() ).addToIndexes();
+         }
+      }
+      for ( String mention : MENTIONS ) {
+         final int begin = text.indexOf( mention );
+         final IdentifiedAnnotation annotation;
+         if ( mention.equals( "lung" ) ) {
+            annotation = new EntityMention( jCas, begin, begin + mention.length() );
+            annotation.setTypeID( CONST.NE_TYPE_ID_ANATOMICAL_SITE );
+         } else if ( mention.equals( "aspirin" ) || mention.equals( "inhaler" ) ) {
+            annotation = new EventMention( jCas, begin, begin + mention.length() );
+            annotation.setTypeID( CONST.NE_TYPE_ID_DRUG );
+         } else {
+            annotation = new EventMention( jCas, begin, begin + mention.length() );
+            annotation.setTypeID( CONST.NE_TYPE_ID_DISORDER );
+         }
+         annotation.addToIndexes();
+      }
+      for ( String[] cue : CUES ) {
+         final int begin = text.indexOf( cue[ 0 ] );
+         final AssertionCuePhraseAnnotation annotation
+               = new AssertionCuePhraseAnnotation( jCas, begin, begin + cue[ 0 ].length() );
+         annotation.setCuePhraseAssertionFamily( cue[ 1 ] );
+         annotation.setCuePhraseCategory( cue[ 1 ] + "Cue" );
+         annotation.addToIndexes();
+      }
+      return jCas;
+   }
+
+   static private List<String> describeAttributes( final JCas jCas ) {
+      final List<String> attributes = new ArrayList<>();
+      for ( IdentifiedAnnotation annotation : JCasUtil.select( jCas, IdentifiedAnnotation.class ) ) {
+         attributes.add( annotation.getCoveredText()
+                         + " polarity=" + annotation.getPolarity()
+                         + " uncertainty=" + annotation.getUncertainty()
+                         + " historyOf=" + annotation.getHistoryOf()
+                         + " conditional=" + annotation.getConditional()
+                         + " generic=" + annotation.getGeneric()
+                         + " subject=" + annotation.getSubject() );
+      }
+      return attributes;
+   }
+
+}
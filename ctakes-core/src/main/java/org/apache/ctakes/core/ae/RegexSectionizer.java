@@ -3,7 +3,7 @@ package org.apache.ctakes.core.ae;
 
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.core.util.Pair;
-import org.apache.ctakes.core.util.regex.RegexSpanFinder;
+import org.apache.ctakes.core.util.regex.LinearRegexSet;
 import org.apache.ctakes.core.util.regex.TimeoutMatcher;
 import org.apache.ctakes.typesystem.type.textspan.Segment;
 import org.apache.log4j.Logger;
@@ -15,7 +15,6 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 
 import java.util.*;
-import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -95,6 +94,21 @@ abstract public class RegexSectionizer extends JCasAnnotator_ImplBase {
    static protected final SectionTag LINE_DIVIDER_TAG
          = new SectionTag( DIVIDER_LINE_NAME, DIVIDER_LINE_NAME, TagType.DIVIDER );
 
+   /**
+    * Holder for a header, footer or divider line pattern and the section type that it tags
+    */
+   static private final class TagPattern {
+      private final String __typeName;
+      private final Pattern __pattern;
+      private final TagType __tagType;
+
+      private TagPattern( final String typeName, final Pattern pattern, final TagType tagType ) {
+         __typeName = typeName;
+         __pattern = pattern;
+         __tagType = tagType;
+      }
+   }
+
    /**
     * Normally I would put this in a singleton but I'm not sure that a singleton will work well with/as uima ae
     *
@@ -110,6 +124,10 @@ abstract public class RegexSectionizer extends JCasAnnotator_ImplBase {
    static private final Object SECTION_TYPE_LOCK = new Object();
    static private final Map<String, SectionType> _sectionTypes = new HashMap<>();
    static private volatile boolean _sectionsLoaded = false;
+   // tag finders with and without the divider line pattern, shared by all instances
+   static private final Map<Boolean, TagFinder> _tagFinders = new HashMap<>();
+
+   private TagFinder _tagFinder;
 
    static protected void addSectionType( final SectionType sectionType ) {
       _sectionTypes.put( sectionType.__name, sectionType );
@@ -130,6 +148,8 @@ abstract public class RegexSectionizer extends JCasAnnotator_ImplBase {
             loadSections();
             _sectionsLoaded = true;
          }
+         _tagFinder = _tagFinders.computeIfAbsent( _tagDividers,
+               tagDividers -> new TagFinder( _sectionTypes.values(), tagDividers ) );
       }
    }
 
@@ -144,17 +164,15 @@ abstract public class RegexSectionizer extends JCasAnnotator_ImplBase {
          return;
       }
       final String docText = jcas.getDocumentText();
-      final Map<Pair<Integer>, SectionTag> headerTags = findHeaderTags( docText );
+      final Map<Pair<Integer>, SectionTag> headerTags = new HashMap<>();
+      final Map<Pair<Integer>, SectionTag> footerTags = new HashMap<>();
+      final Map<Pair<Integer>, SectionTag> dividerLines = new HashMap<>();
+      _tagFinder.findTags( docText, headerTags, footerTags, dividerLines );
       if ( headerTags.isEmpty() ) {
          LOGGER.debug( "No section headers found" );
       }
       final Collection<Pair<Integer>> subsumedTags = getSubsumedBounds( headerTags.keySet() );
       headerTags.keySet().removeAll( subsumedTags );
-      final Map<Pair<Integer>, SectionTag> footerTags = findFooterTags( docText );
-      final Map<Pair<Integer>, SectionTag> dividerLines = new HashMap<>();
-      if ( _tagDividers ) {
-         dividerLines.putAll( findDividerLines( docText ) );
-      }
       createSegments( jcas, headerTags, footerTags, dividerLines );
       LOGGER.info( "Finished processing" );
    }
@@ -253,39 +271,88 @@ abstract public class RegexSectionizer extends JCasAnnotator_ImplBase {
    abstract protected void loadSections() throws ResourceInitializationException;
 
    /**
-    * find all section separator header tags
-    *
-    * @param docText -
-    * @return section tags mapped to index pairs
+    * Finds the header, footer and divider line tags of all section types with a single scan of the text,
+    * using a {@link LinearRegexSet} that needs no timeout.
+    * Patterns that can not be scanned in linear time are run one by one with a {@link TimeoutMatcher}.
+    * The divider line pattern is only scanned when divider lines are tagged.
     */
-   static private Map<Pair<Integer>, SectionTag> findHeaderTags( final String docText ) {
-      final Map<Pair<Integer>, SectionTag> headerTags = new HashMap<>();
-      for ( SectionType sectionType : _sectionTypes.values() ) {
-         if ( sectionType.__headerPattern == null ) {
-            continue;
+   static private final class TagFinder {
+      private final List<TagPattern> __linearPatterns = new ArrayList<>();
+      private final List<TagPattern> __timeoutPatterns = new ArrayList<>();
+      private final LinearRegexSet __regexSet;
+
+      private TagFinder( final Collection<SectionType> sectionTypes, final boolean tagDividers ) {
+         for ( SectionType sectionType : sectionTypes ) {
+            addTagPattern( new TagPattern( sectionType.__name, sectionType.__headerPattern, TagType.HEADER ) );
+            addTagPattern( new TagPattern( sectionType.__name, sectionType.__footerPattern, TagType.FOOTER ) );
          }
-         headerTags
-               .putAll( findSectionTags( docText, sectionType.__name, sectionType.__headerPattern, TagType.HEADER ) );
+         if ( tagDividers ) {
+            addTagPattern( new TagPattern( DIVIDER_LINE_NAME, DIVIDER_LINE_PATTERN, TagType.DIVIDER ) );
+         }
+         __regexSet = new LinearRegexSet( __linearPatterns.stream()
+               .map( p -> p.__pattern )
+               .collect( Collectors.toList() ) );
       }
-      return headerTags;
-   }
 
-   /**
-    * find all section separator footer tags
-    *
-    * @param docText -
-    * @return section tags mapped to index pairs
-    */
-   static private Map<Pair<Integer>, SectionTag> findFooterTags( final String docText ) {
-      final Map<Pair<Integer>, SectionTag> footerTags = new HashMap<>();
-      for ( SectionType sectionType : _sectionTypes.values() ) {
-         if ( sectionType.__footerPattern == null ) {
-            continue;
+      private void addTagPattern( final TagPattern tagPattern ) {
+         if ( tagPattern.__pattern == null ) {
+            return;
+         }
+         if ( LinearRegexSet.isSupported( tagPattern.__pattern ) ) {
+            __linearPatterns.add( tagPattern );
+         } else {
+            LOGGER.warn( "Section " + tagPattern.__typeName + " " + tagPattern.__tagType
+                         + " regex uses constructs that cannot be matched in linear time, it will be run with a timeout." );
+            __timeoutPatterns.add( tagPattern );
+         }
+      }
+
+      /**
+       * find all section separator header tags, footer tags and divider lines
+       *
+       * @param docText      -
+       * @param headerTags   section header tags mapped to index pairs
+       * @param footerTags   section footer tags mapped to index pairs
+       * @param dividerLines divider lines mapped to index pairs
+       */
+      private void findTags( final String docText,
+                             final Map<Pair<Integer>, SectionTag> headerTags,
+                             final Map<Pair<Integer>, SectionTag> footerTags,
+                             final Map<Pair<Integer>, SectionTag> dividerLines ) {
+         for ( LinearRegexSet.Match match : __regexSet.findMatches( docText ) ) {
+            final TagPattern tagPattern = __linearPatterns.get( match.getPatternIndex() );
+            if ( tagPattern.__tagType == TagType.DIVIDER ) {
+               dividerLines.put( match.getSpan(), LINE_DIVIDER_TAG );
+               continue;
+            }
+            String name;
+            try {
+               name = match.group( SECTION_NAME_EX );
+               if ( name == null || name.isEmpty() ) {
+                  name = tagPattern.__typeName;
+               }
+            } catch ( IllegalArgumentException iaE ) {
+               name = tagPattern.__typeName;
+            }
+            final SectionTag tag = new SectionTag( name, tagPattern.__typeName, tagPattern.__tagType );
+            if ( tagPattern.__tagType == TagType.HEADER ) {
+               headerTags.put( match.getSpan(), tag );
+            } else {
+               footerTags.put( match.getSpan(), tag );
+            }
+         }
+         for ( TagPattern tagPattern : __timeoutPatterns ) {
+            final Map<Pair<Integer>, SectionTag> sectionTags
+                  = findSectionTags( docText, tagPattern.__typeName, tagPattern.__pattern, tagPattern.__tagType );
+            if ( tagPattern.__tagType == TagType.HEADER ) {
+               headerTags.putAll( sectionTags );
+            } else if ( tagPattern.__tagType == TagType.FOOTER ) {
+               footerTags.putAll( sectionTags );
+            } else {
+               sectionTags.keySet().forEach( b -> dividerLines.put( b, LINE_DIVIDER_TAG ) );
+            }
          }
-         footerTags
-               .putAll( findSectionTags( docText, sectionType.__name, sectionType.__footerPattern, TagType.FOOTER ) );
       }
-      return footerTags;
    }
 
    /**
@@ -432,22 +499,6 @@ abstract public class RegexSectionizer extends JCasAnnotator_ImplBase {
    }
 
 
-   /**
-    * Find line dividers
-    *
-    * @param docText -
-    * @return section tags mapped to index pairs
-    */
-   static private Map<Pair<Integer>, SectionTag> findDividerLines( final String docText ) {
-      final Function<Pair<Integer>, SectionTag> lineDividerTag = p -> LINE_DIVIDER_TAG;
-      try ( RegexSpanFinder finder = new RegexSpanFinder( DIVIDER_LINE_PATTERN ) ) {
-         return finder.findSpans( docText ).stream().collect( Collectors.toMap( Function.identity(), lineDividerTag ) );
-      } catch ( IllegalArgumentException iaE ) {
-         return Collections.emptyMap();
-      }
-   }
-
-
    /**
     * Sorts by first offset, longer bounds first:
     *   |=============|
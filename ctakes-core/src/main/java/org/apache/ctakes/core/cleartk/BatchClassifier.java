@@ -0,0 +1,228 @@
+package org.apache.ctakes.core.cleartk;
+
+
+import de.bwaldvogel.liblinear.FeatureNode;
+import de.bwaldvogel.liblinear.Model;
+import de.bwaldvogel.liblinear.SolverType;
+import org.apache.log4j.Logger;
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.encoder.features.FeaturesEncoder;
+import org.cleartk.ml.encoder.outcome.OutcomeEncoder;
+import org.cleartk.ml.jar.EncodingJarClassifier;
+import org.cleartk.ml.liblinear.GenericLibLinearClassifier;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Classifies a list of candidate feature lists in one call.
+ * Callers batch whatever candidates they can classify without earlier outcomes,
+ * for instance the relation annotators batch the candidate pairs of each covering annotation, not of the whole document.
+ * <p>
+ * For a liblinear classifier all feature lists are first encoded into one sparse (compressed row) matrix,
+ * and then the decision values of every row are computed by one tight loop over the model weights,
+ * without the per instance dispatch and decision value allocation of {@link Classifier#classify(List)}.
+ * The outcomes are exactly those that {@link Classifier#classify(List)} would return.
+ * Any other classifier is simply called once per feature list.
+ * </p>
+ * Typical use is to extract the features of all candidates, classify them together,
+ * and then create annotations from the outcomes, which are in the same order as the feature lists.
+ */
+final public class BatchClassifier<OUTCOME> {
+
+   static private final Logger LOGGER = Logger.getLogger( "BatchClassifier" );
+
+   static private final Field MODEL_FIELD = getField( GenericLibLinearClassifier.class, "model" );
+   static private final Field FEATURES_ENCODER_FIELD = getField( EncodingJarClassifier.class, "featuresEncoder" );
+   static private final Field OUTCOME_ENCODER_FIELD = getField( EncodingJarClassifier.class, "outcomeEncoder" );
+   // liblinear 1.94 Model has no public accessor for its solver type
+   static private final Field SOLVER_TYPE_FIELD = getField( Model.class, "solverType" );
+
+   private final Classifier<OUTCOME> _classifier;
+   // null if the classifier is not liblinear or its model cannot be read
+   private final LinearScorer<OUTCOME> _linearScorer;
+
+   /**
+    * @param classifier some classifier, usually that of a CleartkAnnotator
+    */
+   public BatchClassifier( final Classifier<OUTCOME> classifier ) {
+      _classifier = classifier;
+      _linearScorer = classifier instanceof GenericLibLinearClassifier
+                      ? LinearScorer.create( (GenericLibLinearClassifier<OUTCOME>)classifier )
+                      : null;
+   }
+
+   /**
+    * @return the wrapped classifier
+    */
+   public Classifier<OUTCOME> getClassifier() {
+      return _classifier;
+   }
+
+   /**
+    * @return true if feature lists are scored together, false if the classifier is called once per feature list
+    */
+   public boolean isBatched() {
+      return _linearScorer != null;
+   }
+
+   /**
+    * @param featureLists features of each candidate
+    * @return the outcome of each candidate, in the same order as the feature lists
+    * @throws CleartkProcessingException if features cannot be encoded or classified
+    */
+   public List<OUTCOME> classify( final List<? extends List<Feature>> featureLists )
+         throws CleartkProcessingException {
+      if ( featureLists.isEmpty() ) {
+         return Collections.emptyList();
+      }
+      if ( _linearScorer != null ) {
+         return _linearScorer.classify( featureLists );
+      }
+      final List<OUTCOME> outcomes = new ArrayList<>( featureLists.size() );
+      for ( List<Feature> features : featureLists ) {
+         outcomes.add( _classifier.classify( features ) );
+      }
+      return outcomes;
+   }
+
+
+   static private Field getField( final Class<?> owner, final String name ) {
+      try {
+         final Field field = owner.getDeclaredField( name );
+         field.setAccessible( true );
+         return field;
+      } catch ( NoSuchFieldException | SecurityException | NoClassDefFoundError e ) {
+         LOGGER.warn( "Cannot read " + owner.getSimpleName() + "." + name
+                      + " , liblinear feature lists will be classified one at a time." );
+         return null;
+      }
+   }
+
+
+   /**
+    * The liblinear decision function of {@link de.bwaldvogel.liblinear.Linear#predictValues(Model, de.bwaldvogel.liblinear.Feature[], double[])}
+    * applied to a whole matrix of encoded feature lists.
+    */
+   static private final class LinearScorer<OUTCOME> {
+
+      private final FeaturesEncoder<FeatureNode[]> _featuresEncoder;
+      private final OutcomeEncoder<OUTCOME, Integer> _outcomeEncoder;
+      // weights of feature i for decision j are at _weights[ (i-1) * _decisionCount + j ]
+      private final double[] _weights;
+      private final int _featureCount;
+      private final int _decisionCount;
+      // null for regression
+      private final int[] _labels;
+
+      @SuppressWarnings( "unchecked" )
+      static private <OUTCOME> LinearScorer<OUTCOME> create( final GenericLibLinearClassifier<OUTCOME> classifier ) {
+         if ( MODEL_FIELD == null || FEATURES_ENCODER_FIELD == null || OUTCOME_ENCODER_FIELD == null
+              || SOLVER_TYPE_FIELD == null ) {
+            return null;
+         }
+         try {
+            final Model model = (Model)MODEL_FIELD.get( classifier );
+            final SolverType solverType = model == null ? null : (SolverType)SOLVER_TYPE_FIELD.get( model );
+            final FeaturesEncoder<FeatureNode[]> featuresEncoder
+                  = (FeaturesEncoder<FeatureNode[]>)FEATURES_ENCODER_FIELD.get( classifier );
+            final OutcomeEncoder<OUTCOME, Integer> outcomeEncoder
+                  = (OutcomeEncoder<OUTCOME, Integer>)OUTCOME_ENCODER_FIELD.get( classifier );
+            if ( model == null || solverType == null || featuresEncoder == null || outcomeEncoder == null ) {
+               return null;
+            }
+            final int featureCount = model.getBias() >= 0 ? model.getNrFeature() + 1 : model.getNrFeature();
+            final double[] weights = model.getFeatureWeights();
+            if ( featureCount == 0 || weights == null || weights.length % featureCount != 0 ) {
+               return null;
+            }
+            return new LinearScorer<>( featuresEncoder, outcomeEncoder, weights, featureCount,
+                  weights.length / featureCount,
+                  solverType.isSupportVectorRegression() ? null : model.getLabels() );
+         } catch ( IllegalAccessException | ClassCastException e ) {
+            LOGGER.warn( "Cannot read liblinear model , feature lists will be classified one at a time. "
+                         + e.getMessage() );
+            return null;
+         }
+      }
+
+      private LinearScorer( final FeaturesEncoder<FeatureNode[]> featuresEncoder,
+                            final OutcomeEncoder<OUTCOME, Integer> outcomeEncoder,
+                            final double[] weights, final int featureCount, final int decisionCount,
+                            final int[] labels ) {
+         _featuresEncoder = featuresEncoder;
+         _outcomeEncoder = outcomeEncoder;
+         _weights = weights;
+         _featureCount = featureCount;
+         _decisionCount = decisionCount;
+         _labels = labels;
+      }
+
+      private List<OUTCOME> classify( final List<? extends List<Feature>> featureLists )
+            throws CleartkProcessingException {
+         final int rowCount = featureLists.size();
+         // encode all rows into one compressed sparse row matrix
+         final FeatureNode[][] encoded = new FeatureNode[ rowCount ][];
+         final int[] rowStarts = new int[ rowCount + 1 ];
+         for ( int row = 0; row < rowCount; row++ ) {
+            encoded[ row ] = _featuresEncoder.encodeAll( featureLists.get( row ) );
+            rowStarts[ row + 1 ] = rowStarts[ row ] + encoded[ row ].length;
+         }
+         final int[] columns = new int[ rowStarts[ rowCount ] ];
+         final double[] values = new double[ rowStarts[ rowCount ] ];
+         for ( int row = 0; row < rowCount; row++ ) {
+            int cell = rowStarts[ row ];
+            for ( FeatureNode feature : encoded[ row ] ) {
+               columns[ cell ] = feature.index;
+               values[ cell ] = feature.value;
+               cell++;
+            }
+         }
+         // score all rows
+         final double[] decisions = new double[ _decisionCount ];
+         final List<OUTCOME> outcomes = new ArrayList<>( rowCount );
+         for ( int row = 0; row < rowCount; row++ ) {
+            Arrays.fill( decisions, 0 );
+            for ( int cell = rowStarts[ row ]; cell < rowStarts[ row + 1 ]; cell++ ) {
+               final int column = columns[ cell ];
+               if ( column <= _featureCount ) {
+                  final int offset = ( column - 1 ) * _decisionCount;
+                  final double value = values[ cell ];
+                  for ( int i = 0; i < _decisionCount; i++ ) {
+                     decisions[ i ] += _weights[ offset + i ] * value;
+                  }
+               }
+            }
+            outcomes.add( _outcomeEncoder.decode( getLabel( decisions ) ) );
+         }
+         return outcomes;
+      }
+
+      /**
+       * Same as the end of liblinear predictValues , followed by the int cast of GenericLibLinearClassifier.
+       */
+      private int getLabel( final double[] decisions ) {
+         if ( _labels == null ) {
+            // regression
+            return (int)decisions[ 0 ];
+         }
+         if ( _labels.length == 2 ) {
+            return decisions[ 0 ] > 0 ? _labels[ 0 ] : _labels[ 1 ];
+         }
+         int best = 0;
+         for ( int i = 1; i < _labels.length; i++ ) {
+            if ( decisions[ i ] > decisions[ best ] ) {
+               best = i;
+            }
+         }
+         return _labels[ best ];
+      }
+
+   }
+
+}
@@ -36,10 +36,16 @@ import org.apache.uima.util.ProgressImpl;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Array;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.regex.Pattern;
 
 
@@ -137,6 +143,49 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
    )
    private int _patientLevel = 1;
 
+   /**
+    * Walk the directory tree while reading instead of listing every file during initialization.
+    * Directories above the patient level are walked lazily, each patient directory is listed when it is reached.
+    * First-document latency no longer depends upon the size of the tree, but the total note count is unknown.
+    */
+   public static final String PARAM_STREAM_FILES = "StreamFiles";
+   @ConfigurationParameter(
+         name = PARAM_STREAM_FILES,
+         description = "Walk the directory tree while reading instead of listing all files at initialization.",
+         mandatory = false
+   )
+   private boolean _streamFiles = false;
+
+   /**
+    * Number of files to read ahead on a background thread while the pipeline processes the current document.
+    */
+   public static final String PARAM_PREFETCH_COUNT = "PrefetchCount";
+   @ConfigurationParameter(
+         name = PARAM_PREFETCH_COUNT,
+         description = "Number of files to read ahead on a background thread.  Default is 0, no read ahead.",
+         mandatory = false
+   )
+   private int _prefetchCount = 0;
+
+   /**
+    * Index of the slice of the tree to read when the tree is divided among several independent pipelines.
+    * Patient directories are divided among the shards so that all notes for a patient are read by one pipeline.
+    * Files that do not belong to a patient directory are divided individually.
+    */
+   @ConfigurationParameter(
+         name = ReaderShard.PARAM_SHARD_INDEX,
+         description = "Index of the shard to read, 0 to ShardCount - 1.",
+         mandatory = false
+   )
+   private int _shardIndex = 0;
+
+   @ConfigurationParameter(
+         name = ReaderShard.PARAM_SHARD_COUNT,
+         description = "Number of shards among which the tree is divided.  Default is 1, read the whole tree.",
+         mandatory = false
+   )
+   private int _shardCount = 1;
+
    static protected final String UNKNOWN = "Unknown";
    //   For compatibility with sql db : Timestamp format must be yyyy-mm-dd hh:mm:ss[.fffffffff]
    static private final DateFormat DATE_FORMAT = new SimpleDateFormat( "yyyy-MM-dd hh:mm:ss" );
@@ -150,6 +199,11 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
    private Map<String, Integer> _patientDocCounts = new HashMap<>();
    private int _currentIndex;
    private Comparator<File> _fileComparator;
+   private Iterator<File> _fileIterator;
+   private BlockingQueue<PrefetchedFile> _prefetchQueue;
+   private Thread _prefetchThread;
+   private PrefetchedFile _nextFile;
+   private ReaderShard _shard;
 
 
    public AbstractFileTreeReader() {
@@ -163,6 +217,18 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
     */
    abstract protected void readFile( final JCas jCas, final File file ) throws IOException;
 
+   /**
+    * Readers that can read a file's text without a jcas should override this so that files can be read ahead
+    * on a background thread.  See {@link #PARAM_PREFETCH_COUNT}.
+    *
+    * @param file file to be read
+    * @return the document text for the file, or null if the file must be read with {@link #readFile(JCas, File)}
+    * @throws IOException should anything bad happen
+    */
+   protected String readText( final File file ) throws IOException {
+      return null;
+   }
+
    /**
     * @return Comparator to sort Files and Directories.  The default Comparator sorts by filename with {@link NumberedSuffixComparator}.
     */
@@ -182,7 +248,9 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
     */
    public int getNoteCount() {
       if ( _files == null ) {
-         LOGGER.error( "Not yet initialized" );
+         if ( _fileIterator == null ) {
+            LOGGER.error( "Not yet initialized" );
+         }
          return 0;
       }
       return _files.size();
@@ -249,10 +317,28 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
          throw new ResourceInitializationException( fnfE );
       }
       _validExtensions = createValidExtensions( _explicitExtensions );
+      _shard = ReaderShard.create( _shardIndex, _shardCount );
+      if ( _shard.isPartitioned() ) {
+         LOGGER.info( "Reading " + _shard + " of " + _rootDirPath );
+      }
       _currentIndex = 0;
+      if ( _streamFiles && _rootDir.isDirectory() ) {
+         _fileComparator = createFileComparator();
+         _fileIterator = new FileTreeWalker( _rootDir );
+         startPrefetch();
+         // The total number of notes is unknown
+         ProgressManager.getInstance().initializeProgress( _rootDirPath, 0 );
+         return;
+      }
       if ( _rootDir.isFile() ) {
          // does not check for valid extensions.  With one file just trust the user.
          final String patient = _rootDir.getParentFile().getName();
+         if ( !_shard.accepts( _rootDir.getName() ) ) {
+            _filePatients = Collections.emptyMap();
+            _files = Collections.emptyList();
+            _fileIterator = _files.iterator();
+            return;
+         }
          _files = Collections.singletonList( _rootDir );
          _filePatients = Collections.singletonMap( _rootDir, patient );
          PatientNoteStore.getInstance().setWantedDocCount( patient, 1 );
@@ -262,6 +348,7 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
          if ( children == null || children.length == 0 ) {
             _filePatients = Collections.emptyMap();
             _files = Collections.emptyList();
+            _fileIterator = _files.iterator();
             return;
          }
          if ( Arrays.stream( children ).noneMatch( File::isDirectory ) ) {
@@ -272,9 +359,76 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
          _files = getDescendentFiles( _rootDir, _validExtensions, 0 );
          _patientDocCounts.forEach( ( k, v ) -> PatientNoteStore.getInstance().setWantedDocCount( k, v ) );
       }
+      _fileIterator = _files.iterator();
+      startPrefetch();
       ProgressManager.getInstance().initializeProgress( _rootDirPath, _files.size() );
    }
 
+   /**
+    * Start the read ahead thread if a prefetch count is set.
+    */
+   private void startPrefetch() {
+      if ( _prefetchCount <= 0 ) {
+         return;
+      }
+      _prefetchQueue = new ArrayBlockingQueue<>( _prefetchCount );
+      final Iterator<File> files = _fileIterator;
+      _prefetchThread = new Thread( () -> {
+         try {
+            while ( files.hasNext() ) {
+               _prefetchQueue.put( prefetch( files.next() ) );
+            }
+            _prefetchQueue.put( PrefetchedFile.END );
+         } catch ( InterruptedException intE ) {
+            Thread.currentThread().interrupt();
+         } catch ( RuntimeException rtE ) {
+            // Walking the tree failed.  Pass the failure to the reading thread, followed by the end of the files.
+            try {
+               _prefetchQueue.put( new PrefetchedFile( null, null, new IOException( rtE ) ) );
+               _prefetchQueue.put( PrefetchedFile.END );
+            } catch ( InterruptedException intE ) {
+               Thread.currentThread().interrupt();
+            }
+         }
+      }, "FileTreePrefetch" );
+      _prefetchThread.setDaemon( true );
+      _prefetchThread.start();
+   }
+
+   /**
+    * @param file file to read ahead
+    * @return the file with its text or the exception thrown while reading it
+    */
+   private PrefetchedFile prefetch( final File file ) {
+      try {
+         return new PrefetchedFile( file, readText( file ), null );
+      } catch ( IOException ioE ) {
+         return new PrefetchedFile( file, null, ioE );
+      }
+   }
+
+   /**
+    * @return the next file, possibly with its text, or {@link PrefetchedFile#END} if there are no more files
+    * @throws IOException if the prefetch thread is interrupted
+    */
+   private PrefetchedFile peekNextFile() throws IOException {
+      if ( _nextFile == null ) {
+         if ( _prefetchQueue != null ) {
+            try {
+               _nextFile = _prefetchQueue.take();
+            } catch ( InterruptedException intE ) {
+               Thread.currentThread().interrupt();
+               throw new IOException( intE );
+            }
+         } else if ( _fileIterator.hasNext() ) {
+            _nextFile = new PrefetchedFile( _fileIterator.next(), null, null );
+         } else {
+            _nextFile = PrefetchedFile.END;
+         }
+      }
+      return _nextFile;
+   }
+
    /**
     * @param explicitExtensions array of file extensions as specified in the uima parameters
     * @return a collection of dot-prefixed extensions or none if {@code explicitExtensions} is null or empty
@@ -307,6 +461,9 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
    private List<File> getDescendentFiles( final File parentDir,
                                           final Collection<String> validExtensions,
                                           final int level ) {
+      if ( level == _patientLevel && !isPatientInShard( parentDir.getName() ) ) {
+         return Collections.emptyList();
+      }
       final File[] children = parentDir.listFiles();
       if ( children == null || children.length == 0 ) {
          return Collections.emptyList();
@@ -318,7 +475,7 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
             childDirs.add( child );
             continue;
          }
-         if ( isExtensionValid( child, validExtensions ) && !child.isHidden() ) {
+         if ( isExtensionValid( child, validExtensions ) && !child.isHidden() && isFileInShard( child, level ) ) {
             files.add( child );
          }
       }
@@ -444,9 +601,15 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
     */
    @Override
    public boolean hasNext() {
-      final boolean hasNext = _currentIndex < _files.size();
+      boolean hasNext;
+      try {
+         hasNext = peekNextFile() != PrefetchedFile.END;
+      } catch ( IOException ioE ) {
+         LOGGER.error( ioE.getMessage() );
+         hasNext = false;
+      }
       if ( !hasNext ) {
-         ProgressManager.getInstance().updateProgress( _files.size() );
+         ProgressManager.getInstance().updateProgress( _currentIndex );
       }
       return hasNext;
    }
@@ -456,12 +619,24 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
     */
    @Override
    public void getNext( final JCas jcas ) throws IOException, CollectionException {
-      final File file = _files.get( _currentIndex );
+      final PrefetchedFile nextFile = peekNextFile();
+      _nextFile = null;
+      if ( nextFile == PrefetchedFile.END ) {
+         throw new CollectionException( new NoSuchElementException() );
+      }
+      if ( nextFile.__error != null ) {
+         throw nextFile.__error;
+      }
+      final File file = nextFile.__file;
       ProgressManager.getInstance().updateProgress( _currentIndex );
       _currentIndex++;
       final String id = createDocumentID( file, getValidExtensions() );
       LOGGER.info( "Reading " + id + " : " + file.getPath() );
-      readFile( jcas, file );
+      if ( nextFile.__text != null ) {
+         jcas.setDocumentText( nextFile.__text );
+      } else {
+         readFile( jcas, file );
+      }
       // Add document metadata based upon file path
       final DocumentID documentId = new DocumentID( jcas );
       documentId.setDocumentID( id );
@@ -475,7 +650,7 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
       sourceData.setNoteTypeCode( docType );
       final String docTime = createDocumentTime( file );
       sourceData.setSourceRevisionDate( docTime );
-      final String patientId = _filePatients.get( file );
+      final String patientId = _filePatients != null ? _filePatients.get( file ) : getStreamedPatientId( file );
       SourceMetadataUtil.setPatientIdentifier( jcas, patientId );
       final DocumentPath documentPath = new DocumentPath( jcas );
       documentPath.setDocumentPath( file.getAbsolutePath() );
@@ -489,11 +664,192 @@ abstract public class AbstractFileTreeReader extends JCasCollectionReader_ImplBa
     */
    @Override
    public Progress[] getProgress() {
+      // -1 : total unknown
       return new Progress[]{
-            new ProgressImpl( _currentIndex, _files.size(), Progress.ENTITIES )
+            new ProgressImpl( _currentIndex, _files != null ? _files.size() : -1, Progress.ENTITIES )
       };
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void close() throws IOException {
+      if ( _prefetchThread != null ) {
+         _prefetchThread.interrupt();
+      }
+      super.close();
+   }
+
+   /**
+    * @param patientId name of a patient directory
+    * @return true if the patient's notes belong to the shard being read
+    */
+   private boolean isPatientInShard( final String patientId ) {
+      // Without patient directories the files are divided individually
+      return _patientLevel == 0 || _shard.accepts( patientId );
+   }
+
+   /**
+    * @param file  file in the tree
+    * @param level directory level of the file's parent beneath the root directory
+    * @return true if the file belongs to the shard being read.
+    * Files in or below a patient directory belong to the shard of the patient.
+    */
+   private boolean isFileInShard( final File file, final int level ) {
+      if ( _patientLevel > 0 && level >= _patientLevel ) {
+         return true;
+      }
+      // Use the path relative to the root with / separators so that every host computes the same shard
+      final String relativePath = _rootDir.toPath().relativize( file.toPath() ).toString()
+                                          .replace( File.separatorChar, '/' );
+      return _shard.accepts( relativePath );
+   }
+
+   /**
+    * @param file file in the tree walked by {@link FileTreeWalker}
+    * @return the name of the directory at the patient level above the file, or null if the file is above that level
+    */
+   private String getStreamedPatientId( final File file ) {
+      if ( _patientLevel == 0 ) {
+         return _rootDir.getName();
+      }
+      final Path relative = _rootDir.toPath().relativize( file.toPath() );
+      // the last name element is the file itself
+      if ( relative.getNameCount() <= _patientLevel ) {
+         return null;
+      }
+      return relative.getName( _patientLevel - 1 ).toString();
+   }
+
+   /**
+    * Walks the directory tree as files are requested, in the same order as the full listing.
+    * Directories above the patient level are read with a DirectoryStream when they are reached.
+    * A patient directory is listed completely when it is reached so that the patient's wanted document count
+    * can be set in the {@link PatientNoteStore} before its first document is read.
+    */
+   private final class FileTreeWalker implements Iterator<File> {
+      private final Deque<Iterator<File>> __iterators = new ArrayDeque<>();
+      private final Deque<Integer> __levels = new ArrayDeque<>();
+      private final Map<String, Integer> __patientDocCounts = new HashMap<>();
+      private File __next;
+
+      private FileTreeWalker( final File rootDir ) {
+         pushDirectory( rootDir, 0 );
+      }
+
+      @Override
+      public boolean hasNext() {
+         while ( __next == null && !__iterators.isEmpty() ) {
+            final Iterator<File> iterator = __iterators.peek();
+            if ( !iterator.hasNext() ) {
+               __iterators.pop();
+               __levels.pop();
+               continue;
+            }
+            final File file = iterator.next();
+            if ( file.isDirectory() ) {
+               pushDirectory( file, __levels.peek() + 1 );
+            } else {
+               __next = file;
+            }
+         }
+         return __next != null;
+      }
+
+      @Override
+      public File next() {
+         if ( !hasNext() ) {
+            throw new NoSuchElementException();
+         }
+         final File next = __next;
+         __next = null;
+         return next;
+      }
+
+      private void pushDirectory( final File directory, final int level ) {
+         final List<File> childDirs = new ArrayList<>();
+         final List<File> files = new ArrayList<>();
+         try ( DirectoryStream<Path> stream = Files.newDirectoryStream( directory.toPath() ) ) {
+            for ( Path path : stream ) {
+               final File child = path.toFile();
+               if ( child.isDirectory() ) {
+                  childDirs.add( child );
+               } else if ( isExtensionValid( child, _validExtensions ) && !child.isHidden() ) {
+                  files.add( child );
+               }
+            }
+         } catch ( IOException ioE ) {
+            throw new UncheckedIOException( ioE );
+         }
+         if ( level == 0 && childDirs.isEmpty() ) {
+            _patientLevel = 0;
+         }
+         if ( level == _patientLevel && !isPatientInShard( directory.getName() ) ) {
+            __iterators.push( Collections.emptyIterator() );
+            __levels.push( level );
+            return;
+         }
+         files.removeIf( f -> !isFileInShard( f, level ) );
+         childDirs.sort( _fileComparator );
+         files.sort( _fileComparator );
+         final List<File> children = new ArrayList<>( files );
+         children.addAll( childDirs );
+         if ( level == _patientLevel ) {
+            final List<File> patientFiles = new ArrayList<>( files );
+            childDirs.forEach( d -> patientFiles.addAll( listDescendentFiles( d ) ) );
+            final String patientId = directory.getName();
+            final int count = __patientDocCounts.merge( patientId, patientFiles.size(), Integer::sum );
+            PatientNoteStore.getInstance().setWantedDocCount( patientId, count );
+            __iterators.push( patientFiles.iterator() );
+         } else {
+            __iterators.push( children.iterator() );
+         }
+         __levels.push( level );
+      }
+
+      /**
+       * @param directory directory below the patient level
+       * @return all readable files in and below the directory, sorted as the full listing
+       */
+      private List<File> listDescendentFiles( final File directory ) {
+         final File[] children = directory.listFiles();
+         if ( children == null || children.length == 0 ) {
+            return Collections.emptyList();
+         }
+         final List<File> childDirs = new ArrayList<>();
+         final List<File> files = new ArrayList<>();
+         for ( File child : children ) {
+            if ( child.isDirectory() ) {
+               childDirs.add( child );
+            } else if ( isExtensionValid( child, _validExtensions ) && !child.isHidden()
+                        && isFileInShard( child, _patientLevel + 1 ) ) {
+               files.add( child );
+            }
+         }
+         childDirs.sort( _fileComparator );
+         files.sort( _fileComparator );
+         childDirs.forEach( d -> files.addAll( listDescendentFiles( d ) ) );
+         return files;
+      }
+   }
+
+   /**
+    * A file handed from the prefetch thread to the reading thread.
+    */
+   static private final class PrefetchedFile {
+      static private final PrefetchedFile END = new PrefetchedFile( null, null, null );
+      private final File __file;
+      private final String __text;
+      private final IOException __error;
+
+      private PrefetchedFile( final File file, final String text, final IOException error ) {
+         __file = file;
+         __text = text;
+         __error = error;
+      }
+   }
+
 
    /**
     * @return Resource metadata for an abstract reader.  This exists to make uima automation factories happy.
@@ -43,9 +43,15 @@ final public class FileTreeReader extends AbstractFileTreeReader {
     * @throws IOException should anything bad happen
     */
    protected void readFile( final JCas jCas, final File file ) throws IOException {
-      String docText = readFile( file );
-      docText = handleTextEol( docText );
-      jCas.setDocumentText( docText );
+      jCas.setDocumentText( readText( file ) );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   protected String readText( final File file ) throws IOException {
+      return handleTextEol( readFile( file ) );
    }
 
 
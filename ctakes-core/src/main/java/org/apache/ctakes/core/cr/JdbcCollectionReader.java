@@ -44,6 +44,9 @@ import java.util.StringTokenizer;
 
 /**
  * Collection Reader that pulls documents to be processed from a database.
+ * If a shard count is specified then only the rows whose document ID hashes to the shard index are read,
+ * so that several pipelines can divide the same query among themselves.
+ * Sharding requires document ID columns, as row numbers depend upon the order in which the database returns rows.
  *
  * @author Mayo Clinic
  */
@@ -129,6 +132,22 @@ public class JdbcCollectionReader extends JCasCollectionReader_ImplBase {
    )
    private String _fileResrcName;
 
+   @ConfigurationParameter(
+         name = ReaderShard.PARAM_SHARD_INDEX,
+         description = "Index of the shard to read, 0 to ShardCount - 1.",
+         mandatory = false
+   )
+   private int _shardIndex = 0;
+
+   @ConfigurationParameter(
+         name = ReaderShard.PARAM_SHARD_COUNT,
+         description = "Number of shards among which the rows are divided.  Default is 1, read all rows.",
+         mandatory = false
+   )
+   private int _shardCount = 1;
+
+   private ReaderShard _shard;
+
 
    private PreparedStatement _preparedStatement;
    private ResultSet _resultSet;
@@ -139,6 +158,8 @@ public class JdbcCollectionReader extends JCasCollectionReader_ImplBase {
 
    private int _totalRowCount = 0;
    private int _currRowCount = 0;
+   // count of rows in the query results, including rows in other shards
+   private int _queryRowCount = 0;
 
    // optional, will remain null if not set
    // Array of List objects. Each List objects represents a list of prepared
@@ -153,6 +174,13 @@ public class JdbcCollectionReader extends JCasCollectionReader_ImplBase {
    @Override
    public void initialize( final UimaContext context ) throws ResourceInitializationException {
       super.initialize( context );
+      _shard = ReaderShard.create( _shardIndex, _shardCount );
+      if ( _shard.isPartitioned() && (_docIdColNames == null || _docIdColNames.length == 0) ) {
+         throw new ResourceInitializationException( ReaderShard.PARAM_SHARD_COUNT + " " + _shardCount
+                                                    + " requires " + PARAM_DOCID_COLS
+                                                    + " so that every shard divides the rows the same way",
+               new Object[ 0 ] );
+      }
       try {
          final JdbcConnectionResource connectionResource
                = (JdbcConnectionResource)context.getResourceObject( _resrcName );
@@ -313,7 +341,7 @@ public class JdbcCollectionReader extends JCasCollectionReader_ImplBase {
          return sb.toString();
       } else {
          // default is to return row num
-         return String.valueOf( _currRowCount );
+         return String.valueOf( _queryRowCount );
       }
    }
 
@@ -364,6 +392,13 @@ public class JdbcCollectionReader extends JCasCollectionReader_ImplBase {
          }
 
          boolean hasAnotherRow = _resultSet.next();
+         while ( hasAnotherRow ) {
+            _queryRowCount++;
+            if ( !_shard.isPartitioned() || _shard.accepts( getDocumentID( _resultSet ) ) ) {
+               break;
+            }
+            hasAnotherRow = _resultSet.next();
+         }
          if ( hasAnotherRow == false ) {
             // it's important to close ResultSets as they can accumlate
             // in the JVM heap. Too many open result sets can inadvertently
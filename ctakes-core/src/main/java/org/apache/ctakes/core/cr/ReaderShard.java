@@ -0,0 +1,119 @@
+package org.apache.ctakes.core.cr;
+
+import org.apache.uima.resource.ResourceInitializationException;
+
+import javax.annotation.concurrent.Immutable;
+import java.math.BigInteger;
+
+/**
+ * Selects the slice of a corpus that belongs to one of several independent readers.
+ * <p>
+ * N pipelines, in one or many JVMs, can each be given the same input and a different shard index
+ * from 0 to N-1.  Each document is accepted by exactly one shard without any coordination between the pipelines:
+ * integral keys are taken modulo N, text identifiers by a hash modulo N.
+ * The hash only depends upon the characters of the identifier, so it is the same on every host and JVM.
+ * </p>
+ */
+@Immutable
+final public class ReaderShard {
+
+   /**
+    * Name of the reader parameter holding the index of the shard to read, 0 to ShardCount - 1.
+    */
+   static public final String PARAM_SHARD_INDEX = "ShardIndex";
+   /**
+    * Name of the reader parameter holding the total number of shards.
+    */
+   static public final String PARAM_SHARD_COUNT = "ShardCount";
+
+   /**
+    * A single shard that accepts every document.
+    */
+   static public final ReaderShard ALL = new ReaderShard( 0, 1 );
+
+   private final int _index;
+   private final int _count;
+
+   /**
+    * @param index index of the shard, 0 to count - 1
+    * @param count total number of shards.  1 or less for no partitioning.
+    * @return a shard that accepts a disjoint slice of documents
+    * @throws ResourceInitializationException if the index is not within the count
+    */
+   static public ReaderShard create( final int index, final int count ) throws ResourceInitializationException {
+      if ( count <= 1 && index == 0 ) {
+         return ALL;
+      }
+      if ( index < 0 || index >= count ) {
+         throw new ResourceInitializationException( PARAM_SHARD_INDEX + " " + index
+                                                    + " must be from 0 to " + PARAM_SHARD_COUNT + " - 1 (" + count + ")",
+               new Object[ 0 ] );
+      }
+      return new ReaderShard( index, count );
+   }
+
+   private ReaderShard( final int index, final int count ) {
+      _index = index;
+      _count = count;
+   }
+
+   /**
+    * @return true if documents are divided among more than one shard
+    */
+   public boolean isPartitioned() {
+      return _count > 1;
+   }
+
+   /**
+    * @param id some document, patient or path identifier
+    * @return true if the identifier belongs to this shard
+    */
+   public boolean accepts( final String id ) {
+      if ( _count <= 1 ) {
+         return true;
+      }
+      return Math.floorMod( mix( id.hashCode() ), _count ) == _index;
+   }
+
+   /**
+    * @param key some key value from a database row.  Integral keys are partitioned by key modulo shard count.
+    * @return true if the key belongs to this shard
+    */
+   public boolean accepts( final Object key ) {
+      if ( _count <= 1 ) {
+         return true;
+      }
+      if ( key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte ) {
+         return Math.floorMod( ((Number)key).longValue(), (long)_count ) == _index;
+      }
+      if ( key instanceof BigInteger ) {
+         return ((BigInteger)key).mod( BigInteger.valueOf( _count ) ).intValue() == _index;
+      }
+      return accepts( String.valueOf( key ) );
+   }
+
+   /**
+    * Spread similar identifiers, e.g. those with sequential suffixes, across the shards.
+    *
+    * @param hash a hash code
+    * @return the hash with its bits mixed
+    */
+   static private int mix( final int hash ) {
+      int h = hash;
+      h ^= h >>> 16;
+      h *= 0x85ebca6b;
+      h ^= h >>> 13;
+      h *= 0xc2b2ae35;
+      h ^= h >>> 16;
+      return h;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toString() {
+      return "Shard " + _index + " of " + _count;
+   }
+
+}
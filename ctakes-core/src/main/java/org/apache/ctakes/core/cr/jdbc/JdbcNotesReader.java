@@ -1,5 +1,6 @@
 package org.apache.ctakes.core.cr.jdbc;
 
+import org.apache.ctakes.core.cr.ReaderShard;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.typesystem.type.structured.Demographics;
 import org.apache.ctakes.typesystem.type.structured.DocumentID;
@@ -17,16 +18,49 @@ import org.apache.uima.util.Progress;
 import org.apache.uima.util.ProgressImpl;
 import sqlWrapper.WrappedConnection;
 
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.sql.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
  * Collection Reader that pulls documents to be processed from a database.
+ * <p>
+ * If a key column is specified then the notes are read in pages ordered by that column,
+ * each page starting after the last key of the previous page.
+ * No cursor is held open between pages, and the next page is fetched in the background while the current one is processed.
+ * The key column must hold unique, ordered values.
+ * If a checkpoint file is also specified then the key of the last note read is written to it,
+ * and a later run with the same checkpoint file resumes after that key.
+ * The checkpoint is written when the following note is requested and when the reader is closed.
+ * In a single threaded pipeline the note has been processed by then, but with several processing threads
+ * notes that were read and not yet processed when a run stops are skipped by the resumed run.
+ * The checkpoint file also holds the java type of the key, so that the resumed query compares keys of the same type,
+ * and the number of rows read, so that progress and document ids made from row numbers continue from the last run.
+ * </p>
+ * <p>
+ * If a shard count is specified then only the rows belonging to the shard index are read,
+ * by key modulo shard count when a key column is specified, otherwise by a hash of the document id.
+ * Several pipelines with different shard indices can then read the same query without overlap.
+ * Sharding requires a key column or document id columns, as row numbers depend upon the order of unordered queries.
+ * Each shard should be given its own checkpoint file.
+ * </p>
  *
  * @author SPF , chip-nlp
  * @version %I%
@@ -102,6 +136,44 @@ final public class JdbcNotesReader extends JCasCollectionReader_ImplBase {
    )
    private String _sqlStatement;
 
+   static public final String PARAM_KEY_COLUMN = "KeyColumn";
+   @ConfigurationParameter(
+         name = PARAM_KEY_COLUMN,
+         description = "Name of a unique, ordered column used to read the notes in pages.",
+         mandatory = false
+   )
+   private String _keyColumn;
+
+   static public final String PARAM_PAGE_SIZE = "PageSize";
+   @ConfigurationParameter(
+         name = PARAM_PAGE_SIZE,
+         description = "Number of rows to fetch per page when a key column is specified.",
+         mandatory = false
+   )
+   private int _pageSize = 1000;
+
+   static public final String PARAM_CHECKPOINT_FILE = "CheckpointFile";
+   @ConfigurationParameter(
+         name = PARAM_CHECKPOINT_FILE,
+         description = "File holding the key of the last note read, used to resume paged reading.",
+         mandatory = false
+   )
+   private String _checkpointFile;
+
+   @ConfigurationParameter(
+         name = ReaderShard.PARAM_SHARD_INDEX,
+         description = "Index of the shard to read, 0 to ShardCount - 1.",
+         mandatory = false
+   )
+   private int _shardIndex = 0;
+
+   @ConfigurationParameter(
+         name = ReaderShard.PARAM_SHARD_COUNT,
+         description = "Number of shards among which the rows are divided.  Default is 1, read all rows.",
+         mandatory = false
+   )
+   private int _shardCount = 1;
+
 
    /**
     * Name of column from resultset that contains the document text. Supported
@@ -309,7 +381,21 @@ final public class JdbcNotesReader extends JCasCollectionReader_ImplBase {
    private long _startMillis;
    private int _totalRowCount = 0;
    private int _rowIndex = 0;
+   // Index of the row in the query results, including rows in other shards
+   private int _queryRowIndex = 0;
    private String _docId;
+   private ReaderShard _shard;
+
+   // Keyset pagination
+   private PreparedStatement _firstPageStatement;
+   private PreparedStatement _nextPageStatement;
+   private ExecutorService _pageFetcher;
+   private Future<CachedRowSet> _nextPage;
+   // key of the current row
+   private Object _rowKey;
+   // key of the last row given to getNext
+   private Object _readKey;
+   private Object _checkpointKey;
 
    /**
     * {@inheritDoc}
@@ -318,17 +404,41 @@ final public class JdbcNotesReader extends JCasCollectionReader_ImplBase {
    public void initialize( final UimaContext context ) throws ResourceInitializationException {
       super.initialize( context );
       LOGGER.info( "Using Sql Statement:\n" + _sqlStatement );
+      _shard = ReaderShard.create( _shardIndex, _shardCount );
+      if ( _shard.isPartitioned() && !isPaged() && (_docIdColumns == null || _docIdColumns.length == 0) ) {
+         throw new ResourceInitializationException( ReaderShard.PARAM_SHARD_COUNT + " " + _shardCount
+                                                    + " requires " + PARAM_KEY_COLUMN + " or " + PARAM_DOCID_COLS
+                                                    + " so that every shard divides the rows the same way",
+               new Object[ 0 ] );
+      }
+      if ( _shard.isPartitioned() ) {
+         LOGGER.info( "Reading " + _shard );
+      }
       _connection = createConnection( _dbDriver, _url, _user, _pass, _keepAlive );
       _decryptor = createDecryptor( _dbDecryptor );
-      _preparedStatement = createSqlStatement( _connection );
+      if ( isPaged() ) {
+         initializePaging();
+      } else {
+         _preparedStatement = createSqlStatement( _connection );
+      }
       _startMillis = System.currentTimeMillis();
    }
 
+   /**
+    * @return true if a key column has been specified for keyset pagination
+    */
+   private boolean isPaged() {
+      return _keyColumn != null && !_keyColumn.trim().isEmpty();
+   }
+
    /**
     * {@inheritDoc}
     */
    @Override
    public boolean hasNext() throws IOException, CollectionException {
+      if ( isPaged() ) {
+         return hasNextPagedRow();
+      }
       if ( _resultSet == null ) {
          try {
             fillResultSet();
@@ -341,9 +451,15 @@ final public class JdbcNotesReader extends JCasCollectionReader_ImplBase {
       boolean hasAnotherRow;
       try {
          hasAnotherRow = _resultSet.next();
-         if ( hasAnotherRow ) {
+         while ( hasAnotherRow ) {
+            _queryRowIndex++;
             _docId = createDocId();
-         } else {
+            if ( _shard.accepts( _docId ) ) {
+               break;
+            }
+            hasAnotherRow = _resultSet.next();
+         }
+         if ( !hasAnotherRow ) {
             // it's important to close ResultSets as they can accumulate
             // in the JVM heap. Too many open result sets can inadvertently
             // cause the DB conn to be closed by the server.
@@ -363,6 +479,7 @@ final public class JdbcNotesReader extends JCasCollectionReader_ImplBase {
    @Override
    public void getNext( final JCas jCas ) throws IOException, CollectionException {
       _rowIndex++;
+      _readKey = _rowKey;
       if ( jCas == null ) {
          throw new CollectionException( new NullPointerException( "Null CAS " + _rowIndex
                                                                   + " in " + getClass().getName() +
@@ -414,10 +531,25 @@ final public class JdbcNotesReader extends JCasCollectionReader_ImplBase {
       final long hours = (totalSeconds - days * daySeconds) / hourSeconds;
       final long minutes = (totalSeconds - days * daySeconds - hours * hourSeconds) / 60;
       final long seconds = totalSeconds % 60;
-      LOGGER.info( getClass().getName() + " read " + _totalRowCount + " documents in "
+      LOGGER.info( getClass().getName() + " read " + _rowIndex + " documents in "
                    + days + " days, " + hours + " hours, " + minutes + " minutes and " + seconds + " seconds" );
+      if ( _pageFetcher != null ) {
+         _pageFetcher.shutdownNow();
+      }
+      if ( _readKey != null ) {
+         writeCheckpoint( _readKey );
+      }
       try {
-         if ( _resultSet != null && !_resultSet.isClosed() ) {
+         if ( _firstPageStatement != null && !_firstPageStatement.isClosed() ) {
+            _firstPageStatement.close();
+         }
+         if ( _nextPageStatement != null && !_nextPageStatement.isClosed() ) {
+            _nextPageStatement.close();
+         }
+         if ( _resultSet instanceof CachedRowSet ) {
+            // CachedRowSet does not support isClosed()
+            _resultSet.close();
+         } else if ( _resultSet != null && !_resultSet.isClosed() ) {
             // Some jdbc drivers may not close the ResultSet when the PreparedStatement is closed
             _resultSet.close();
          }
@@ -509,6 +641,260 @@ final public class JdbcNotesReader extends JCasCollectionReader_ImplBase {
       _resultSet = _preparedStatement.executeQuery();
    }
 
+   /////////////////    Keyset pagination   ///////////////
+
+   /**
+    * Wraps the user's sql in statements that fetch one page ordered by the key column,
+    * then starts fetching the first page in the background.
+    *
+    * @throws ResourceInitializationException -
+    */
+   private void initializePaging() throws ResourceInitializationException {
+      if ( _pageSize <= 0 ) {
+         throw new ResourceInitializationException( "Page size must be greater than 0, not " + _pageSize,
+               new Object[ 0 ] );
+      }
+      String querySql = _sqlStatement.trim();
+      if ( querySql.endsWith( ";" ) ) {
+         querySql = querySql.substring( 0, querySql.length() - 1 );
+      }
+      final String pageSql = "SELECT * FROM ( " + querySql + " ) ctakes_page";
+      final String orderSql = " ORDER BY ctakes_page." + _keyColumn;
+      try {
+         _firstPageStatement = _connection.prepareStatement( pageSql + orderSql );
+         _firstPageStatement.setMaxRows( _pageSize );
+         _nextPageStatement = _connection.prepareStatement(
+               pageSql + " WHERE ctakes_page." + _keyColumn + " > ?" + orderSql );
+         _nextPageStatement.setMaxRows( _pageSize );
+         // Pages are fetched by key, so the count is taken once for the whole query
+         _totalRowCount = getTotalRowCount( _connection, _sqlStatement );
+      } catch ( SQLException sqlE ) {
+         LOGGER.error( "Could not create paged Sql Statement" );
+         throw new ResourceInitializationException( sqlE );
+      }
+      _pageFetcher = Executors.newSingleThreadExecutor( r -> {
+         final Thread thread = new Thread( r, "JdbcNotesPageFetcher" );
+         thread.setDaemon( true );
+         return thread;
+      } );
+      final Object checkpointKey = readCheckpoint();
+      if ( checkpointKey != null ) {
+         LOGGER.info( "Resuming after " + _keyColumn + " " + checkpointKey + " and " + _rowIndex + " read rows" );
+         _checkpointKey = checkpointKey;
+      }
+      fetchPageAfter( checkpointKey );
+   }
+
+   /**
+    * Start fetching the page of rows after the given key in the background.
+    *
+    * @param key last key of the previous page, or null for the first page
+    */
+   private void fetchPageAfter( final Object key ) {
+      _nextPage = _pageFetcher.submit( () -> {
+         final PreparedStatement statement;
+         if ( key == null ) {
+            statement = _firstPageStatement;
+         } else {
+            statement = _nextPageStatement;
+            statement.setObject( 1, key );
+         }
+         final CachedRowSet page = RowSetProvider.newFactory().createCachedRowSet();
+         // Copy the rows and close the cursor right away
+         try ( ResultSet resultSet = statement.executeQuery() ) {
+            page.populate( resultSet );
+         }
+         return page;
+      } );
+   }
+
+   /**
+    * Waits for the page being fetched and starts fetching the page after it.
+    *
+    * @return the next page of rows or null if there are no more rows
+    * @throws CollectionException if the page could not be fetched
+    */
+   private ResultSet takePage() throws CollectionException {
+      if ( _nextPage == null ) {
+         return null;
+      }
+      final CachedRowSet page;
+      try {
+         page = _nextPage.get();
+      } catch ( InterruptedException intE ) {
+         Thread.currentThread().interrupt();
+         throw new CollectionException( intE );
+      } catch ( ExecutionException exE ) {
+         throw new CollectionException( exE.getCause() );
+      }
+      _nextPage = null;
+      try {
+         if ( page.size() == 0 ) {
+            page.close();
+            return null;
+         }
+         if ( page.size() >= _pageSize ) {
+            page.last();
+            fetchPageAfter( page.getObject( _keyColumn ) );
+            page.beforeFirst();
+         }
+      } catch ( SQLException sqlE ) {
+         throw new CollectionException( sqlE );
+      }
+      LOGGER.info( "Fetched page of " + page.size() + " rows" );
+      return page;
+   }
+
+   /**
+    * Checkpoints the last row read, then advances to the next row, moving to the next page when necessary.
+    *
+    * @return true if there is another row
+    * @throws IOException         if the checkpoint could not be written
+    * @throws CollectionException if rows could not be fetched
+    */
+   private boolean hasNextPagedRow() throws IOException, CollectionException {
+      if ( _readKey != null ) {
+         writeCheckpoint( _readKey );
+      }
+      try {
+         while ( true ) {
+            if ( _resultSet == null ) {
+               _resultSet = takePage();
+               if ( _resultSet == null ) {
+                  return false;
+               }
+               if ( _docColumnTypeName == null ) {
+                  setupDocColumnType();
+               }
+            }
+            if ( _resultSet.next() ) {
+               _queryRowIndex++;
+               final Object rowKey = _resultSet.getObject( _keyColumn );
+               if ( !_shard.accepts( rowKey ) ) {
+                  continue;
+               }
+               _rowKey = rowKey;
+               _docId = createDocId();
+               return true;
+            }
+            _resultSet.close();
+            _resultSet = null;
+         }
+      } catch ( SQLException sqlE ) {
+         throw new CollectionException( sqlE );
+      }
+   }
+
+   /**
+    * Restores the row indices stored in the checkpoint file, if any.
+    *
+    * @return the key stored in the checkpoint file or null if there is none.
+    * The key is restored as the type that was written with it.
+    * A checkpoint without a type returns integral keys as Long, anything else as String.
+    * @throws ResourceInitializationException if the checkpoint file exists but could not be read
+    */
+   private Object readCheckpoint() throws ResourceInitializationException {
+      if ( _checkpointFile == null || _checkpointFile.trim().isEmpty() ) {
+         return null;
+      }
+      final File file = new File( _checkpointFile );
+      if ( !file.isFile() ) {
+         return null;
+      }
+      final String checkpoint;
+      try {
+         checkpoint = new String( Files.readAllBytes( file.toPath() ), StandardCharsets.UTF_8 ).trim();
+      } catch ( IOException ioE ) {
+         throw new ResourceInitializationException( ioE );
+      }
+      if ( checkpoint.isEmpty() ) {
+         return null;
+      }
+      final int newline = checkpoint.indexOf( '\n' );
+      if ( newline < 0 ) {
+         try {
+            return Long.valueOf( checkpoint );
+         } catch ( NumberFormatException nfE ) {
+            return checkpoint;
+         }
+      }
+      final String[] lines = checkpoint.split( "\n" );
+      final String type = lines[ 0 ].trim();
+      final String key = lines[ 1 ].trim();
+      try {
+         if ( lines.length > 2 ) {
+            // query row index and read row index, written by newer versions
+            final String[] indices = lines[ 2 ].trim().split( " " );
+            _queryRowIndex = Integer.parseInt( indices[ 0 ] );
+            _rowIndex = Integer.parseInt( indices[ 1 ] );
+         }
+         return parseKey( type, key );
+      } catch ( IllegalArgumentException | ArrayIndexOutOfBoundsException multE ) {
+         // NumberFormatException is an IllegalArgumentException
+         throw new ResourceInitializationException( "Could not read " + type + " key " + key
+                                                    + " from " + _checkpointFile, new Object[ 0 ], multE );
+      }
+   }
+
+   /**
+    * @param type java class name of the key
+    * @param key  text of the key
+    * @return the key as the given type, or as a String if the type is not a standard jdbc type
+    * @throws IllegalArgumentException if the key text does not fit the type
+    */
+   static private Object parseKey( final String type, final String key ) {
+      switch ( type ) {
+         case "java.lang.String":
+            return key;
+         case "java.lang.Short":
+            return Short.valueOf( key );
+         case "java.lang.Integer":
+            return Integer.valueOf( key );
+         case "java.lang.Long":
+            return Long.valueOf( key );
+         case "java.lang.Float":
+            return Float.valueOf( key );
+         case "java.lang.Double":
+            return Double.valueOf( key );
+         case "java.math.BigInteger":
+            return new BigInteger( key );
+         case "java.math.BigDecimal":
+            return new BigDecimal( key );
+         case "java.sql.Date":
+            return Date.valueOf( key );
+         case "java.sql.Time":
+            return Time.valueOf( key );
+         case "java.sql.Timestamp":
+            return Timestamp.valueOf( key );
+      }
+      LOGGER.warn( "Resuming after " + type + " key as text " + key );
+      return key;
+   }
+
+   /**
+    * Replaces the checkpoint file with one holding the type and text of the given key,
+    * followed by the query row index and the number of rows read.
+    *
+    * @param key key of the last row read
+    * @throws IOException -
+    */
+   private void writeCheckpoint( final Object key ) throws IOException {
+      if ( _checkpointFile == null || _checkpointFile.trim().isEmpty() || key.equals( _checkpointKey ) ) {
+         return;
+      }
+      final Path checkpoint = new File( _checkpointFile ).getAbsoluteFile().toPath();
+      final Path temp = checkpoint.resolveSibling( checkpoint.getFileName() + ".tmp" );
+      final String text = key.getClass().getName() + "\n" + key + "\n" + _queryRowIndex + " " + _rowIndex;
+      Files.write( temp, text.getBytes( StandardCharsets.UTF_8 ) );
+      try {
+         Files.move( temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+      } catch ( IOException ioE ) {
+         // Some file systems do not support atomic moves
+         Files.move( temp, checkpoint, StandardCopyOption.REPLACE_EXISTING );
+      }
+      _checkpointKey = key;
+   }
+
    /**
     * Attempts to automatically determine the datatype of the column containing document text.
     *
@@ -531,7 +917,7 @@ final public class JdbcNotesReader extends JCasCollectionReader_ImplBase {
     */
    private String createDocId() {
       if ( _docIdColumns == null ) {
-         return String.valueOf( _rowIndex + 1 );
+         return String.valueOf( _queryRowIndex );
       }
       final StringBuilder sb = new StringBuilder();
       // use flag to determine the first iteration in the loop, used for delimiter
@@ -2,6 +2,7 @@ package org.apache.ctakes.core.patient;
 
 import org.apache.ctakes.core.ae.NamedEngine;
 import org.apache.ctakes.core.cc.AbstractFileWriter;
+import org.apache.ctakes.core.util.SourceMetadataUtil;
 import org.apache.log4j.Logger;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
@@ -55,6 +56,9 @@ abstract public class AbstractPatientFileWriter
     */
    @Override
    protected void writeComplete( final Collection<JCas> data ) {
+      _patientCases.stream()
+                   .map( SourceMetadataUtil::getPatientIdentifier )
+                   .forEach( PatientNoteStore.getInstance()::releasePatient );
       _patientCases.clear();
    }
 
@@ -8,18 +8,40 @@ import org.apache.ctakes.typesystem.type.structured.DocumentIdPrefix;
 import org.apache.ctakes.typesystem.type.structured.Metadata;
 import org.apache.log4j.Logger;
 import org.apache.uima.UIMAException;
+import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
 import org.apache.uima.cas.CASRuntimeException;
+import org.apache.uima.cas.impl.Serialization;
 import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.util.CasCopier;
 
 import javax.annotation.concurrent.Immutable;
+import java.io.*;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
- * Cache for multi-document patient cas objects
+ * Cache for multi-document patient cas objects.
+ * <p>
+ * Each patient is guarded by its own lock, so threads storing notes for different patients do not contend.
+ * A memory budget can be set with the system property {@link #MEMORY_BUDGET_PROPERTY} (megabytes)
+ * or {@link #setMemoryBudget(long)}.  When the estimated size of all patient cas objects exceeds the budget,
+ * the least recently used patients are written to compressed binary cas files in a spill directory
+ * ({@link #SPILL_DIR_PROPERTY}, by default a temporary directory) and read back when they are next used.
+ * Views stored for a spilled patient are written to a file of their own and added to the patient's spill files,
+ * so the patient is only read back when it is requested.
+ * Without a budget no patient is ever spilled.
+ * </p>
+ * A patient in use is pinned in memory so that its cas is not spilled while its views are read.
+ * {@link #usePatient(String)} pins the patient until the returned handle is closed.
+ * The older fetch methods pin the patient until {@link #releasePatient(String)} is called once for each fetch,
+ * or until the patient is removed.
  *
  * @author SPF , chip-nlp
  * @version %I%
@@ -37,26 +59,82 @@ public enum PatientNoteStore {
 
    static private final String GENERIC_PATIENT = "Generic";
 
+   /**
+    * System property for the memory budget of patient cas objects in megabytes.
+    */
+   static public final String MEMORY_BUDGET_PROPERTY = "ctakes.patientstore.memory";
+   /**
+    * System property for the directory in which spilled patient cas objects are written.
+    */
+   static public final String SPILL_DIR_PROPERTY = "ctakes.patientstore.spilldir";
+
+   // Rough heap cost of an annotation in a cas, used to estimate patient cas sizes.
+   static private final int ANNOTATION_BYTES = 128;
+
    // Collection of annotation engines (by some id) that consume patients
    private final Collection<String> _registeredEngines;
-   // Map of Patient Name (id) to registered engines that have already consumed the patient
-   private final Map<String, Collection<String>> _enginesRun;
-   // Map of patient id to patient jcas
-   private final Map<String, JCas> _patientMap;
-   // Map of Patient Name (id) to ViewInfo objects - metadata for jCas views
-   private final Map<String, Collection<ViewInfo>> _patientViewInfos;
+   // Map of patient id to cached patient
+   private final Map<String, Patient> _patientMap;
    // Map of Patient Name (id) to document count for that patient.  Required to remove cached patient after last pop()
    private final Map<String, Integer> _wantedDocCounts;
+   // Patients with a cas in memory, least recently used first.  Guarded by synchronizing on the map itself.
+   private final Map<Patient, Boolean> _memoryOrder;
+   // Estimated size of all patient cas objects held in memory
+   private final AtomicLong _memoryUsed;
+   private volatile long _memoryBudget;
+   private volatile File _spillDir;
+   private final AtomicLong _spillCount;
 
    /**
     * private
     */
    PatientNoteStore() {
-      _registeredEngines = new HashSet<>();
-      _enginesRun = new HashMap<>();
-      _patientMap = new HashMap<>();
-      _patientViewInfos = new HashMap<>();
-      _wantedDocCounts = new HashMap<>();
+      _registeredEngines = ConcurrentHashMap.newKeySet();
+      _patientMap = new ConcurrentHashMap<>();
+      _wantedDocCounts = new ConcurrentHashMap<>();
+      _memoryOrder = new LinkedHashMap<>( 16, 0.75f, true );
+      _memoryUsed = new AtomicLong();
+      _spillCount = new AtomicLong();
+      _memoryBudget = Long.getLong( MEMORY_BUDGET_PROPERTY, -1L );
+      if ( _memoryBudget > 0 ) {
+         _memoryBudget *= 1024L * 1024L;
+      }
+      final String spillDir = System.getProperty( SPILL_DIR_PROPERTY );
+      if ( spillDir != null && !spillDir.isEmpty() ) {
+         _spillDir = new File( spillDir );
+      }
+   }
+
+   /////////////////    Memory management   ///////////////
+
+   /**
+    * @param bytes estimated size of all patient cas objects above which patients are spilled to disk.
+    *              0 or less to never spill.
+    */
+   public void setMemoryBudget( final long bytes ) {
+      _memoryBudget = bytes;
+      enforceMemoryBudget();
+   }
+
+   /**
+    * @return estimated size of all patient cas objects above which patients are spilled to disk, 0 or less if unlimited
+    */
+   public long getMemoryBudget() {
+      return _memoryBudget;
+   }
+
+   /**
+    * @param spillDir directory in which spilled patient cas objects are written
+    */
+   public void setSpillDirectory( final File spillDir ) {
+      _spillDir = spillDir;
+   }
+
+   /**
+    * @return estimated size of all patient cas objects held in memory
+    */
+   public long getMemoryUsed() {
+      return _memoryUsed.get();
    }
 
    /////////////////    Get available patient, document, view names   ///////////////
@@ -64,7 +142,7 @@ public enum PatientNoteStore {
    /**
     * @param engineName name of engine that consumes patients
     */
-   synchronized public void registerEngine( final String engineName ) {
+   public void registerEngine( final String engineName ) {
       if ( !_registeredEngines.add( engineName ) ) {
          throw new IllegalArgumentException( engineName
                                              + " already Registered!  To add an engine twice, please use the parameter "
@@ -78,7 +156,7 @@ public enum PatientNoteStore {
     *
     * @param namedEngine engine that consumes patients
     */
-   synchronized public void registerEngine( final NamedEngine namedEngine ) {
+   public void registerEngine( final NamedEngine namedEngine ) {
       registerEngine( namedEngine.getEngineName() );
    }
 
@@ -87,7 +165,7 @@ public enum PatientNoteStore {
     * @return identifiers for all stored patients
     */
    @Deprecated
-   synchronized public Collection<String> getStoredPatientIds() {
+   public Collection<String> getStoredPatientIds() {
       return _patientMap.keySet().stream()
                         .sorted()
                         .collect( Collectors.toList() );
@@ -97,12 +175,22 @@ public enum PatientNoteStore {
     * @param patientId -
     * @return identifiers for all stored documents for the given patient
     */
-   synchronized public Collection<String> getStoredDocIds( final String patientId ) {
-      return getViewInfos( patientId ).stream()
-            .map( ViewInfo::getDocId )
-            .sorted()
-            .distinct()
-            .collect( Collectors.toList() );
+   public Collection<String> getStoredDocIds( final String patientId ) {
+      final Patient patient = _patientMap.get( patientId );
+      if ( patient == null ) {
+         LOGGER.debug( "No patient with id " + patientId );
+         return Collections.emptyList();
+      }
+      patient.__lock.lock();
+      try {
+         return patient.__viewInfos.stream()
+                                   .map( ViewInfo::getDocId )
+                                   .sorted()
+                                   .distinct()
+                                   .collect( Collectors.toList() );
+      } finally {
+         patient.__lock.unlock();
+      }
    }
 
    /**
@@ -110,12 +198,22 @@ public enum PatientNoteStore {
     * @param docId     -
     * @return names for all stored views for the given patient and document
     */
-   synchronized public Collection<String> getStoredViewNames( final String patientId, final String docId ) {
-      return getViewInfos( patientId ).stream()
-            .filter( vi -> vi.getDocId().equals( docId ) )
-            .map( ViewInfo::getViewName )
-            .sorted()
-            .collect( Collectors.toList() );
+   public Collection<String> getStoredViewNames( final String patientId, final String docId ) {
+      final Patient patient = _patientMap.get( patientId );
+      if ( patient == null ) {
+         LOGGER.debug( "No patient with id " + patientId );
+         return Collections.emptyList();
+      }
+      patient.__lock.lock();
+      try {
+         return patient.__viewInfos.stream()
+                                   .filter( vi -> vi.getDocId().equals( docId ) )
+                                   .map( ViewInfo::getViewName )
+                                   .sorted()
+                                   .collect( Collectors.toList() );
+      } finally {
+         patient.__lock.unlock();
+      }
    }
 
    /////////////////    Completion Information    ///////////////
@@ -123,7 +221,7 @@ public enum PatientNoteStore {
    /**
     * @return all completed patient identifiers in the cache
     */
-   synchronized public Collection<String> getCompletedPatientIds() {
+   public Collection<String> getCompletedPatientIds() {
       return getStoredPatientIds().stream()
             .filter( pid -> getWantedDocCount( pid ) == getStoredDocCount( pid ) )
             .sorted()
@@ -134,7 +232,7 @@ public enum PatientNoteStore {
     * @param patientId -
     * @return number of documents for the patient that have been completed and stored in the cache
     */
-   synchronized public int getStoredDocCount( final String patientId ) {
+   public int getStoredDocCount( final String patientId ) {
       return getStoredDocIds( patientId ).size();
    }
 
@@ -143,7 +241,7 @@ public enum PatientNoteStore {
     * @param patientId -
     * @return number of documents that exist for the patient or -1 if unknown
     */
-   synchronized public int getWantedDocCount( final String patientId ) {
+   public int getWantedDocCount( final String patientId ) {
       return _wantedDocCounts.getOrDefault( patientId, -1 );
    }
 
@@ -152,7 +250,7 @@ public enum PatientNoteStore {
     * @param patientId -
     * @param count number of documents that exist for the patient
     */
-   synchronized public void setWantedDocCount( final String patientId, final int count ) {
+   public void setWantedDocCount( final String patientId, final int count ) {
       _wantedDocCounts.put( patientId, count );
    }
 
@@ -187,8 +285,8 @@ public enum PatientNoteStore {
     * Store all views in the source cas.  Patient Id and Document Id will be determined from the source cas.
     * @param sourceCas source (document) cas
     */
-   synchronized public void storeAllViews( final JCas sourceCas ) {
-      PatientViewUtil.getAllViewNames( sourceCas ).forEach( n -> storeView( n, sourceCas ) );
+   public void storeAllViews( final JCas sourceCas ) {
+      storeAllViews( getDefaultPatientId( sourceCas ), getDefaultDocumentId( sourceCas ), sourceCas );
    }
 
    /**
@@ -197,8 +295,9 @@ public enum PatientNoteStore {
     * @param docId -
     * @param sourceCas source (document) cas
     */
-   synchronized public void storeAllViews( final String patientId, final String docId, final JCas sourceCas ) {
-      PatientViewUtil.getAllViewNames( sourceCas ).forEach( n -> storeView( patientId, docId, n, sourceCas ) );
+   public void storeAllViews( final String patientId, final String docId, final JCas sourceCas ) {
+      final Collection<String> viewNames = PatientViewUtil.getAllViewNames( sourceCas );
+      storeViews( patientId, docId, viewNames, viewNames, sourceCas );
    }
 
    /**
@@ -206,7 +305,7 @@ public enum PatientNoteStore {
     * @param storeViewName the name to use to store the primary view
     * @param sourceCas source (document) cas
     */
-   synchronized public void storePrimaryAsView( final String storeViewName, final JCas sourceCas ) {
+   public void storePrimaryAsView( final String storeViewName, final JCas sourceCas ) {
       storePrimaryAsView( getDefaultPatientId( sourceCas ), getDefaultDocumentId( sourceCas ),
             storeViewName, sourceCas );
    }
@@ -218,8 +317,8 @@ public enum PatientNoteStore {
     * @param storeViewName the name to use to store the primary view
     * @param sourceCas source (document) cas
     */
-   synchronized public void storePrimaryAsView( final String patientId, final String docId, final String storeViewName,
-                                                final JCas sourceCas ) {
+   public void storePrimaryAsView( final String patientId, final String docId, final String storeViewName,
+                                   final JCas sourceCas ) {
       storeView( patientId, docId, storeViewName, PatientViewUtil.DEFAULT_VIEW, sourceCas );
    }
 
@@ -229,7 +328,7 @@ public enum PatientNoteStore {
     * @param sourceViewName the name of the view in the source cas
     * @param sourceCas      source (document) cas
     */
-   synchronized public void storeView( final String sourceViewName, final JCas sourceCas ) {
+   public void storeView( final String sourceViewName, final JCas sourceCas ) {
       storeView( getDefaultPatientId( sourceCas ), getDefaultDocumentId( sourceCas ),
             sourceViewName, sourceViewName, sourceCas );
    }
@@ -242,7 +341,7 @@ public enum PatientNoteStore {
     * @param sourceViewName the name of the view in the source cas
     * @param sourceCas      source (document) cas
     */
-   synchronized public void storeView( final String patientId, final String docId, final String sourceViewName, final JCas sourceCas ) {
+   public void storeView( final String patientId, final String docId, final String sourceViewName, final JCas sourceCas ) {
       storeView( patientId, docId, sourceViewName, sourceViewName, sourceCas );
    }
 
@@ -255,34 +354,105 @@ public enum PatientNoteStore {
     * @param sourceViewName the name of the view in the source cas
     * @param sourceCas      source (document) cas
     */
-   synchronized public void storeView( final String patientId, final String docId, final String storeViewName,
-                                       final String sourceViewName, final JCas sourceCas ) {
-      if ( getStoredViewNames( patientId, docId ).contains( storeViewName ) ) {
-         LOGGER.warn( "View already stored as " + patientId + " " + docId + " " + storeViewName );
-         LOGGER.warn( "Previously stored view will be replaced." );
-      }
-      // don't use putIfAbsent or computeIfAbsent to better handle exceptions and lazy instantiation
-      JCas patientCas = _patientMap.get( patientId );
-      if ( patientCas == null ) {
-         try {
-            patientCas = JCasFactory.createJCas();
-            setPatientId( patientCas, patientId );
-            _patientMap.put( patientId, patientCas );
-         } catch ( UIMAException uE ) {
-            LOGGER.error( uE.getMessage() );
+   public void storeView( final String patientId, final String docId, final String storeViewName,
+                          final String sourceViewName, final JCas sourceCas ) {
+      storeViews( patientId, docId, Collections.singletonList( storeViewName ),
+            Collections.singletonList( sourceViewName ), sourceCas );
+   }
+
+   /**
+    * Store views under the patient's lock, then spill patients if the memory budget is exceeded.
+    * Views for a spilled patient are written to a new spill file without reading the patient back.
+    *
+    * @param patientId       -
+    * @param docId           -
+    * @param storeViewNames  the names to use to store the views
+    * @param sourceViewNames the names of the views in the source cas, in the same order as the store names
+    * @param sourceCas       source (document) cas
+    */
+   private void storeViews( final String patientId, final String docId,
+                            final Collection<String> storeViewNames, final Collection<String> sourceViewNames,
+                            final JCas sourceCas ) {
+      final Patient patient = lockPatient( patientId );
+      try {
+         if ( patient.__patientCas == null && !patient.__spillFiles.isEmpty()
+              && !isAnyViewStored( patient, docId, storeViewNames ) ) {
+            spillViews( patient, docId, storeViewNames, sourceViewNames, sourceCas );
+            return;
+         }
+         final JCas patientCas = getPatientCas( patient );
+         if ( patientCas == null ) {
             return;
          }
+         copyViews( patient, patientCas, docId, storeViewNames, sourceViewNames, sourceCas );
+         updateSize( patient );
+      } finally {
+         patient.__lock.unlock();
+      }
+      enforceMemoryBudget();
+   }
+
+   /**
+    * Lock the cached patient for the id, creating the patient if necessary.
+    * The map is checked again under the lock so that a patient removed meanwhile is not used.
+    *
+    * @param patientId -
+    * @return the locked patient
+    */
+   private Patient lockPatient( final String patientId ) {
+      while ( true ) {
+         final Patient patient = _patientMap.computeIfAbsent( patientId, Patient::new );
+         patient.__lock.lock();
+         if ( _patientMap.get( patientId ) == patient ) {
+            return patient;
+         }
+         patient.__lock.unlock();
+      }
+   }
+
+   /**
+    * Must be called while holding the patient lock.
+    *
+    * @return true if a view with one of the names is already stored for the document
+    */
+   static private boolean isAnyViewStored( final Patient patient, final String docId,
+                                           final Collection<String> storeViewNames ) {
+      return storeViewNames.stream()
+                           .map( n -> new ViewInfo( patient.__patientId, docId, n ) )
+                           .anyMatch( patient.__viewInfos::contains );
+   }
+
+   /**
+    * Copy views into a cas under their encoded names.  Must be called while holding the patient lock.
+    */
+   static private void copyViews( final Patient patient, final JCas targetCas, final String docId,
+                                  final Collection<String> storeViewNames, final Collection<String> sourceViewNames,
+                                  final JCas sourceCas ) {
+      final CasCopier copier = new CasCopier( sourceCas.getCas(), targetCas.getCas() );
+      final Iterator<String> storeNames = storeViewNames.iterator();
+      for ( String sourceViewName : sourceViewNames ) {
+         copyView( patient, copier, docId, storeNames.next(), sourceViewName, sourceCas );
+      }
+   }
+
+   /**
+    * Copy a view into the patient cas.  Must be called while holding the patient lock.
+    */
+   static private void copyView( final Patient patient, final CasCopier copier, final String docId,
+                                 final String storeViewName, final String sourceViewName, final JCas sourceCas ) {
+      final String patientId = patient.__patientId;
+      final ViewInfo viewInfo = new ViewInfo( patientId, docId, storeViewName );
+      if ( patient.__viewInfos.contains( viewInfo ) ) {
+         LOGGER.warn( "View already stored as " + patientId + " " + docId + " " + storeViewName );
+         LOGGER.warn( "Previously stored view will be replaced." );
       }
       // Cache view into patient using encoded view name
       LOGGER.info( "Caching view for " + patientId + " " + docId + " " + sourceViewName
             + (sourceViewName.equals( storeViewName ) ? "" : " as " + storeViewName) + " ..." );
-      final ViewInfo viewInfo = new ViewInfo( patientId, docId, storeViewName );
       try {
          final JCas sourceView = sourceCas.getView( sourceViewName );
-         final CasCopier copier = new CasCopier( sourceCas.getCas(), patientCas.getCas() );
          copier.copyCasView( sourceView.getCas(), viewInfo.getViewCode(), true );
-         _patientViewInfos.putIfAbsent( patientId, new ArrayList<>() );
-         _patientViewInfos.get( patientId ).add( viewInfo );
+         patient.__viewInfos.add( viewInfo );
       } catch ( CASException | CASRuntimeException casE ) {
          LOGGER.error( casE.getMessage() );
       }
@@ -305,43 +475,116 @@ public enum PatientNoteStore {
    /////////////////    view fetchers   ///////////////
 
    /**
+    * Pin a patient in memory while it is used.  Views obtained through the handle stay valid until it is closed.
+    * <pre>
+    * try ( PatientHandle patient = store.usePatient( patientId ) ) { ... }
+    * </pre>
+    *
+    * @param patientId -
+    * @return handle for the patient, to be closed after use, or null if there is no patient with the id
+    */
+   public PatientHandle usePatient( final String patientId ) {
+      final Patient patient = _patientMap.get( patientId );
+      if ( patient == null ) {
+         LOGGER.warn( "No patient with id " + patientId );
+         return null;
+      }
+      patient.__lock.lock();
+      try {
+         patient.__pinCount++;
+      } finally {
+         patient.__lock.unlock();
+      }
+      return new PatientHandle( patient );
+   }
+
+   /**
+    * The patient is kept in memory until {@link #releasePatient(String)} is called.
+    * Use {@link #usePatient(String)} to pin it only within a block.
+    *
     * @param patientId -
     * @param docId -
     * @param viewName -
     * @return Stored view for the parameters
     */
-   synchronized public JCas getStoredView( final String patientId, final String docId, final String viewName ) {
-      final JCas patientCas = _patientMap.get( patientId );
-      if ( patientCas == null ) {
+   public JCas getStoredView( final String patientId, final String docId, final String viewName ) {
+      final Patient patient = _patientMap.get( patientId );
+      if ( patient == null ) {
          LOGGER.warn( "No patient with id " + patientId );
          return null;
       }
-      final ViewInfo viewInfo = new ViewInfo( patientId, docId, viewName );
+      patient.__lock.lock();
       try {
-         return patientCas.getView( viewInfo.getViewCode() );
-      } catch ( CASException casE ) {
-         LOGGER.error( casE.getMessage() );
+         final JCas view = getView( patient, docId, viewName );
+         if ( view != null ) {
+            patient.__handOutCount++;
+         }
+         return view;
+      } finally {
+         patient.__lock.unlock();
       }
-      return null;
    }
 
    /**
+    * The patient is kept in memory until {@link #releasePatient(String)} is called.
+    * Use {@link #usePatient(String)} to pin it only within a block.
+    *
     * @param patientId -
     * @param docId     -
     * @return Map of ViewNames to Views
     */
-   synchronized public Map<String, JCas> getStoredViews( final String patientId, final String docId ) {
-      final JCas patientCas = _patientMap.get( patientId );
-      if ( patientCas == null ) {
+   public Map<String, JCas> getStoredViews( final String patientId, final String docId ) {
+      final Patient patient = _patientMap.get( patientId );
+      if ( patient == null ) {
          LOGGER.warn( "No patient with id " + patientId );
          return null;
       }
-      final Collection<String> viewNames = getStoredViewNames( patientId, docId );
+      patient.__lock.lock();
+      try {
+         final Map<String, JCas> views = getViews( patient, docId );
+         if ( views != null ) {
+            patient.__handOutCount++;
+         }
+         return views;
+      } finally {
+         patient.__lock.unlock();
+      }
+   }
+
+   /**
+    * Must be called while holding the patient lock.
+    *
+    * @return the view, or null if it could not be obtained
+    */
+   private JCas getView( final Patient patient, final String docId, final String viewName ) {
+      final JCas patientCas = getPatientCas( patient );
+      if ( patientCas == null ) {
+         return null;
+      }
+      try {
+         return patientCas.getView( new ViewInfo( patient.__patientId, docId, viewName ).getViewCode() );
+      } catch ( CASException casE ) {
+         LOGGER.error( casE.getMessage() );
+         return null;
+      }
+   }
+
+   /**
+    * Must be called while holding the patient lock.
+    *
+    * @return Map of ViewNames to Views, or null if the patient cas could not be obtained
+    */
+   private Map<String, JCas> getViews( final Patient patient, final String docId ) {
+      final JCas patientCas = getPatientCas( patient );
+      if ( patientCas == null ) {
+         return null;
+      }
       final Map<String, JCas> viewMap = new HashMap<>();
       try {
-         for ( String viewName : viewNames ) {
-            final ViewInfo viewInfo = new ViewInfo( viewName );
-            viewMap.put( viewInfo.getViewName(), patientCas.getView( viewName ) );
+         for ( ViewInfo viewInfo : patient.__viewInfos ) {
+            if ( viewInfo.getDocId().equals( docId ) ) {
+               viewMap.put( viewInfo.getViewName(), patientCas.getView( viewInfo.getViewCode() ) );
+            }
          }
       } catch ( CASException casE ) {
          LOGGER.error( casE.getMessage() );
@@ -350,18 +593,61 @@ public enum PatientNoteStore {
    }
 
    /**
+    * The patient is kept in memory until {@link #releasePatient(String)} is called.
+    *
     * @param patientId -
     * @return Map of docIds to Map of ViewNames to Views
     */
-   synchronized public Map<String, Map<String, JCas>> getStoredViews( final String patientId ) {
+   public Map<String, Map<String, JCas>> getStoredViews( final String patientId ) {
       final Map<String, Map<String, JCas>> viewMap = new HashMap<>();
-      final Collection<String> docIds = getStoredDocIds( patientId );
-      for ( String docId : docIds ) {
-         viewMap.put( docId, getStoredViews( patientId, docId ) );
+      final Patient patient = _patientMap.get( patientId );
+      if ( patient == null ) {
+         LOGGER.debug( "No patient with id " + patientId );
+         return viewMap;
+      }
+      patient.__lock.lock();
+      try {
+         final Collection<String> docIds = patient.__viewInfos.stream()
+                                                              .map( ViewInfo::getDocId )
+                                                              .collect( Collectors.toSet() );
+         for ( String docId : docIds ) {
+            final Map<String, JCas> views = getViews( patient, docId );
+            if ( views != null ) {
+               viewMap.put( docId, views );
+            }
+         }
+         if ( !viewMap.isEmpty() ) {
+            patient.__handOutCount++;
+         }
+      } finally {
+         patient.__lock.unlock();
       }
       return viewMap;
    }
 
+   /**
+    * Release one fetch of views or the patient cas made without a handle.
+    * Once every such fetch is released the patient can be spilled again.
+    * Views obtained by the released fetch must no longer be used.
+    *
+    * @param patientId -
+    */
+   public void releasePatient( final String patientId ) {
+      final Patient patient = _patientMap.get( patientId );
+      if ( patient == null ) {
+         return;
+      }
+      patient.__lock.lock();
+      try {
+         if ( patient.__handOutCount > 0 ) {
+            patient.__handOutCount--;
+         }
+      } finally {
+         patient.__lock.unlock();
+      }
+      enforceMemoryBudget();
+   }
+
    /**
     * @param patientId - Stored patient ID
     * @param docId - Stored document ID
@@ -376,18 +662,33 @@ public enum PatientNoteStore {
    /////////////////    patient cleanup - careful !   ///////////////
 
    /**
-    * Use popPatientCas instead to automate cleanup
+    * Use popPatientCas instead to automate cleanup.
+    * The patient is kept in memory until {@link #releasePatient(String)} is called.
+    * Use {@link #usePatient(String)} to pin it only within a block.
     * @param patientId -
     */
-   synchronized public JCas getFullPatientCas( final String patientId ) {
-      return _patientMap.get( patientId );
+   public JCas getFullPatientCas( final String patientId ) {
+      final Patient patient = _patientMap.get( patientId );
+      if ( patient == null ) {
+         return null;
+      }
+      patient.__lock.lock();
+      try {
+         final JCas patientCas = getPatientCas( patient );
+         if ( patientCas != null ) {
+            patient.__handOutCount++;
+         }
+         return patientCas;
+      } finally {
+         patient.__lock.unlock();
+      }
    }
 
    /**
     * @param engineName engine requesting a completed patient jcas
     * @return a patient jcas or null if none is available for the given engine
     */
-   synchronized public JCas popPatientCas( final String engineName ) {
+   public JCas popPatientCas( final String engineName ) {
       if ( !_registeredEngines.contains( engineName ) ) {
          throw new IllegalArgumentException( "Engine not registered to use patients " + engineName );
       }
@@ -405,7 +706,7 @@ public enum PatientNoteStore {
     * @param engineName engine requesting a completed patient jcas
     * @return a patient jcas or null if none is available for the given engine
     */
-   synchronized public Collection<JCas> popPatientCases( final String engineName ) {
+   public Collection<JCas> popPatientCases( final String engineName ) {
       if ( !_registeredEngines.contains( engineName ) ) {
          throw new IllegalArgumentException( "Engine not registered to use patients " + engineName );
       }
@@ -417,51 +718,384 @@ public enum PatientNoteStore {
    }
 
    /**
+    * If other registered engines have yet to pop the patient then it is kept in memory
+    * until the engine calls {@link #releasePatient(String)}.
+    *
     * @param patientId  -
     * @param engineName engine requesting a completed patient jcas
     * @return the patient jcas for the patient id or null if it isn't available for the given engine
     */
-   synchronized public JCas popPatientCas( final String patientId, final String engineName ) {
+   public JCas popPatientCas( final String patientId, final String engineName ) {
       if ( !_registeredEngines.contains( engineName ) ) {
          throw new IllegalArgumentException( "Engine not registered to use patients " + engineName );
       }
-      final Collection<String> enginesRun = _enginesRun.computeIfAbsent( patientId, n -> new HashSet<>() );
-      final boolean newRun = enginesRun.add( engineName );
-      if ( !newRun ) {
+      final Patient patient = _patientMap.get( patientId );
+      if ( patient == null ) {
          return null;
       }
-      final JCas patientCas = _patientMap.get( patientId );
-      if ( enginesRun.size() == _registeredEngines.size() ) {
-         removePatient( patientId );
+      patient.__lock.lock();
+      try {
+         final boolean newRun = patient.__enginesRun.add( engineName );
+         if ( !newRun ) {
+            return null;
+         }
+         final JCas patientCas = getPatientCas( patient );
+         if ( patient.__enginesRun.size() == _registeredEngines.size() ) {
+            removePatient( patientId );
+         } else if ( patientCas != null ) {
+            // other engines are still to consume the patient, keep the returned cas from being spilled
+            patient.__handOutCount++;
+         }
+         return patientCas;
+      } finally {
+         patient.__lock.unlock();
       }
-      return patientCas;
    }
 
 
    /**
     * @param patientId identifier of patient to remove from cache
     */
-   synchronized public void removePatient( final String patientId ) {
-      _patientMap.remove( patientId );
-      _patientViewInfos.remove( patientId );
+   public void removePatient( final String patientId ) {
+      final Patient patient = _patientMap.remove( patientId );
       _wantedDocCounts.remove( patientId );
+      if ( patient == null ) {
+         return;
+      }
+      patient.__lock.lock();
+      try {
+         _memoryUsed.addAndGet( -patient.__size );
+         patient.__size = 0;
+         patient.__patientCas = null;
+         removeFromMemoryOrder( patient );
+         deleteSpillFiles( patient );
+      } finally {
+         patient.__lock.unlock();
+      }
    }
 
-   /////////////////    Encoding for cached patient view names   ///////////////
+   /////////////////    Spilling to disk   ///////////////
 
    /**
-    * @param patientId -
-    * @return all encoded
+    * Must be called while holding the patient lock.
+    *
+    * @param patient -
+    * @return the patient cas, created or read back from disk if necessary.  Null if it could not be created.
     */
-   synchronized private Collection<ViewInfo> getViewInfos( final String patientId ) {
-      final Collection<ViewInfo> viewInfos = _patientViewInfos.get( patientId );
-      if ( viewInfos == null ) {
-         LOGGER.debug( "No patient with id " + patientId );
-         return Collections.emptyList();
+   private JCas getPatientCas( final Patient patient ) {
+      if ( patient.__patientCas != null ) {
+         touchMemoryOrder( patient );
+         return patient.__patientCas;
+      }
+      try {
+         final JCas patientCas = JCasFactory.createJCas();
+         if ( patient.__spillFiles.isEmpty() ) {
+            setPatientId( patientCas, patient.__patientId );
+         } else {
+            LOGGER.info( "Reading patient " + patient.__patientId + " from " + patient.__spillFiles.size()
+                         + " files in " + patient.__spillFiles.get( 0 ).getParent() );
+            // The first file holds the whole patient cas as it was spilled, later files hold views stored since
+            readSpillFile( patient.__spillFiles.get( 0 ), patientCas.getCas() );
+            for ( File spillFile : patient.__spillFiles.subList( 1, patient.__spillFiles.size() ) ) {
+               final JCas viewsCas = JCasFactory.createJCas();
+               readSpillFile( spillFile, viewsCas.getCas() );
+               final CasCopier copier = new CasCopier( viewsCas.getCas(), patientCas.getCas() );
+               final Iterator<CAS> views = viewsCas.getCas().getViewIterator();
+               while ( views.hasNext() ) {
+                  final CAS view = views.next();
+                  if ( !view.getViewName().equals( CAS.NAME_DEFAULT_SOFA ) ) {
+                     copier.copyCasView( view, view.getViewName(), true );
+                  }
+               }
+            }
+            deleteSpillFiles( patient );
+         }
+         patient.__patientCas = patientCas;
+         updateSize( patient );
+         touchMemoryOrder( patient );
+         return patientCas;
+      } catch ( UIMAException | IOException | CASRuntimeException multE ) {
+         LOGGER.error( multE.getMessage() );
+         return null;
+      }
+   }
+
+   static private void readSpillFile( final File spillFile, final CAS cas ) throws IOException {
+      try ( InputStream input = new BufferedInputStream( new FileInputStream( spillFile ) ) ) {
+         Serialization.deserializeCAS( cas, input );
+      }
+   }
+
+   /**
+    * Re-estimate the size of the patient cas.  Must be called while holding the patient lock.
+    *
+    * @param patient -
+    */
+   private void updateSize( final Patient patient ) {
+      long size = 0;
+      if ( patient.__patientCas != null ) {
+         final Iterator<CAS> views = patient.__patientCas.getCas().getViewIterator();
+         while ( views.hasNext() ) {
+            final CAS view = views.next();
+            final String text = view.getDocumentText();
+            size += (text == null ? 0 : 2L * text.length())
+                    + ANNOTATION_BYTES * (long) view.getAnnotationIndex().size();
+         }
+      }
+      _memoryUsed.addAndGet( size - patient.__size );
+      patient.__size = size;
+   }
+
+   /**
+    * Move the patient to the most recently used end of the memory order.
+    * Must be called while holding the patient lock.
+    */
+   private void touchMemoryOrder( final Patient patient ) {
+      synchronized ( _memoryOrder ) {
+         _memoryOrder.put( patient, Boolean.TRUE );
       }
-      return viewInfos;
    }
 
+   /**
+    * Must be called while holding the patient lock.
+    */
+   private void removeFromMemoryOrder( final Patient patient ) {
+      synchronized ( _memoryOrder ) {
+         _memoryOrder.remove( patient );
+      }
+   }
+
+   /**
+    * Spill least recently used patients until the estimated memory use is within the budget.
+    * Patients that are locked by other threads or pinned are skipped.
+    */
+   private void enforceMemoryBudget() {
+      final long budget = _memoryBudget;
+      long excess = _memoryUsed.get() - budget;
+      if ( budget <= 0 || excess <= 0 ) {
+         return;
+      }
+      // Take just enough of the least recently used patients, spilling happens outside of the order lock
+      final Collection<Patient> patients = new ArrayList<>();
+      synchronized ( _memoryOrder ) {
+         for ( Patient patient : _memoryOrder.keySet() ) {
+            if ( excess <= 0 ) {
+               break;
+            }
+            if ( patient.__pinCount == 0 && patient.__handOutCount == 0 ) {
+               patients.add( patient );
+               excess -= patient.__size;
+            }
+         }
+      }
+      for ( Patient patient : patients ) {
+         if ( _memoryUsed.get() <= budget ) {
+            return;
+         }
+         if ( !patient.__lock.tryLock() ) {
+            continue;
+         }
+         try {
+            spill( patient );
+         } finally {
+            patient.__lock.unlock();
+         }
+      }
+   }
+
+   /**
+    * Write the patient cas to a compressed binary file and release it.  Must be called while holding the patient lock.
+    *
+    * @param patient -
+    */
+   private void spill( final Patient patient ) {
+      if ( patient.__patientCas == null || patient.__pinCount > 0 || patient.__handOutCount > 0
+           || _patientMap.get( patient.__patientId ) != patient ) {
+         return;
+      }
+      try {
+         final File spillFile = writeSpillFile( patient, patient.__patientCas.getCas() );
+         LOGGER.info( "Spilled patient " + patient.__patientId + " to " + spillFile.getPath() );
+         patient.__spillFiles.add( spillFile );
+         patient.__patientCas = null;
+         removeFromMemoryOrder( patient );
+         updateSize( patient );
+      } catch ( IOException | ResourceInitializationException multE ) {
+         // keep the patient in memory
+         LOGGER.error( "Could not spill patient " + patient.__patientId + " : " + multE.getMessage() );
+      }
+   }
+
+   /**
+    * Write views stored for a spilled patient to a spill file of their own.
+    * If they cannot be written the patient is read back and the views are stored in memory.
+    * Must be called while holding the patient lock.
+    */
+   private void spillViews( final Patient patient, final String docId,
+                            final Collection<String> storeViewNames, final Collection<String> sourceViewNames,
+                            final JCas sourceCas ) {
+      final Collection<ViewInfo> storedViewInfos = new ArrayList<>( patient.__viewInfos );
+      try {
+         final JCas viewsCas = JCasFactory.createJCas();
+         copyViews( patient, viewsCas, docId, storeViewNames, sourceViewNames, sourceCas );
+         final File spillFile = writeSpillFile( patient, viewsCas.getCas() );
+         LOGGER.info( "Spilled views of " + patient.__patientId + " " + docId + " to " + spillFile.getPath() );
+         patient.__spillFiles.add( spillFile );
+         return;
+      } catch ( UIMAException | IOException multE ) {
+         LOGGER.error( "Could not spill views of " + patient.__patientId + " : " + multE.getMessage() );
+      }
+      patient.__viewInfos.retainAll( storedViewInfos );
+      final JCas patientCas = getPatientCas( patient );
+      if ( patientCas != null ) {
+         copyViews( patient, patientCas, docId, storeViewNames, sourceViewNames, sourceCas );
+         updateSize( patient );
+      }
+   }
+
+   private File writeSpillFile( final Patient patient, final CAS cas )
+         throws IOException, ResourceInitializationException {
+      final File spillFile = new File( getSpillDirectory(),
+            _spillCount.incrementAndGet() + "_" + patient.__patientId.replaceAll( "[^A-Za-z0-9._-]", "_" ) + ".bcas" );
+      try ( OutputStream output = new BufferedOutputStream( new FileOutputStream( spillFile ) ) ) {
+         Serialization.serializeWithCompression( cas, output );
+      }
+      spillFile.deleteOnExit();
+      return spillFile;
+   }
+
+   private File getSpillDirectory() throws IOException, ResourceInitializationException {
+      File spillDir = _spillDir;
+      if ( spillDir == null ) {
+         synchronized ( this ) {
+            if ( _spillDir == null ) {
+               _spillDir = Files.createTempDirectory( "ctakes_patients" ).toFile();
+               _spillDir.deleteOnExit();
+            }
+            spillDir = _spillDir;
+         }
+      }
+      if ( !spillDir.isDirectory() && !spillDir.mkdirs() ) {
+         throw new IOException( "Could not create patient spill directory " + spillDir.getPath() );
+      }
+      return spillDir;
+   }
+
+   static private void deleteSpillFiles( final Patient patient ) {
+      for ( File spillFile : patient.__spillFiles ) {
+         if ( !spillFile.delete() ) {
+            LOGGER.warn( "Could not delete " + spillFile.getPath() );
+         }
+      }
+      patient.__spillFiles.clear();
+   }
+
+   /**
+    * Cached patient.  Mutable state is guarded by the lock.
+    */
+   static private final class Patient {
+      private final String __patientId;
+      private final ReentrantLock __lock = new ReentrantLock();
+      // Encoded names of the views stored in the patient cas
+      private final Collection<ViewInfo> __viewInfos = new ArrayList<>();
+      // Registered engines that have already consumed the patient
+      private final Collection<String> __enginesRun = new HashSet<>();
+      // Patient cas, null if it has been spilled or not yet created
+      private JCas __patientCas;
+      // Spilled patient cas followed by views stored after it was spilled.  Empty while the cas is in memory.
+      private final List<File> __spillFiles = new ArrayList<>();
+      // Sizes and counts are also read without the lock to choose patients to spill
+      private volatile long __size;
+      // Number of open handles.  A pinned patient is not spilled.
+      private volatile int __pinCount;
+      // Number of unreleased fetches of the patient cas or its views without a handle.  Such a patient is not spilled.
+      private volatile int __handOutCount;
+
+      private Patient( final String patientId ) {
+         __patientId = patientId;
+      }
+   }
+
+   /**
+    * Use of a patient that is pinned in memory until the handle is closed.
+    */
+   public final class PatientHandle implements AutoCloseable {
+      private final Patient __patient;
+      private boolean __closed;
+
+      private PatientHandle( final Patient patient ) {
+         __patient = patient;
+      }
+
+      /**
+       * @return the patient cas, or null if it could not be created
+       */
+      public JCas getPatientCas() {
+         __patient.__lock.lock();
+         try {
+            checkOpen();
+            return PatientNoteStore.this.getPatientCas( __patient );
+         } finally {
+            __patient.__lock.unlock();
+         }
+      }
+
+      /**
+       * @param docId    -
+       * @param viewName -
+       * @return Stored view for the parameters
+       */
+      public JCas getStoredView( final String docId, final String viewName ) {
+         __patient.__lock.lock();
+         try {
+            checkOpen();
+            return getView( __patient, docId, viewName );
+         } finally {
+            __patient.__lock.unlock();
+         }
+      }
+
+      /**
+       * @param docId -
+       * @return Map of ViewNames to Views
+       */
+      public Map<String, JCas> getStoredViews( final String docId ) {
+         __patient.__lock.lock();
+         try {
+            checkOpen();
+            return getViews( __patient, docId );
+         } finally {
+            __patient.__lock.unlock();
+         }
+      }
+
+      /**
+       * Unpin the patient.  Views obtained through this handle must no longer be used.
+       */
+      @Override
+      public void close() {
+         __patient.__lock.lock();
+         try {
+            if ( __closed ) {
+               return;
+            }
+            __closed = true;
+            __patient.__pinCount--;
+         } finally {
+            __patient.__lock.unlock();
+         }
+         enforceMemoryBudget();
+      }
+
+      private void checkOpen() {
+         if ( __closed ) {
+            throw new IllegalStateException( "Patient " + __patient.__patientId + " is no longer in use" );
+         }
+      }
+   }
+
+   /////////////////    Encoding for cached patient view names   ///////////////
+
    /**
     * Used to map pid, docId, view names to views for each patient.
     */
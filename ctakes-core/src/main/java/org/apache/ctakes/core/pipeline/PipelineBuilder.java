@@ -356,6 +356,13 @@ final public class PipelineBuilder {
       return this;
    }
 
+   /**
+    * @return the number of threads to use for processing
+    */
+   public int getThreadCount() {
+      return _threadCount;
+   }
+
    /**
     * Initialize a pipeline that can be used repeatedly using {@link #run} and {@link #run(String)}.
     * A pipeline can be extended between builds, but the full pipeline will be rebuilt on each call.
@@ -0,0 +1,1138 @@
+package org.apache.ctakes.core.util.regex;
+
+
+import org.apache.ctakes.core.util.Pair;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A set of regular expressions compiled into one combined automaton that finds the matches of every expression
+ * in a single left to right pass over the text.
+ * The automaton is simulated breadth-first (a Thompson / Pike machine) without any backtracking,
+ * so there is no need for the thread hand-offs and timeouts of {@link TimeoutMatcher} and {@link RegexSpanFinder}.
+ * For most expressions the cost of a scan is linear in the length of the text.
+ * A match can only be reported once no more preferred match of its expression is possible, and the text after it
+ * is then scanned again for the next match of that expression.  An expression with a preferred alternative
+ * that stays alive far past its matches, such as {@code a(?:.*c|b)}, can therefore cost time quadratic
+ * in the length of the text, but never the exponential time of backtracking.
+ * <p>
+ * The matches of each expression are those that repeated calls to {@link Matcher#find()} would return:
+ * leftmost, with alternatives and greedy / reluctant quantifiers preferred in java regex order,
+ * and not overlapping other matches of the same expression.
+ * Only the regular subset of java regex is supported: literals and escapes, character classes without nesting
+ * or intersection, the predefined classes \d \s \w and their negations, capturing, named and non-capturing groups,
+ * alternation, greedy and reluctant quantifiers, and the boundaries ^ $ \A \z \Z \b \B.
+ * Supported flags are CASE_INSENSITIVE (ascii), MULTILINE and DOTALL.
+ * Back references, lookaround, possessive quantifiers and embedded flags are not supported,
+ * use {@link #isSupported(Pattern)} to check an expression before adding it to a set.
+ * Java regex ends a repetition after an iteration that matched nothing, and so does this class, but
+ * with nested repetitions of such iterations the backtracking of java regex may rarely settle on other groups or spans.
+ * </p>
+ * Instances are immutable and may be shared by threads.
+ */
+@Immutable
+final public class LinearRegexSet {
+
+   static private final int SUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL;
+   // keeps the epsilon closure recursion of a single expression well within the stack
+   static private final int MAX_EXPRESSION_SIZE = 10000;
+
+   // instruction codes
+   static private final int CHAR = 0;
+   static private final int MATCH = 1;
+   static private final int JUMP = 2;
+   static private final int SPLIT = 3;
+   static private final int SAVE = 4;
+   static private final int ASSERT = 5;
+   static private final int PROGRESS = 6;
+
+   // assertion codes
+   static private final int TEXT_START = 0;
+   static private final int LINE_START = 1;
+   static private final int TEXT_END = 2;
+   static private final int FINAL_END = 3;
+   static private final int LINE_END = 4;
+   static private final int WORD_BOUNDARY = 5;
+   static private final int NOT_WORD_BOUNDARY = 6;
+
+   private final List<Pattern> _patterns;
+   private final List<Map<String, Integer>> _groupSlots;
+   private final int[] _slotCounts;
+   private final int[] _startPcs;
+   // expressions by the assertion that must hold before any of their matches can start
+   private final SeedIndex _unanchored;
+   private final SeedIndex _lineAnchored;
+   private final SeedIndex _textAnchored;
+
+   // the combined program
+   private final int[] _codes;
+   private final int[] _args1;
+   private final int[] _args2;
+   private final IntPredicate[] _charTests;
+   private final int[] _owners;
+
+
+   /**
+    * @param pattern -
+    * @return true if the pattern can be added to a linear regex set
+    */
+   static public boolean isSupported( final Pattern pattern ) {
+      try {
+         new Parser( pattern ).parse();
+         return true;
+      } catch ( IllegalArgumentException iaE ) {
+         return false;
+      }
+   }
+
+   /**
+    * @param patterns patterns to compile into one automaton
+    * @throws IllegalArgumentException if a pattern uses a construct that is not supported
+    */
+   public LinearRegexSet( final List<Pattern> patterns ) throws IllegalArgumentException {
+      _patterns = Collections.unmodifiableList( new ArrayList<>( patterns ) );
+      _groupSlots = new ArrayList<>( patterns.size() );
+      _slotCounts = new int[ patterns.size() ];
+      _startPcs = new int[ patterns.size() ];
+      final Program program = new Program();
+      final SeedIndex unanchored = new SeedIndex();
+      final SeedIndex lineAnchored = new SeedIndex();
+      final SeedIndex textAnchored = new SeedIndex();
+      for ( int i = 0; i < patterns.size(); i++ ) {
+         final Parser parser = new Parser( patterns.get( i ) );
+         final Node root = parser.parse();
+         _groupSlots.add( parser.__groupSlots );
+         _slotCounts[ i ] = parser.__slotCount;
+         _startPcs[ i ] = program.__size;
+         program.__owner = i;
+         program.__start = program.__size;
+         root.compile( program );
+         program.emit( MATCH, 0, 0, null );
+         if ( program.__size - program.__start > MAX_EXPRESSION_SIZE ) {
+            throw new IllegalArgumentException( "Expression is too large " + patterns.get( i ).pattern() );
+         }
+         final int anchor = program.getStartAnchor( _startPcs[ i ] );
+         if ( anchor == TEXT_START ) {
+            textAnchored.add( i, program, _startPcs[ i ] );
+         } else if ( anchor == LINE_START ) {
+            lineAnchored.add( i, program, _startPcs[ i ] );
+         } else {
+            unanchored.add( i, program, _startPcs[ i ] );
+         }
+      }
+      _unanchored = unanchored.build();
+      _lineAnchored = lineAnchored.build();
+      _textAnchored = textAnchored.build();
+      _codes = Arrays.copyOf( program.__codes, program.__size );
+      _args1 = Arrays.copyOf( program.__args1, program.__size );
+      _args2 = Arrays.copyOf( program.__args2, program.__size );
+      _charTests = Arrays.copyOf( program.__charTests, program.__size );
+      _owners = Arrays.copyOf( program.__owners, program.__size );
+   }
+
+   /**
+    * @return the patterns in this set, in the order given to the constructor
+    */
+   public List<Pattern> getPatterns() {
+      return _patterns;
+   }
+
+   /**
+    * @param text text to scan
+    * @return all matches of all patterns, ordered by pattern index and then by position
+    */
+   public List<Match> findMatches( final CharSequence text ) {
+      final Scan scan = new Scan( text );
+      scan.scan( -1, 0, text.length() );
+      final List<Match> matches = new ArrayList<>();
+      scan.__matches.forEach( matches::addAll );
+      return matches;
+   }
+
+
+   /**
+    * A match of one pattern in the set
+    */
+   @Immutable
+   static public final class Match {
+      private final CharSequence __text;
+      private final int __patternIndex;
+      private final int[] __captures;
+      private final Map<String, Integer> __groupSlots;
+
+      private Match( final CharSequence text, final int patternIndex, final int[] captures,
+                     final Map<String, Integer> groupSlots ) {
+         __text = text;
+         __patternIndex = patternIndex;
+         __captures = captures;
+         __groupSlots = groupSlots;
+      }
+
+      /**
+       * @return index of the matched pattern in the set
+       */
+      public int getPatternIndex() {
+         return __patternIndex;
+      }
+
+      /**
+       * @return start offset of the match
+       */
+      public int start() {
+         return __captures[ 0 ];
+      }
+
+      /**
+       * @return end offset of the match, exclusive
+       */
+      public int end() {
+         return __captures[ 1 ];
+      }
+
+      /**
+       * @return start and end offsets of the match
+       */
+      public Pair<Integer> getSpan() {
+         return new Pair<>( start(), end() );
+      }
+
+      /**
+       * @param name name of a group in the pattern
+       * @return text of the named group in this match, or null if the group did not participate in the match
+       * @throws IllegalArgumentException if the pattern has no group with the given name, as {@link Matcher#group(String)}
+       */
+      public String group( final String name ) throws IllegalArgumentException {
+         final Integer slot = __groupSlots.get( name );
+         if ( slot == null ) {
+            throw new IllegalArgumentException( "No group with name <" + name + ">" );
+         }
+         if ( __captures[ slot ] < 0 || __captures[ slot + 1 ] < 0 ) {
+            return null;
+         }
+         return __text.subSequence( __captures[ slot ], __captures[ slot + 1 ] ).toString();
+      }
+   }
+
+
+   /**
+    * State of a single scan of some text.
+    * Every pattern has its own match candidate and next search offset.
+    * Each position is processed once by the outer scan.  When a match of a pattern has been settled after
+    * its end was passed, the pattern alone is scanned again from the end of the match to the current position,
+    * just as a new call to {@link Matcher#find()} would.
+    * Such a catch up scan restarts itself when it settles another match, so scans are never nested more than once.
+    */
+   private final class Scan {
+      private final CharSequence __text;
+      private final int __length;
+      private final int[] __marks = new int[ _codes.length ];
+      private final int[][] __candidates = new int[ _patterns.size() ][];
+      private final int[] __searchStarts = new int[ _patterns.size() ];
+      private final int[] __patternMarks = new int[ _patterns.size() ];
+      private final List<List<Match>> __matches = new ArrayList<>( _patterns.size() );
+      private int __pendingCount;
+      private int __tick;
+
+      private Scan( final CharSequence text ) {
+         __text = text;
+         __length = text.length();
+         for ( int i = 0; i < _patterns.size(); i++ ) {
+            __matches.add( new ArrayList<>() );
+         }
+      }
+
+      /**
+       * @param pattern index of the single pattern to scan, or -1 to scan all patterns
+       * @param first   first position to process
+       * @param last    last position to process
+       * @return threads at the position after last
+       */
+      private ThreadList scan( final int pattern, final int first, final int last ) {
+         ThreadList current = new ThreadList( ++__tick );
+         ThreadList next = new ThreadList( ++__tick );
+         int position = first;
+         while ( position <= last ) {
+            if ( pattern >= 0 ) {
+               seed( current, pattern, position );
+            } else {
+               seedAll( current, position );
+            }
+            step( current, next, position );
+            if ( __pendingCount > 0 ) {
+               final int restart = settle( next, pattern, position );
+               if ( restart >= 0 ) {
+                  // The single pattern has no threads left once its match is settled,
+                  // so scanning it again from the end of the match is all that remains to be done.
+                  current.clear( ++__tick );
+                  next.clear( ++__tick );
+                  position = restart;
+                  continue;
+               }
+            }
+            final ThreadList done = current;
+            current = next;
+            next = done;
+            next.clear( ++__tick );
+            position++;
+         }
+         return current;
+      }
+
+      private void seedAll( final ThreadList threads, final int position ) {
+         final int index = SeedIndex.getIndex( __text, position );
+         if ( position == 0 ) {
+            for ( int pattern : _textAnchored.__patterns[ index ] ) {
+               seed( threads, pattern, position );
+            }
+         }
+         if ( _lineAnchored.__patterns[ index ].length > 0 && isLineStart( position ) ) {
+            for ( int pattern : _lineAnchored.__patterns[ index ] ) {
+               seed( threads, pattern, position );
+            }
+         }
+         for ( int pattern : _unanchored.__patterns[ index ] ) {
+            seed( threads, pattern, position );
+         }
+      }
+
+      /**
+       * Starts a new thread for a pattern, with a lower priority than the threads that started at earlier positions
+       */
+      private void seed( final ThreadList threads, final int pattern, final int position ) {
+         if ( __candidates[ pattern ] != null || position < __searchStarts[ pattern ] ) {
+            return;
+         }
+         final int[] captures = new int[ _slotCounts[ pattern ] ];
+         Arrays.fill( captures, -1 );
+         captures[ 0 ] = position;
+         addThread( threads, _startPcs[ pattern ], captures, position );
+      }
+
+      /**
+       * Runs every thread over the character at the position, in priority order
+       */
+      private void step( final ThreadList current, final ThreadList next, final int position ) {
+         final int cutTick = ++__tick;
+         final char c = position < __length ? __text.charAt( position ) : 0;
+         for ( int i = 0; i < current.__size; i++ ) {
+            final int pc = current.__pcs[ i ];
+            final int owner = _owners[ pc ];
+            if ( __patternMarks[ owner ] == cutTick ) {
+               continue;
+            }
+            if ( _codes[ pc ] == MATCH ) {
+               // threads with a lower priority can only produce less preferred matches
+               if ( __candidates[ owner ] == null ) {
+                  __pendingCount++;
+               }
+               final int[] captures = current.__captures[ i ].clone();
+               captures[ 1 ] = position;
+               __candidates[ owner ] = captures;
+               __patternMarks[ owner ] = cutTick;
+            } else if ( position < __length && _charTests[ pc ].test( c ) ) {
+               addThread( next, pc + 1, current.__captures[ i ], position + 1 );
+            }
+         }
+      }
+
+      /**
+       * A candidate match is settled once no thread with a higher priority is alive.
+       * When all patterns are scanned, each settled pattern is caught up to the position by a scan of its own.
+       *
+       * @return the position from which a single scanned pattern must be scanned again, or -1 to continue
+       */
+      private int settle( final ThreadList next, final int pattern, final int position ) {
+         final int liveTick = ++__tick;
+         for ( int i = 0; i < next.__size; i++ ) {
+            __patternMarks[ _owners[ next.__pcs[ i ] ] ] = liveTick;
+         }
+         final int first = pattern >= 0 ? pattern : 0;
+         final int last = pattern >= 0 ? pattern : _patterns.size() - 1;
+         for ( int i = first; i <= last; i++ ) {
+            final int[] captures = __candidates[ i ];
+            if ( captures == null || __patternMarks[ i ] == liveTick ) {
+               continue;
+            }
+            __candidates[ i ] = null;
+            __pendingCount--;
+            __matches.get( i ).add( new Match( __text, i, captures, _groupSlots.get( i ) ) );
+            // as Matcher.find(), an empty match moves the next search forward by one
+            __searchStarts[ i ] = captures[ 1 ] == captures[ 0 ] ? captures[ 1 ] + 1 : captures[ 1 ];
+            if ( __searchStarts[ i ] <= position ) {
+               if ( pattern >= 0 ) {
+                  return __searchStarts[ i ];
+               }
+               final ThreadList caughtUp = scan( i, __searchStarts[ i ], position );
+               for ( int j = 0; j < caughtUp.__size; j++ ) {
+                  __marks[ caughtUp.__pcs[ j ] ] = next.__tick;
+                  next.add( caughtUp.__pcs[ j ], caughtUp.__captures[ j ] );
+               }
+            }
+         }
+         return -1;
+      }
+
+      /**
+       * Follows the epsilon closure of the instruction, adding threads for each reachable char or match instruction
+       */
+      private void addThread( final ThreadList threads, final int pc, final int[] captures, final int position ) {
+         if ( _codes[ pc ] == PROGRESS ) {
+            // not marked, the way on depends upon where the iteration of each thread started
+            final int nextPc = captures[ _args1[ pc ] ] == position ? _args2[ pc ] : pc + 1;
+            addThread( threads, nextPc, captures, position );
+            return;
+         }
+         if ( __marks[ pc ] == threads.__tick ) {
+            return;
+         }
+         __marks[ pc ] = threads.__tick;
+         switch ( _codes[ pc ] ) {
+            case JUMP:
+               addThread( threads, _args1[ pc ], captures, position );
+               break;
+            case SPLIT:
+               addThread( threads, _args1[ pc ], captures, position );
+               addThread( threads, _args2[ pc ], captures, position );
+               break;
+            case SAVE:
+               final int[] saved = captures.clone();
+               saved[ _args1[ pc ] ] = position;
+               addThread( threads, pc + 1, saved, position );
+               break;
+            case ASSERT:
+               if ( holds( _args1[ pc ], position ) ) {
+                  addThread( threads, pc + 1, captures, position );
+               }
+               break;
+            default:
+               threads.add( pc, captures );
+         }
+      }
+
+      private boolean holds( final int assertion, final int position ) {
+         switch ( assertion ) {
+            case TEXT_START:
+               return position == 0;
+            case LINE_START:
+               return isLineStart( position );
+            case TEXT_END:
+               return position == __length;
+            case FINAL_END:
+               return isLineEnd( position, false );
+            case LINE_END:
+               return isLineEnd( position, true );
+            case WORD_BOUNDARY:
+               return isWordBoundary( position );
+            case NOT_WORD_BOUNDARY:
+               return !isWordBoundary( position );
+         }
+         return false;
+      }
+
+      /**
+       * Same as the java regex multiline ^ , which does not match at the end of input or within \r\n
+       */
+      private boolean isLineStart( final int position ) {
+         if ( position == __length ) {
+            return false;
+         }
+         if ( position == 0 ) {
+            return true;
+         }
+         final char c = __text.charAt( position - 1 );
+         return isLineTerminator( c ) && !( c == '\r' && __text.charAt( position ) == '\n' );
+      }
+
+      /**
+       * Same as the java regex $ , which without multiline only matches before a final line terminator
+       */
+      private boolean isLineEnd( final int position, final boolean multiline ) {
+         if ( !multiline ) {
+            if ( position < __length - 2 ) {
+               return false;
+            }
+            if ( position == __length - 2
+                 && ( __text.charAt( position ) != '\r' || __text.charAt( position + 1 ) != '\n' ) ) {
+               return false;
+            }
+         }
+         if ( position == __length ) {
+            return true;
+         }
+         final char c = __text.charAt( position );
+         if ( c == '\n' ) {
+            return position == 0 || __text.charAt( position - 1 ) != '\r';
+         }
+         return isLineTerminator( c );
+      }
+
+      private boolean isWordBoundary( final int position ) {
+         final boolean left = position > 0 && isWordChar( __text.charAt( position - 1 ) );
+         final boolean right = position < __length && isWordChar( __text.charAt( position ) );
+         return left != right;
+      }
+   }
+
+
+   /**
+    * Patterns by the character that a match can start with, so that a position is only seeded with the patterns
+    * that can match there.  The characters of the start of a pattern are found by following the epsilon closure of its
+    * first instruction, ignoring assertions.
+    */
+   static private final class SeedIndex {
+      static private final int NON_ASCII = 128;
+      static private final int END_OF_TEXT = 129;
+      private final List<List<Integer>> __lists = new ArrayList<>();
+      private final int[][] __patterns = new int[ 130 ][];
+
+      private SeedIndex() {
+         for ( int i = 0; i < __patterns.length; i++ ) {
+            __lists.add( new ArrayList<>() );
+         }
+      }
+
+      static private int getIndex( final CharSequence text, final int position ) {
+         if ( position == text.length() ) {
+            return END_OF_TEXT;
+         }
+         final char c = text.charAt( position );
+         return c < NON_ASCII ? c : NON_ASCII;
+      }
+
+      private void add( final int pattern, final Program program, final int startPc ) {
+         final Collection<Integer> charPcs = new ArrayList<>();
+         final boolean nullable = collectStart( program, startPc, new HashSet<>(), charPcs );
+         for ( int c = 0; c < NON_ASCII; c++ ) {
+            final int ascii = c;
+            if ( nullable || charPcs.stream().anyMatch( pc -> program.__charTests[ pc ].test( ascii ) ) ) {
+               __lists.get( c ).add( pattern );
+            }
+         }
+         if ( nullable || !charPcs.isEmpty() ) {
+            __lists.get( NON_ASCII ).add( pattern );
+         }
+         if ( nullable ) {
+            __lists.get( END_OF_TEXT ).add( pattern );
+         }
+      }
+
+      /**
+       * @return true if a match instruction can be reached without reading a character
+       */
+      static private boolean collectStart( final Program program, final int pc, final Collection<Integer> visited,
+                                           final Collection<Integer> charPcs ) {
+         if ( !visited.add( pc ) ) {
+            return false;
+         }
+         switch ( program.__codes[ pc ] ) {
+            case CHAR:
+               charPcs.add( pc );
+               return false;
+            case MATCH:
+               return true;
+            case JUMP:
+               return collectStart( program, program.__args1[ pc ], visited, charPcs );
+            case SPLIT:
+               final boolean nullable = collectStart( program, program.__args1[ pc ], visited, charPcs );
+               return collectStart( program, program.__args2[ pc ], visited, charPcs ) || nullable;
+            case PROGRESS:
+               final boolean exits = collectStart( program, program.__args2[ pc ], visited, charPcs );
+               return collectStart( program, pc + 1, visited, charPcs ) || exits;
+            default:
+               return collectStart( program, pc + 1, visited, charPcs );
+         }
+      }
+
+      private SeedIndex build() {
+         for ( int i = 0; i < __patterns.length; i++ ) {
+            __patterns[ i ] = __lists.get( i ).stream().mapToInt( Integer::intValue ).toArray();
+         }
+         return this;
+      }
+   }
+
+
+   /**
+    * Threads at one position, in priority order.  The tick identifies the list in the scan instruction marks.
+    */
+   static private final class ThreadList {
+      private int __tick;
+      private int __size;
+      private int[] __pcs = new int[ 16 ];
+      private int[][] __captures = new int[ 16 ][];
+
+      private ThreadList( final int tick ) {
+         __tick = tick;
+      }
+
+      private void add( final int pc, final int[] captures ) {
+         if ( __size == __pcs.length ) {
+            __pcs = Arrays.copyOf( __pcs, __size * 2 );
+            __captures = Arrays.copyOf( __captures, __size * 2 );
+         }
+         __pcs[ __size ] = pc;
+         __captures[ __size ] = captures;
+         __size++;
+      }
+
+      private void clear( final int tick ) {
+         Arrays.fill( __captures, 0, __size, null );
+         __size = 0;
+         __tick = tick;
+      }
+   }
+
+
+   /**
+    * The combined program that is being compiled
+    */
+   static private final class Program {
+      private int __size;
+      private int __owner;
+      private int __start;
+      private int[] __codes = new int[ 256 ];
+      private int[] __args1 = new int[ 256 ];
+      private int[] __args2 = new int[ 256 ];
+      private int[] __owners = new int[ 256 ];
+      private IntPredicate[] __charTests = new IntPredicate[ 256 ];
+
+      private int emit( final int code, final int arg1, final int arg2, final IntPredicate charTest ) {
+         if ( __size == __codes.length ) {
+            final int length = __size * 2;
+            __codes = Arrays.copyOf( __codes, length );
+            __args1 = Arrays.copyOf( __args1, length );
+            __args2 = Arrays.copyOf( __args2, length );
+            __owners = Arrays.copyOf( __owners, length );
+            __charTests = Arrays.copyOf( __charTests, length );
+         }
+         __codes[ __size ] = code;
+         __args1[ __size ] = arg1;
+         __args2[ __size ] = arg2;
+         __owners[ __size ] = __owner;
+         __charTests[ __size ] = charTest;
+         return __size++;
+      }
+
+      /**
+       * @return the text or line start assertion that every match must begin with, or -1 if there is none
+       */
+      private int getStartAnchor( final int startPc ) {
+         int pc = startPc;
+         while ( __codes[ pc ] == SAVE || __codes[ pc ] == JUMP ) {
+            pc = __codes[ pc ] == SAVE ? pc + 1 : __args1[ pc ];
+         }
+         if ( __codes[ pc ] == ASSERT && ( __args1[ pc ] == TEXT_START || __args1[ pc ] == LINE_START ) ) {
+            return __args1[ pc ];
+         }
+         return -1;
+      }
+   }
+
+
+   /**
+    * Node in the syntax tree of an expression
+    */
+   static private final class Node {
+      private final boolean __nullable;
+      private final Consumer<Program> __compiler;
+
+      /**
+       * @param nullable true if the node can match an empty string
+       * @param compiler emits the instructions of the node
+       */
+      private Node( final boolean nullable, final Consumer<Program> compiler ) {
+         __nullable = nullable;
+         __compiler = compiler;
+      }
+
+      private void compile( final Program program ) {
+         __compiler.accept( program );
+      }
+   }
+
+   static private Node sequence( final List<Node> nodes ) {
+      return new Node( nodes.stream().allMatch( n -> n.__nullable ),
+            program -> nodes.forEach( n -> n.compile( program ) ) );
+   }
+
+   static private Node alternation( final List<Node> nodes ) {
+      if ( nodes.size() == 1 ) {
+         return nodes.get( 0 );
+      }
+      return new Node( nodes.stream().anyMatch( n -> n.__nullable ), program -> {
+         final List<Integer> jumps = new ArrayList<>( nodes.size() - 1 );
+         for ( int i = 0; i < nodes.size() - 1; i++ ) {
+            final int split = program.emit( SPLIT, program.__size + 1, 0, null );
+            nodes.get( i ).compile( program );
+            jumps.add( program.emit( JUMP, 0, 0, null ) );
+            program.__args2[ split ] = program.__size;
+         }
+         nodes.get( nodes.size() - 1 ).compile( program );
+         jumps.forEach( j -> program.__args1[ j ] = program.__size );
+      } );
+   }
+
+   /**
+    * As java regex, an iteration of a node that can match an empty string ends the repetition if it does.
+    *
+    * @param max          maximum repetitions, -1 for unbounded
+    * @param progressSlot capture slot for the start of an iteration, -1 if the node can not match an empty string
+    */
+   static private Node repetition( final Node node, final int min, final int max, final boolean greedy,
+                                   final int progressSlot ) {
+      return new Node( min == 0 || node.__nullable, program -> {
+         final List<Integer> progressChecks = new ArrayList<>();
+         final Runnable iteration = () -> {
+            if ( progressSlot >= 0 ) {
+               program.emit( SAVE, progressSlot, 0, null );
+            }
+            node.compile( program );
+            if ( progressSlot >= 0 ) {
+               progressChecks.add( program.emit( PROGRESS, progressSlot, 0, null ) );
+            }
+            if ( program.__size - program.__start > MAX_EXPRESSION_SIZE ) {
+               throw new IllegalArgumentException( "Repetition is too large" );
+            }
+         };
+         for ( int i = 0; i < min; i++ ) {
+            iteration.run();
+         }
+         final List<Integer> splits = new ArrayList<>();
+         if ( max < 0 ) {
+            final int split = program.emit( SPLIT, 0, 0, null );
+            splits.add( split );
+            iteration.run();
+            program.emit( JUMP, split, 0, null );
+         } else {
+            for ( int i = min; i < max; i++ ) {
+               splits.add( program.emit( SPLIT, 0, 0, null ) );
+               iteration.run();
+            }
+         }
+         final int exit = program.__size;
+         splits.forEach( s -> setSplit( program, s, s + 1, exit, greedy ) );
+         progressChecks.forEach( c -> program.__args2[ c ] = exit );
+      } );
+   }
+
+   static private void setSplit( final Program program, final int split, final int repeat, final int exit,
+                                 final boolean greedy ) {
+      program.__args1[ split ] = greedy ? repeat : exit;
+      program.__args2[ split ] = greedy ? exit : repeat;
+   }
+
+   static private Node group( final Node node, final int slot ) {
+      return new Node( node.__nullable, program -> {
+         program.emit( SAVE, slot, 0, null );
+         node.compile( program );
+         program.emit( SAVE, slot + 1, 0, null );
+      } );
+   }
+
+   static private Node assertion( final int assertion ) {
+      return new Node( true, program -> program.emit( ASSERT, assertion, 0, null ) );
+   }
+
+   static private Node character( final IntPredicate test ) {
+      return new Node( false, program -> program.emit( CHAR, 0, 0, test ) );
+   }
+
+
+   static private boolean isLineTerminator( final int c ) {
+      return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+   }
+
+   static private boolean isWordChar( final int c ) {
+      return c == '_' || Character.isLetterOrDigit( c );
+   }
+
+   static private boolean isAsciiLetter( final int c ) {
+      return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' );
+   }
+
+
+   /**
+    * Recursive descent parser for the supported subset of java regex
+    */
+   static private final class Parser {
+      private final String __regex;
+      private final boolean __caseInsensitive;
+      private final boolean __multiline;
+      private final boolean __dotAll;
+      private final Map<String, Integer> __groupSlots = new HashMap<>();
+      private int __slotCount = 2;
+      private int __index;
+
+      private Parser( final Pattern pattern ) {
+         if ( ( pattern.flags() & ~SUPPORTED_FLAGS ) != 0 ) {
+            throw new IllegalArgumentException( "Unsupported flags " + pattern.flags() );
+         }
+         __regex = pattern.pattern();
+         __caseInsensitive = ( pattern.flags() & Pattern.CASE_INSENSITIVE ) != 0;
+         __multiline = ( pattern.flags() & Pattern.MULTILINE ) != 0;
+         __dotAll = ( pattern.flags() & Pattern.DOTALL ) != 0;
+      }
+
+      private Node parse() {
+         final Node node = parseAlternation();
+         if ( __index < __regex.length() ) {
+            throw error( "Unmatched closing ')'" );
+         }
+         return node;
+      }
+
+      private IllegalArgumentException error( final String message ) {
+         return new IllegalArgumentException( message + " at index " + __index + " in " + __regex );
+      }
+
+      private boolean hasNext() {
+         return __index < __regex.length();
+      }
+
+      private char peek() {
+         return __regex.charAt( __index );
+      }
+
+      private boolean lookingAt( final String text ) {
+         return __regex.startsWith( text, __index );
+      }
+
+      private Node parseAlternation() {
+         final List<Node> alternatives = new ArrayList<>();
+         alternatives.add( parseSequence() );
+         while ( hasNext() && peek() == '|' ) {
+            __index++;
+            alternatives.add( parseSequence() );
+         }
+         return alternation( alternatives );
+      }
+
+      private Node parseSequence() {
+         final List<Node> nodes = new ArrayList<>();
+         while ( hasNext() && peek() != '|' && peek() != ')' ) {
+            nodes.add( parseRepetition() );
+         }
+         return sequence( nodes );
+      }
+
+      private Node parseRepetition() {
+         Node node = parseAtom();
+         while ( hasNext() ) {
+            final int min;
+            final int max;
+            final char c = peek();
+            if ( c == '?' ) {
+               min = 0;
+               max = 1;
+               __index++;
+            } else if ( c == '*' ) {
+               min = 0;
+               max = -1;
+               __index++;
+            } else if ( c == '+' ) {
+               min = 1;
+               max = -1;
+               __index++;
+            } else if ( c == '{' ) {
+               __index++;
+               min = parseNumber();
+               if ( hasNext() && peek() == ',' ) {
+                  __index++;
+                  max = hasNext() && peek() == '}' ? -1 : parseNumber();
+               } else {
+                  max = min;
+               }
+               if ( !hasNext() || peek() != '}' || ( max >= 0 && max < min ) ) {
+                  throw error( "Illegal repetition" );
+               }
+               __index++;
+            } else {
+               break;
+            }
+            boolean greedy = true;
+            if ( hasNext() && peek() == '?' ) {
+               greedy = false;
+               __index++;
+            } else if ( hasNext() && peek() == '+' ) {
+               throw error( "Possessive quantifiers are not supported" );
+            }
+            node = repetition( node, min, max, greedy, node.__nullable ? __slotCount++ : -1 );
+         }
+         return node;
+      }
+
+      private int parseNumber() {
+         final int start = __index;
+         while ( hasNext() && Character.isDigit( peek() ) ) {
+            __index++;
+         }
+         if ( start == __index || __index - start > 4 ) {
+            throw error( "Illegal repetition" );
+         }
+         return Integer.parseInt( __regex.substring( start, __index ) );
+      }
+
+      private Node parseAtom() {
+         final char c = peek();
+         __index++;
+         switch ( c ) {
+            case '(':
+               return parseGroup();
+            case '[':
+               return character( parseClass() );
+            case '.':
+               return character( __dotAll ? x -> true : x -> !isLineTerminator( x ) );
+            case '^':
+               return assertion( __multiline ? LINE_START : TEXT_START );
+            case '$':
+               return assertion( __multiline ? LINE_END : FINAL_END );
+            case '\\':
+               return parseEscape();
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+               throw error( "Dangling meta character '" + c + "'" );
+         }
+         if ( Character.isSurrogate( c ) ) {
+            throw error( "Supplementary characters are not supported" );
+         }
+         return character( literal( c ) );
+      }
+
+      private Node parseGroup() {
+         int slot = -1;
+         if ( lookingAt( "?:" ) ) {
+            __index += 2;
+         } else if ( lookingAt( "?<" ) && __index + 2 < __regex.length()
+                     && Character.isLetter( __regex.charAt( __index + 2 ) ) ) {
+            __index += 2;
+            final int nameEnd = __regex.indexOf( '>', __index );
+            if ( nameEnd < 0 ) {
+               throw error( "Named group is missing trailing '>'" );
+            }
+            slot = __slotCount;
+            __slotCount += 2;
+            __groupSlots.put( __regex.substring( __index, nameEnd ), slot );
+            __index = nameEnd + 1;
+         } else if ( lookingAt( "?" ) ) {
+            throw error( "Lookaround, atomic groups and embedded flags are not supported" );
+         }
+         final Node node = parseAlternation();
+         if ( !hasNext() || peek() != ')' ) {
+            throw error( "Unclosed group" );
+         }
+         __index++;
+         return slot < 0 ? node : group( node, slot );
+      }
+
+      private Node parseEscape() {
+         if ( !hasNext() ) {
+            throw error( "Unexpected end of expression" );
+         }
+         final char c = peek();
+         switch ( c ) {
+            case 'b':
+               __index++;
+               return assertion( WORD_BOUNDARY );
+            case 'B':
+               __index++;
+               return assertion( NOT_WORD_BOUNDARY );
+            case 'A':
+               __index++;
+               return assertion( TEXT_START );
+            case 'z':
+               __index++;
+               return assertion( TEXT_END );
+            case 'Z':
+               __index++;
+               return assertion( FINAL_END );
+         }
+         final IntPredicate predefined = parsePredefinedClass();
+         if ( predefined != null ) {
+            return character( predefined );
+         }
+         return character( literal( parseEscapedChar() ) );
+      }
+
+      /**
+       * @return predicate for \d \D \s \S \w \W at the current index, or null if there is none
+       */
+      private IntPredicate parsePredefinedClass() {
+         final IntPredicate predicate;
+         switch ( Character.toLowerCase( peek() ) ) {
+            case 'd':
+               predicate = x -> x >= '0' && x <= '9';
+               break;
+            case 's':
+               predicate = x -> x == ' ' || x == '\t' || x == '\n' || x == '\u000B' || x == '\f' || x == '\r';
+               break;
+            case 'w':
+               predicate = x -> x == '_' || ( x >= '0' && x <= '9' ) || isAsciiLetter( x );
+               break;
+            default:
+               return null;
+         }
+         final boolean negate = Character.isUpperCase( peek() );
+         __index++;
+         return negate ? predicate.negate() : predicate;
+      }
+
+      /**
+       * @return the character for an escape sequence at the current index, after the backslash
+       */
+      private char parseEscapedChar() {
+         final char c = peek();
+         __index++;
+         switch ( c ) {
+            case 't':
+               return '\t';
+            case 'n':
+               return '\n';
+            case 'r':
+               return '\r';
+            case 'f':
+               return '\f';
+            case 'a':
+               return '\u0007';
+            case 'e':
+               return '\u001B';
+            case '0':
+               return parseCode( 8, 1, 3 );
+            case 'x':
+               return parseCode( 16, 2, 2 );
+            case 'u':
+               return parseCode( 16, 4, 4 );
+            case 'c':
+               if ( !hasNext() ) {
+                  throw error( "Illegal control escape sequence" );
+               }
+               __index++;
+               return (char)( __regex.charAt( __index - 1 ) ^ 64 );
+         }
+         if ( Character.isLetterOrDigit( c ) ) {
+            throw error( "Back references, properties and escape \\" + c + " are not supported" );
+         }
+         if ( Character.isSurrogate( c ) ) {
+            throw error( "Supplementary characters are not supported" );
+         }
+         return c;
+      }
+
+      private char parseCode( final int radix, final int minDigits, final int maxDigits ) {
+         final int start = __index;
+         while ( hasNext() && __index - start < maxDigits && Character.digit( peek(), radix ) >= 0 ) {
+            __index++;
+         }
+         if ( __index - start < minDigits ) {
+            throw error( "Illegal escape sequence" );
+         }
+         final int code = Integer.parseInt( __regex.substring( start, __index ), radix );
+         if ( Character.isSurrogate( (char)code ) || code > 0xFF && radix == 8 ) {
+            throw error( "Illegal escape sequence" );
+         }
+         return (char)code;
+      }
+
+      private IntPredicate literal( final char c ) {
+         if ( __caseInsensitive && isAsciiLetter( c ) ) {
+            final char lower = Character.toLowerCase( c );
+            final char upper = Character.toUpperCase( c );
+            return x -> x == lower || x == upper;
+         }
+         return x -> x == c;
+      }
+
+      /**
+       * Parses a character class after the opening bracket.
+       * The result is a lookup table for ascii characters and a predicate for all others.
+       */
+      private IntPredicate parseClass() {
+         final boolean negate = hasNext() && peek() == '^';
+         if ( negate ) {
+            __index++;
+         }
+         final List<IntPredicate> members = new ArrayList<>();
+         boolean first = true;
+         while ( true ) {
+            if ( !hasNext() ) {
+               throw error( "Unclosed character class" );
+            }
+            final char c = peek();
+            if ( c == ']' && !first ) {
+               __index++;
+               break;
+            }
+            if ( c == ']' || c == '[' || lookingAt( "&&" ) ) {
+               throw error( "Nested classes and intersections are not supported" );
+            }
+            first = false;
+            if ( c == '\\' ) {
+               __index++;
+               if ( !hasNext() ) {
+                  throw error( "Unclosed character class" );
+               }
+               final IntPredicate predefined = parsePredefinedClass();
+               if ( predefined != null ) {
+                  members.add( predefined );
+                  continue;
+               }
+            }
+            final char low = parseClassChar( c == '\\' );
+            if ( hasNext() && peek() == '-' && __index + 1 < __regex.length()
+                 && __regex.charAt( __index + 1 ) != ']' ) {
+               __index++;
+               if ( peek() == '[' ) {
+                  throw error( "Nested classes are not supported" );
+               }
+               final boolean escaped = peek() == '\\';
+               if ( escaped ) {
+                  __index++;
+               }
+               final char high = parseClassChar( escaped );
+               if ( high < low ) {
+                  throw error( "Illegal character range" );
+               }
+               members.add( x -> x >= low && x <= high );
+            } else {
+               members.add( x -> x == low );
+            }
+         }
+         final IntPredicate union = x -> members.stream().anyMatch( m -> m.test( x ) );
+         final boolean[] ascii = new boolean[ 128 ];
+         for ( int x = 0; x < 128; x++ ) {
+            boolean member = union.test( x );
+            if ( __caseInsensitive && !member && isAsciiLetter( x ) ) {
+               member = union.test( Character.toLowerCase( x ) ) || union.test( Character.toUpperCase( x ) );
+            }
+            ascii[ x ] = member != negate;
+         }
+         return x -> x < 128 ? ascii[ x ] : union.test( x ) != negate;
+      }
+
+      /**
+       * @param escaped true if the backslash of an escape sequence has been consumed
+       * @return a class member character at the current index
+       */
+      private char parseClassChar( final boolean escaped ) {
+         if ( !hasNext() ) {
+            throw error( "Unclosed character class" );
+         }
+         if ( escaped ) {
+            return parseEscapedChar();
+         }
+         final char c = peek();
+         if ( Character.isSurrogate( c ) ) {
+            throw error( "Supplementary characters are not supported" );
+         }
+         __index++;
+         return c;
+      }
+   }
+
+}
@@ -0,0 +1,140 @@
+package org.apache.ctakes.core.cleartk;
+
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.DataWriter;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.Instance;
+import org.cleartk.ml.jar.JarClassifierBuilder;
+import org.cleartk.ml.liblinear.LibLinearBooleanOutcomeDataWriter;
+import org.cleartk.ml.liblinear.LibLinearStringOutcomeDataWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BatchClassifierTester {
+
+   static private final String[] WORDS = { "pain", "denies", "no", "chest", "cough", "mild", "severe", "history" };
+   static private final String[] CATEGORIES = { "location_of", "degree_of", "-NONE-" };
+
+   @Rule
+   public TemporaryFolder _folder = new TemporaryFolder();
+
+   @Test
+   public void testMulticlass() throws Exception {
+      // L2-loss svm one vs rest, and the crammer and singer multiclass svm
+      for ( String solver : new String[] { "1", "4" } ) {
+         final File directory = _folder.newFolder();
+         final Random random = new Random( 17 );
+         final DataWriter<String> dataWriter = new LibLinearStringOutcomeDataWriter( directory );
+         for ( int i = 0; i < 300; i++ ) {
+            final List<Feature> features = randomFeatures( random );
+            dataWriter.write( new Instance<>( CATEGORIES[ features.size() % CATEGORIES.length ], features ) );
+         }
+         dataWriter.finish();
+         assertSameOutcomes( train( directory, "-s", solver, "-c", "0.5" ), new Random( 42 ) );
+      }
+   }
+
+   @Test
+   public void testBinary() throws Exception {
+      for ( String solver : new String[] { "0", "1", "4" } ) {
+         final File directory = _folder.newFolder();
+         final Random random = new Random( 17 );
+         final DataWriter<Boolean> dataWriter = new LibLinearBooleanOutcomeDataWriter( directory );
+         for ( int i = 0; i < 300; i++ ) {
+            final List<Feature> features = randomFeatures( random );
+            dataWriter.write( new Instance<>( features.get( 0 ).getValue().equals( "denies" ), features ) );
+         }
+         dataWriter.finish();
+         assertSameOutcomes( train( directory, "-s", solver ), new Random( 42 ) );
+      }
+   }
+
+   @Test
+   public void testRegression() throws Exception {
+      // L2-loss support vector regression models have no labels
+      final File directory = _folder.newFolder();
+      final Random random = new Random( 17 );
+      final DataWriter<String> dataWriter = new LibLinearStringOutcomeDataWriter( directory );
+      for ( int i = 0; i < 300; i++ ) {
+         final List<Feature> features = randomFeatures( random );
+         dataWriter.write( new Instance<>( CATEGORIES[ features.size() % CATEGORIES.length ], features ) );
+      }
+      dataWriter.finish();
+      final Classifier<String> classifier = train( directory, "-s", "11" );
+      final BatchClassifier<String> batchClassifier = new BatchClassifier<>( classifier );
+      assertTrue( batchClassifier.isBatched() );
+      final List<List<Feature>> featureLists = new ArrayList<>();
+      final List<String> expected = new ArrayList<>();
+      final Random testRandom = new Random( 42 );
+      for ( int i = 0; i < 200; i++ ) {
+         final List<Feature> features = randomFeatures( testRandom );
+         featureLists.add( features );
+         expected.add( classifier.classify( features ) );
+      }
+      assertEquals( expected, batchClassifier.classify( featureLists ) );
+   }
+
+   @Test
+   public void testUnbatched() throws Exception {
+      final Classifier<String> classifier = new Classifier<String>() {
+         @Override
+         public String classify( final List<Feature> features ) {
+            return String.valueOf( features.size() );
+         }
+
+         @Override
+         public Map<String, Double> score( final List<Feature> features ) {
+            return Collections.singletonMap( classify( features ), 1.0 );
+         }
+      };
+      final BatchClassifier<String> batchClassifier = new BatchClassifier<>( classifier );
+      assertFalse( batchClassifier.isBatched() );
+      assertEquals( Arrays.asList( "1", "0" ), batchClassifier.classify( Arrays.asList(
+            Collections.singletonList( new Feature( "pain" ) ), Collections.<Feature>emptyList() ) ) );
+      assertTrue( batchClassifier.classify( Collections.<List<Feature>>emptyList() ).isEmpty() );
+   }
+
+   @SuppressWarnings( "unchecked" )
+   static private <OUTCOME> Classifier<OUTCOME> train( final File directory, final String... args ) throws Exception {
+      JarClassifierBuilder.trainAndPackage( directory, args );
+      return (Classifier<OUTCOME>)JarClassifierBuilder.fromTrainingDirectory( directory )
+                                                      .loadClassifierFromTrainingDirectory( directory );
+   }
+
+   static private <OUTCOME> void assertSameOutcomes( final Classifier<OUTCOME> classifier, final Random random )
+         throws Exception {
+      final BatchClassifier<OUTCOME> batchClassifier = new BatchClassifier<>( classifier );
+      assertTrue( batchClassifier.isBatched() );
+      final List<List<Feature>> featureLists = new ArrayList<>();
+      final List<OUTCOME> expected = new ArrayList<>();
+      for ( int i = 0; i < 200; i++ ) {
+         final List<Feature> features = randomFeatures( random );
+         if ( i % 10 == 0 ) {
+            // features that were never seen in training
+            features.add( new Feature( "Word", "unseen" + i ) );
+            features.add( new Feature( "Unseen", i ) );
+         }
+         featureLists.add( features );
+         expected.add( classifier.classify( features ) );
+      }
+      assertEquals( expected, batchClassifier.classify( featureLists ) );
+      assertTrue( new HashSet<>( expected ).size() > 1 );
+   }
+
+   static private List<Feature> randomFeatures( final Random random ) {
+      final List<Feature> features = new ArrayList<>();
+      final int count = 1 + random.nextInt( 5 );
+      for ( int i = 0; i < count; i++ ) {
+         features.add( new Feature( "Word", WORDS[ random.nextInt( WORDS.length ) ] ) );
+      }
+      features.add( new Feature( "Length", random.nextInt( 4 ) ) );
+      return features;
+   }
+
+}
@@ -1,12 +1,21 @@
 package org.apache.ctakes.core.cr;
 
+import org.apache.ctakes.core.config.ConfigParameterConstants;
+import org.apache.ctakes.core.util.DocumentIDAnnotationUtil;
+import org.apache.ctakes.core.util.SourceMetadataUtil;
 import org.apache.log4j.Logger;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
 import org.junit.Test;
 
 import java.io.File;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
 
 import static org.junit.Assert.*;
 
@@ -128,4 +137,146 @@ public class FileTreeReaderTester {
 
    // TODO createDocumentIdPrefix(..)
 
+   //
+   //    Streaming and prefetch
+   //
+
+   @Test
+   public void testStreamedReadMatchesListedRead() throws Exception {
+      final File rootDir = Files.createTempDirectory( "FileTreeReaderTester" ).toFile();
+      try {
+         writeNote( new File( rootDir, "patientB/note_2.txt" ), "B two" );
+         writeNote( new File( rootDir, "patientB/note_10.txt" ), "B ten\r\n" );
+         writeNote( new File( rootDir, "patientA/visit/note_1.txt" ), "A one" );
+         writeNote( new File( rootDir, "patientA/note_3.txt" ), "A three" );
+         final List<String> listed = readAll( rootDir, false, 0 );
+         assertEquals( 4, listed.size() );
+         assertEquals( listed, readAll( rootDir, true, 0 ) );
+         assertEquals( listed, readAll( rootDir, true, 2 ) );
+         assertEquals( listed, readAll( rootDir, false, 1 ) );
+      } finally {
+         Files.walk( rootDir.toPath() )
+              .sorted( Comparator.reverseOrder() )
+              .map( Path::toFile )
+              .forEach( File::delete );
+      }
+   }
+
+   @Test
+   public void testShardsPartitionTree() throws Exception {
+      final File rootDir = Files.createTempDirectory( "FileTreeReaderTester" ).toFile();
+      try {
+         for ( int p = 0; p < 12; p++ ) {
+            writeNote( new File( rootDir, "patient" + p + "/note_1.txt" ), "P" + p + " one" );
+            writeNote( new File( rootDir, "patient" + p + "/visit/note_2.txt" ), "P" + p + " two" );
+         }
+         final List<String> all = readAll( rootDir, false, 0 );
+         assertEquals( 24, all.size() );
+         for ( boolean stream : new boolean[]{ false, true } ) {
+            final Collection<String> sharded = new HashSet<>();
+            final Collection<String> shardedPatients = new HashSet<>();
+            for ( int i = 0; i < 3; i++ ) {
+               final List<String> shard = readAll( rootDir, stream, 0, i, 3 );
+               assertTrue( "Shard " + i + " is empty", !shard.isEmpty() );
+               shard.forEach( n -> assertTrue( "Read twice " + n, sharded.add( n ) ) );
+               // all notes for a patient are in the same shard
+               final Collection<String> patients = new HashSet<>();
+               shard.forEach( n -> patients.add( n.substring( 0, n.indexOf( ' ' ) ) ) );
+               patients.forEach( pt -> assertTrue( "Patient split " + pt, shardedPatients.add( pt ) ) );
+            }
+            assertEquals( new HashSet<>( all ), sharded );
+         }
+      } finally {
+         Files.walk( rootDir.toPath() )
+              .sorted( Comparator.reverseOrder() )
+              .map( Path::toFile )
+              .forEach( File::delete );
+      }
+   }
+
+   @Test( timeout = 30000 )
+   public void testPrefetchWalkFailureEndsCollection() throws Exception {
+      final File rootDir = Files.createTempDirectory( "FileTreeReaderTester" ).toFile();
+      try {
+         writeNote( new File( rootDir, "patientA/note_1.txt" ), "A one" );
+         writeNote( new File( rootDir, "patientB/note_1.txt" ), "B one" );
+         writeNote( new File( rootDir, "patientB/note_2.txt" ), "B two" );
+         final CollectionReader reader = CollectionReaderFactory.createReader( UnsortableTreeReader.class,
+               ConfigParameterConstants.PARAM_INPUTDIR, rootDir.getAbsolutePath(),
+               AbstractFileTreeReader.PARAM_STREAM_FILES, true,
+               AbstractFileTreeReader.PARAM_PREFETCH_COUNT, 1 );
+         final JCas jCas = JCasFactory.createJCas();
+         int read = 0;
+         int failed = 0;
+         while ( reader.hasNext() ) {
+            jCas.reset();
+            try {
+               reader.getNext( jCas.getCas() );
+               read++;
+            } catch ( IOException ioE ) {
+               failed++;
+            }
+         }
+         reader.close();
+         assertEquals( 1, read );
+         assertEquals( 1, failed );
+      } finally {
+         Files.walk( rootDir.toPath() )
+              .sorted( Comparator.reverseOrder() )
+              .map( Path::toFile )
+              .forEach( File::delete );
+      }
+   }
+
+   /**
+    * Fails to walk any directory holding more than one file.
+    */
+   static public final class UnsortableTreeReader extends AbstractFileTreeReader {
+      @Override
+      protected void readFile( final JCas jCas, final File file ) throws IOException {
+         jCas.setDocumentText( new String( Files.readAllBytes( file.toPath() ), StandardCharsets.UTF_8 ) );
+      }
+
+      @Override
+      protected Comparator<File> createFileComparator() {
+         return ( f1, f2 ) -> {
+            if ( f1.isFile() ) {
+               throw new IllegalStateException( "Cannot sort " + f1.getParent() );
+            }
+            return f1.compareTo( f2 );
+         };
+      }
+   }
+
+   static private void writeNote( final File file, final String text ) throws IOException {
+      file.getParentFile().mkdirs();
+      Files.write( file.toPath(), text.getBytes( StandardCharsets.UTF_8 ) );
+   }
+
+   static private List<String> readAll( final File rootDir, final boolean stream, final int prefetch )
+         throws Exception {
+      return readAll( rootDir, stream, prefetch, 0, 1 );
+   }
+
+   static private List<String> readAll( final File rootDir, final boolean stream, final int prefetch,
+                                        final int shardIndex, final int shardCount ) throws Exception {
+      final CollectionReader reader = CollectionReaderFactory.createReader( FileTreeReader.class,
+            ConfigParameterConstants.PARAM_INPUTDIR, rootDir.getAbsolutePath(),
+            AbstractFileTreeReader.PARAM_STREAM_FILES, stream,
+            AbstractFileTreeReader.PARAM_PREFETCH_COUNT, prefetch,
+            AbstractFileTreeReader.PARAM_KEEP_CR, false,
+            ReaderShard.PARAM_SHARD_INDEX, shardIndex,
+            ReaderShard.PARAM_SHARD_COUNT, shardCount );
+      final List<String> notes = new ArrayList<>();
+      final JCas jCas = JCasFactory.createJCas();
+      while ( reader.hasNext() ) {
+         jCas.reset();
+         reader.getNext( jCas.getCas() );
+         notes.add( SourceMetadataUtil.getPatientIdentifier( jCas ) + " "
+                    + DocumentIDAnnotationUtil.getDocumentID( jCas ) + " " + jCas.getDocumentText() );
+      }
+      reader.close();
+      return notes;
+   }
+
 }
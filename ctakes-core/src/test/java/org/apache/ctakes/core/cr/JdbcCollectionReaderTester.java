@@ -0,0 +1,26 @@
+package org.apache.ctakes.core.cr;
+
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.junit.Test;
+
+import static org.junit.Assert.fail;
+
+public class JdbcCollectionReaderTester {
+
+   @Test
+   public void testShardingRequiresDocIdColumns() {
+      try {
+         CollectionReaderFactory.createReader( JdbcCollectionReader.class,
+               JdbcCollectionReader.PARAM_SQL, "SELECT NOTE_TEXT FROM NOTES",
+               JdbcCollectionReader.PARAM_DOCTEXT_COL, "NOTE_TEXT",
+               JdbcCollectionReader.PARAM_DB_CONN_RESRC, "DbConnection",
+               ReaderShard.PARAM_SHARD_INDEX, 0,
+               ReaderShard.PARAM_SHARD_COUNT, 2 );
+         fail( "Sharding by row number should not be allowed" );
+      } catch ( ResourceInitializationException riE ) {
+         // expected
+      }
+   }
+
+}
@@ -0,0 +1,277 @@
+package org.apache.ctakes.core.cr.jdbc;
+
+import org.apache.ctakes.core.cr.ReaderShard;
+import org.apache.ctakes.core.util.DocumentIDAnnotationUtil;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.Progress;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reads notes from an in memory hsql database.
+ */
+public class JdbcNotesReaderTester {
+
+   static private final String DRIVER = "org.hsqldb.jdbc.JDBCDriver";
+   static private final String USER = "SA";
+   static private final String PASS = "";
+   static private final int NOTE_COUNT = 25;
+   static private final long START_MILLIS = Timestamp.valueOf( "2020-01-01 00:00:00" ).getTime();
+
+   @Rule
+   public TemporaryFolder _folder = new TemporaryFolder();
+
+   private String _url;
+   private Connection _connection;
+
+   @Before
+   public void createNotes() throws Exception {
+      _url = "jdbc:hsqldb:mem:" + _folder.getRoot().getName();
+      _connection = DriverManager.getConnection( _url, USER, PASS );
+      try ( Statement statement = _connection.createStatement() ) {
+         statement.execute( "CREATE TABLE NOTES ( NOTE_ID INTEGER PRIMARY KEY, NOTE_CODE VARCHAR(10),"
+                            + " NOTE_TIME TIMESTAMP, NOTE_TEXT VARCHAR(100) )" );
+      }
+      try ( PreparedStatement insert = _connection.prepareStatement( "INSERT INTO NOTES VALUES ( ?, ?, ?, ? )" ) ) {
+         // insert out of key order
+         for ( int i = NOTE_COUNT; i > 0; i-- ) {
+            insert.setInt( 1, i );
+            insert.setString( 2, String.format( "%04d", i * 10 ) );
+            insert.setTimestamp( 3, new Timestamp( START_MILLIS + i * 1000L + 123 ) );
+            insert.setString( 4, "Note number " + i );
+            insert.executeUpdate();
+         }
+      }
+   }
+
+   @After
+   public void dropNotes() throws SQLException {
+      try ( Statement statement = _connection.createStatement() ) {
+         statement.execute( "SHUTDOWN" );
+      }
+      _connection.close();
+   }
+
+   @Test
+   public void testPaging() throws Exception {
+      final CollectionReader reader = createReader( "NOTE_ID", 10, null );
+      assertEquals( expectedIds( 1, NOTE_COUNT ), readIds( reader, Integer.MAX_VALUE ) );
+      reader.close();
+   }
+
+   @Test
+   public void testPageSizeOfRowCount() throws Exception {
+      final CollectionReader reader = createReader( "NOTE_ID", NOTE_COUNT, null );
+      assertEquals( expectedIds( 1, NOTE_COUNT ), readIds( reader, Integer.MAX_VALUE ) );
+      reader.close();
+   }
+
+   @Test
+   public void testShardedPaging() throws Exception {
+      final List<String> ids = new ArrayList<>();
+      for ( int shard = 0; shard < 3; shard++ ) {
+         final CollectionReader reader = CollectionReaderFactory.createReader( JdbcNotesReader.class,
+               readerParameters( "NOTE_ID", 4, null,
+                     ReaderShard.PARAM_SHARD_INDEX, shard, ReaderShard.PARAM_SHARD_COUNT, 3 ) );
+         final List<String> shardIds = readIds( reader, Integer.MAX_VALUE );
+         reader.close();
+         for ( String id : shardIds ) {
+            assertEquals( shard, Integer.parseInt( id ) % 3 );
+         }
+         ids.addAll( shardIds );
+      }
+      ids.sort( ( id1, id2 ) -> Integer.parseInt( id1 ) - Integer.parseInt( id2 ) );
+      assertEquals( expectedIds( 1, NOTE_COUNT ), ids );
+   }
+
+   @Test
+   public void testShardedRowsWithoutKey() throws Exception {
+      final List<String> ids = new ArrayList<>();
+      for ( int shard = 0; shard < 3; shard++ ) {
+         final CollectionReader reader = CollectionReaderFactory.createReader( JdbcNotesReader.class,
+               readerParameters( "", 4, null,
+                     ReaderShard.PARAM_SHARD_INDEX, shard, ReaderShard.PARAM_SHARD_COUNT, 3 ) );
+         ids.addAll( readIds( reader, Integer.MAX_VALUE ) );
+         reader.close();
+      }
+      ids.sort( ( id1, id2 ) -> Integer.parseInt( id1 ) - Integer.parseInt( id2 ) );
+      assertEquals( expectedIds( 1, NOTE_COUNT ), ids );
+   }
+
+   @Test
+   public void testShardingRequiresStableKey() throws Exception {
+      final List<Object> parameters = new ArrayList<>( Arrays.asList( readerParameters( "", 4, null,
+            ReaderShard.PARAM_SHARD_INDEX, 1, ReaderShard.PARAM_SHARD_COUNT, 3 ) ) );
+      final int idColumnsIndex = parameters.indexOf( JdbcNotesReader.PARAM_DOCID_COLS );
+      parameters.subList( idColumnsIndex, idColumnsIndex + 2 ).clear();
+      try {
+         CollectionReaderFactory.createReader( JdbcNotesReader.class, parameters.toArray() );
+         fail( "Sharding by row number should not be allowed" );
+      } catch ( ResourceInitializationException riE ) {
+         // expected
+      }
+   }
+
+   @Test
+   public void testResume() throws Exception {
+      final File checkpoint = new File( _folder.getRoot(), "checkpoint" );
+      final CollectionReader reader = createReader( "NOTE_ID", 10, checkpoint );
+      assertEquals( expectedIds( 1, 12 ), readIds( reader, 12 ) );
+      // the next row has been fetched by hasNext, but not read
+      assertTrue( reader.hasNext() );
+      reader.close();
+      final CollectionReader resumed = createReader( "NOTE_ID", 10, checkpoint );
+      assertEquals( expectedIds( 13, NOTE_COUNT ), readIds( resumed, Integer.MAX_VALUE ) );
+      resumed.close();
+      final CollectionReader finished = createReader( "NOTE_ID", 10, checkpoint );
+      assertFalse( finished.hasNext() );
+      finished.close();
+   }
+
+   @Test
+   public void testResumeTextKey() throws Exception {
+      // "0130" would be resumed after 130 if read as a number
+      assertResume( "NOTE_CODE", "java.lang.String\n0130\n13 13" );
+   }
+
+   @Test
+   public void testResumeTimestampKey() throws Exception {
+      assertResume( "NOTE_TIME", "java.sql.Timestamp\n2020-01-01 00:00:13.123\n13 13" );
+   }
+
+   @Test
+   public void testResumeUntypedCheckpoint() throws Exception {
+      final File checkpoint = new File( _folder.getRoot(), "checkpoint" );
+      Files.write( checkpoint.toPath(), "13".getBytes( StandardCharsets.UTF_8 ) );
+      final CollectionReader reader = createReader( "NOTE_ID", 10, checkpoint );
+      assertEquals( expectedIds( 14, NOTE_COUNT ), readIds( reader, Integer.MAX_VALUE ) );
+      reader.close();
+   }
+
+   @Test
+   public void testResumeRowNumberIds() throws Exception {
+      final File checkpoint = new File( _folder.getRoot(), "checkpoint" );
+      // without id columns the document ids are row numbers
+      final List<Object> parameterList = new ArrayList<>( Arrays.asList( readerParameters( "NOTE_ID", 10, checkpoint ) ) );
+      final int idColumnsIndex = parameterList.indexOf( JdbcNotesReader.PARAM_DOCID_COLS );
+      parameterList.subList( idColumnsIndex, idColumnsIndex + 2 ).clear();
+      final Object[] parameters = parameterList.toArray();
+      final CollectionReader reader = CollectionReaderFactory.createReader( JdbcNotesReader.class, parameters );
+      assertEquals( expectedIds( 1, 12 ), readRowNumberIds( reader, 12 ) );
+      reader.close();
+      // ids made from row numbers continue after those of the first run
+      final CollectionReader resumed = CollectionReaderFactory.createReader( JdbcNotesReader.class, parameters );
+      assertEquals( expectedIds( 13, NOTE_COUNT ), readRowNumberIds( resumed, Integer.MAX_VALUE ) );
+      resumed.close();
+   }
+
+   @Test
+   public void testPagedProgress() throws Exception {
+      final File checkpoint = new File( _folder.getRoot(), "checkpoint" );
+      final CollectionReader reader = createReader( "NOTE_ID", 10, checkpoint );
+      assertProgress( 0, reader );
+      readIds( reader, 12 );
+      assertProgress( 12, reader );
+      reader.close();
+      final CollectionReader resumed = createReader( "NOTE_ID", 10, checkpoint );
+      assertProgress( 12, resumed );
+      readIds( resumed, Integer.MAX_VALUE );
+      assertProgress( NOTE_COUNT, resumed );
+      resumed.close();
+   }
+
+   static private void assertProgress( final long completed, final CollectionReader reader ) {
+      final Progress progress = reader.getProgress()[ 0 ];
+      assertEquals( completed, progress.getCompleted() );
+      assertEquals( NOTE_COUNT, progress.getTotal() );
+   }
+
+   private void assertResume( final String keyColumn, final String expectedCheckpoint ) throws Exception {
+      final File checkpoint = new File( _folder.getRoot(), keyColumn + ".checkpoint" );
+      final CollectionReader reader = createReader( keyColumn, 4, checkpoint );
+      assertEquals( expectedIds( 1, 13 ), readIds( reader, 13 ) );
+      reader.close();
+      assertEquals( expectedCheckpoint,
+            new String( Files.readAllBytes( checkpoint.toPath() ), StandardCharsets.UTF_8 ) );
+      final CollectionReader resumed = createReader( keyColumn, 4, checkpoint );
+      assertEquals( expectedIds( 14, NOTE_COUNT ), readIds( resumed, Integer.MAX_VALUE ) );
+      resumed.close();
+   }
+
+   private CollectionReader createReader( final String keyColumn, final int pageSize, final File checkpoint )
+         throws Exception {
+      return CollectionReaderFactory.createReader( JdbcNotesReader.class,
+            readerParameters( keyColumn, pageSize, checkpoint ) );
+   }
+
+   private Object[] readerParameters( final String keyColumn, final int pageSize, final File checkpoint,
+                                      final Object... moreParameters ) {
+      final List<Object> parameters = new ArrayList<>( Arrays.asList(
+            JdbcNotesReader.PARAM_DB_DRIVER, DRIVER,
+            JdbcNotesReader.PARAM_DB_URL, _url,
+            JdbcNotesReader.PARAM_DB_USER, USER,
+            JdbcNotesReader.PARAM_DB_PASS, PASS,
+            JdbcNotesReader.PARAM_SQL, "SELECT NOTE_ID, NOTE_CODE, NOTE_TIME, NOTE_TEXT FROM NOTES",
+            JdbcNotesReader.PARAM_DOCTEXT_COL, "NOTE_TEXT",
+            JdbcNotesReader.PARAM_DOCID_COLS, new String[] { "NOTE_ID" },
+            JdbcNotesReader.PARAM_KEY_COLUMN, keyColumn,
+            JdbcNotesReader.PARAM_PAGE_SIZE, pageSize ) );
+      if ( checkpoint != null ) {
+         parameters.add( JdbcNotesReader.PARAM_CHECKPOINT_FILE );
+         parameters.add( checkpoint.getPath() );
+      }
+      parameters.addAll( Arrays.asList( moreParameters ) );
+      return parameters.toArray();
+   }
+
+   static private List<String> readIds( final CollectionReader reader, final int maxCount ) throws Exception {
+      final JCas jCas = JCasFactory.createJCas();
+      final List<String> ids = new ArrayList<>();
+      while ( ids.size() < maxCount && reader.hasNext() ) {
+         jCas.reset();
+         reader.getNext( jCas.getCas() );
+         final String id = DocumentIDAnnotationUtil.getDocumentID( jCas );
+         assertEquals( "Note number " + id, jCas.getDocumentText() );
+         ids.add( id );
+      }
+      return ids;
+   }
+
+   static private List<String> readRowNumberIds( final CollectionReader reader, final int maxCount )
+         throws Exception {
+      final JCas jCas = JCasFactory.createJCas();
+      final List<String> ids = new ArrayList<>();
+      while ( ids.size() < maxCount && reader.hasNext() ) {
+         jCas.reset();
+         reader.getNext( jCas.getCas() );
+         ids.add( DocumentIDAnnotationUtil.getDocumentID( jCas ) );
+      }
+      return ids;
+   }
+
+   static private List<String> expectedIds( final int first, final int last ) {
+      final List<String> ids = new ArrayList<>();
+      for ( int i = first; i <= last; i++ ) {
+         ids.add( String.valueOf( i ) );
+      }
+      return ids;
+   }
+
+}
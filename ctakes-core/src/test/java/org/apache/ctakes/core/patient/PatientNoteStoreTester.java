@@ -0,0 +1,170 @@
+package org.apache.ctakes.core.patient;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.cas.CASException;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PatientNoteStoreTester {
+
+   static private final String ENGINE_NAME = "PatientNoteStoreTester";
+   static private final String PATIENT_ID = "SpilledPatient";
+   static private final String DOC_TEXT_1 = "Patient has a headache.";
+   static private final String DOC_TEXT_2 = "Patient denies fever.";
+
+   @Test
+   public void testSpillAndReload() throws UIMAException, CASException {
+      final PatientNoteStore store = PatientNoteStore.getInstance();
+      store.registerEngine( ENGINE_NAME );
+      // Any stored note exceeds a single byte, so each patient is spilled right after it is stored.
+      store.setMemoryBudget( 1 );
+      try {
+         store.setWantedDocCount( PATIENT_ID, 2 );
+         store.storeAllViews( PATIENT_ID, "doc1", createNote( DOC_TEXT_1 ) );
+         assertEquals( 0, store.getMemoryUsed() );
+         store.storeAllViews( PATIENT_ID, "doc2", createNote( DOC_TEXT_2 ) );
+         assertEquals( 0, store.getMemoryUsed() );
+         assertEquals( 2, store.getStoredDocCount( PATIENT_ID ) );
+
+         final Map<String, JCas> doc1Views = store.getStoredViews( PATIENT_ID, "doc1" );
+         assertEquals( DOC_TEXT_1, doc1Views.get( "_InitialView" ).getDocumentText() );
+         assertTrue( store.getMemoryUsed() > 0 );
+
+         final JCas patientCas = store.popPatientCas( PATIENT_ID, ENGINE_NAME );
+         assertNotNull( patientCas );
+         final String viewName = PatientNoteStore.getInternalViewname( PATIENT_ID, "doc2", "_InitialView" );
+         assertEquals( DOC_TEXT_2, patientCas.getView( viewName ).getDocumentText() );
+         assertTrue( store.getStoredDocIds( PATIENT_ID ).isEmpty() );
+         assertEquals( 0, store.getMemoryUsed() );
+      } finally {
+         store.setMemoryBudget( 0 );
+      }
+   }
+
+   @Test
+   public void testPinnedPatientIsNotSpilled() throws UIMAException {
+      final PatientNoteStore store = PatientNoteStore.getInstance();
+      final String pinnedId = "PinnedPatient";
+      final String otherId = "OtherPatient";
+      store.setMemoryBudget( 1 );
+      try {
+         store.storeAllViews( pinnedId, "doc1", createNote( DOC_TEXT_1 ) );
+         assertEquals( 0, store.getMemoryUsed() );
+         final PatientNoteStore.PatientHandle handle = store.usePatient( pinnedId );
+         final JCas view = handle.getStoredViews( "doc1" ).get( "_InitialView" );
+         final long pinnedSize = store.getMemoryUsed();
+         assertTrue( pinnedSize > 0 );
+         // Storing another patient exceeds the budget, but only the other patient is spilled.
+         store.storeAllViews( otherId, "doc1", createNote( DOC_TEXT_2 ) );
+         assertEquals( pinnedSize, store.getMemoryUsed() );
+         assertEquals( DOC_TEXT_1, view.getDocumentText() );
+         assertEquals( DOC_TEXT_1, handle.getStoredView( "doc1", "_InitialView" ).getDocumentText() );
+         handle.close();
+         assertEquals( 0, store.getMemoryUsed() );
+         try {
+            handle.getPatientCas();
+            fail( "A closed handle should not return the patient cas" );
+         } catch ( IllegalStateException isE ) {
+            // expected
+         }
+         // Views returned without a handle keep their patient in memory until each fetch is released.
+         assertEquals( DOC_TEXT_2, store.getStoredView( otherId, "doc1", "_InitialView" ).getDocumentText() );
+         assertNotNull( store.getFullPatientCas( otherId ) );
+         store.setMemoryBudget( 1 );
+         assertTrue( store.getMemoryUsed() > 0 );
+         store.releasePatient( otherId );
+         assertTrue( store.getMemoryUsed() > 0 );
+         store.releasePatient( otherId );
+         assertEquals( 0, store.getMemoryUsed() );
+         assertEquals( DOC_TEXT_2, store.getStoredView( otherId, "doc1", "_InitialView" ).getDocumentText() );
+         assertTrue( store.getMemoryUsed() > 0 );
+         store.removePatient( otherId );
+         assertEquals( 0, store.getMemoryUsed() );
+         assertNull( store.usePatient( otherId ) );
+      } finally {
+         store.removePatient( pinnedId );
+         store.removePatient( otherId );
+         store.setMemoryBudget( 0 );
+      }
+   }
+
+   @Test
+   public void testStoreForSpilledPatientAddsFile() throws Exception {
+      final PatientNoteStore store = PatientNoteStore.getInstance();
+      final String patientId = "AppendedPatient";
+      final File spillDir = Files.createTempDirectory( "PatientNoteStoreTester" ).toFile();
+      store.setSpillDirectory( spillDir );
+      store.setMemoryBudget( 1 );
+      try {
+         store.storeAllViews( patientId, "doc1", createNote( DOC_TEXT_1 ) );
+         final File[] firstFiles = spillDir.listFiles();
+         assertEquals( 1, firstFiles.length );
+         final long firstLength = firstFiles[ 0 ].length();
+         // The spilled patient is not read back, the new views get a file of their own.
+         store.storeAllViews( patientId, "doc2", createNote( DOC_TEXT_2 ) );
+         store.storeView( patientId, "doc3", "Copy", "_InitialView", createNote( DOC_TEXT_2 ) );
+         assertEquals( 0, store.getMemoryUsed() );
+         assertEquals( 3, spillDir.listFiles().length );
+         assertEquals( firstLength, firstFiles[ 0 ].length() );
+         assertEquals( Arrays.asList( "doc1", "doc2", "doc3" ), store.getStoredDocIds( patientId ) );
+         try ( PatientNoteStore.PatientHandle handle = store.usePatient( patientId ) ) {
+            assertEquals( DOC_TEXT_1, handle.getStoredView( "doc1", "_InitialView" ).getDocumentText() );
+            assertEquals( 0, spillDir.listFiles().length );
+            assertEquals( DOC_TEXT_2, handle.getStoredView( "doc2", "_InitialView" ).getDocumentText() );
+            assertEquals( DOC_TEXT_2, handle.getStoredView( "doc3", "Copy" ).getDocumentText() );
+            assertEquals( 1, handle.getStoredViews( "doc3" ).size() );
+         }
+         assertEquals( 1, spillDir.listFiles().length );
+      } finally {
+         store.removePatient( patientId );
+         store.setMemoryBudget( 0 );
+         store.setSpillDirectory( null );
+      }
+      assertEquals( 0, spillDir.listFiles().length );
+      spillDir.delete();
+   }
+
+   @Test
+   public void testLeastRecentlyUsedIsSpilled() throws UIMAException {
+      final PatientNoteStore store = PatientNoteStore.getInstance();
+      final String firstId = "FirstUsedPatient";
+      final String secondId = "SecondUsedPatient";
+      try {
+         store.storeAllViews( firstId, "doc1", createNote( DOC_TEXT_1 ) );
+         final long firstSize = store.getMemoryUsed();
+         store.storeAllViews( secondId, "doc1", createNote( DOC_TEXT_2 ) );
+         final long bothSize = store.getMemoryUsed();
+         // Using the first patient makes the second patient the least recently used
+         try ( PatientNoteStore.PatientHandle handle = store.usePatient( firstId ) ) {
+            handle.getPatientCas();
+         }
+         store.setMemoryBudget( bothSize - 1 );
+         assertEquals( firstSize, store.getMemoryUsed() );
+         // Reading the second patient back makes the first patient the least recently used
+         try ( PatientNoteStore.PatientHandle handle = store.usePatient( secondId ) ) {
+            assertNotNull( handle.getPatientCas() );
+         }
+         assertEquals( bothSize - firstSize, store.getMemoryUsed() );
+      } finally {
+         store.removePatient( firstId );
+         store.removePatient( secondId );
+         store.setMemoryBudget( 0 );
+      }
+      assertEquals( 0, store.getMemoryUsed() );
+   }
+
+   static private JCas createNote( final String text ) throws UIMAException {
+      final JCas jCas = JCasFactory.createJCas();
+      jCas.setDocumentText( text );
+      return jCas;
+   }
+
+}
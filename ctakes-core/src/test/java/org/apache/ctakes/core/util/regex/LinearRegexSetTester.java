@@ -0,0 +1,387 @@
+package org.apache.ctakes.core.util.regex;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class LinearRegexSetTester {
+
+   static private final int SECTION_FLAGS = Pattern.MULTILINE | Pattern.CASE_INSENSITIVE;
+
+   static private final String NOTE = "Patient seen today.\n"
+                                      + "HISTORY OF PRESENT ILLNESS:\n"
+                                      + "  The patient has a cough.\r\n"
+                                      + "Medications :\r\n"
+                                      + "aspirin\n"
+                                      + "-------\n"
+                                      + "\tfamily history\n"
+                                      + "FH noted.  Plan:\n"
+                                      + "plan\n";
+
+   static private final List<Pattern> SECTION_PATTERNS = Arrays.asList(
+         Pattern.compile( "^[\\t ]*(?:(?:CC\\/HPI:)|(?:S:)|(?:(?:HISTORY OF (?:THE )?(?:PRESENT |PHYSICAL )?ILLNESS)"
+                          + "(?: \\(HPI(?:, PROBLEM BY PROBLEM)?\\))?[\\t ]*:?))[\\t ]*$", SECTION_FLAGS ),
+         Pattern.compile( "^[\\t ]*(?:CURRENT )?MEDICATIONS?[\\t ]*:?[\\t ]*$", SECTION_FLAGS ),
+         Pattern.compile( "^[\\t ]*(?:FAMILY (?:MEDICAL )?HISTORY)|(?:HISTORY (?:OF )?FAMILY MEMBER DISEASES?)"
+                          + "|(?:FAM HX)|FH|FMH|FMHX|FHX[\\t ]*:?[\\t ]*$", SECTION_FLAGS ),
+         Pattern.compile( "^[\\t ]*(?<NAME>(?:ASSESSMENT AND )?PLAN)[\\t ]*:?[\\t ]*$", SECTION_FLAGS ),
+         Pattern.compile( "^[\\t ]*[_\\-=]{4,}[\\t ]*$", Pattern.MULTILINE ),
+         Pattern.compile( "\\A<\\?xml (?:[^>]*>)*", SECTION_FLAGS ) );
+
+
+   @Test
+   public void testSectionPatterns() {
+      final LinearRegexSet regexSet = new LinearRegexSet( SECTION_PATTERNS );
+      assertEquals( findAll( SECTION_PATTERNS, NOTE ), toStrings( regexSet.findMatches( NOTE ) ) );
+      final String xml = "<?xml version=\"1.0\"?><doc>text</doc>";
+      assertEquals( findAll( SECTION_PATTERNS, xml ), toStrings( regexSet.findMatches( xml ) ) );
+   }
+
+   @Test
+   public void testNamedGroup() {
+      final LinearRegexSet regexSet = new LinearRegexSet( SECTION_PATTERNS.subList( 3, 4 ) );
+      final List<LinearRegexSet.Match> matches = regexSet.findMatches( NOTE );
+      assertEquals( 1, matches.size() );
+      assertEquals( "plan", matches.get( 0 ).group( "NAME" ) );
+      try {
+         matches.get( 0 ).group( "NO_GROUP" );
+         fail( "Expected IllegalArgumentException for an unknown group" );
+      } catch ( IllegalArgumentException iaE ) {
+         // expected
+      }
+   }
+
+   @Test
+   public void testPreference() {
+      final List<Pattern> patterns = Arrays.asList(
+            Pattern.compile( "a|ab" ),
+            Pattern.compile( "ab|a" ),
+            Pattern.compile( "a+?b?" ),
+            Pattern.compile( "(?:a|b)*" ),
+            Pattern.compile( "\\bb\\w*" ),
+            Pattern.compile( "(?:x?)*a" ),
+            Pattern.compile( "$", Pattern.MULTILINE ) );
+      final String text = "aab ab\r\nbab\nb";
+      assertEquals( findAll( patterns, text ), toStrings( new LinearRegexSet( patterns ).findMatches( text ) ) );
+   }
+
+   @Test
+   public void testSupported() {
+      assertTrue( LinearRegexSet.isSupported( Pattern.compile( "^[\\t ]*[^\\s]{1,3}?\\.\\u0041\\x42(?<N>c)$" ) ) );
+      assertFalse( LinearRegexSet.isSupported( Pattern.compile( "a(?=b)" ) ) );
+      assertFalse( LinearRegexSet.isSupported( Pattern.compile( "(a)\\1" ) ) );
+      assertFalse( LinearRegexSet.isSupported( Pattern.compile( "a*+" ) ) );
+      assertFalse( LinearRegexSet.isSupported( Pattern.compile( "(?i)a" ) ) );
+      assertFalse( LinearRegexSet.isSupported( Pattern.compile( "a", Pattern.COMMENTS ) ) );
+   }
+
+   /**
+    * (a+)+b backtracks exponentially in java regex when there is no b
+    */
+   @Test
+   public void testNoBacktracking() {
+      final char[] chars = new char[ 100000 ];
+      Arrays.fill( chars, 'a' );
+      final LinearRegexSet regexSet = new LinearRegexSet( Collections.singletonList( Pattern.compile( "(a+)+b" ) ) );
+      assertTrue( regexSet.findMatches( new String( chars ) ).isEmpty() );
+   }
+
+
+   /**
+    * The preferred .*c alternative keeps every match from settling until the end of the line,
+    * which used to nest one catch up scan per match
+    */
+   @Test( timeout = 60000 )
+   public void testLongSingleLine() throws InterruptedException {
+      final StringBuilder sb = new StringBuilder();
+      for ( int i = 0; i < 3000; i++ ) {
+         sb.append( "ab " );
+      }
+      final String text = sb.toString();
+      final List<Pattern> patterns = Arrays.asList(
+            Pattern.compile( "a(?:.*c|b)" ),
+            Pattern.compile( "b" ),
+            Pattern.compile( "(?:a|ab|b)(?:.*x)?" ) );
+      final List<String> expected = findAll( patterns, text );
+      assertEquals( 12000, expected.size() );
+      // a small stack, so that nested scans overflow no matter the stack size of the jvm
+      final LinearRegexSet regexSet = new LinearRegexSet( patterns );
+      final List<List<String>> actual = new ArrayList<>();
+      final Throwable[] error = new Throwable[ 1 ];
+      final Thread thread = new Thread( null, () -> {
+         try {
+            actual.add( toStrings( regexSet.findMatches( text ) ) );
+         } catch ( Throwable t ) {
+            error[ 0 ] = t;
+         }
+      }, "SmallStack", 128 * 1024 );
+      thread.start();
+      thread.join();
+      assertNull( String.valueOf( error[ 0 ] ), error[ 0 ] );
+      assertEquals( expected, actual.get( 0 ) );
+   }
+
+   @Test
+   public void testLongSingleLineWithLateEnd() {
+      final StringBuilder sb = new StringBuilder();
+      for ( int i = 0; i < 2000; i++ ) {
+         sb.append( "ab " );
+      }
+      // the preferred alternative finally matches, once
+      sb.append( 'c' );
+      final String text = sb.toString();
+      final List<Pattern> patterns = Collections.singletonList( Pattern.compile( "a(?:.*c|b)" ) );
+      final List<String> expected = findAll( patterns, text );
+      assertEquals( 1, expected.size() );
+      assertEquals( expected, toStrings( new LinearRegexSet( patterns ).findMatches( text ) ) );
+   }
+
+   @Test
+   public void testEmptyMatches() {
+      assertSameMatches( "ab\n\nba b", "", "a*", "x*?", "\\b", "\\B", "^", "$", "(?:a|)" );
+      assertSameMatches( "", "", "a*", "^", "$", "\\z", "a" );
+   }
+
+   @Test
+   public void testQuantifiers() {
+      assertSameMatches( "aaaa ab abab ababab aab b",
+            "a{2}", "a{2,}", "a{1,3}?", "(?:ab){2,3}", "(?:ab){2,}?", "a??b", "a*?b", "a+b+", "b?a?b", "(?:a{0,2}b)+" );
+   }
+
+   @Test
+   public void testCharacterClasses() {
+      assertSameMatches( "Mail jo.smith-2@mayo.edu [x] 42 tab\there 3.14 _id a-z",
+            "[\\w.-]+@[\\w.-]+", "[^\\d\\s]+", "\\d{1,2}", "\\W+", "\\S+", "[\\[\\]]", "[a-cx-z]+", "[-a]",
+            "[\\t]", "[^a-z\\s]", "\\d+\\.\\d+", "\\u0041|\\x61|\\0141", "[.]" );
+   }
+
+   @Test
+   public void testCaseInsensitive() {
+      final String text = "History HISTORY history hIsToRy Plan: plan";
+      assertSameMatches( text, Pattern.CASE_INSENSITIVE, "history", "[h-i]+s", "PLAN:?", "[^a-z ]+" );
+   }
+
+   @Test
+   public void testAnchors() {
+      final String text = "a\nab\r\nba\r\n\rb\na";
+      assertSameMatches( text, 0, "\\Aa", "a\\z", "a\\Z", "^a", "a$", "^a$", "b$", "\\Bb", "\\ba" );
+      assertSameMatches( text, Pattern.MULTILINE, "^a", "a$", "^a$", "^$", "^", "$", "^b|a$" );
+      assertSameMatches( "a\n", 0, "a$", "a\\Z", "a\\z", "$" );
+      assertSameMatches( "a\r\n", Pattern.MULTILINE, "a$", "$", "^" );
+   }
+
+   @Test
+   public void testDotAll() {
+      final String text = "one\ntwo\r\nthree\rfour\u0085five six";
+      assertSameMatches( text, 0, ".+", "o.t", "e.f", ".*" );
+      assertSameMatches( text, Pattern.DOTALL, ".+", "o.t", "e.f", ".*?x" );
+   }
+
+   @Test
+   public void testAlternationOrder() {
+      assertSameMatches( "abcabcd abd acd",
+            "abc|abcd", "abcd|abc", "a(?:b|bc)d?", "(?:a|ab)(?:c|bcd)", "(?:x|)abc", "a(?:bc|b)*" );
+   }
+
+   @Test
+   public void testGroups() {
+      final List<Pattern> patterns = Arrays.asList(
+            Pattern.compile( "(?<KEY>[a-z]+)\\s*:\\s*(?<VALUE>\\d+)?" ),
+            Pattern.compile( "(?<FIRST>a)|(?<SECOND>b)" ),
+            Pattern.compile( "(?:(?<LAST>x)y)+" ) );
+      final String text = "bp: 120 hr:  pulse :88 ab xyxyxy";
+      final LinearRegexSet regexSet = new LinearRegexSet( patterns );
+      final List<LinearRegexSet.Match> matches = regexSet.findMatches( text );
+      assertEquals( findAll( patterns, text ), toStrings( matches ) );
+      final String[][] groupNames = { { "KEY", "VALUE" }, { "FIRST", "SECOND" }, { "LAST" } };
+      int m = 0;
+      for ( int i = 0; i < patterns.size(); i++ ) {
+         final Matcher matcher = patterns.get( i ).matcher( text );
+         while ( matcher.find() ) {
+            for ( String name : groupNames[ i ] ) {
+               assertEquals( patterns.get( i ).pattern() + " " + name, matcher.group( name ),
+                     matches.get( m ).group( name ) );
+            }
+            m++;
+         }
+      }
+   }
+
+   @Test
+   public void testManyPatterns() {
+      final List<Pattern> patterns = new ArrayList<>();
+      for ( int i = 0; i < 200; i++ ) {
+         patterns.add( Pattern.compile( "\\b(?:word" + i + "|w" + i + "d)\\b", Pattern.CASE_INSENSITIVE ) );
+      }
+      patterns.add( Pattern.compile( "\\d+" ) );
+      final StringBuilder sb = new StringBuilder();
+      final Random random = new Random( 3 );
+      for ( int i = 0; i < 2000; i++ ) {
+         final int n = random.nextInt( 250 );
+         sb.append( random.nextBoolean() ? "Word" : "w" ).append( n ).append( random.nextBoolean() ? "d " : " \n" );
+      }
+      final String text = sb.toString();
+      assertEquals( findAll( patterns, text ), toStrings( new LinearRegexSet( patterns ).findMatches( text ) ) );
+   }
+
+   @Test
+   public void testLongText() {
+      final StringBuilder sb = new StringBuilder();
+      while ( sb.length() < 200000 ) {
+         sb.append( NOTE );
+      }
+      final String text = sb.toString();
+      assertEquals( findAll( SECTION_PATTERNS, text ),
+            toStrings( new LinearRegexSet( SECTION_PATTERNS ).findMatches( text ) ) );
+   }
+
+   @Test
+   public void testRandomExpressions() {
+      final Random random = new Random( 17 );
+      for ( int i = 0; i < 500; i++ ) {
+         final List<Pattern> patterns = new ArrayList<>();
+         for ( int j = 0; j < 4; j++ ) {
+            final int flags = random.nextInt( 4 ) == 0 ? Pattern.MULTILINE : 0;
+            patterns.add( Pattern.compile( randomExpression( random, 3 ).__text, flags ) );
+         }
+         final StringBuilder text = new StringBuilder();
+         final int length = random.nextInt( 40 );
+         for ( int j = 0; j < length; j++ ) {
+            text.append( "abc \n".charAt( random.nextInt( 5 ) ) );
+         }
+         assertEquals( patterns + " " + text, findAll( patterns, text.toString() ),
+               toStrings( new LinearRegexSet( patterns ).findMatches( text ) ) );
+      }
+   }
+
+   @Test
+   public void testConcurrentScans() throws Exception {
+      final LinearRegexSet regexSet = new LinearRegexSet( SECTION_PATTERNS );
+      final List<String> expected = findAll( SECTION_PATTERNS, NOTE );
+      final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+      try {
+         final List<Future<List<String>>> futures = new ArrayList<>();
+         for ( int i = 0; i < 16; i++ ) {
+            futures.add( executor.submit( () -> toStrings( regexSet.findMatches( NOTE ) ) ) );
+         }
+         for ( Future<List<String>> future : futures ) {
+            assertEquals( expected, future.get() );
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   @Test
+   public void testUnsupported() {
+      for ( String regex : new String[] { "(?<=a)b", "a(?!b)", "(?<N>a)\\k<N>", "a?+", "a{2}+", "(?i:a)", "[a&&b]",
+                                          "[a[b]]", "\\p{Alpha}", "(?>a)", "\\G" } ) {
+         assertFalse( regex, LinearRegexSet.isSupported( Pattern.compile( regex ) ) );
+         try {
+            new LinearRegexSet( Collections.singletonList( Pattern.compile( regex ) ) );
+            fail( "Expected IllegalArgumentException for " + regex );
+         } catch ( IllegalArgumentException iaE ) {
+            // expected
+         }
+      }
+      assertFalse( LinearRegexSet.isSupported( Pattern.compile( "a", Pattern.UNICODE_CASE | Pattern.CASE_INSENSITIVE ) ) );
+   }
+
+
+   /**
+    * A random expression over the text alphabet.  Repetitions are only applied to expressions that cannot match
+    * nothing, as java regex may end repetitions of empty iterations on other spans.
+    */
+   static private RandomExpression randomExpression( final Random random, final int depth ) {
+      final int choice = random.nextInt( depth > 0 ? 9 : 5 );
+      switch ( choice ) {
+         case 0:
+            return new RandomExpression( String.valueOf( "abc".charAt( random.nextInt( 3 ) ) ), false );
+         case 1:
+            return new RandomExpression( random.nextBoolean() ? "[ab]" : "[^a\\n]", false );
+         case 2:
+            return new RandomExpression( ".", false );
+         case 3:
+            return new RandomExpression( random.nextBoolean() ? "\\s" : "\\w", false );
+         case 4:
+            return new RandomExpression( new String[] { "^", "$", "\\b", "\\B" }[ random.nextInt( 4 ) ], true );
+         case 5:
+         case 6: {
+            final RandomExpression first = randomExpression( random, depth - 1 );
+            final RandomExpression second = randomExpression( random, depth - 1 );
+            return new RandomExpression( first.__text + second.__text, first.__nullable && second.__nullable );
+         }
+         case 7: {
+            final RandomExpression first = randomExpression( random, depth - 1 );
+            final RandomExpression second = randomExpression( random, depth - 1 );
+            return new RandomExpression( "(?:" + first.__text + "|" + second.__text + ")",
+                  first.__nullable || second.__nullable );
+         }
+         default: {
+            final RandomExpression repeated = randomExpression( random, depth - 1 );
+            if ( repeated.__nullable ) {
+               return repeated;
+            }
+            final String quantifier = new String[] { "*", "+", "?", "{1,2}", "{2}" }[ random.nextInt( 5 ) ]
+                                      + ( random.nextInt( 3 ) == 0 ? "?" : "" );
+            return new RandomExpression( "(" + repeated.__text + ")" + quantifier,
+                  !quantifier.startsWith( "+" ) && !quantifier.startsWith( "{" ) );
+         }
+      }
+   }
+
+   static private final class RandomExpression {
+      private final String __text;
+      private final boolean __nullable;
+
+      private RandomExpression( final String text, final boolean nullable ) {
+         __text = text;
+         __nullable = nullable;
+      }
+   }
+
+   static private void assertSameMatches( final String text, final String... regexes ) {
+      assertSameMatches( text, 0, regexes );
+   }
+
+   static private void assertSameMatches( final String text, final int flags, final String... regexes ) {
+      final List<Pattern> patterns = new ArrayList<>( regexes.length );
+      for ( String regex : regexes ) {
+         patterns.add( Pattern.compile( regex, flags ) );
+      }
+      assertEquals( findAll( patterns, text ), toStrings( new LinearRegexSet( patterns ).findMatches( text ) ) );
+      // each pattern on its own
+      for ( Pattern pattern : patterns ) {
+         final List<Pattern> single = Collections.singletonList( pattern );
+         assertEquals( pattern.pattern(), findAll( single, text ),
+               toStrings( new LinearRegexSet( single ).findMatches( text ) ) );
+      }
+   }
+
+   static private List<String> findAll( final List<Pattern> patterns, final String text ) {
+      final List<String> matches = new ArrayList<>();
+      for ( int i = 0; i < patterns.size(); i++ ) {
+         final Matcher matcher = patterns.get( i ).matcher( text );
+         while ( matcher.find() ) {
+            matches.add( i + ":" + matcher.start() + "-" + matcher.end() );
+         }
+      }
+      return matches;
+   }
+
+   static private List<String> toStrings( final List<LinearRegexSet.Match> matches ) {
+      final List<String> strings = new ArrayList<>( matches.size() );
+      for ( LinearRegexSet.Match match : matches ) {
+         strings.add( match.getPatternIndex() + ":" + match.start() + "-" + match.end() );
+      }
+      return strings;
+   }
+
+}
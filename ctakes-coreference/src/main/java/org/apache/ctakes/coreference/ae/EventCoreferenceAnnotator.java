@@ -504,6 +504,14 @@ public class EventCoreferenceAnnotator extends RelationExtractorAnnotator {
     return pairs;
   }
   
+  /**
+   * The score of a pair is kept in classify for its createRelation.
+   */
+  @Override
+  protected boolean isBatchClassified() {
+    return false;
+  }
+
   @Override
   protected String classify(List<Feature> features)
       throws CleartkProcessingException {
@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -31,9 +32,9 @@ import libsvm.svm_model;
 import libsvm.svm_node;
 
 import org.apache.ctakes.constituency.parser.treekernel.TreeExtractor;
-import org.apache.ctakes.constituency.parser.util.TreeUtils;
 import org.apache.ctakes.core.resource.FileLocator;
 import org.apache.ctakes.coreference.type.Markable;
+import org.apache.ctakes.utils.tree.FragmentIndex;
 import org.apache.ctakes.utils.tree.FragmentUtils;
 import org.apache.ctakes.utils.tree.SimpleTree;
 import org.apache.ctakes.utils.wiki.WikiIndex;
@@ -44,6 +45,7 @@ public class SvmVectorCreator {
 	HashSet<String> stopwords = null;
 	private svm_model anaph_model = null;
 	ArrayList<SimpleTree> frags = new ArrayList<SimpleTree>();
+	FragmentIndex fragIndex = null;
 	WikiIndex wiki = null;
 	static final int NUM_WIKI_HITS = 5;
 	
@@ -208,15 +210,14 @@ public class SvmVectorCreator {
 //					MarkableTreeUtils.markableNode(aJCas, anaphor.getBegin(), anaphor.getEnd()),
 //					aJCas);
 			// now go over the tree fragment features:
-			for(SimpleTree frag : frags){
-				if(TreeUtils.contains(tn, frag)){
-					svm_node n = new svm_node();
-					n.index = ind+1;
-					n.value = 1.0;
-					nodes.add(n);
-				}
-				ind++;
+			BitSet contained = fragIndex.getContainedIndices(tn);
+			for(int i = contained.nextSetBit(0); i >= 0; i = contained.nextSetBit(i+1)){
+				svm_node n = new svm_node();
+				n.index = ind+i+1;
+				n.value = 1.0;
+				nodes.add(n);
 			}
+			ind += frags.size();
 		}
 		return nodes.toArray(new svm_node[]{});
 	}
@@ -226,5 +227,6 @@ public class SvmVectorCreator {
 		for(String frag : treeFrags){
 			frags.add(FragmentUtils.frag2tree(frag));
 		}
+		fragIndex = FragmentIndex.forTrees(frags, false);
 	}
 }
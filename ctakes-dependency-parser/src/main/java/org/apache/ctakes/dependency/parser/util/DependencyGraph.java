@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dependency.parser.util;
+
+import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable array form of the dependency tree of one sentence.
+ * Each node is referred to by its position in the sentence node list; heads, depths, children (as
+ * offsets into one shared array) and the chain of ancestors of every node are computed once,
+ * so that head and path queries cost O(depth) and never touch the CAS indexes.
+ * <p>
+ * The graph is <i>closed</i> if every head of a node is also in the sentence and there are no head cycles.
+ * Paths in a graph that is not closed are not complete, use {@link DependencyUtility#getPath(java.util.List, ConllDependencyNode, ConllDependencyNode)}.
+ * <p>
+ * Use {@link DependencyUtility#getDependencyGraph(org.apache.uima.jcas.JCas, ConllDependencyNode)}
+ * to get the cached graph of a sentence in a CAS.
+ */
+final public class DependencyGraph {
+
+	static private final int[] NO_CHILDREN = new int[0];
+
+	private final ConllDependencyNode[] _nodes;
+	// index of the head of each node, -1 for none or outside the sentence
+	private final int[] _heads;
+	private final int[] _depths;
+	// children of node i are _children[ _childStarts[i] ] to _children[ _childStarts[i+1]-1 ], in sentence order
+	private final int[] _childStarts;
+	private final int[] _children;
+	// node itself first, up to the top node
+	private final int[][] _ancestors;
+	private final Map<Integer,Integer> _indices;
+	private final boolean _closed;
+
+	/**
+	 * @param nodes the dependency nodes of a sentence, in text order
+	 */
+	public DependencyGraph( final List<ConllDependencyNode> nodes ) {
+		final int size = nodes.size();
+		_nodes = nodes.toArray( new ConllDependencyNode[ size ] );
+		_indices = new HashMap<>( size * 2 );
+		for ( int i = 0; i < size; i++ ) {
+			_indices.put( _nodes[ i ].getAddress(), i );
+		}
+		boolean closed = true;
+		_heads = new int[ size ];
+		for ( int i = 0; i < size; i++ ) {
+			final ConllDependencyNode head = _nodes[ i ].getHead();
+			final Integer headIndex = head == null ? null : _indices.get( head.getAddress() );
+			_heads[ i ] = headIndex == null ? -1 : headIndex;
+			if ( head != null && headIndex == null ) {
+				closed = false;
+			}
+		}
+		_depths = new int[ size ];
+		if ( !computeDepths() ) {
+			closed = false;
+		}
+		_closed = closed;
+
+		_childStarts = new int[ size + 1 ];
+		for ( int head : _heads ) {
+			if ( head >= 0 ) {
+				_childStarts[ head + 1 ]++;
+			}
+		}
+		for ( int i = 0; i < size; i++ ) {
+			_childStarts[ i + 1 ] += _childStarts[ i ];
+		}
+		_children = new int[ _childStarts[ size ] ];
+		final int[] filled = Arrays.copyOf( _childStarts, size );
+		for ( int i = 0; i < size; i++ ) {
+			if ( _heads[ i ] >= 0 ) {
+				_children[ filled[ _heads[ i ] ]++ ] = i;
+			}
+		}
+
+		_ancestors = new int[ size ][];
+		for ( int i = 0; i < size; i++ ) {
+			final int[] chain = new int[ _depths[ i ] + 1 ];
+			for ( int j = 0, node = i; j < chain.length; j++, node = _heads[ node ] ) {
+				chain[ j ] = node;
+			}
+			_ancestors[ i ] = chain;
+		}
+	}
+
+	/**
+	 * Depth of each node, iteratively so that deep chains cannot overflow the stack.
+	 * A head cycle is cut by making its last node a top node.
+	 * @return false if there was a cycle
+	 */
+	private boolean computeDepths() {
+		boolean acyclic = true;
+		// 0 unvisited, 1 on the current chain, 2 done
+		final byte[] states = new byte[ _nodes.length ];
+		final int[] chain = new int[ _nodes.length ];
+		for ( int i = 0; i < _nodes.length; i++ ) {
+			int length = 0;
+			int node = i;
+			while ( node >= 0 && states[ node ] == 0 ) {
+				states[ node ] = 1;
+				chain[ length++ ] = node;
+				node = _heads[ node ];
+			}
+			if ( node >= 0 && states[ node ] == 1 ) {
+				_heads[ chain[ length - 1 ] ] = -1;
+				node = -1;
+				acyclic = false;
+			}
+			int depth = node < 0 ? -1 : _depths[ node ];
+			for ( int j = length - 1; j >= 0; j-- ) {
+				_depths[ chain[ j ] ] = ++depth;
+				states[ chain[ j ] ] = 2;
+			}
+		}
+		return acyclic;
+	}
+
+	/**
+	 * @return number of nodes in the sentence
+	 */
+	public int size() {
+		return _nodes.length;
+	}
+
+	/**
+	 * @return the sentence nodes, in text order
+	 */
+	public List<ConllDependencyNode> getNodes() {
+		return Collections.unmodifiableList( Arrays.asList( _nodes ) );
+	}
+
+	/**
+	 * @return true if all heads are in the sentence and there are no head cycles
+	 */
+	public boolean isClosed() {
+		return _closed;
+	}
+
+	/**
+	 * @param index position of a node in the sentence
+	 * @return the node
+	 */
+	public ConllDependencyNode getNode( final int index ) {
+		return _nodes[ index ];
+	}
+
+	/**
+	 * @param node some dependency node
+	 * @return position of the node in the sentence, or -1 if it is not in the sentence
+	 */
+	public int indexOf( final ConllDependencyNode node ) {
+		final Integer index = node == null ? null : _indices.get( node.getAddress() );
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @param index position of a node in the sentence
+	 * @return position of the head of the node, or -1 for a top node
+	 */
+	public int getHeadIndex( final int index ) {
+		return _heads[ index ];
+	}
+
+	/**
+	 * @param index position of a node in the sentence
+	 * @return number of heads above the node
+	 */
+	public int getDepth( final int index ) {
+		return _depths[ index ];
+	}
+
+	/**
+	 * @param index position of a node in the sentence
+	 * @return positions of the dependents of the node, in sentence order
+	 */
+	public int[] getChildIndices( final int index ) {
+		final int start = _childStarts[ index ];
+		final int end = _childStarts[ index + 1 ];
+		return start == end ? NO_CHILDREN : Arrays.copyOfRange( _children, start, end );
+	}
+
+	/**
+	 * @param node some node in the sentence
+	 * @return the dependents of the node, in sentence order
+	 */
+	public List<ConllDependencyNode> getChildren( final ConllDependencyNode node ) {
+		final int index = indexOf( node );
+		if ( index < 0 ) {
+			return Collections.emptyList();
+		}
+		final List<ConllDependencyNode> children = new ArrayList<>( _childStarts[ index + 1 ] - _childStarts[ index ] );
+		for ( int i = _childStarts[ index ]; i < _childStarts[ index + 1 ]; i++ ) {
+			children.add( _nodes[ _children[ i ] ] );
+		}
+		return children;
+	}
+
+	/**
+	 * @param node some node in the sentence
+	 * @return the node and its heads up to the top node, or null if the node is not in the sentence
+	 */
+	public DependencyPath getPathToTop( final ConllDependencyNode node ) {
+		final int index = indexOf( node );
+		if ( index < 0 ) {
+			return null;
+		}
+		final DependencyPath path = new DependencyPath();
+		for ( int ancestor : _ancestors[ index ] ) {
+			path.add( _nodes[ ancestor ] );
+		}
+		return path;
+	}
+
+	/**
+	 * Same path as {@link DependencyUtility#getPath(java.util.List, ConllDependencyNode, ConllDependencyNode)} :
+	 * from node1 up to the first of its heads that covers the same text as a head of node2, then down to node2.
+	 * @param node1 some node in the sentence
+	 * @param node2 some node in the sentence
+	 * @return the path, or null if either node is not in the sentence or there is no common node
+	 */
+	public DependencyPath getPath( final ConllDependencyNode node1, final ConllDependencyNode node2 ) {
+		final int index1 = indexOf( node1 );
+		final int index2 = indexOf( node2 );
+		if ( index1 < 0 || index2 < 0 ) {
+			return null;
+		}
+		final int[] up1 = _ancestors[ index1 ];
+		final int[] up2 = _ancestors[ index2 ];
+		// the lowest head of node2 with each span
+		final Map<Long,Integer> spanHeights = new HashMap<>( up2.length * 2 );
+		for ( int j = up2.length - 1; j >= 0; j-- ) {
+			spanHeights.put( span( _nodes[ up2[ j ] ] ), j );
+		}
+		final DependencyPath path = new DependencyPath();
+		for ( int nodeUp1 : up1 ) {
+			path.add( _nodes[ nodeUp1 ] );
+			final Integer height = spanHeights.get( span( _nodes[ nodeUp1 ] ) );
+			if ( height != null ) {
+				path.setCommonNode( _nodes[ nodeUp1 ] );
+				for ( int j = height - 1; j >= 0; j-- ) {
+					path.add( _nodes[ up2[ j ] ] );
+				}
+				return path;
+			}
+		}
+		return null;
+	}
+
+	static private long span( final ConllDependencyNode node ) {
+		return ( (long)node.getBegin() << 32 ) | ( node.getEnd() & 0xffffffffL );
+	}
+
+}
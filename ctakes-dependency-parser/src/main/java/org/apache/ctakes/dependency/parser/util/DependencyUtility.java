@@ -22,13 +22,16 @@ import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
 import org.apache.log4j.Logger;
 import org.apache.uima.cas.FSIterator;
-import org.apache.uima.cas.text.AnnotationIndex;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -41,6 +44,19 @@ public abstract class DependencyUtility {
 
 	static private final Pattern N_DOT_PATTERN = Pattern.compile( "N..?" );
 
+	// Dependency nodes and sentence graphs of the document in each cas view, built on first use.
+	// The nodes reference their cas, so the cache holds its cas views strongly.  Each thread keeps only
+	// the views it used most recently, which bounds what is held and needs no lock.
+	// The graphs of a view are replaced as soon as the view holds a new document.
+	static private final int MAX_CACHED_VIEWS = 4;
+	static private final ThreadLocal<Map<JCas,DocumentGraphs>> DOCUMENT_GRAPHS
+			= ThreadLocal.withInitial( () -> new LinkedHashMap<JCas,DocumentGraphs>( MAX_CACHED_VIEWS + 1, 1f, true ) {
+		@Override
+		protected boolean removeEldestEntry( final Map.Entry<JCas,DocumentGraphs> eldest ) {
+			return size() > MAX_CACHED_VIEWS;
+		}
+	} );
+
 	public static void addToIndexes( JCas jcas, ArrayList<ConllDependencyNode> nodes ) {
 		for (int i=0; i<nodes.size(); i++) {
 			// Enter UIMA nodes into index
@@ -82,30 +98,52 @@ public abstract class DependencyUtility {
 
 	/** Returns the first ConllDependencyNode in the CAS w/ same begin and end as the given Annotation **/	
 	public static ConllDependencyNode getDependencyNode(JCas jCas, Annotation annot) {
-
-		AnnotationIndex nodeIndex = jCas.getAnnotationIndex(ConllDependencyNode.type);
-	    FSIterator nodeIterator = nodeIndex.iterator();
-	    while (nodeIterator.hasNext()) {
-	        ConllDependencyNode node = (ConllDependencyNode) nodeIterator.next();
-	        if (equalCoverage(annot,node)) {
-	        	return node;
-	        }
-	    }
-    	return null;
+		if (annot==null) {
+			return null;
+		}
+		final DocumentGraphs graphs = getDocumentGraphs( jCas );
+		for ( int i = graphs.firstAtOrAfter( annot.getBegin() ); i < graphs._nodes.length
+				&& graphs._nodes[ i ].getBegin() == annot.getBegin(); i++ ) {
+			if (equalCoverage(annot,graphs._nodes[ i ])) {
+				return graphs._nodes[ i ];
+			}
+		}
+		return null;
 	}
 	
 	/** Returns the ConllDependencyNodes in the CAS w/ subsumed begins and ends **/	
 	public static List<ConllDependencyNode> getDependencyNodes(JCas jCas, Annotation annot) {
-		ArrayList<ConllDependencyNode> output = new ArrayList<ConllDependencyNode>();
-		AnnotationIndex nodeIndex = jCas.getAnnotationIndex(ConllDependencyNode.type);
-	    FSIterator nodeIterator = nodeIndex.iterator();
-	    while (nodeIterator.hasNext()) {
-	        ConllDependencyNode node = (ConllDependencyNode) nodeIterator.next();
-	        if (doesSubsume(annot,node)) {
-	        	output.add(node);
-	        }
-	    }
-    	return output;
+		if (annot==null) {
+			return new ArrayList<ConllDependencyNode>();
+		}
+		return getDocumentGraphs( jCas ).getCoveredNodes( annot.getBegin(), annot.getEnd() );
+	}
+
+	/**
+	 * @param jCas ye olde
+	 * @param node some dependency node in the cas
+	 * @return the cached dependency graph of the first sentence containing the node, or null if no sentence contains it
+	 */
+	public static DependencyGraph getDependencyGraph( JCas jCas, ConllDependencyNode node ) {
+		if (node==null) {
+			return null;
+		}
+		return getDocumentGraphs( jCas )._graphs.get( node.getAddress() );
+	}
+
+	/**
+	 * The cached graphs are rebuilt when the cas is reset or dependency nodes or sentences are added.
+	 * Changes to the heads of existing nodes are not detected.
+	 * @return dependency nodes and sentence graphs for the current document in the cas
+	 */
+	static private DocumentGraphs getDocumentGraphs( JCas jCas ) {
+		final Map<JCas,DocumentGraphs> documentGraphs = DOCUMENT_GRAPHS.get();
+		DocumentGraphs graphs = documentGraphs.get( jCas );
+		if ( graphs == null || !graphs.isCurrent( jCas ) ) {
+			graphs = new DocumentGraphs( jCas );
+			documentGraphs.put( jCas, graphs );
+		}
+		return graphs;
 	}
 
 	/** Returns the first ConllDependencyNode in the CAS w/ same begin and end as the given Annotation **/	
@@ -121,7 +159,6 @@ public abstract class DependencyUtility {
 	public static ConllDependencyNode getNominalHeadNode(
 			List<ConllDependencyNode> nodes) {
 		ArrayList<ConllDependencyNode> anodes = new ArrayList<ConllDependencyNode>(nodes);
-		Boolean[][] matrixofheads = new Boolean[anodes.size()][anodes.size()];
 		List<ConllDependencyNode> outnodes = new ArrayList<ConllDependencyNode>();
 
       // Remove root from consideration
@@ -131,41 +168,24 @@ public abstract class DependencyUtility {
 			}
 		}
 
-      // Create a dependency matrix
-		for (int id1=0; id1<anodes.size(); id1++) {
-			for (int id2=0; id2<anodes.size(); id2++) {
-				// no head-dependency relationship between id1 and id2
-				matrixofheads[ id2 ][ id1 ]
-						= id1 != id2
-						  && anodes.get( id2 ).getHead() != null
-						  && anodes.get( id1 ).getId() == anodes.get( id2 ).getHead().getId();
-//				if (id1==id2 || anodes.get(id1).getId()!=anodes.get(id2).getHead().getId()) {
-//					matrixofheads[id2][id1]=false;
-//				}
-//				// a match
-//				else {
-//					matrixofheads[id2][id1]=true;
-//				}
+      // Count how many nodes have each id and how many have a head with each id
+		final Map<Integer,Integer> idCounts = new HashMap<>();
+		final Map<Integer,Integer> headIdCounts = new HashMap<>();
+		for ( ConllDependencyNode node : anodes ) {
+			increment( idCounts, node.getId() );
+			if ( node.getHead() != null ) {
+				increment( headIdCounts, node.getHead().getId() );
 			}
 		}
-			
-		// Search the dependency matrix for the head
-		for (int idhd=0; idhd<anodes.size(); idhd++) {
-			boolean occupiedCol = false;
-			for (int row=0; row<anodes.size(); row++) {
-				if ( matrixofheads[row][idhd] ) {
-					occupiedCol = true;
-				}
-			}
-			if (occupiedCol) {
-				boolean occupiedRow = false;
-				for (int col=0; col<anodes.size(); col++) {
-					if ( matrixofheads[idhd][col] ) {
-						occupiedRow = true;
-					}
-				}
-				if (!occupiedRow) {
-					outnodes.add(anodes.get(idhd));
+
+		// The heads are nodes that head another node but are not headed by another node
+		for ( ConllDependencyNode node : anodes ) {
+			final boolean selfHeaded = node.getHead() != null && node.getHead().getId() == node.getId();
+			final int dependents = count( headIdCounts, node.getId() ) - (selfHeaded ? 1 : 0);
+			if ( dependents > 0 ) {
+				final int heads = node.getHead() == null ? 0 : count( idCounts, node.getHead().getId() ) - (selfHeaded ? 1 : 0);
+				if ( heads == 0 ) {
+					outnodes.add( node );
 				}
 			}
 		}
@@ -197,6 +217,17 @@ public abstract class DependencyUtility {
 	}
 
 
+	static private void increment( final Map<Integer,Integer> counts, final int id ) {
+		final Integer count = counts.get( id );
+		counts.put( id, count == null ? 1 : count + 1 );
+	}
+
+	static private int count( final Map<Integer,Integer> counts, final int id ) {
+		final Integer count = counts.get( id );
+		return count == null ? 0 : count;
+	}
+
+
 	/** Given a set of ConllDependencyNodes, find the path between two nodes **/
 	public static DependencyPath getPath(List<ConllDependencyNode> nodes, ConllDependencyNode node1, ConllDependencyNode node2) {
 
@@ -259,10 +290,13 @@ public abstract class DependencyUtility {
 	/** Given a CAS, find the path between two nodes in a sentence **/
 	public static DependencyPath getPath( JCas jCas, ConllDependencyNode node1, ConllDependencyNode node2) {
 		
-		Sentence sent1 = getSentence( jCas, node1);
-		Sentence sent2 = getSentence( jCas, node2);
-		if (sent1.equals(sent2)) {
-			return getPath( getDependencyNodes(jCas, sent1), node1, node2);
+		DependencyGraph graph1 = getDependencyGraph( jCas, node1);
+		DependencyGraph graph2 = getDependencyGraph( jCas, node2);
+		if (graph1 != null && graph1 == graph2) {
+			if (graph1.isClosed()) {
+				return graph1.getPath( node1, node2 );
+			}
+			return getPath( graph1.getNodes(), node1, node2);
 		} else {
 			
 			// 6/28/13 shalgrim
@@ -402,6 +436,81 @@ public abstract class DependencyUtility {
 	}
 
 
+	/**
+	 * Dependency nodes of a document in text order, and the dependency graph of the first sentence covering each node.
+	 */
+	static private final class DocumentGraphs {
+		private final Object _sofa;
+		private final String _text;
+		private final int _nodeCount;
+		private final int _sentenceCount;
+		private final ConllDependencyNode[] _nodes;
+		private final int[] _begins;
+		// by node fs address
+		private final Map<Integer,DependencyGraph> _graphs = new HashMap<>();
+
+		private DocumentGraphs( final JCas jCas ) {
+			_sofa = jCas.getSofa();
+			_text = jCas.getDocumentText();
+			final Collection<ConllDependencyNode> nodes = JCasUtil.select( jCas, ConllDependencyNode.class );
+			_nodes = nodes.toArray( new ConllDependencyNode[ nodes.size() ] );
+			_nodeCount = _nodes.length;
+			_begins = new int[ _nodes.length ];
+			for ( int i = 0; i < _nodes.length; i++ ) {
+				_begins[ i ] = _nodes[ i ].getBegin();
+			}
+			final Collection<Sentence> sentences = JCasUtil.select( jCas, Sentence.class );
+			_sentenceCount = sentences.size();
+			for ( Sentence sentence : sentences ) {
+				final List<ConllDependencyNode> sentenceNodes = getCoveredNodes( sentence.getBegin(), sentence.getEnd() );
+				if ( sentenceNodes.isEmpty() ) {
+					continue;
+				}
+				final DependencyGraph graph = new DependencyGraph( sentenceNodes );
+				for ( ConllDependencyNode node : sentenceNodes ) {
+					if ( !_graphs.containsKey( node.getAddress() ) ) {
+						_graphs.put( node.getAddress(), graph );
+					}
+				}
+			}
+		}
+
+		private boolean isCurrent( final JCas jCas ) {
+			return _sofa == jCas.getSofa()
+					 && _text == jCas.getDocumentText()
+					 && _nodeCount == jCas.getAnnotationIndex( ConllDependencyNode.type ).size()
+					 && _sentenceCount == jCas.getAnnotationIndex( Sentence.type ).size();
+		}
+
+		/**
+		 * @return index of the first node beginning at or after the offset
+		 */
+		private int firstAtOrAfter( final int offset ) {
+			int low = 0;
+			int high = _begins.length;
+			while ( low < high ) {
+				final int mid = ( low + high ) >>> 1;
+				if ( _begins[ mid ] < offset ) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		private List<ConllDependencyNode> getCoveredNodes( final int begin, final int end ) {
+			final List<ConllDependencyNode> covered = new ArrayList<>();
+			for ( int i = firstAtOrAfter( begin ); i < _nodes.length && _begins[ i ] <= end; i++ ) {
+				if ( _nodes[ i ].getEnd() <= end ) {
+					covered.add( _nodes[ i ] );
+				}
+			}
+			return covered;
+		}
+	}
+
+
 	public static String dumpDependencyGraph(Annotation annotation) {
 		StringBuilder builder = new StringBuilder();
 		for (ConllDependencyNode depNode : JCasUtil.selectCovered(ConllDependencyNode.class, annotation)) {
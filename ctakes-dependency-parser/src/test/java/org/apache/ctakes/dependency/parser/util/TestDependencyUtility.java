@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dependency.parser.util;
+
+import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestDependencyUtility {
+
+	static private final String TEXT = "The patient denies chest pain. He is fine.";
+	static private final List<String> NOUNS = Arrays.asList( "patient", "chest", "pain", "He" );
+
+	@Test
+	public void testPath() throws Exception {
+		final JCas jCas = JCasFactory.createJCas();
+		jCas.setDocumentText( TEXT );
+		final List<ConllDependencyNode> nodes = addSentence( jCas, 0, 30,
+				new int[][] { { 0, 3 }, { 4, 11 }, { 12, 18 }, { 19, 24 }, { 25, 29 }, { 29, 30 } },
+				new int[] { 2, 3, 0, 5, 3, 3 } );
+		final ConllDependencyNode the = nodes.get( 1 );
+		final ConllDependencyNode chest = nodes.get( 4 );
+
+		final DependencyPath path = DependencyUtility.getPath( jCas, the, chest );
+		final DependencyPath expected = DependencyUtility.getPath( nodes, the, chest );
+		assertEquals( Arrays.asList( "The", "patient", "denies", "pain", "chest" ), forms( path ) );
+		assertEquals( expected, path );
+		assertSame( nodes.get( 3 ), path.getCommonNode() );
+		assertEquals( expected.toString(), path.toString() );
+		assertEquals( DependencyUtility.getPath( nodes, chest, the ), DependencyUtility.getPath( jCas, chest, the ) );
+		assertEquals( Arrays.asList( "The" ), forms( DependencyUtility.getPath( jCas, the, the ) ) );
+
+		// a new sentence is picked up by the cached graphs
+		final List<ConllDependencyNode> nodes2 = addSentence( jCas, 31, 42,
+				new int[][] { { 31, 33 }, { 34, 36 }, { 37, 41 }, { 41, 42 } },
+				new int[] { 2, 0, 2, 2 } );
+		assertEquals( Arrays.asList( "He", "is", "fine" ),
+				forms( DependencyUtility.getPath( jCas, nodes2.get( 1 ), nodes2.get( 3 ) ) ) );
+		assertNull( DependencyUtility.getPath( jCas, the, nodes2.get( 1 ) ) );
+	}
+
+	@Test
+	public void testGraph() throws Exception {
+		final JCas jCas = JCasFactory.createJCas();
+		jCas.setDocumentText( TEXT );
+		final List<ConllDependencyNode> nodes = addSentence( jCas, 0, 30,
+				new int[][] { { 0, 3 }, { 4, 11 }, { 12, 18 }, { 19, 24 }, { 25, 29 }, { 29, 30 } },
+				new int[] { 2, 3, 0, 5, 3, 3 } );
+		final DependencyGraph graph = DependencyUtility.getDependencyGraph( jCas, nodes.get( 4 ) );
+		assertTrue( graph.isClosed() );
+		assertEquals( nodes, graph.getNodes() );
+		assertEquals( 3, graph.getDepth( 4 ) );
+		assertEquals( 5, graph.getHeadIndex( 4 ) );
+		assertEquals( -1, graph.getHeadIndex( 0 ) );
+		assertArrayEquals( new int[] { 2, 5, 6 }, graph.getChildIndices( 3 ) );
+		assertEquals( Arrays.asList( "chest", "pain", "denies", null ), forms( graph.getPathToTop( nodes.get( 4 ) ) ) );
+	}
+
+	@Test
+	public void testNominalHead() throws Exception {
+		final JCas jCas = JCasFactory.createJCas();
+		jCas.setDocumentText( TEXT );
+		final List<ConllDependencyNode> nodes = addSentence( jCas, 0, 30,
+				new int[][] { { 0, 3 }, { 4, 11 }, { 12, 18 }, { 19, 24 }, { 25, 29 }, { 29, 30 } },
+				new int[] { 2, 3, 0, 5, 3, 3 } );
+		assertSame( nodes.get( 5 ), DependencyUtility.getNominalHeadNode( jCas, new Annotation( jCas, 19, 29 ) ) );
+		assertSame( nodes.get( 2 ), DependencyUtility.getNominalHeadNode( jCas, new Annotation( jCas, 0, 11 ) ) );
+		assertSame( nodes.get( 3 ), DependencyUtility.getNominalHeadNode( jCas, new Annotation( jCas, 12, 29 ) ) );
+		// unheaded, the first noun
+		assertSame( nodes.get( 5 ), DependencyUtility.getNominalHeadNode( jCas, new Annotation( jCas, 25, 30 ) ) );
+		assertNull( DependencyUtility.getNominalHeadNode( jCas, new Annotation( jCas, 35, 36 ) ) );
+		assertEquals( nodes.subList( 4, 6 ), DependencyUtility.getDependencyNodes( jCas, new Annotation( jCas, 19, 29 ) ) );
+		assertSame( nodes.get( 3 ), DependencyUtility.getDependencyNode( jCas, new Annotation( jCas, 12, 18 ) ) );
+	}
+
+	/**
+	 * @return the root node followed by one node per word
+	 */
+	static private List<ConllDependencyNode> addSentence( final JCas jCas, final int begin, final int end,
+																			final int[][] words, final int[] heads ) {
+		new Sentence( jCas, begin, end ).addToIndexes();
+		final List<ConllDependencyNode> nodes = new ArrayList<>();
+		final ConllDependencyNode root = new ConllDependencyNode( jCas, begin, end );
+		root.setId( 0 );
+		nodes.add( root );
+		for ( int i = 0; i < words.length; i++ ) {
+			final ConllDependencyNode node = new ConllDependencyNode( jCas, words[ i ][ 0 ], words[ i ][ 1 ] );
+			node.setId( i + 1 );
+			node.setForm( node.getCoveredText() );
+			node.setPostag( NOUNS.contains( node.getForm() ) ? "NN" : "XX" );
+			nodes.add( node );
+		}
+		for ( int i = 0; i < heads.length; i++ ) {
+			nodes.get( i + 1 ).setHead( nodes.get( heads[ i ] ) );
+		}
+		for ( ConllDependencyNode node : nodes ) {
+			node.addToIndexes();
+		}
+		return nodes;
+	}
+
+	static private List<String> forms( final List<ConllDependencyNode> path ) {
+		final List<String> forms = new ArrayList<>();
+		for ( ConllDependencyNode node : path ) {
+			forms.add( node.getForm() );
+		}
+		return forms;
+	}
+
+}
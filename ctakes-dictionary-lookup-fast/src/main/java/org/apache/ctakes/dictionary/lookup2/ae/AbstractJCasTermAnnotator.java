@@ -44,6 +44,10 @@ import org.apache.uima.resource.ResourceInitializationException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Performs the basic initialization with uima context, including the parse of the dictionary specifications file.
@@ -91,6 +95,14 @@ abstract public class AbstractJCasTermAnnotator extends JCasAnnotator_ImplBase
          description = "Minimum number of characters for a term" )
    protected int _minimumLookupSpan = DEFAULT_MINIMUM_SPAN;
 
+   // look up terms and create concepts for each dictionary in parallel
+   @ConfigurationParameter( name = JCasTermAnnotator.PARAM_PARALLEL_DICTIONARIES_KEY, mandatory = false,
+         description = "Look up terms in multiple dictionaries in parallel", defaultValue = "false" )
+   private boolean _parallelDictionaries;
+
+   // runs the lookup of each dictionary when lookup is parallel, kept apart from the common fork join pool
+   private ExecutorService _lookupExecutor;
+
    /**
     * {@inheritDoc}
     */
@@ -139,6 +151,15 @@ abstract public class AbstractJCasTermAnnotator extends JCasAnnotator_ImplBase
       } catch ( IOException | AnnotatorContextException multE ) {
          throw new ResourceInitializationException( multE );
       }
+      final int dictionaryCount = getDictionaries().size();
+      if ( _parallelDictionaries && dictionaryCount > 1 ) {
+         LOGGER.info( "Looking up " + dictionaryCount + " dictionaries in parallel" );
+         _lookupExecutor = Executors.newFixedThreadPool( dictionaryCount, r -> {
+            final Thread thread = new Thread( r, "DictionaryLookup" );
+            thread.setDaemon( true );
+            return thread;
+         } );
+      }
    }
 
 
@@ -154,50 +175,124 @@ abstract public class AbstractJCasTermAnnotator extends JCasAnnotator_ImplBase
 //         return;
 //      }
       final Map<Annotation, Collection<BaseToken>> windowTokens = org.apache.uima.fit.util.JCasUtil.indexCovered( jcas, _lookupClass, BaseToken.class );
-      final Map<RareWordDictionary, CollectionMap<TextSpan, Long, ? extends Collection<Long>>> dictionaryTermsMap
-            = new HashMap<>( getDictionaries().size() );
-      for ( RareWordDictionary dictionary : getDictionaries() ) {
-         final CollectionMap<TextSpan, Long, ? extends Collection<Long>> textSpanCuis = new HashSetMap<>();
-         dictionaryTermsMap.put( dictionary, textSpanCuis );
-      }
+      // Gather the lookup tokens of all windows first so that dictionaries can fetch their hits at once
+      final List<List<FastLookupToken>> windowAllTokens = new ArrayList<>( windowTokens.size() );
+      final List<List<Integer>> windowLookupTokenIndices = new ArrayList<>( windowTokens.size() );
+      final Collection<String> lookupTexts = new HashSet<>();
       try {
 //         for ( Object window : lookupWindows ) {
 //            if ( isWindowOk( (Annotation)window ) ) {
 //               processWindow( jcas, (Annotation)window, dictionaryTermsMap );
 //            }
 //         }
-         for ( Map.Entry<Annotation, Collection<BaseToken>> entry : windowTokens.entrySet() ) {
-//            if ( isWindowOk( entry.getKey() ) ) {
-            processWindow( jcas, entry.getValue(), dictionaryTermsMap );
-//            }
+         for ( Collection<BaseToken> baseTokens : windowTokens.values() ) {
+            final List<FastLookupToken> allTokens = new ArrayList<>();
+            final List<Integer> lookupTokenIndices = new ArrayList<>();
+            getAnnotationsInWindow( jcas, baseTokens, allTokens, lookupTokenIndices );
+            for ( Integer lookupTokenIndex : lookupTokenIndices ) {
+               final FastLookupToken lookupToken = allTokens.get( lookupTokenIndex );
+               lookupTexts.add( lookupToken.getText() );
+               if ( lookupToken.getVariant() != null ) {
+                  lookupTexts.add( lookupToken.getVariant() );
+               }
+            }
+            windowAllTokens.add( allTokens );
+            windowLookupTokenIndices.add( lookupTokenIndices );
          }
       } catch ( ArrayIndexOutOfBoundsException iobE ) {
          // JCasHashMap will throw this every once in a while.  Assume the windows are done and move on
          LOGGER.warn( iobE.getMessage() );
       }
-      // Let the consumer handle uniqueness and ordering - some may not care
-      final Collection<Long> allDictionaryCuis = new HashSet<>();
-      final CollectionMap<Long, Concept, ? extends Collection<Concept>> allConceptsMap = new HashSetMap<>();
-      for ( Map.Entry<RareWordDictionary, CollectionMap<TextSpan, Long, ? extends Collection<Long>>> dictionaryCuis : dictionaryTermsMap
-            .entrySet() ) {
-         allDictionaryCuis.clear();
-         final RareWordDictionary dictionary = dictionaryCuis.getKey();
-         final CollectionMap<TextSpan, Long, ? extends Collection<Long>> textSpanCuis = dictionaryCuis.getValue();
-         for ( Collection<Long> cuiCodes : textSpanCuis.getAllCollections() ) {
-            allDictionaryCuis.addAll( cuiCodes );
+      // Lookup and concept creation do not touch the jcas, so each dictionary can be handled on its own thread
+      final Map<RareWordDictionary, DictionaryHits> dictionaryHitsMap = new LinkedHashMap<>();
+      if ( _lookupExecutor != null ) {
+         final Map<RareWordDictionary, Future<DictionaryHits>> futures = new LinkedHashMap<>();
+         for ( RareWordDictionary dictionary : getDictionaries() ) {
+            futures.put( dictionary, _lookupExecutor.submit(
+                  () -> findHits( dictionary, windowAllTokens, windowLookupTokenIndices, lookupTexts ) ) );
          }
-         final Collection<ConceptFactory> conceptFactories
-               = _dictionarySpec.getPairedConceptFactories( dictionary.getName() );
-         allConceptsMap.clear();
-         for ( ConceptFactory conceptFactory : conceptFactories ) {
-            final Map<Long, Concept> conceptMap = conceptFactory.createConcepts( allDictionaryCuis );
-            allConceptsMap.placeMap( conceptMap );
+         for ( Map.Entry<RareWordDictionary, Future<DictionaryHits>> future : futures.entrySet() ) {
+            try {
+               dictionaryHitsMap.put( future.getKey(), future.getValue().get() );
+            } catch ( InterruptedException | ExecutionException multE ) {
+               futures.values().forEach( f -> f.cancel( true ) );
+               throw new AnalysisEngineProcessException( multE );
+            }
+         }
+      } else {
+         for ( RareWordDictionary dictionary : getDictionaries() ) {
+            dictionaryHitsMap.put( dictionary,
+                  findHits( dictionary, windowAllTokens, windowLookupTokenIndices, lookupTexts ) );
          }
-         _dictionarySpec.getConsumer().consumeHits( jcas, dictionary, textSpanCuis, allConceptsMap );
+      }
+      // Let the consumer handle uniqueness and ordering - some may not care
+      for ( Map.Entry<RareWordDictionary, DictionaryHits> dictionaryHits : dictionaryHitsMap.entrySet() ) {
+         _dictionarySpec.getConsumer().consumeHits( jcas, dictionaryHits.getKey(),
+               dictionaryHits.getValue().__textSpanCuis, dictionaryHits.getValue().__conceptsMap );
       }
       LOGGER.info( "Finished processing" );
    }
 
+   /**
+    * Discovered terms and their concepts for a single dictionary
+    */
+   static private final class DictionaryHits {
+      private final CollectionMap<TextSpan, Long, ? extends Collection<Long>> __textSpanCuis;
+      private final CollectionMap<Long, Concept, ? extends Collection<Concept>> __conceptsMap;
+
+      private DictionaryHits( final CollectionMap<TextSpan, Long, ? extends Collection<Long>> textSpanCuis,
+                              final CollectionMap<Long, Concept, ? extends Collection<Concept>> conceptsMap ) {
+         __textSpanCuis = textSpanCuis;
+         __conceptsMap = conceptsMap;
+      }
+   }
+
+   /**
+    * Finds terms in all windows for a single dictionary and creates concepts with its paired concept factories
+    *
+    * @param dictionary               -
+    * @param windowAllTokens          all tokens for each window
+    * @param windowLookupTokenIndices indices of lookup tokens for each window
+    * @param lookupTexts              text of all lookup tokens in the document
+    * @return terms and concepts discovered using the dictionary
+    */
+   private DictionaryHits findHits( final RareWordDictionary dictionary,
+                                    final List<List<FastLookupToken>> windowAllTokens,
+                                    final List<List<Integer>> windowLookupTokenIndices,
+                                    final Collection<String> lookupTexts ) {
+      dictionary.prefetchRareWordHits( lookupTexts );
+      final CollectionMap<TextSpan, Long, ? extends Collection<Long>> textSpanCuis = new HashSetMap<>();
+      for ( int i = 0; i < windowAllTokens.size(); i++ ) {
+         findTerms( dictionary, windowAllTokens.get( i ), windowLookupTokenIndices.get( i ), textSpanCuis );
+      }
+      final Collection<Long> allDictionaryCuis = new HashSet<>();
+      for ( Collection<Long> cuiCodes : textSpanCuis.getAllCollections() ) {
+         allDictionaryCuis.addAll( cuiCodes );
+      }
+      final CollectionMap<Long, Concept, ? extends Collection<Concept>> allConceptsMap = new HashSetMap<>();
+      for ( ConceptFactory conceptFactory : _dictionarySpec.getPairedConceptFactories( dictionary.getName() ) ) {
+         final Map<Long, Concept> conceptMap = conceptFactory.createConcepts( allDictionaryCuis );
+         allConceptsMap.placeMap( conceptMap );
+      }
+      return new DictionaryHits( textSpanCuis, allConceptsMap );
+   }
+
+
+   /**
+    * Closes the dictionaries, releasing database connections and statements.
+    * {@inheritDoc}
+    */
+   @Override
+   public void destroy() {
+      if ( _lookupExecutor != null ) {
+         _lookupExecutor.shutdownNow();
+         _lookupExecutor = null;
+      }
+      if ( _dictionarySpec != null ) {
+         getDictionaries().forEach( RareWordDictionary::close );
+      }
+      super.destroy();
+   }
 
    /**
     * {@inheritDoc}
@@ -55,6 +55,7 @@ public interface JCasTermAnnotator extends AnalysisComponent {
     * optional minimum span for tokens that should not be used for lookup
     */
    String PARAM_MIN_SPAN_KEY = "minimumSpan";
+   String PARAM_PARALLEL_DICTIONARIES_KEY = "parallelDictionaries";
 
 
    String DEFAULT_LOOKUP_WINDOW = "org.apache.ctakes.typesystem.type.textspan.Sentence";
@@ -146,31 +146,34 @@ public class JdbcConceptFactory extends AbstractConceptFactory {
    public Concept createConcept( final Long cuiCode ) {
       final CollectionMap<String, String, ? extends Collection<String>> codes = new HashSetMap<>();
       String prefTerm = null;
-      for ( ConceptTableInfo conceptTableInfo : _conceptTableInfos ) {
-         switch ( conceptTableInfo.__classType ) {
-            case TUI_CLASS: {
-               codes.addAllValues( conceptTableInfo.__conceptName,
-                     getTuiCodes( conceptTableInfo.__preparedStatement, cuiCode ) );
-               break;
-            }
-            case PREFTERM_CLASS: {
-               prefTerm = getPreferredTerm( conceptTableInfo.__preparedStatement, cuiCode );
-               break;
-            }
-            case INT_CLASS: {
-               codes.addAllValues( conceptTableInfo.__conceptName,
-                     getIntegerCodes( conceptTableInfo.__preparedStatement, cuiCode ) );
-               break;
-            }
-            case LONG_CLASS: {
-               codes.addAllValues( conceptTableInfo.__conceptName,
-                     getLongCodes( conceptTableInfo.__preparedStatement, cuiCode ) );
-               break;
-            }
-            case TEXT_CLASS: {
-               codes.addAllValues( conceptTableInfo.__conceptName,
-                     getStringCodes( conceptTableInfo.__preparedStatement, cuiCode ) );
-               break;
+      // The prepared statements are shared, so guard them for concurrent lookup
+      synchronized ( _conceptTableInfos ) {
+         for ( ConceptTableInfo conceptTableInfo : _conceptTableInfos ) {
+            switch ( conceptTableInfo.__classType ) {
+               case TUI_CLASS: {
+                  codes.addAllValues( conceptTableInfo.__conceptName,
+                        getTuiCodes( conceptTableInfo.__preparedStatement, cuiCode ) );
+                  break;
+               }
+               case PREFTERM_CLASS: {
+                  prefTerm = getPreferredTerm( conceptTableInfo.__preparedStatement, cuiCode );
+                  break;
+               }
+               case INT_CLASS: {
+                  codes.addAllValues( conceptTableInfo.__conceptName,
+                        getIntegerCodes( conceptTableInfo.__preparedStatement, cuiCode ) );
+                  break;
+               }
+               case LONG_CLASS: {
+                  codes.addAllValues( conceptTableInfo.__conceptName,
+                        getLongCodes( conceptTableInfo.__preparedStatement, cuiCode ) );
+                  break;
+               }
+               case TEXT_CLASS: {
+                  codes.addAllValues( conceptTableInfo.__conceptName,
+                        getStringCodes( conceptTableInfo.__preparedStatement, cuiCode ) );
+                  break;
+               }
             }
          }
       }
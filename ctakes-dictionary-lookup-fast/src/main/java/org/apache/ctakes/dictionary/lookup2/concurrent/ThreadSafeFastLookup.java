@@ -15,6 +15,11 @@ import org.apache.uima.resource.ResourceInitializationException;
 /**
  * Normally I would use composition and a singleton, but here extension is done for @ConfigurationParameter discovery.
  * Made a singleton mostly for dictionary memory.
+ * Initialization is performed once under lock, but process is not synchronized.
+ * The dictionaries and concept factories are read-only after initialization and shared by all threads,
+ * while all per-document state (window tokens, hit maps) is created within each call to process,
+ * so lookup can run concurrently on as many threads as the pipeline provides.
+ * The shared lookup counts the engines that use it, and is only destroyed with the last of them.
  *
  * @author SPF , chip-nlp
  * @version %I%
@@ -46,6 +51,22 @@ final public class ThreadSafeFastLookup extends DefaultJCasTermAnnotator {
       DlSingleton.getInstance().process( jCas );
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void collectionProcessComplete() throws AnalysisEngineProcessException {
+      DlSingleton.getInstance().collectionProcessComplete();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void destroy() {
+      DlSingleton.getInstance().destroy();
+   }
+
    /**
     * @return dictionary lookup with defaults
     * @throws ResourceInitializationException -
@@ -74,6 +95,10 @@ final public class ThreadSafeFastLookup extends DefaultJCasTermAnnotator {
 
       private final DefaultJCasTermAnnotator _delegate;
       private boolean _initialized;
+      // engines that have initialized and not yet been destroyed
+      private int _engineCount;
+      // engines that have completed the collection since the delegate last did
+      private int _completedCount;
 
       DlSingleton() {
          _delegate = new DefaultJCasTermAnnotator();
@@ -91,6 +116,62 @@ final public class ThreadSafeFastLookup extends DefaultJCasTermAnnotator {
          return _delegate;
       }
 
+      /**
+       * Initializes the wrapped lookup for the first engine and counts every engine.
+       * {@inheritDoc}
+       */
+      @Override
+      public void initialize( final UimaContext context ) throws ResourceInitializationException {
+         synchronized (LOCK) {
+            ThreadSafeWrapper.super.initialize( context );
+            _engineCount++;
+         }
+      }
+
+      /**
+       * Completes the collection of the wrapped lookup once every engine has completed it.
+       * {@inheritDoc}
+       */
+      @Override
+      public void collectionProcessComplete() throws AnalysisEngineProcessException {
+         synchronized (LOCK) {
+            _completedCount++;
+            if ( _completedCount >= _engineCount ) {
+               _completedCount = 0;
+               _delegate.collectionProcessComplete();
+            }
+         }
+      }
+
+      /**
+       * Destroys the wrapped lookup, closing its dictionaries, when the last engine is destroyed.
+       * {@inheritDoc}
+       */
+      @Override
+      public void destroy() {
+         synchronized (LOCK) {
+            if ( _engineCount <= 0 ) {
+               return;
+            }
+            _engineCount--;
+            if ( _engineCount == 0 ) {
+               LOGGER.info( "Closing the shared dictionary lookup." );
+               _delegate.destroy();
+               _initialized = false;
+               _completedCount = 0;
+            }
+         }
+      }
+
+      /**
+       * The wrapped lookup keeps no per-document state, so process is not synchronized.
+       * {@inheritDoc}
+       */
+      @Override
+      public void process( final JCas jCas ) throws AnalysisEngineProcessException {
+         _delegate.process( jCas );
+      }
+
       @Override
       public boolean isInitialized() {
          return _initialized;
@@ -27,10 +27,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Properties;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.ctakes.dictionary.lookup2.util.JdbcConnectionFactory.*;
 
@@ -38,6 +36,15 @@ import static org.apache.ctakes.dictionary.lookup2.util.JdbcConnectionFactory.*;
  * Preferred dictionary to use for large collections of terms.
  * Column indices within the database are constant and not configurable: CUI TUI RINDEX TCOUNT TEXT RWORD
  * If a configurable implementation is desired then create an extension.
+ * <p/>
+ * Each thread uses its own connection and prepared statements, so the dictionary can be used by multiple
+ * pipeline threads without their queries waiting on or interfering with each other.
+ * The connections are closed by {@link #close()}.
+ * Terms for recently used rare words are kept in a bounded lru cache of size {@code cacheSize}.
+ * If {@code batchSize} is above zero then all rare words of a document are fetched ahead of lookup
+ * with queries of up to that many words each, and placed in the cache.
+ * Each row of a batch query is tagged with the position of its query word, so terms are cached under the requested
+ * words even if the database collation matches a stored rare word that differs in case or accents.
  * Author: SPF
  * Affiliation: CHIP-NLP
  * Date: 3/26/13
@@ -48,6 +55,9 @@ final public class JdbcRareWordDictionary extends AbstractRareWordDictionary {
     * Column (field) indices in the database.  Notice that these are constant and not configurable.
     * If a configurable implementation is desired then create an extension.
     */
+   // column of the query word position in batch query results
+   static private final int BATCH_WORD_INDEX = 6;
+
    static private enum FIELD_INDEX {
       CUI( 1 ), RINDEX( 2 ), TCOUNT( 3 ), TEXT( 4 ), RWORD( 5 );
       final private int __index;
@@ -62,9 +72,27 @@ final public class JdbcRareWordDictionary extends AbstractRareWordDictionary {
 
 
    static public final String RARE_WORD_TABLE = "rareWordTable";
+   static public final String CACHE_SIZE = "cacheSize";
+   static public final String BATCH_SIZE = "batchSize";
+
+   static private final int DEFAULT_CACHE_SIZE = 100000;
+   static private final int DEFAULT_BATCH_SIZE = 0;
 
 
-   private PreparedStatement _selectTermCall;
+   final private String _jdbcDriver;
+   final private String _jdbcUrl;
+   final private String _jdbcUser;
+   final private String _jdbcPass;
+   final private String _tableName;
+   final private int _batchSize;
+   final private Map<String, Collection<RareWordTerm>> _rareWordCache;
+   final private ThreadLocal<ThreadCalls> _threadCalls = new ThreadLocal<>();
+   // all calls of all threads, so that they can be closed
+   final private Collection<ThreadCalls> _allThreadCalls = new ArrayList<>();
+   private boolean _closed;
+   final private AtomicLong _cacheHits = new AtomicLong();
+   final private AtomicLong _cacheMisses = new AtomicLong();
+   final private AtomicLong _batchCalls = new AtomicLong();
 
 
    public JdbcRareWordDictionary( final String name, final UimaContext uimaContext, final Properties properties )
@@ -72,7 +100,9 @@ final public class JdbcRareWordDictionary extends AbstractRareWordDictionary {
       this( name,
             properties.getProperty( JDBC_DRIVER ), properties.getProperty( JDBC_URL ),
             properties.getProperty( JDBC_USER ), properties.getProperty( JDBC_PASS ),
-            properties.getProperty( RARE_WORD_TABLE ) );
+            properties.getProperty( RARE_WORD_TABLE ),
+            parseSize( properties.getProperty( CACHE_SIZE ), DEFAULT_CACHE_SIZE ),
+            parseSize( properties.getProperty( BATCH_SIZE ), DEFAULT_BATCH_SIZE ) );
    }
 
 
@@ -83,23 +113,36 @@ final public class JdbcRareWordDictionary extends AbstractRareWordDictionary {
                                   final String jdbcPass,
                                   final String tableName )
          throws SQLException {
+      this( name, jdbcDriver, jdbcUrl, jdbcUser, jdbcPass, tableName, DEFAULT_CACHE_SIZE, DEFAULT_BATCH_SIZE );
+   }
+
+
+   public JdbcRareWordDictionary( final String name,
+                                  final String jdbcDriver,
+                                  final String jdbcUrl,
+                                  final String jdbcUser,
+                                  final String jdbcPass,
+                                  final String tableName,
+                                  final int cacheSize,
+                                  final int batchSize )
+         throws SQLException {
       super( name );
-      boolean connected = false;
+      _jdbcDriver = jdbcDriver;
+      _jdbcUrl = jdbcUrl;
+      _jdbcUser = jdbcUser;
+      _jdbcPass = jdbcPass;
+      _tableName = tableName;
+      _batchSize = batchSize;
+      _rareWordCache = createCache( cacheSize );
+      // Create the connection and statement for this thread now so that a bad table fails during initialization
       try {
-         // DO NOT use try with resources here.  Try with resources uses a closable and closes it when exiting the try
-         final Connection connection = JdbcConnectionFactory.getInstance()
-               .getConnection( jdbcDriver, jdbcUrl, jdbcUser, jdbcPass );
-         connected = connection != null;
-         _selectTermCall = createSelectCall( connection, tableName );
+         getThreadCalls().getSelectCall();
       } catch ( SQLException sqlE ) {
-         if ( !connected ) {
-            LOGGER.error( "Could not Connect to Dictionary " + name );
-         } else {
-            LOGGER.error( "Could not create Term Data Selection Call", sqlE );
-         }
+         close();
          throw sqlE;
       }
-      LOGGER.info( "Connected to cui and term table " + tableName.toUpperCase() );
+      LOGGER.info( "Connected to cui and term table " + tableName.toUpperCase()
+                   + " with cache size " + cacheSize + " and batch size " + batchSize );
    }
 
 
@@ -108,47 +151,316 @@ final public class JdbcRareWordDictionary extends AbstractRareWordDictionary {
     */
    @Override
    public Collection<RareWordTerm> getRareWordHits( final String rareWordText ) {
+      final Collection<RareWordTerm> cachedTerms = getCachedTerms( rareWordText );
+      if ( cachedTerms != null ) {
+         _cacheHits.incrementAndGet();
+         return cachedTerms;
+      }
+      _cacheMisses.incrementAndGet();
       final List<RareWordTerm> rareWordTerms = new ArrayList<>();
       try {
-         fillSelectCall( rareWordText );
-         final ResultSet resultSet = _selectTermCall.executeQuery();
+         final PreparedStatement selectCall = getThreadCalls().getSelectCall();
+         selectCall.clearParameters();
+         selectCall.setString( 1, rareWordText );
+         readTerms( selectCall, rareWordTerms );
+      } catch ( SQLException e ) {
+         LOGGER.error( e.getMessage() );
+         return rareWordTerms;
+      }
+      cacheTerms( rareWordText, rareWordTerms );
+      return rareWordTerms;
+   }
+
+   /**
+    * Fetches terms for all uncached rare words with as few queries as possible and places them in the cache.
+    * {@inheritDoc}
+    */
+   @Override
+   public void prefetchRareWordHits( final Collection<String> rareWordTexts ) {
+      if ( _batchSize <= 0 || _rareWordCache == null ) {
+         return;
+      }
+      final List<String> uncachedWords = new ArrayList<>();
+      for ( String rareWordText : new HashSet<>( rareWordTexts ) ) {
+         if ( getCachedTerms( rareWordText ) == null ) {
+            uncachedWords.add( rareWordText );
+         }
+      }
+      for ( int i = 0; i < uncachedWords.size(); i += _batchSize ) {
+         fetchBatch( uncachedWords.subList( i, Math.min( i + _batchSize, uncachedWords.size() ) ) );
+      }
+   }
+
+   /**
+    * Closes the statements and connections of all threads.
+    * {@inheritDoc}
+    */
+   @Override
+   public void close() {
+      final Collection<ThreadCalls> allThreadCalls;
+      synchronized ( _allThreadCalls ) {
+         if ( _closed ) {
+            return;
+         }
+         _closed = true;
+         allThreadCalls = new ArrayList<>( _allThreadCalls );
+         _allThreadCalls.clear();
+      }
+      allThreadCalls.forEach( ThreadCalls::close );
+      logCacheStats();
+   }
+
+   /**
+    * @return number of open connections, one for each thread that has used the dictionary
+    */
+   int getConnectionCount() {
+      synchronized ( _allThreadCalls ) {
+         return _allThreadCalls.size();
+      }
+   }
+
+   /**
+    * @return number of lookups answered by the cache
+    */
+   public long getCacheHits() {
+      return _cacheHits.get();
+   }
+
+   /**
+    * @return number of lookups that required a single word query
+    */
+   public long getCacheMisses() {
+      return _cacheMisses.get();
+   }
+
+   /**
+    * @param rareWords rare words to fetch, no more than the batch size
+    */
+   private void fetchBatch( final List<String> rareWords ) {
+      final List<Collection<RareWordTerm>> batchTerms = new ArrayList<>( rareWords.size() );
+      for ( int i = 0; i < rareWords.size(); i++ ) {
+         batchTerms.add( new ArrayList<>() );
+      }
+      try {
+         final PreparedStatement batchCall = getThreadCalls().getSelectBatchCall();
+         batchCall.clearParameters();
+         // The statement always has batch size parameters, so pad a short batch by repeating the last word
+         for ( int i = 0; i < _batchSize; i++ ) {
+            batchCall.setString( i + 1, rareWords.get( Math.min( i, rareWords.size() - 1 ) ) );
+         }
+         final ResultSet resultSet = batchCall.executeQuery();
          while ( resultSet.next() ) {
-            final RareWordTerm rareWordTerm = new RareWordTerm( resultSet.getString( FIELD_INDEX.TEXT.__index ),
-                  resultSet.getLong( FIELD_INDEX.CUI.__index ),
-                  resultSet.getString( FIELD_INDEX.RWORD.__index ),
-                  resultSet.getInt( FIELD_INDEX.RINDEX.__index ),
-                  resultSet.getInt( FIELD_INDEX.TCOUNT.__index ) );
-            rareWordTerms.add( rareWordTerm );
+            // the last column is the position of the query word, rows for padding are skipped
+            final int wordIndex = resultSet.getInt( BATCH_WORD_INDEX );
+            if ( wordIndex < rareWords.size() ) {
+               batchTerms.get( wordIndex ).add( readTerm( resultSet ) );
+            }
          }
-         // Though the ResultSet interface documentation states that there are automatic closures,
-         // it is up to the driver to implement this behavior ...  historically some drivers have not done so
          resultSet.close();
       } catch ( SQLException e ) {
          LOGGER.error( e.getMessage() );
+         return;
+      }
+      _batchCalls.incrementAndGet();
+      for ( int i = 0; i < rareWords.size(); i++ ) {
+         cacheTerms( rareWords.get( i ), batchTerms.get( i ) );
       }
-      return rareWordTerms;
    }
 
    /**
-    * @return an sql call to use for term lookup
-    * @throws SQLException if the {@code PreparedStatement} could not be created or changed
+    * @param selectCall    filled sql call
+    * @param rareWordTerms filled with terms read from the call results
+    * @throws SQLException if the call could not be executed or read
     */
-   static private PreparedStatement createSelectCall( final Connection connection, final String tableName )
+   static private void readTerms( final PreparedStatement selectCall, final Collection<RareWordTerm> rareWordTerms )
          throws SQLException {
-      final String lookupSql = "SELECT * FROM " + tableName + " WHERE RWORD = ?";
-      return connection.prepareStatement( lookupSql );
+      final ResultSet resultSet = selectCall.executeQuery();
+      while ( resultSet.next() ) {
+         rareWordTerms.add( readTerm( resultSet ) );
+      }
+      // Though the ResultSet interface documentation states that there are automatic closures,
+      // it is up to the driver to implement this behavior ...  historically some drivers have not done so
+      resultSet.close();
+   }
+
+   /**
+    * @param resultSet result set positioned on a term row
+    * @return the term of the row
+    * @throws SQLException if the row could not be read
+    */
+   static private RareWordTerm readTerm( final ResultSet resultSet ) throws SQLException {
+      return new RareWordTerm( resultSet.getString( FIELD_INDEX.TEXT.__index ),
+            resultSet.getLong( FIELD_INDEX.CUI.__index ),
+            resultSet.getString( FIELD_INDEX.RWORD.__index ),
+            resultSet.getInt( FIELD_INDEX.RINDEX.__index ),
+            resultSet.getInt( FIELD_INDEX.TCOUNT.__index ) );
    }
 
    /**
-    * @param rareWordText text of the rare word to use for term lookup
-    * @return an sql call to use for term lookup
-    * @throws SQLException if the {@code PreparedStatement} could not be created or changed
+    * @return the connection and sql calls of the current thread, created if necessary
+    * @throws SQLException if the dictionary is closed or a connection could not be made
     */
-   private PreparedStatement fillSelectCall( final String rareWordText ) throws SQLException {
-      _selectTermCall.clearParameters();
-      _selectTermCall.setString( 1, rareWordText );
-      return _selectTermCall;
+   private ThreadCalls getThreadCalls() throws SQLException {
+      ThreadCalls threadCalls = _threadCalls.get();
+      if ( threadCalls != null ) {
+         return threadCalls;
+      }
+      synchronized ( _allThreadCalls ) {
+         if ( _closed ) {
+            throw new SQLException( "Dictionary " + getName() + " is closed" );
+         }
+      }
+      try {
+         // DO NOT use try with resources here.  Try with resources uses a closable and closes it when exiting the try
+         threadCalls = new ThreadCalls( JdbcConnectionFactory.getInstance()
+               .createConnection( _jdbcDriver, _jdbcUrl, _jdbcUser, _jdbcPass ) );
+      } catch ( SQLException sqlE ) {
+         LOGGER.error( "Could not Connect to Dictionary " + getName() );
+         throw sqlE;
+      }
+      synchronized ( _allThreadCalls ) {
+         if ( _closed ) {
+            threadCalls.close();
+            throw new SQLException( "Dictionary " + getName() + " is closed" );
+         }
+         _allThreadCalls.add( threadCalls );
+      }
+      _threadCalls.set( threadCalls );
+      return threadCalls;
    }
 
+   /**
+    * @param rareWordText text of the rare word
+    * @return cached terms for the rare word or null if it is not in the cache
+    */
+   private Collection<RareWordTerm> getCachedTerms( final String rareWordText ) {
+      if ( _rareWordCache == null ) {
+         return null;
+      }
+      synchronized ( _rareWordCache ) {
+         return _rareWordCache.get( rareWordText );
+      }
+   }
+
+   /**
+    * @param rareWordText  text of the rare word
+    * @param rareWordTerms terms for the rare word, possibly empty
+    */
+   private void cacheTerms( final String rareWordText, final Collection<RareWordTerm> rareWordTerms ) {
+      if ( _rareWordCache == null ) {
+         return;
+      }
+      final Collection<RareWordTerm> cachedTerms = Collections.unmodifiableCollection( rareWordTerms );
+      synchronized ( _rareWordCache ) {
+         _rareWordCache.put( rareWordText, cachedTerms );
+      }
+   }
+
+   /**
+    * @param cacheSize maximum number of rare words in the cache
+    * @return an access ordered map that removes the least recently used rare word when full, or null for no cache
+    */
+   static private Map<String, Collection<RareWordTerm>> createCache( final int cacheSize ) {
+      if ( cacheSize <= 0 ) {
+         return null;
+      }
+      return new LinkedHashMap<String, Collection<RareWordTerm>>( 1024, 0.75f, true ) {
+         @Override
+         protected boolean removeEldestEntry( final Map.Entry<String, Collection<RareWordTerm>> eldest ) {
+            return size() > cacheSize;
+         }
+      };
+   }
+
+   /**
+    * The connection of one thread and the sql calls that use it.
+    */
+   private final class ThreadCalls {
+      final private Connection __connection;
+      private PreparedStatement __selectCall;
+      private PreparedStatement __selectBatchCall;
+
+      private ThreadCalls( final Connection connection ) {
+         __connection = connection;
+      }
+
+      /**
+       * @return an sql call to use for term lookup
+       * @throws SQLException if the {@code PreparedStatement} could not be created
+       */
+      private PreparedStatement getSelectCall() throws SQLException {
+         if ( __selectCall == null ) {
+            final String lookupSql = "SELECT * FROM " + _tableName + " WHERE RWORD = ?";
+            try {
+               __selectCall = __connection.prepareStatement( lookupSql );
+            } catch ( SQLException sqlE ) {
+               LOGGER.error( "Could not create Term Data Selection Call", sqlE );
+               throw sqlE;
+            }
+         }
+         return __selectCall;
+      }
+
+      /**
+       * @return an sql call to use for batch term lookup
+       * @throws SQLException if the {@code PreparedStatement} could not be created
+       */
+      private PreparedStatement getSelectBatchCall() throws SQLException {
+         if ( __selectBatchCall == null ) {
+            // one select per word, each tagged with the position of its word
+            final StringBuilder sb = new StringBuilder();
+            for ( int i = 0; i < _batchSize; i++ ) {
+               if ( i > 0 ) {
+                  sb.append( " UNION ALL " );
+               }
+               sb.append( "SELECT CUI, RINDEX, TCOUNT, TEXT, RWORD, " ).append( i )
+                 .append( " FROM " ).append( _tableName ).append( " WHERE RWORD = ?" );
+            }
+            __selectBatchCall = __connection.prepareStatement( sb.toString() );
+         }
+         return __selectBatchCall;
+      }
+
+      private void close() {
+         try {
+            if ( __selectCall != null ) {
+               __selectCall.close();
+            }
+            if ( __selectBatchCall != null ) {
+               __selectBatchCall.close();
+            }
+            __connection.close();
+         } catch ( SQLException sqlE ) {
+            LOGGER.warn( "Could not close connection to " + getName() + " " + sqlE.getMessage() );
+         }
+      }
+   }
+
+   private void logCacheStats() {
+      final long hits = _cacheHits.get();
+      final long total = hits + _cacheMisses.get();
+      if ( total == 0 ) {
+         return;
+      }
+      LOGGER.info( getName() + " rare word lookups: " + total + " , cache hits: " + hits
+                   + " (" + (100 * hits / total) + "%) , batch calls: " + _batchCalls.get() );
+   }
+
+   /**
+    * @param value        property value, possibly null
+    * @param defaultValue value to use if the property is null or not an integer
+    * @return parsed value
+    */
+   static private int parseSize( final String value, final int defaultValue ) {
+      if ( value == null || value.trim().isEmpty() ) {
+         return defaultValue;
+      }
+      try {
+         return Integer.parseInt( value.trim() );
+      } catch ( NumberFormatException nfE ) {
+         LOGGER.warn( "Could not parse " + value + " as an integer, using " + defaultValue );
+      }
+      return defaultValue;
+   }
 
 }
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dictionary.lookup2.dictionary;
+
+import org.apache.ctakes.core.util.collection.ArrayListMap;
+import org.apache.ctakes.core.util.collection.CollectionMap;
+import org.apache.ctakes.dictionary.lookup2.term.RareWordTerm;
+import org.apache.ctakes.dictionary.lookup2.util.CuiCodeUtil;
+import org.apache.ctakes.dictionary.lookup2.util.JdbcConnectionFactory;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+import static org.apache.ctakes.dictionary.lookup2.dictionary.MmapRareWordDictionary.*;
+import static org.apache.ctakes.dictionary.lookup2.dictionary.RareWordTermMapCreator.CuiTerm;
+
+/**
+ * Converts a bsv file or a rare word database table into the binary file used by {@link MmapRareWordDictionary}.
+ * <p/>
+ * Usage:
+ * <p>
+ * MmapDictionaryWriter bsv {bsvPath} {outputFile}
+ * </p>
+ * or
+ * <p>
+ * MmapDictionaryWriter jdbc {jdbcDriver} {jdbcUrl} {jdbcUser} {jdbcPass} {rareWordTable} {outputFile}
+ * </p>
+ */
+final public class MmapDictionaryWriter {
+
+   static private final Logger LOGGER = Logger.getLogger( "MmapDictionaryWriter" );
+
+   private MmapDictionaryWriter() {
+   }
+
+   /**
+    * @param bsvFilePath path to file containing term rows and bsv columns
+    * @return map of rare words to terms created from the bsv file
+    */
+   static public CollectionMap<String, RareWordTerm, ? extends Collection<RareWordTerm>> readBsv(
+         final String bsvFilePath ) {
+      final Collection<CuiTerm> cuiTerms = BsvRareWordDictionary.parseBsvFile( bsvFilePath );
+      return RareWordTermMapCreator.createRareWordTermMap( cuiTerms );
+   }
+
+   /**
+    * Reads an entire rare word table with columns CUI RINDEX TCOUNT TEXT RWORD, as used by {@link JdbcRareWordDictionary}
+    *
+    * @param connection -
+    * @param tableName  name of the rare word table
+    * @return map of rare words to terms in the table
+    * @throws SQLException if the table could not be read
+    */
+   static public CollectionMap<String, RareWordTerm, ? extends Collection<RareWordTerm>> readJdbc(
+         final Connection connection, final String tableName ) throws SQLException {
+      final CollectionMap<String, RareWordTerm, List<RareWordTerm>> rareWordTermMap = new ArrayListMap<>();
+      try ( Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery( "SELECT CUI,RINDEX,TCOUNT,TEXT,RWORD FROM " + tableName ) ) {
+         while ( resultSet.next() ) {
+            final String rareWord = resultSet.getString( 5 );
+            rareWordTermMap.placeValue( rareWord, new RareWordTerm( resultSet.getString( 4 ),
+                  resultSet.getLong( 1 ), rareWord, resultSet.getInt( 2 ), resultSet.getInt( 3 ) ) );
+         }
+      }
+      return rareWordTermMap;
+   }
+
+   /**
+    * @param rareWordTermMap map of rare words to terms
+    * @param outputFile      binary dictionary file to write
+    * @throws IOException if the file could not be written
+    */
+   static public void writeDictionary( final CollectionMap<String, RareWordTerm, ? extends Collection<RareWordTerm>> rareWordTermMap,
+                                       final File outputFile ) throws IOException {
+      // Sort rare words by unsigned utf8 bytes, which is the order used by binary search in the dictionary
+      final List<byte[]> keys = new ArrayList<>( rareWordTermMap.size() );
+      final Map<byte[], String> keyWords = new IdentityHashMap<>( rareWordTermMap.size() );
+      for ( String rareWord : rareWordTermMap.keySet() ) {
+         final byte[] key = rareWord.getBytes( StandardCharsets.UTF_8 );
+         keys.add( key );
+         keyWords.put( key, rareWord );
+      }
+      keys.sort( MmapDictionaryWriter::compareKeys );
+      // Collect the cui prefixes used by the terms
+      final SortedSet<Integer> prefixIndices = new TreeSet<>();
+      int termCount = 0;
+      for ( Collection<RareWordTerm> terms : rareWordTermMap.values() ) {
+         for ( RareWordTerm term : terms ) {
+            prefixIndices.add( (int)(term.getCuiCode() / PREFIX_MULTIPLIER) );
+            termCount++;
+         }
+      }
+      final int prefixCount = prefixIndices.isEmpty() ? 0 : prefixIndices.last() + 1;
+      final ByteArrayOutputStream keyBytes = new ByteArrayOutputStream();
+      final ByteArrayOutputStream textBytes = new ByteArrayOutputStream();
+      try ( DataOutputStream output = new DataOutputStream(
+            new BufferedOutputStream( new FileOutputStream( outputFile ) ) ) ) {
+         output.writeInt( MAGIC );
+         output.writeInt( VERSION );
+         output.writeInt( prefixCount );
+         for ( int i = 0; i < prefixCount; i++ ) {
+            final byte[] template = CuiCodeUtil.getInstance().getAsCui( i * PREFIX_MULTIPLIER )
+                                               .getBytes( StandardCharsets.UTF_8 );
+            output.writeInt( template.length );
+            output.write( template );
+         }
+         output.writeInt( keys.size() );
+         output.writeInt( termCount );
+         int termIndex = 0;
+         for ( byte[] key : keys ) {
+            output.writeInt( keyBytes.size() );
+            output.writeInt( termIndex );
+            keyBytes.write( key );
+            termIndex += rareWordTermMap.getCollection( keyWords.get( key ) ).size();
+         }
+         output.writeInt( keyBytes.size() );
+         output.writeInt( termIndex );
+         for ( byte[] key : keys ) {
+            for ( RareWordTerm term : rareWordTermMap.getCollection( keyWords.get( key ) ) ) {
+               final byte[] text = term.getText().getBytes( StandardCharsets.UTF_8 );
+               output.writeLong( term.getCuiCode() );
+               output.writeInt( textBytes.size() );
+               output.writeInt( text.length );
+               output.writeInt( term.getRareWordIndex() );
+               output.writeInt( term.getTokenCount() );
+               textBytes.write( text );
+            }
+         }
+         output.writeInt( keyBytes.size() );
+         keyBytes.writeTo( output );
+         output.writeInt( textBytes.size() );
+         textBytes.writeTo( output );
+      }
+      LOGGER.info( "Wrote " + keys.size() + " rare words and " + termCount + " terms to " + outputFile.getPath() );
+   }
+
+   static private int compareKeys( final byte[] key1, final byte[] key2 ) {
+      final int minLength = Math.min( key1.length, key2.length );
+      for ( int i = 0; i < minLength; i++ ) {
+         final int compare = (key1[ i ] & 0xff) - (key2[ i ] & 0xff);
+         if ( compare != 0 ) {
+            return compare;
+         }
+      }
+      return key1.length - key2.length;
+   }
+
+   static private void printUsage() {
+      LOGGER.error( "Usage: MmapDictionaryWriter bsv {bsvPath} {outputFile}" );
+      LOGGER.error( "   or: MmapDictionaryWriter jdbc {jdbcDriver} {jdbcUrl} {jdbcUser} {jdbcPass} {rareWordTable} {outputFile}" );
+   }
+
+   public static void main( final String... args ) {
+      if ( args.length == 3 && args[ 0 ].equalsIgnoreCase( "bsv" ) ) {
+         try {
+            writeDictionary( readBsv( args[ 1 ] ), new File( args[ 2 ] ) );
+         } catch ( IOException ioE ) {
+            LOGGER.error( ioE.getMessage() );
+            System.exit( 1 );
+         }
+      } else if ( args.length == 7 && args[ 0 ].equalsIgnoreCase( "jdbc" ) ) {
+         try {
+            final Connection connection = JdbcConnectionFactory.getInstance()
+                  .getConnection( args[ 1 ], args[ 2 ], args[ 3 ], args[ 4 ] );
+            writeDictionary( readJdbc( connection, args[ 5 ] ), new File( args[ 6 ] ) );
+         } catch ( SQLException | IOException multE ) {
+            LOGGER.error( multE.getMessage() );
+            System.exit( 1 );
+         }
+      } else {
+         printUsage();
+         System.exit( 1 );
+      }
+   }
+
+}
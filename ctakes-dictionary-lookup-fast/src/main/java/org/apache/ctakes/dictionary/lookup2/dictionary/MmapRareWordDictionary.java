@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dictionary.lookup2.dictionary;
+
+import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.ctakes.dictionary.lookup2.term.RareWordTerm;
+import org.apache.ctakes.dictionary.lookup2.util.CuiCodeUtil;
+import org.apache.log4j.Logger;
+import org.apache.uima.UimaContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A RareWordDictionary backed by a prebuilt binary file that is memory-mapped read-only.
+ * Nothing is loaded onto the heap at startup, and the operating system shares the mapped pages between all jvms
+ * on a host that use the same file.  Lookups use absolute buffer reads only, so the dictionary is thread safe.
+ * The file is created from a bsv file or rare word database table by {@link MmapDictionaryWriter}.
+ * <p/>
+ * File layout, big-endian :
+ * <ul>
+ * <li>header: magic, version, cui prefix count, cui prefix templates, rare word count, term count</li>
+ * <li>rare word table: (key offset, first term index) for each rare word in unsigned utf8 byte order, plus an end entry</li>
+ * <li>term table: (cui code, text offset, text length, rare word index, token count) for each term</li>
+ * <li>rare word key bytes, term text bytes</li>
+ * </ul>
+ */
+final public class MmapRareWordDictionary extends AbstractRareWordDictionary {
+
+   static private final Logger LOGGER = Logger.getLogger( "MmapRareWordDictionary" );
+
+   static private final String MMAP_FILE_PATH = "mmapPath";
+
+   static final int MAGIC = 0x43544B44;
+   static final int VERSION = 1;
+   static final int RARE_WORD_ENTRY_SIZE = 8;
+   static final int TERM_ENTRY_SIZE = 24;
+   static final long PREFIX_MULTIPLIER = 100000000;
+
+   final private ByteBuffer _buffer;
+   final private long[] _prefixCodes;
+   final private int _rareWordCount;
+   final private int _rareWordTableStart;
+   final private int _termTableStart;
+   final private int _keyBytesStart;
+   final private int _textBytesStart;
+
+
+   public MmapRareWordDictionary( final String name, final UimaContext uimaContext, final Properties properties )
+         throws IOException {
+      this( name, properties.getProperty( MMAP_FILE_PATH ) );
+   }
+
+   public MmapRareWordDictionary( final String name, final String mmapFilePath ) throws IOException {
+      this( name, FileLocator.getFile( mmapFilePath ) );
+   }
+
+   public MmapRareWordDictionary( final String name, final File mmapFile ) throws IOException {
+      super( name );
+      try ( FileChannel channel = FileChannel.open( mmapFile.toPath(), StandardOpenOption.READ ) ) {
+         if ( channel.size() > Integer.MAX_VALUE ) {
+            throw new IOException( "Dictionary file " + mmapFile.getPath() + " is larger than 2GB" );
+         }
+         // A mapping remains valid after its channel is closed
+         _buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+      }
+      checkLength( mmapFile, 12 );
+      if ( _buffer.getInt( 0 ) != MAGIC || _buffer.getInt( 4 ) != VERSION ) {
+         throw new IOException( "File " + mmapFile.getPath() + " is not a version " + VERSION + " rare word dictionary" );
+      }
+      int position = 8;
+      final int prefixCount = _buffer.getInt( position );
+      position += 4;
+      // Cui codes depend upon the order in which cui prefixes were registered, so map file prefixes to runtime prefixes
+      _prefixCodes = new long[ Math.max( 0, prefixCount ) ];
+      for ( int i = 0; i < prefixCount; i++ ) {
+         checkLength( mmapFile, position + 4L );
+         final int length = _buffer.getInt( position );
+         position += 4;
+         checkLength( mmapFile, position + (long)length );
+         final String template = readString( position, length );
+         position += length;
+         _prefixCodes[ i ] = CuiCodeUtil.getInstance().getCuiCode( template );
+      }
+      checkLength( mmapFile, position + 8L );
+      _rareWordCount = _buffer.getInt( position );
+      final int termCount = _buffer.getInt( position + 4 );
+      if ( _rareWordCount < 0 || termCount < 0 ) {
+         throw new IOException( "Dictionary file " + mmapFile.getPath() + " is truncated or corrupt" );
+      }
+      _rareWordTableStart = position + 8;
+      final long termTableStart = _rareWordTableStart + (_rareWordCount + 1L) * RARE_WORD_ENTRY_SIZE;
+      final long keyBytesStart = termTableStart + termCount * (long)TERM_ENTRY_SIZE + 4;
+      checkLength( mmapFile, keyBytesStart );
+      _termTableStart = (int)termTableStart;
+      _keyBytesStart = (int)keyBytesStart;
+      final long textBytesStart = keyBytesStart + _buffer.getInt( _keyBytesStart - 4 ) + 4;
+      checkLength( mmapFile, textBytesStart );
+      _textBytesStart = (int)textBytesStart;
+      checkLength( mmapFile, textBytesStart + _buffer.getInt( _textBytesStart - 4 ) );
+      LOGGER.info( "Mapped " + _rareWordCount + " rare words and " + termCount + " terms from " + mmapFile.getPath() );
+   }
+
+   /**
+    * @param mmapFile dictionary file
+    * @param length   number of bytes that the file must have
+    * @throws IOException if the file is shorter, which means that it is truncated or corrupt
+    */
+   private void checkLength( final File mmapFile, final long length ) throws IOException {
+      if ( length < 0 || length > _buffer.limit() ) {
+         throw new IOException( "Dictionary file " + mmapFile.getPath() + " is truncated or corrupt" );
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Collection<RareWordTerm> getRareWordHits( final String rareWordText ) {
+      final byte[] key = rareWordText.getBytes( StandardCharsets.UTF_8 );
+      final int rareWordIndex = findRareWord( key );
+      if ( rareWordIndex < 0 ) {
+         return Collections.emptyList();
+      }
+      final int entry = _rareWordTableStart + rareWordIndex * RARE_WORD_ENTRY_SIZE;
+      final int firstTerm = _buffer.getInt( entry + 4 );
+      final int endTerm = _buffer.getInt( entry + RARE_WORD_ENTRY_SIZE + 4 );
+      final List<RareWordTerm> rareWordTerms = new ArrayList<>( endTerm - firstTerm );
+      for ( int i = firstTerm; i < endTerm; i++ ) {
+         final int termEntry = _termTableStart + i * TERM_ENTRY_SIZE;
+         final long cuiCode = getCuiCode( _buffer.getLong( termEntry ) );
+         final String text = readString( _textBytesStart + _buffer.getInt( termEntry + 8 ),
+               _buffer.getInt( termEntry + 12 ) );
+         rareWordTerms.add( new RareWordTerm( text, cuiCode, rareWordText,
+               _buffer.getInt( termEntry + 16 ), _buffer.getInt( termEntry + 20 ) ) );
+      }
+      return rareWordTerms;
+   }
+
+   /**
+    * @param key utf8 bytes of a rare word
+    * @return index of the rare word in the rare word table, or -1 if it does not exist
+    */
+   private int findRareWord( final byte[] key ) {
+      int low = 0;
+      int high = _rareWordCount - 1;
+      while ( low <= high ) {
+         final int middle = (low + high) >>> 1;
+         final int entry = _rareWordTableStart + middle * RARE_WORD_ENTRY_SIZE;
+         final int keyOffset = _buffer.getInt( entry );
+         final int keyLength = _buffer.getInt( entry + RARE_WORD_ENTRY_SIZE ) - keyOffset;
+         final int compare = compareKey( _keyBytesStart + keyOffset, keyLength, key );
+         if ( compare < 0 ) {
+            low = middle + 1;
+         } else if ( compare > 0 ) {
+            high = middle - 1;
+         } else {
+            return middle;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * @param position position of the stored key in the buffer
+    * @param length   length of the stored key
+    * @param key      utf8 bytes of the wanted key
+    * @return negative, zero or positive as the stored key is less than, equal to or greater than the wanted key
+    */
+   private int compareKey( final int position, final int length, final byte[] key ) {
+      final int minLength = Math.min( length, key.length );
+      for ( int i = 0; i < minLength; i++ ) {
+         final int compare = (_buffer.get( position + i ) & 0xff) - (key[ i ] & 0xff);
+         if ( compare != 0 ) {
+            return compare;
+         }
+      }
+      return length - key.length;
+   }
+
+   /**
+    * @param fileCode cui code as stored in the file
+    * @return cui code using the prefix registration of this jvm
+    */
+   private long getCuiCode( final long fileCode ) {
+      final int prefixIndex = (int)(fileCode / PREFIX_MULTIPLIER);
+      if ( prefixIndex < 0 || prefixIndex >= _prefixCodes.length ) {
+         return fileCode;
+      }
+      return _prefixCodes[ prefixIndex ] + fileCode % PREFIX_MULTIPLIER;
+   }
+
+   /**
+    * @param position start position in the buffer
+    * @param length   number of utf8 bytes
+    * @return decoded string
+    */
+   private String readString( final int position, final int length ) {
+      final byte[] bytes = new byte[ length ];
+      for ( int i = 0; i < length; i++ ) {
+         bytes[ i ] = _buffer.get( position + i );
+      }
+      return new String( bytes, StandardCharsets.UTF_8 );
+   }
+
+}
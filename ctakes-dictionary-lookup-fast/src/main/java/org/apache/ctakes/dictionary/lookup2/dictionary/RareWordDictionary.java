@@ -56,4 +56,20 @@ public interface RareWordDictionary {
     */
    public Collection<RareWordTerm> getRareWordHits( final String rareWordText );
 
+   /**
+    * Dictionaries with a slow lookup per rare word may fetch the terms for many rare words at once
+    * so that following calls to getRareWordHits are fast.  By default nothing is done.
+    *
+    * @param rareWordTexts text of all tokens that are about to be looked up, for instance all tokens in a document
+    */
+   default public void prefetchRareWordHits( final Collection<String> rareWordTexts ) {
+   }
+
+   /**
+    * Release any resources held by the dictionary, for instance database connections.
+    * The dictionary should not be used after it is closed.  By default nothing is done.
+    */
+   default public void close() {
+   }
+
 }
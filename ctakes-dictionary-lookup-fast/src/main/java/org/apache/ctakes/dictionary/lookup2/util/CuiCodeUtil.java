@@ -2,9 +2,9 @@ package org.apache.ctakes.dictionary.lookup2.util;
 
 import org.apache.log4j.Logger;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Author: SPF
@@ -21,7 +21,8 @@ public enum CuiCodeUtil {
    static private final Logger LOGGER = Logger.getLogger( "CuiCodeUtil" );
    static private final long PREFIX_MULTIPLIER = 100000000;
 
-   final private List<PrefixerPair> _prefixerPairList = new ArrayList<>();
+   // Prefixes are only added while dictionaries load, afterwards the list is read by concurrent lookups
+   final private List<PrefixerPair> _prefixerPairList = new CopyOnWriteArrayList<>();
 
    CuiCodeUtil() {
       // Add the standard C as the default encoding prefix
@@ -38,7 +39,7 @@ public enum CuiCodeUtil {
    }
 
 
-   public Long getCuiCode( final String cui ) {
+   synchronized public Long getCuiCode( final String cui ) {
       final PrefixerPair prefixerPair = new PrefixerPair( cui );
       int prefixerIndex = _prefixerPairList.indexOf( prefixerPair );
       if ( prefixerIndex < 0 ) {
@@ -33,6 +33,8 @@ public enum JdbcConnectionFactory {
    static private final String HSQL_FILE_PREFIX = HSQL_PREFIX + FILE_PREFIX;
    static private final String HSQL_DB_EXT = ".script";
    private final Map<String, Connection> CONNECTIONS = Collections.synchronizedMap( new HashMap<String, Connection>() );
+   // names of drivers that have already been registered, as DriverManager keeps an entry for every registration
+   static private final Set<String> REGISTERED_DRIVERS = Collections.synchronizedSet( new HashSet<String>() );
 
    public static JdbcConnectionFactory getInstance() {
       return INSTANCE;
@@ -57,24 +59,8 @@ public enum JdbcConnectionFactory {
       if ( connection != null ) {
          return connection;
       }
-      String trueJdbcUrl = jdbcUrl;
-      if ( jdbcUrl.startsWith( HSQL_FILE_PREFIX ) ) {
-         // Hack for hsqldb file needing to be absolute or relative to current working directory
-//         trueJdbcUrl = HSQL_FILE_PREFIX + getConnectionUrl( jdbcUrl );
-         trueJdbcUrl = HSQL_PREFIX + getConnectionUrl( jdbcUrl );
-      }
-      try {
-         // DO NOT use try with resources here.
-         // Try with resources uses a closable and closes it when exiting the try block
-         final Driver driver = (Driver)Class.forName( jdbcDriver ).newInstance();
-         DriverManager.registerDriver( driver );
-      } catch ( SQLException sqlE ) {
-         LOGGER.error( "Could not register Driver " + jdbcDriver, sqlE );
-         throw sqlE;
-      } catch ( ClassNotFoundException | InstantiationException | IllegalAccessException multE ) {
-         LOGGER.error( "Could not create Driver " + jdbcDriver, multE );
-         throw new SQLException( multE );
-      }
+      final String trueJdbcUrl = getTrueUrl( jdbcUrl );
+      registerDriver( jdbcDriver );
       LOGGER.info( "Connecting to " + jdbcUrl + ":" );
       final Timer timer = new Timer();
       timer.scheduleAtFixedRate( new DotPlotter(), 333, 333 );
@@ -97,6 +83,81 @@ public enum JdbcConnectionFactory {
       return connection;
    }
 
+   /**
+    * Create a new Connection that is not shared.  The caller is responsible for closing it.
+    * Use this when a Connection is needed for each thread, for instance for concurrent queries.
+    *
+    * @param jdbcDriver -
+    * @param jdbcUrl    -
+    * @param jdbcUser   -
+    * @param jdbcPass   -
+    * @return a new Connection
+    * @throws SQLException if a JDBC Driver could not be created or registered,
+    *                      or if a Connection could not be made to the given <code>jdbcUrl</code>
+    */
+   public Connection createConnection( final String jdbcDriver,
+                                       final String jdbcUrl,
+                                       final String jdbcUser,
+                                       final String jdbcPass ) throws SQLException {
+      final String trueJdbcUrl = getTrueUrl( jdbcUrl );
+      registerDriver( jdbcDriver );
+      try {
+         return DriverManager.getConnection( trueJdbcUrl, jdbcUser, jdbcPass );
+      } catch ( SQLException sqlE ) {
+         LOGGER.error( "Could not create Connection with " + trueJdbcUrl + " as " + jdbcUser, sqlE );
+         throw sqlE;
+      }
+   }
+
+   /**
+    * @param jdbcUrl -
+    * @return the url with an hsqldb file path made absolute
+    * @throws SQLException if there is no hsqldb file at the url
+    */
+   static private String getTrueUrl( final String jdbcUrl ) throws SQLException {
+      if ( jdbcUrl.startsWith( HSQL_FILE_PREFIX ) ) {
+         // Hack for hsqldb file needing to be absolute or relative to current working directory
+//         return HSQL_FILE_PREFIX + getConnectionUrl( jdbcUrl );
+         return HSQL_PREFIX + getConnectionUrl( jdbcUrl );
+      }
+      return jdbcUrl;
+   }
+
+   /**
+    * Registers each driver once.
+    *
+    * @param jdbcDriver -
+    * @throws SQLException if the JDBC Driver could not be created or registered
+    */
+   static private void registerDriver( final String jdbcDriver ) throws SQLException {
+      synchronized ( REGISTERED_DRIVERS ) {
+         if ( REGISTERED_DRIVERS.contains( jdbcDriver ) ) {
+            return;
+         }
+         createDriver( jdbcDriver );
+         REGISTERED_DRIVERS.add( jdbcDriver );
+      }
+   }
+
+   /**
+    * @param jdbcDriver -
+    * @throws SQLException if the JDBC Driver could not be created or registered
+    */
+   static private void createDriver( final String jdbcDriver ) throws SQLException {
+      try {
+         // DO NOT use try with resources here.
+         // Try with resources uses a closable and closes it when exiting the try block
+         final Driver driver = (Driver)Class.forName( jdbcDriver ).newInstance();
+         DriverManager.registerDriver( driver );
+      } catch ( SQLException sqlE ) {
+         LOGGER.error( "Could not register Driver " + jdbcDriver, sqlE );
+         throw sqlE;
+      } catch ( ClassNotFoundException | InstantiationException | IllegalAccessException multE ) {
+         LOGGER.error( "Could not create Driver " + jdbcDriver, multE );
+         throw new SQLException( multE );
+      }
+   }
+
    /**
     * Uses {@link org.apache.ctakes.core.resource.FileLocator} to get the canonical path to the database file
     *
@@ -0,0 +1,87 @@
+package org.apache.ctakes.dictionary.lookup2.ae;
+
+import org.apache.ctakes.core.config.ConfigParameterConstants;
+import org.apache.ctakes.typesystem.type.refsem.UmlsConcept;
+import org.apache.ctakes.typesystem.type.syntax.PunctuationToken;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.pipeline.SimplePipeline;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSArray;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+final public class ParallelDictionaryLookupTest {
+
+   static private final String LOOKUP_XML = "org/apache/ctakes/dictionary/lookup/fast/TestParallelBsv.xml";
+
+   static private final String[] SENTENCES = {
+         "The patient has lung cancer in the left lung .",
+         "No fever , but pneumonia near the heart .",
+         "Cancer of the heart is rare ." };
+
+   static private final Pattern TOKEN_PATTERN = Pattern.compile( "\\S+" );
+
+   @Test
+   public void testParallelSameAsSequential() throws Exception {
+      final List<String> sequential = runLookup( false );
+      assertTrue( "Test dictionaries found too few terms", sequential.size() > 6 );
+      assertEquals( sequential, runLookup( true ) );
+   }
+
+   static private List<String> runLookup( final boolean parallel ) throws Exception {
+      final JCas jCas = createCas();
+      SimplePipeline.runPipeline( jCas, AnalysisEngineFactory.createEngineDescription( DefaultJCasTermAnnotator.class,
+            ConfigParameterConstants.PARAM_LOOKUP_XML, LOOKUP_XML,
+            JCasTermAnnotator.PARAM_PARALLEL_DICTIONARIES_KEY, parallel ) );
+      final List<String> annotations = new ArrayList<>();
+      for ( IdentifiedAnnotation annotation : JCasUtil.select( jCas, IdentifiedAnnotation.class ) ) {
+         final List<String> concepts = new ArrayList<>();
+         final FSArray conceptArray = annotation.getOntologyConceptArr();
+         for ( int i = 0; i < conceptArray.size(); i++ ) {
+            final UmlsConcept concept = (UmlsConcept)conceptArray.get( i );
+            concepts.add( concept.getCui() + ":" + concept.getTui() );
+         }
+         Collections.sort( concepts );
+         annotations.add( annotation.getClass().getSimpleName() + " " + annotation.getBegin() + "," + annotation.getEnd()
+                          + " " + annotation.getTypeID() + " " + concepts );
+      }
+      Collections.sort( annotations );
+      return annotations;
+   }
+
+   static private JCas createCas() throws Exception {
+      final JCas jCas = JCasFactory.createJCas();
+      final StringBuilder sb = new StringBuilder();
+      for ( String sentence : SENTENCES ) {
+         final int begin = sb.length();
+         sb.append( sentence );
+         new Sentence( jCas, begin, sb.length() ).addToIndexes();
+         sb.append( '\n' );
+      }
+      final String text = sb.toString();
+      jCas.setDocumentText( text );
+      final Matcher matcher = TOKEN_PATTERN.matcher( text );
+      while ( matcher.find() ) {
+         if ( Character.isLetter( matcher.group().charAt( 0 ) ) ) {
+            new WordToken( jCas, matcher.start(), matcher.end() ).addToIndexes();
+         } else {
+            new PunctuationToken( jCas, matcher.start(), matcher.end() ).addToIndexes();
+         }
+      }
+      return jCas;
+   }
+
+}
@@ -0,0 +1,106 @@
+package org.apache.ctakes.dictionary.lookup2.dictionary;
+
+import org.apache.ctakes.dictionary.lookup2.term.RareWordTerm;
+import org.apache.ctakes.dictionary.lookup2.util.JdbcConnectionFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+final public class JdbcRareWordDictionaryTest {
+
+   static private final String DRIVER = "org.hsqldb.jdbcDriver";
+   static private final String URL = "jdbc:hsqldb:mem:rareWordTest";
+
+   @BeforeClass
+   static public void createTable() throws SQLException {
+      final Connection connection = JdbcConnectionFactory.getInstance().getConnection( DRIVER, URL, "sa", "" );
+      try ( Statement statement = connection.createStatement() ) {
+         statement.execute( "CREATE TABLE TERMS ( CUI BIGINT, RINDEX INT, TCOUNT INT, TEXT VARCHAR(100), RWORD VARCHAR(50) )" );
+         statement.execute( "INSERT INTO TERMS VALUES ( 1, 0, 2, 'lung cancer', 'lung' )" );
+         statement.execute( "INSERT INTO TERMS VALUES ( 2, 0, 1, 'cancer', 'cancer' )" );
+         statement.execute( "INSERT INTO TERMS VALUES ( 3, 1, 2, 'left lung', 'lung' )" );
+         // rare words that the database matches regardless of case
+         statement.execute( "CREATE TABLE NOCASE_TERMS ( CUI BIGINT, RINDEX INT, TCOUNT INT, TEXT VARCHAR(100),"
+                            + " RWORD VARCHAR_IGNORECASE(50) )" );
+         statement.execute( "INSERT INTO NOCASE_TERMS VALUES ( 1, 0, 2, 'Lung cancer', 'Lung' )" );
+         statement.execute( "INSERT INTO NOCASE_TERMS VALUES ( 2, 0, 1, 'CANCER', 'CANCER' )" );
+         statement.execute( "INSERT INTO NOCASE_TERMS VALUES ( 3, 1, 2, 'left lung', 'lung' )" );
+      }
+   }
+
+   @Test
+   public void testBatchMatchesSingleLookup() throws SQLException {
+      final JdbcRareWordDictionary single
+            = new JdbcRareWordDictionary( "single", DRIVER, URL, "sa", "", "TERMS", 0, 0 );
+      final JdbcRareWordDictionary batched
+            = new JdbcRareWordDictionary( "batched", DRIVER, URL, "sa", "", "TERMS", 100, 2 );
+      final Collection<String> words = Arrays.asList( "lung", "cancer", "heart" );
+      batched.prefetchRareWordHits( words );
+      for ( String word : words ) {
+         final Collection<RareWordTerm> expected = single.getRareWordHits( word );
+         assertEquals( "Terms differ for " + word,
+               new HashSet<>( expected ), new HashSet<>( batched.getRareWordHits( word ) ) );
+      }
+      assertEquals( "Prefetched words were not cached", 3, batched.getCacheHits() );
+      assertEquals( "Prefetched words were looked up singly", 0, batched.getCacheMisses() );
+      assertEquals( "Uncached lookup was not counted", 3, single.getCacheMisses() );
+      single.close();
+      batched.close();
+   }
+
+   @Test
+   public void testBatchWithCaseInsensitiveCollation() throws SQLException {
+      final JdbcRareWordDictionary single
+            = new JdbcRareWordDictionary( "nocaseSingle", DRIVER, URL, "sa", "", "NOCASE_TERMS", 0, 0 );
+      final JdbcRareWordDictionary batched
+            = new JdbcRareWordDictionary( "nocaseBatched", DRIVER, URL, "sa", "", "NOCASE_TERMS", 100, 4 );
+      final Collection<String> words = Arrays.asList( "lung", "cancer", "heart" );
+      batched.prefetchRareWordHits( words );
+      assertEquals( 2, single.getRareWordHits( "lung" ).size() );
+      for ( String word : words ) {
+         assertEquals( "Terms differ for " + word,
+               new HashSet<>( single.getRareWordHits( word ) ), new HashSet<>( batched.getRareWordHits( word ) ) );
+      }
+      assertEquals( "Prefetched words were looked up singly", 0, batched.getCacheMisses() );
+      single.close();
+      batched.close();
+   }
+
+   @Test
+   public void testConnectionPerThread() throws Exception {
+      final JdbcRareWordDictionary dictionary
+            = new JdbcRareWordDictionary( "threaded", DRIVER, URL, "sa", "", "TERMS", 0, 0 );
+      final int threadCount = 4;
+      final ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+      final CyclicBarrier barrier = new CyclicBarrier( threadCount );
+      final List<Future<Integer>> futures = new ArrayList<>();
+      for ( int i = 0; i < threadCount; i++ ) {
+         futures.add( executor.submit( () -> {
+            // make sure that every pool thread does a lookup
+            barrier.await();
+            int hits = 0;
+            for ( int j = 0; j < 50; j++ ) {
+               hits += dictionary.getRareWordHits( "lung" ).size();
+            }
+            return hits;
+         } ) );
+      }
+      for ( Future<Integer> future : futures ) {
+         assertEquals( 100, future.get().intValue() );
+      }
+      executor.shutdown();
+      assertEquals( "Each thread should have its own connection", threadCount + 1, dictionary.getConnectionCount() );
+      dictionary.close();
+      assertEquals( 0, dictionary.getConnectionCount() );
+      assertTrue( "A closed dictionary should not find terms", dictionary.getRareWordHits( "lung" ).isEmpty() );
+   }
+
+}
@@ -0,0 +1,111 @@
+package org.apache.ctakes.dictionary.lookup2.dictionary;
+
+import org.apache.ctakes.core.util.collection.CollectionMap;
+import org.apache.ctakes.dictionary.lookup2.term.RareWordTerm;
+import org.apache.ctakes.dictionary.lookup2.util.CuiCodeUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+final public class MmapRareWordDictionaryTest {
+
+   @Rule
+   public TemporaryFolder _tempFolder = new TemporaryFolder();
+
+   @Test
+   public void testBsvRoundTrip() throws IOException {
+      final File bsvFile = _tempFolder.newFile( "test.bsv" );
+      Files.write( bsvFile.toPath(), Arrays.asList(
+            "C0000001|T047|lung cancer",
+            "C0000002|T047|cancer",
+            "C0000003|T023|left lung",
+            "BING123|T184|über pain" ), StandardCharsets.UTF_8 );
+      final CollectionMap<String, RareWordTerm, ? extends Collection<RareWordTerm>> rareWordTermMap
+            = MmapDictionaryWriter.readBsv( bsvFile.getPath() );
+      final File mmapFile = _tempFolder.newFile( "test.dict" );
+      MmapDictionaryWriter.writeDictionary( rareWordTermMap, mmapFile );
+      final RareWordDictionary dictionary = new MmapRareWordDictionary( "test", mmapFile );
+      for ( String rareWord : rareWordTermMap.keySet() ) {
+         assertEquals( "Terms differ for " + rareWord,
+               new HashSet<>( rareWordTermMap.getCollection( rareWord ) ),
+               new HashSet<>( dictionary.getRareWordHits( rareWord ) ) );
+      }
+      assertTrue( "Unknown word has hits", dictionary.getRareWordHits( "heart" ).isEmpty() );
+      assertTrue( "Unknown word has hits", dictionary.getRareWordHits( "" ).isEmpty() );
+   }
+
+   @Test
+   public void testCollidingHashes() throws IOException {
+      // "Aa" and "BB" have the same String hashCode, as do all of their concatenations
+      assertEquals( "Aa".hashCode(), "BB".hashCode() );
+      final File bsvFile = _tempFolder.newFile( "collide.bsv" );
+      Files.write( bsvFile.toPath(), Arrays.asList(
+            "C0000001|T047|Aa",
+            "C0000002|T047|BB",
+            "C0000003|T047|AaBB pain",
+            "C0000004|T047|BBAa pain",
+            "C0000005|T047|AaAa" ), StandardCharsets.UTF_8 );
+      final CollectionMap<String, RareWordTerm, ? extends Collection<RareWordTerm>> rareWordTermMap
+            = MmapDictionaryWriter.readBsv( bsvFile.getPath() );
+      final File mmapFile = _tempFolder.newFile( "collide.dict" );
+      MmapDictionaryWriter.writeDictionary( rareWordTermMap, mmapFile );
+      final RareWordDictionary dictionary = new MmapRareWordDictionary( "collide", mmapFile );
+      for ( String rareWord : rareWordTermMap.keySet() ) {
+         final Collection<RareWordTerm> hits = dictionary.getRareWordHits( rareWord );
+         assertEquals( "Terms differ for " + rareWord,
+               new HashSet<>( rareWordTermMap.getCollection( rareWord ) ), new HashSet<>( hits ) );
+         for ( RareWordTerm hit : hits ) {
+            assertEquals( rareWord, hit.getRareWord() );
+         }
+      }
+      assertEquals( "C0000001", getCui( dictionary.getRareWordHits( "aa" ) ) );
+      assertEquals( "C0000002", getCui( dictionary.getRareWordHits( "bb" ) ) );
+      assertEquals( "C0000005", getCui( dictionary.getRareWordHits( "aaaa" ) ) );
+      assertTrue( "Unknown word has hits", dictionary.getRareWordHits( "bbbb" ).isEmpty() );
+   }
+
+   @Test( expected = IOException.class )
+   public void testMissingFile() throws IOException {
+      new MmapRareWordDictionary( "missing", new File( _tempFolder.getRoot(), "missing.dict" ) );
+   }
+
+   @Test
+   public void testTruncatedFile() throws IOException {
+      final File bsvFile = _tempFolder.newFile( "truncated.bsv" );
+      Files.write( bsvFile.toPath(), Arrays.asList(
+            "C0000001|T047|lung cancer",
+            "C0000002|T047|cancer" ), StandardCharsets.UTF_8 );
+      final File mmapFile = _tempFolder.newFile( "full.dict" );
+      MmapDictionaryWriter.writeDictionary( MmapDictionaryWriter.readBsv( bsvFile.getPath() ), mmapFile );
+      final byte[] bytes = Files.readAllBytes( mmapFile.toPath() );
+      final File truncatedFile = _tempFolder.newFile( "truncated.dict" );
+      for ( int length = 0; length < bytes.length; length++ ) {
+         Files.write( truncatedFile.toPath(), Arrays.copyOf( bytes, length ) );
+         try {
+            new MmapRareWordDictionary( "truncated", truncatedFile );
+            fail( "Dictionary truncated to " + length + " of " + bytes.length + " bytes was accepted" );
+         } catch ( IOException ioE ) {
+            // expected
+         }
+      }
+      assertEquals( 1, new MmapRareWordDictionary( "full", mmapFile ).getRareWordHits( "cancer" ).size() );
+   }
+
+   static private String getCui( final Collection<RareWordTerm> hits ) {
+      assertEquals( 1, hits.size() );
+      return CuiCodeUtil.getInstance().getAsCui( hits.iterator().next().getCuiCode() );
+   }
+
+}
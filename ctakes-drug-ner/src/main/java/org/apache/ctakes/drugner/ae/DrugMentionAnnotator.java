@@ -53,6 +53,8 @@ import org.apache.ctakes.drugner.fsm.machines.elements.RangeStrengthFSM;
 import org.apache.ctakes.drugner.fsm.machines.elements.RouteFSM;
 import org.apache.ctakes.drugner.fsm.machines.elements.StrengthFSM;
 import org.apache.ctakes.drugner.fsm.machines.elements.StrengthUnitFSM;
+import org.apache.ctakes.drugner.fsm.machines.util.CombinableFSM;
+import org.apache.ctakes.drugner.fsm.machines.util.CombinedFSMExecutor;
 import org.apache.ctakes.drugner.fsm.machines.util.SubSectionIndicatorFSM;
 import org.apache.ctakes.drugner.fsm.machines.util.SuffixStrengthFSM;
 import org.apache.ctakes.drugner.fsm.output.elements.BaseTokenImpl;
@@ -181,6 +183,8 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 	private StrengthUnitFSM iv_strengthUnitFSM;
 	private FrequencyUnitFSM iv_frequencyUnitFSM;
 	private FormFSM iv_formFSM;
+	// machines that only read the base tokens, run together in one pass
+	private CombinedFSMExecutor iv_baseTokenFSMs;
 	private static final int NERTypeIdentifier = 1;
 	private static boolean handledRanges;
 	private Set<String> iv_exclusionTagSet = null;
@@ -210,6 +214,9 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 		iv_frequencyUnitFSM = new FrequencyUnitFSM();
 		iv_formFSM = new FormFSM();
 		iv_subMedSectionFSM = new SubSectionIndicatorFSM();
+		iv_baseTokenFSMs = new CombinedFSMExecutor(new CombinableFSM[] {
+				iv_fractionFSM, iv_decimalFSM, iv_statusFSM, iv_rangeFSM,
+				iv_formFSM, iv_routeFSM, iv_frequencyUnitFSM });
 		iv_logger.info("Finite state machines loaded.");
 		
 		try {
@@ -735,19 +742,22 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 			{
 		try
 		{
-			Set fractionTokenSet = iv_fractionFSM.execute(baseTokenList);
+			// The remaining machines take the output of these as overrides,
+			// so they are run afterwards
+			Set[] baseTokenSets = iv_baseTokenFSMs.execute(baseTokenList);
+			Set fractionTokenSet = baseTokenSets[0];
 			addAnnotations(jcas, fractionTokenSet, FractionStrengthAnnotation.type);
 
-			Set decimalTokenSet = iv_decimalFSM.execute(baseTokenList);
+			Set decimalTokenSet = baseTokenSets[1];
 
 			addAnnotations(jcas, decimalTokenSet, FractionStrengthAnnotation.type);
 
-			Set statusTokenSet = iv_statusFSM.execute(baseTokenList);
+			Set statusTokenSet = baseTokenSets[2];
 
 			addAnnotations(jcas, statusTokenSet, DrugChangeStatusAnnotation.type);    
 			//statusConfidence = true;
 
-			Set rangeTokenSet = iv_rangeFSM.execute(baseTokenList);
+			Set rangeTokenSet = baseTokenSets[3];
 
       addAnnotations(jcas, decimalTokenSet, RangeStrengthAnnotation.type);
       //Mayo SPM 2/20/2012 Changed due to separation of strength tokens
@@ -795,8 +805,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 //        }
 //      }
 
-			Set formTokenSet = iv_formFSM.execute(baseTokenList,
-					/* decimalTokenSet */new HashSet());
+			Set formTokenSet = baseTokenSets[4];
 			Iterator formTokenItr = formTokenSet.iterator();
 
 			while (formTokenItr.hasNext())
@@ -864,7 +873,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 			// This needs to be handled differently. But since I'm not sure if this feature will be utilized
 			// I am going to leave 'as is' for now.
 
-			Set routeTokenSet = iv_routeFSM.execute(baseTokenList);
+			Set routeTokenSet = baseTokenSets[5];
 			boolean foundRoute = false;
 			Iterator routeTokenItr = routeTokenSet.iterator();
 			int begSegRT = 0, endSegRT = 0;
@@ -879,7 +888,7 @@ public class DrugMentionAnnotator extends JCasAnnotator_ImplBase
 
 			}
 
-			Set frequencyUnitTokenSet = iv_frequencyUnitFSM.execute(baseTokenList);
+			Set frequencyUnitTokenSet = baseTokenSets[6];
 			boolean foundFrequencyUnit = false;
 			Iterator frequencyUnitTokenItr = frequencyUnitTokenSet.iterator();
 			int begSegFUT = 0, endSegFUT = 0;
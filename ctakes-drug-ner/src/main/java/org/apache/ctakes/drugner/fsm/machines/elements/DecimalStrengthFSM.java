@@ -18,11 +18,8 @@
  */
 package org.apache.ctakes.drugner.fsm.machines.elements;
 
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.apache.ctakes.core.fsm.condition.IntegerValueCondition;
@@ -30,6 +27,8 @@ import org.apache.ctakes.core.fsm.condition.NumberCondition;
 import org.apache.ctakes.core.fsm.condition.PunctuationValueCondition;
 import org.apache.ctakes.core.fsm.state.NamedState;
 import org.apache.ctakes.core.fsm.token.BaseToken;
+import org.apache.ctakes.drugner.fsm.machines.util.CombinableFSM;
+import org.apache.ctakes.drugner.fsm.machines.util.CombinedFSMExecutor;
 import org.apache.ctakes.drugner.fsm.output.util.DecimalStrengthToken;
 
 import net.openai.util.fsm.AnyCondition;
@@ -41,7 +40,7 @@ import net.openai.util.fsm.State;
  * input of tokens.
  * @author Mayo Clinic
  */
-public class DecimalStrengthFSM
+public class DecimalStrengthFSM implements CombinableFSM
 {
 	
     // contains the finite state machines
@@ -93,6 +92,9 @@ public class DecimalStrengthFSM
         return m;
     }
 
+    // runs the machines of this group on their own, created on first use
+    private CombinedFSMExecutor iv_executor;
+
     /**
      * Executes the finite state machines.
      * @param tokens
@@ -101,68 +103,31 @@ public class DecimalStrengthFSM
      */
     public Set execute(List tokens) throws Exception
     {
-        Set fractionSet = new HashSet();
-
-        // maps a fsm to a token start index
-        // key = fsm , value = token start index
-        Map tokenStartMap = new HashMap();
-
-        for (int i = 0; i < tokens.size(); i++)
-        {
-            BaseToken token = (BaseToken) tokens.get(i);
-
-            Iterator machineItr = iv_machineSet.iterator();
-            while (machineItr.hasNext())
-            {
-                Machine fsm = (Machine) machineItr.next();
-
-                fsm.input(token);
-
-                State currentState = fsm.getCurrentState();
-                if (currentState.getStartStateFlag())
-                {
-                    tokenStartMap.put(fsm, Integer.valueOf(i));
-                }
-                if (currentState.getEndStateFlag())
-                {
-                    Object o = tokenStartMap.get(fsm);
-					int tokenStartIndex;
-					if (o == null)
-					{
-						// By default, all machines start with
-						// token zero.
-						tokenStartIndex = 0;
-					}
-					else
-					{
-						tokenStartIndex = ((Integer) o).intValue();
-						// skip ahead over single token we don't want
-						tokenStartIndex++;						
-					}
-                    BaseToken startToken =
-                        (BaseToken) tokens.get(tokenStartIndex);
-                    BaseToken endToken = token;
-                    DecimalStrengthToken fractionToken =
-                        new DecimalStrengthToken(
-                            startToken.getStartOffset(),
-                            endToken.getEndOffset());
-                    fractionSet.add(fractionToken);
-                    fsm.reset();
-                }
-            }
+        if (iv_executor == null) {
+            iv_executor = new CombinedFSMExecutor(new CombinableFSM[] { this });
         }
+        return iv_executor.execute(tokens)[0];
+    }
 
-        // cleanup
-        tokenStartMap.clear();
-
-        // reset machines
-        Iterator itr = iv_machineSet.iterator();
-        while (itr.hasNext())
-        {
-            Machine fsm = (Machine) itr.next();
-            fsm.reset();
-        }
+    /**
+     * {@inheritDoc}
+     */
+    public Set getMachineSet()
+    {
+        return iv_machineSet;
+    }
 
-        return fractionSet;
+    /**
+     * {@inheritDoc}
+     */
+    public BaseToken createMatchToken(Machine fsm, State currentState,
+        List tokens, int tokenStartIndex, int tokenIndex)
+    {
+        BaseToken startToken =
+            (BaseToken) tokens.get(tokenStartIndex);
+        BaseToken endToken = (BaseToken) tokens.get(tokenIndex);
+        return new DecimalStrengthToken(
+            startToken.getStartOffset(),
+            endToken.getEndOffset());
     }
 }
@@ -28,6 +28,7 @@ import java.util.Set;
 import org.apache.ctakes.core.fsm.condition.WordSetCondition;
 import org.apache.ctakes.core.fsm.state.NamedState;
 import org.apache.ctakes.core.fsm.token.BaseToken;
+import org.apache.ctakes.drugner.fsm.machines.util.CombinableFSM;
 import org.apache.ctakes.drugner.fsm.output.elements.FormToken;
 
 import net.openai.util.fsm.AnyCondition;
@@ -40,7 +41,7 @@ import net.openai.util.fsm.State;
  * input of tokens.
  * @author Mayo Clinic
  */
-public class FormFSM {
+public class FormFSM implements CombinableFSM {
 	// text fractions
 	Set iv_fullTextSet = new HashSet();
 
@@ -240,6 +241,24 @@ public class FormFSM {
 		return measurementSet;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set getMachineSet() {
+		return iv_machineSet;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BaseToken createMatchToken(Machine fsm, State currentState,
+			List tokens, int tokenStartIndex, int tokenIndex) {
+		BaseToken startToken = (BaseToken) tokens.get(tokenStartIndex);
+		BaseToken endToken = (BaseToken) tokens.get(tokenIndex);
+		return new FormToken(startToken.getStartOffset(), endToken
+				.getEndOffset());
+	}
+
 	/**
 	 * Executes the finite state machines.
 	 * @param tokens
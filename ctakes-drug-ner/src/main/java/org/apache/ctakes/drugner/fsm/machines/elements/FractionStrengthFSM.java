@@ -18,11 +18,8 @@
  */
 package org.apache.ctakes.drugner.fsm.machines.elements;
 
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.apache.ctakes.core.fsm.condition.DecimalCondition;
@@ -32,6 +29,8 @@ import org.apache.ctakes.core.fsm.condition.WordSetCondition;
 import org.apache.ctakes.core.fsm.state.NamedState;
 import org.apache.ctakes.core.fsm.token.BaseToken;
 import org.apache.ctakes.drugner.fsm.elements.conditions.ContainsSetTextValueCondition;
+import org.apache.ctakes.drugner.fsm.machines.util.CombinableFSM;
+import org.apache.ctakes.drugner.fsm.machines.util.CombinedFSMExecutor;
 import org.apache.ctakes.drugner.fsm.output.util.FractionStrengthToken;
 
 import net.openai.util.fsm.AnyCondition;
@@ -45,7 +44,7 @@ import net.openai.util.fsm.State;
  * 
  * @author Mayo clinic
  */
-public class FractionStrengthFSM
+public class FractionStrengthFSM implements CombinableFSM
 {
     // text fractions
     Set<String> iv_textNumeratorSet = new HashSet<String>();
@@ -214,6 +213,9 @@ public class FractionStrengthFSM
         return m;
     }
 
+    // runs the machines of this group on their own, created on first use
+    private CombinedFSMExecutor iv_executor;
+
     /**
      * Executes the finite state machines.
      * @param tokens
@@ -222,67 +224,31 @@ public class FractionStrengthFSM
      */
     public Set execute(List tokens) throws Exception
     {
-        Set<FractionStrengthToken> fractionSet = new HashSet<FractionStrengthToken>();
-
-        // maps a fsm to a token start index
-        // key = fsm , value = token start index
-        Map tokenStartMap = new HashMap();
-
-        for (int i = 0; i < tokens.size(); i++)
-        {
-            BaseToken token = (BaseToken) tokens.get(i);
-
-            Iterator machineItr = iv_machineSet.iterator();
-            while (machineItr.hasNext())
-            {
-            	Machine fsm = (Machine) machineItr.next();
-
-            	fsm.input(token);
-
-            	State currentState = fsm.getCurrentState();
-            	if (currentState.getStartStateFlag())
-            	{
-            		tokenStartMap.put(fsm, Integer.valueOf(i));
-            	}
-            	if (currentState.getEndStateFlag())
-            	{
-            		Object o = tokenStartMap.get(fsm);
-            		int tokenStartIndex;
-            		if (o == null)
-            		{
-            			// By default, all machines start with token zero.
-            			tokenStartIndex = 0;
-            		}
-            		else
-            		{
-            			tokenStartIndex = ((Integer) o).intValue();
-            			// skip ahead over single token we don't want
-            			tokenStartIndex++;						
-            		}
-            		BaseToken startToken =
-            			(BaseToken) tokens.get(tokenStartIndex);
-            		BaseToken endToken = token;
-            		FractionStrengthToken fractionToken =
-            			new FractionStrengthToken(
-            					startToken.getStartOffset(),
-            					endToken.getEndOffset());
-            		fractionSet.add(fractionToken);
-            		fsm.reset();
-            	}
-            }
+        if (iv_executor == null) {
+            iv_executor = new CombinedFSMExecutor(new CombinableFSM[] { this });
         }
+        return iv_executor.execute(tokens)[0];
+    }
 
-        // cleanup
-        tokenStartMap.clear();
-
-        // reset machines
-        Iterator<Machine> itr = iv_machineSet.iterator();
-        while (itr.hasNext())
-        {
-            Machine fsm = itr.next();
-            fsm.reset();
-        }
+    /**
+     * {@inheritDoc}
+     */
+    public Set getMachineSet()
+    {
+        return iv_machineSet;
+    }
 
-        return fractionSet;
+    /**
+     * {@inheritDoc}
+     */
+    public BaseToken createMatchToken(Machine fsm, State currentState,
+        List tokens, int tokenStartIndex, int tokenIndex)
+    {
+        BaseToken startToken =
+            (BaseToken) tokens.get(tokenStartIndex);
+        BaseToken endToken = (BaseToken) tokens.get(tokenIndex);
+        return new FractionStrengthToken(
+            startToken.getStartOffset(),
+            endToken.getEndOffset());
     }
 }
@@ -39,6 +39,8 @@ import org.apache.ctakes.core.fsm.state.NonTerminalEndState;
 import org.apache.ctakes.core.fsm.token.BaseToken;
 import org.apache.ctakes.drugner.fsm.elements.conditions.ContainsSetTextValueCondition;
 import org.apache.ctakes.drugner.fsm.elements.conditions.TimeCondition;
+import org.apache.ctakes.drugner.fsm.machines.util.CombinableFSM;
+import org.apache.ctakes.drugner.fsm.machines.util.CombinedFSMExecutor;
 import org.apache.ctakes.drugner.fsm.output.elements.FrequencyUnitToken;
 import org.apache.ctakes.drugner.fsm.states.util.IndentStartState;
 
@@ -53,7 +55,7 @@ import net.openai.util.fsm.State;
  * 
  * @author Mayo Clinic
  */
-public class FrequencyUnitFSM {
+public class FrequencyUnitFSM implements CombinableFSM {
 
 	Set iv_textSuffixSet = new HashSet();
 	
@@ -1498,6 +1500,9 @@ public class FrequencyUnitFSM {
 		return rangeSet;
 	}
 
+	// runs the machines of this group on their own, created on first use
+	private CombinedFSMExecutor iv_executor;
+
 	/**
 	 * Executes the finite state machines.
 	 * 
@@ -1506,131 +1511,65 @@ public class FrequencyUnitFSM {
 	 * @throws Exception
 	 */
 	public Set execute(List tokens) throws Exception {
-		Set fractionSet = new HashSet();
-
-		// maps a fsm to a token start index
-		// key = fsm , value = token start index
-		Map tokenStartMap = new HashMap();
-
-		for (int i = 0; i < tokens.size(); i++) {
-			BaseToken token = (BaseToken) tokens.get(i);
-
-			Iterator machineItr = iv_machineSet.iterator();
-			while (machineItr.hasNext()) {
-				Machine fsm = (Machine) machineItr.next();
-
-				fsm.input(token);
-
-				State currentState = fsm.getCurrentState();
-				BaseToken startToken = null;
-
-				if (currentState.getStartStateFlag()) {
-					tokenStartMap.put(fsm, new Integer(i));
-								
-				}
-				if (currentState.getEndStateFlag()) {
-					Object o = tokenStartMap.get(fsm);
-					int tokenStartIndex;
-					if (o == null) {
-						// By default, all machines start with
-						// token zero.
-						tokenStartIndex = 0;
-					} else {
-						tokenStartIndex = ((Integer) o).intValue();
-						// skip ahead over single token we don't want
-						tokenStartIndex++;
-					}
-					
-	               if (currentState instanceof IndentStartState){
-	                    	startToken = (BaseToken) tokens
-							.get(tokenStartIndex + 1);
-	    					
-	                    }
-	               else {
-	                    	startToken = (BaseToken) tokens
-							.get(tokenStartIndex);
-					
-	                    }
-                    BaseToken endToken = null;
-                    if (currentState instanceof NonTerminalEndState)
-                    {
-                        endToken = (BaseToken) tokens.get(i - 1);
-                    }
-                    else
-                    {
-                        endToken = token;
-                    }
-					FrequencyUnitToken fractionToken = null;
-					 if (fsm.equals(iv_EveryOtherHourMachine))
-							fractionToken = new FrequencyUnitToken(
-								startToken.getStartOffset(), endToken
-										.getEndOffset(), FrequencyUnitToken.QUANTITY_24/2);
-					 else if (fsm.equals(iv_SixTimesADayMachine))
-							fractionToken = new FrequencyUnitToken(
-								startToken.getStartOffset(), endToken
-										.getEndOffset(), FrequencyUnitToken.QUANTITY_SIX);
-					 else if (fsm.equals(iv_FiveTimesADayMachine))
-							fractionToken = new FrequencyUnitToken(
-								startToken.getStartOffset(), endToken
-										.getEndOffset(), FrequencyUnitToken.QUANTITY_FIVE);
-					 else if (fsm.equals(iv_FourTimesADayMachine))
-							fractionToken = new FrequencyUnitToken(
-								startToken.getStartOffset(), endToken
-										.getEndOffset(), FrequencyUnitToken.QUANTITY_FOUR);
-					 else if (fsm.equals(iv_ThreeTimesADayMachine))
-							fractionToken = new FrequencyUnitToken(
-								startToken.getStartOffset(), endToken
-										.getEndOffset(), FrequencyUnitToken.QUANTITY_THREE);
-					else if (fsm.equals(iv_HourlyMachine) || fsm.equals(iv_HourlySuffixMachine))
-							fractionToken = new FrequencyUnitToken(
-								startToken.getStartOffset(), endToken
-										.getEndOffset(), FrequencyUnitToken.QUANTITY_24);
-					else if (fsm.equals(iv_TwiceADayMachine))
-						fractionToken = new FrequencyUnitToken(
-							startToken.getStartOffset(), endToken
-									.getEndOffset(), FrequencyUnitToken.QUANTITY_TWO);
-					else if (fsm.equals(iv_DailyMachine) || fsm.equals(iv_DailySuffixMachine))
-						fractionToken = new FrequencyUnitToken(
-								startToken.getStartOffset(), endToken
-										.getEndOffset(), FrequencyUnitToken.QUANTITY_ONE);
-					else if (fsm.equals(iv_EveryOtherDayMachine))
-						fractionToken = new FrequencyUnitToken(
-							startToken.getStartOffset(), endToken
-									.getEndOffset(), FrequencyUnitToken.QUANTITY_EVERY_OTHER_DAY);
-					else if (fsm.equals(iv_WeeklyMachine)|| fsm.equals(iv_WeeklySuffixMachine))
-						fractionToken = new FrequencyUnitToken(
-							startToken.getStartOffset(), endToken
-									.getEndOffset(), FrequencyUnitToken.QUANTITY_WEEKLY);
-					else if (fsm.equals(iv_MonthlySuffixMachine))
-						fractionToken = new FrequencyUnitToken(
-							startToken.getStartOffset(), endToken
-									.getEndOffset(), FrequencyUnitToken.QUANTITY_MONTHLY);
-					else if (fsm.equals(iv_YearlySuffixMachine))
-						fractionToken = new FrequencyUnitToken(
-							startToken.getStartOffset(), endToken
-									.getEndOffset(), FrequencyUnitToken.QUANTITY_YEARLY);
-					else 
-						fractionToken = new FrequencyUnitToken(
-							startToken.getStartOffset(), endToken
-									.getEndOffset(), FrequencyUnitToken.QUANTITY_PRN);
-				
-					fractionSet.add(fractionToken);
-					fsm.reset();
-				}
-			}
+		if (iv_executor == null) {
+			iv_executor = new CombinedFSMExecutor(new CombinableFSM[] { this });
 		}
+		return iv_executor.execute(tokens)[0];
+	}
 
-		// cleanup
-		tokenStartMap.clear();
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set getMachineSet() {
+		return iv_machineSet;
+	}
 
-		// reset machines
-		Iterator itr = iv_machineSet.iterator();
-		while (itr.hasNext()) {
-			Machine fsm = (Machine) itr.next();
-			fsm.reset();
+	/**
+	 * {@inheritDoc}
+	 */
+	public BaseToken createMatchToken(Machine fsm, State currentState,
+			List tokens, int tokenStartIndex, int tokenIndex) {
+		BaseToken startToken = null;
+		if (currentState instanceof IndentStartState) {
+			startToken = (BaseToken) tokens.get(tokenStartIndex + 1);
+		} else {
+			startToken = (BaseToken) tokens.get(tokenStartIndex);
 		}
-
-		return fractionSet;
+		BaseToken endToken = null;
+		if (currentState instanceof NonTerminalEndState) {
+			endToken = (BaseToken) tokens.get(tokenIndex - 1);
+		} else {
+			endToken = (BaseToken) tokens.get(tokenIndex);
+		}
+		double quantity;
+		if (fsm.equals(iv_EveryOtherHourMachine))
+			quantity = FrequencyUnitToken.QUANTITY_24/2;
+		else if (fsm.equals(iv_SixTimesADayMachine))
+			quantity = FrequencyUnitToken.QUANTITY_SIX;
+		else if (fsm.equals(iv_FiveTimesADayMachine))
+			quantity = FrequencyUnitToken.QUANTITY_FIVE;
+		else if (fsm.equals(iv_FourTimesADayMachine))
+			quantity = FrequencyUnitToken.QUANTITY_FOUR;
+		else if (fsm.equals(iv_ThreeTimesADayMachine))
+			quantity = FrequencyUnitToken.QUANTITY_THREE;
+		else if (fsm.equals(iv_HourlyMachine) || fsm.equals(iv_HourlySuffixMachine))
+			quantity = FrequencyUnitToken.QUANTITY_24;
+		else if (fsm.equals(iv_TwiceADayMachine))
+			quantity = FrequencyUnitToken.QUANTITY_TWO;
+		else if (fsm.equals(iv_DailyMachine) || fsm.equals(iv_DailySuffixMachine))
+			quantity = FrequencyUnitToken.QUANTITY_ONE;
+		else if (fsm.equals(iv_EveryOtherDayMachine))
+			quantity = FrequencyUnitToken.QUANTITY_EVERY_OTHER_DAY;
+		else if (fsm.equals(iv_WeeklyMachine)|| fsm.equals(iv_WeeklySuffixMachine))
+			quantity = FrequencyUnitToken.QUANTITY_WEEKLY;
+		else if (fsm.equals(iv_MonthlySuffixMachine))
+			quantity = FrequencyUnitToken.QUANTITY_MONTHLY;
+		else if (fsm.equals(iv_YearlySuffixMachine))
+			quantity = FrequencyUnitToken.QUANTITY_YEARLY;
+		else 
+			quantity = FrequencyUnitToken.QUANTITY_PRN;
+		return new FrequencyUnitToken(startToken.getStartOffset(), endToken
+				.getEndOffset(), quantity);
 	}
 	/**
 	 * Gets a fsm that detects five times a day
@@ -33,6 +33,8 @@ import org.apache.ctakes.core.fsm.condition.WordSetCondition;
 import org.apache.ctakes.core.fsm.state.NamedState;
 import org.apache.ctakes.core.fsm.token.BaseToken;
 import org.apache.ctakes.drugner.fsm.elements.conditions.FractionStrengthCondition;
+import org.apache.ctakes.drugner.fsm.machines.util.CombinableFSM;
+import org.apache.ctakes.drugner.fsm.machines.util.CombinedFSMExecutor;
 import org.apache.ctakes.drugner.fsm.output.util.RangeStrengthToken;
 
 import net.openai.util.fsm.AnyCondition;
@@ -46,7 +48,7 @@ import net.openai.util.fsm.State;
  * 
  * @author Mayo Clinic
  */
-public class RangeStrengthFSM 
+public class RangeStrengthFSM implements CombinableFSM
 {
 	// text fractions
 	Set iv_textNumberSet = new HashSet();
@@ -478,6 +480,9 @@ public class RangeStrengthFSM
 		return rangeSet;
 	}
 
+	// runs the machines of this group on their own, created on first use
+	private CombinedFSMExecutor iv_executor;
+
 	/**
 	 * Executes the finite state machines.
 	 * @param tokens
@@ -485,58 +490,27 @@ public class RangeStrengthFSM
 	 * @throws Exception
 	 */
 	public Set execute(List tokens) throws Exception {
-		Set fractionSet = new HashSet();
-	
-		// maps a fsm to a token start index
-		// key = fsm , value = token start index
-		Map tokenStartMap = new HashMap();
-	
-		for (int i = 0; i < tokens.size(); i++) {
-			BaseToken token = (BaseToken) tokens.get(i);
-	
-			Iterator machineItr = iv_machineSet.iterator();
-			while (machineItr.hasNext()) {
-				Machine fsm = (Machine) machineItr.next();
-	
-				fsm.input(token);
-	
-				State currentState = fsm.getCurrentState();
-				if (currentState.getStartStateFlag()) {
-					tokenStartMap.put(fsm, new Integer(i));
-				}
-				if (currentState.getEndStateFlag()) {
-					Object o = tokenStartMap.get(fsm);
-					int tokenStartIndex;
-					if (o == null) {
-						// By default, all machines start with
-						// token zero.
-						tokenStartIndex = 0;
-					} else {
-						tokenStartIndex = ((Integer) o).intValue();
-						// skip ahead over single token we don't want
-						tokenStartIndex++;
-					}
-					BaseToken startToken = (BaseToken) tokens
-							.get(tokenStartIndex);
-					BaseToken endToken = token;
-					RangeStrengthToken fractionToken = new RangeStrengthToken(startToken
-							.getStartOffset(), endToken.getEndOffset());
-					fractionSet.add(fractionToken);
-					fsm.reset();
-				}
-			}
+		if (iv_executor == null) {
+			iv_executor = new CombinedFSMExecutor(new CombinableFSM[] { this });
 		}
-	
-		// cleanup
-		tokenStartMap.clear();
-	
-		// reset machines
-		Iterator itr = iv_machineSet.iterator();
-		while (itr.hasNext()) {
-			Machine fsm = (Machine) itr.next();
-			fsm.reset();
-		}
-	
-		return fractionSet;
+		return iv_executor.execute(tokens)[0];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set getMachineSet() {
+		return iv_machineSet;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BaseToken createMatchToken(Machine fsm, State currentState,
+			List tokens, int tokenStartIndex, int tokenIndex) {
+		BaseToken startToken = (BaseToken) tokens.get(tokenStartIndex);
+		BaseToken endToken = (BaseToken) tokens.get(tokenIndex);
+		return new RangeStrengthToken(startToken.getStartOffset(), endToken
+				.getEndOffset());
 	}
 }
@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.drugner.fsm.machines.util;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ctakes.core.fsm.token.BaseToken;
+
+import net.openai.util.fsm.Machine;
+import net.openai.util.fsm.State;
+
+/**
+ * A group of finite state machines that can be run by a
+ * {@link CombinedFSMExecutor} together with other groups, in a single pass over
+ * the input tokens.
+ */
+public interface CombinableFSM {
+	/**
+	 * @return the finite state machines of this group.
+	 */
+	public Set getMachineSet();
+
+	/**
+	 * Creates the output token for a machine that has reached an end state.
+	 *
+	 * @param fsm
+	 *            machine that has reached an end state.
+	 * @param currentState
+	 *            the end state.
+	 * @param tokens
+	 *            all input tokens.
+	 * @param tokenStartIndex
+	 *            index of the first token of the match.
+	 * @param tokenIndex
+	 *            index of the token that moved the machine to the end state.
+	 * @return output token, added to the output set of this group.
+	 */
+	public BaseToken createMatchToken(Machine fsm, State currentState,
+			List tokens, int tokenStartIndex, int tokenIndex);
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.drugner.fsm.machines.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ctakes.core.fsm.token.BaseToken;
+
+import net.openai.util.fsm.Machine;
+import net.openai.util.fsm.State;
+
+/**
+ * Runs the machines of several {@link CombinableFSM} groups in a single pass
+ * over the input tokens. Each token is fed to every machine of every group, and
+ * the start token index of each machine is tracked in a primitive array rather
+ * than a map of boxed indices. The output set of each group is the same as
+ * running that group on its own.
+ * <p>
+ * Like the machines themselves, an executor is not thread safe.
+ * </p>
+ */
+public class CombinedFSMExecutor {
+	private final CombinableFSM[] iv_fsms;
+
+	// all machines of all groups
+	private final Machine[] iv_machines;
+
+	// index of the group that owns each machine
+	private final int[] iv_fsmIndices;
+
+	/**
+	 *
+	 * Constructor
+	 *
+	 * @param fsms
+	 *            groups of machines to run together.
+	 */
+	public CombinedFSMExecutor(CombinableFSM[] fsms) {
+		iv_fsms = fsms;
+		List machines = new ArrayList();
+		List fsmIndices = new ArrayList();
+		for (int f = 0; f < fsms.length; f++) {
+			Iterator machineItr = fsms[f].getMachineSet().iterator();
+			while (machineItr.hasNext()) {
+				machines.add(machineItr.next());
+				fsmIndices.add(Integer.valueOf(f));
+			}
+		}
+		iv_machines = (Machine[]) machines.toArray(new Machine[machines.size()]);
+		iv_fsmIndices = new int[fsmIndices.size()];
+		for (int m = 0; m < iv_fsmIndices.length; m++) {
+			iv_fsmIndices[m] = ((Integer) fsmIndices.get(m)).intValue();
+		}
+	}
+
+	/**
+	 * Executes the finite state machines of all groups.
+	 *
+	 * @param tokens
+	 * @return array with the Set of output tokens of each group, in the order
+	 *         that the groups were given to the constructor.
+	 * @throws Exception
+	 */
+	public Set[] execute(List tokens) throws Exception {
+		Set[] outputSets = new Set[iv_fsms.length];
+		for (int f = 0; f < outputSets.length; f++) {
+			outputSets[f] = new HashSet();
+		}
+
+		// token start index of each machine, -1 if none has been seen
+		int[] tokenStartIndices = new int[iv_machines.length];
+		Arrays.fill(tokenStartIndices, -1);
+
+		try {
+			for (int i = 0; i < tokens.size(); i++) {
+				BaseToken token = (BaseToken) tokens.get(i);
+
+				for (int m = 0; m < iv_machines.length; m++) {
+					Machine fsm = iv_machines[m];
+
+					fsm.input(token);
+
+					State currentState = fsm.getCurrentState();
+					if (currentState.getStartStateFlag()) {
+						tokenStartIndices[m] = i;
+					}
+					if (currentState.getEndStateFlag()) {
+						int tokenStartIndex;
+						if (tokenStartIndices[m] < 0) {
+							// By default, all machines start with
+							// token zero.
+							tokenStartIndex = 0;
+						} else {
+							// skip ahead over single token we don't want
+							tokenStartIndex = tokenStartIndices[m] + 1;
+						}
+						int f = iv_fsmIndices[m];
+						outputSets[f].add(iv_fsms[f].createMatchToken(fsm,
+								currentState, tokens, tokenStartIndex, i));
+						fsm.reset();
+					}
+				}
+			}
+		} finally {
+			// reset machines
+			for (int m = 0; m < iv_machines.length; m++) {
+				iv_machines[m].reset();
+			}
+		}
+
+		return outputSets;
+	}
+}
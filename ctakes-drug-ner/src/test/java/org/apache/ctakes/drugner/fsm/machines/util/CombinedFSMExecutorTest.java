@@ -0,0 +1,264 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.drugner.fsm.machines.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.ctakes.core.ae.TokenizerAnnotator;
+import org.apache.ctakes.core.fsm.adapters.DecimalTokenAdapter;
+import org.apache.ctakes.core.fsm.adapters.IntegerTokenAdapter;
+import org.apache.ctakes.core.fsm.adapters.PunctuationTokenAdapter;
+import org.apache.ctakes.core.fsm.adapters.WordTokenAdapter;
+import org.apache.ctakes.core.fsm.token.BaseToken;
+import org.apache.ctakes.drugner.fsm.machines.elements.DecimalStrengthFSM;
+import org.apache.ctakes.drugner.fsm.machines.elements.DrugChangeStatusFSM;
+import org.apache.ctakes.drugner.fsm.machines.elements.FormFSM;
+import org.apache.ctakes.drugner.fsm.machines.elements.FractionStrengthFSM;
+import org.apache.ctakes.drugner.fsm.machines.elements.FrequencyUnitFSM;
+import org.apache.ctakes.drugner.fsm.machines.elements.RangeStrengthFSM;
+import org.apache.ctakes.drugner.fsm.machines.elements.RouteFSM;
+import org.apache.ctakes.drugner.fsm.output.elements.DrugChangeStatusToken;
+import org.apache.ctakes.drugner.fsm.output.elements.FrequencyUnitToken;
+import org.apache.ctakes.drugner.fsm.output.elements.RouteToken;
+import org.apache.ctakes.typesystem.type.syntax.NumToken;
+import org.apache.ctakes.typesystem.type.syntax.PunctuationToken;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.Test;
+
+import net.openai.util.fsm.Machine;
+import net.openai.util.fsm.State;
+
+/**
+ * Compares the combined single pass over the base tokens with the loop that
+ * each FSM used to run on its own.
+ */
+public class CombinedFSMExecutorTest {
+
+	private static final String TEXT = "Medications : aspirin 81 mg oral tablet once daily . "
+			+ "Take 1/2 tablet by mouth twice a day as needed . "
+			+ "Increase metoprolol to 2.5 mg every 4-6 hours . "
+			+ "Stop lisinopril 10 - 20 mg . Discontinue warfarin . "
+			+ "Apply topical cream three times a day . Fentanyl patch every 72 hours . "
+			+ "Inject 5 units subcutaneously at bedtime , intravenous infusion weekly . "
+			+ "one half tablet per rectum q.i.d. ; start prednisone 0.5 mg b.i.d. "
+			+ "via g-tube every other day , decrease to 1 1/2 capsules monthly . "
+			+ "Continue simvastatin 40 mg at night . Hold metformin 500 mg twice daily . "
+			+ "Two tablets by mouth every morning and evening , once a week , hourly .";
+
+	private static final Pattern TOKEN_PATTERN = Pattern
+			.compile("\\d+\\.\\d+|\\d+|[A-Za-z]+|[^\\sA-Za-z\\d]");
+
+	@Test
+	public void testSingleGroups() throws Exception {
+		List tokens = createTokens();
+		CombinableFSM[] fsms = createFsms();
+		for (int f = 0; f < fsms.length; f++) {
+			List expected = describe(executeSeparately(fsms[f], tokens));
+			List actual = describe(new CombinedFSMExecutor(
+					new CombinableFSM[] { fsms[f] }).execute(tokens)[0]);
+			assertEquals(fsms[f].getClass().getSimpleName(), expected,
+					actual);
+		}
+	}
+
+	@Test
+	public void testCombinedGroups() throws Exception {
+		List tokens = createTokens();
+		CombinableFSM[] fsms = createFsms();
+		Set[] combined = new CombinedFSMExecutor(fsms).execute(tokens);
+		assertEquals(fsms.length, combined.length);
+		int matchCount = 0;
+		for (int f = 0; f < fsms.length; f++) {
+			List expected = describe(executeSeparately(fsms[f], tokens));
+			assertEquals(fsms[f].getClass().getSimpleName(), expected,
+					describe(combined[f]));
+			matchCount += expected.size();
+		}
+		assertFalse("No FSM matched the test text", matchCount == 0);
+	}
+
+	@Test
+	public void testStandaloneExecute() throws Exception {
+		List tokens = createTokens();
+		CombinableFSM[] fsms = createFsms();
+		for (int f = 0; f < fsms.length; f++) {
+			if (fsms[f] instanceof FormFSM) {
+				// FormFSM.execute(List) returns a list and runs its own loop
+				continue;
+			}
+			Method execute = fsms[f].getClass().getMethod("execute",
+					new Class[] { List.class });
+			List expected = describe(executeSeparately(fsms[f], tokens));
+			// the executor of the fsm is reused by the second call
+			for (int i = 0; i < 2; i++) {
+				assertEquals(fsms[f].getClass().getSimpleName(), expected,
+						describe((Set) execute.invoke(fsms[f],
+								new Object[] { tokens })));
+			}
+		}
+	}
+
+	private static CombinableFSM[] createFsms() {
+		return new CombinableFSM[] { new FractionStrengthFSM(),
+				new DecimalStrengthFSM(), new DrugChangeStatusFSM(),
+				new RangeStrengthFSM(), new FormFSM(), new RouteFSM(),
+				new FrequencyUnitFSM() };
+	}
+
+	/**
+	 * The loop each FSM ran before the groups were combined.
+	 */
+	private static Set executeSeparately(CombinableFSM combinableFsm,
+			List tokens) throws Exception {
+		Set outputSet = new HashSet();
+
+		// maps a fsm to a token start index
+		// key = fsm , value = token start index
+		Map tokenStartMap = new HashMap();
+
+		for (int i = 0; i < tokens.size(); i++) {
+			BaseToken token = (BaseToken) tokens.get(i);
+
+			Iterator machineItr = combinableFsm.getMachineSet().iterator();
+			while (machineItr.hasNext()) {
+				Machine fsm = (Machine) machineItr.next();
+
+				fsm.input(token);
+
+				State currentState = fsm.getCurrentState();
+				if (currentState.getStartStateFlag()) {
+					tokenStartMap.put(fsm, new Integer(i));
+				}
+				if (currentState.getEndStateFlag()) {
+					Object o = tokenStartMap.get(fsm);
+					int tokenStartIndex;
+					if (o == null) {
+						// By default, all machines start with
+						// token zero.
+						tokenStartIndex = 0;
+					} else {
+						tokenStartIndex = ((Integer) o).intValue();
+						// skip ahead over single token we don't want
+						tokenStartIndex++;
+					}
+					outputSet.add(combinableFsm.createMatchToken(fsm,
+							currentState, tokens, tokenStartIndex, i));
+					fsm.reset();
+				}
+			}
+		}
+
+		// cleanup
+		tokenStartMap.clear();
+
+		// reset machines
+		Iterator itr = combinableFsm.getMachineSet().iterator();
+		while (itr.hasNext()) {
+			Machine fsm = (Machine) itr.next();
+			fsm.reset();
+		}
+
+		return outputSet;
+	}
+
+	/**
+	 * @return sorted descriptions of the output tokens, which do not implement
+	 *         equals.
+	 */
+	private static List describe(Set outputSet) {
+		List descriptions = new ArrayList();
+		Iterator itr = outputSet.iterator();
+		while (itr.hasNext()) {
+			Object token = itr.next();
+			if (token == null) {
+				descriptions.add("null");
+				continue;
+			}
+			BaseToken baseToken = (BaseToken) token;
+			StringBuffer sb = new StringBuffer();
+			sb.append(token.getClass().getSimpleName()).append(' ')
+					.append(baseToken.getStartOffset()).append('-')
+					.append(baseToken.getEndOffset());
+			if (token instanceof RouteToken) {
+				sb.append(' ').append(((RouteToken) token).getFormMethod());
+			} else if (token instanceof DrugChangeStatusToken) {
+				sb.append(' ').append(
+						((DrugChangeStatusToken) token).getDrugChangeStatus());
+			} else if (token instanceof FrequencyUnitToken) {
+				sb.append(' ').append(
+						((FrequencyUnitToken) token).getFrequencyUnitQuantity());
+			}
+			descriptions.add(sb.toString());
+		}
+		Collections.sort(descriptions);
+		return descriptions;
+	}
+
+	/**
+	 * @return fsm base tokens for the test text, adapted as
+	 *         DrugMentionAnnotator adapts the tokenizer output.
+	 */
+	private static List createTokens() throws Exception {
+		JCas jcas = JCasFactory.createJCas();
+		jcas.setDocumentText(TEXT);
+		List tokens = new ArrayList();
+		Matcher matcher = TOKEN_PATTERN.matcher(TEXT);
+		while (matcher.find()) {
+			String text = matcher.group();
+			char first = text.charAt(0);
+			if (Character.isDigit(first)) {
+				NumToken numToken = new NumToken(jcas, matcher.start(),
+						matcher.end());
+				if (text.indexOf('.') < 0) {
+					numToken.setNumType(TokenizerAnnotator.TOKEN_NUM_TYPE_INTEGER);
+					tokens.add(new IntegerTokenAdapter(numToken));
+				} else {
+					numToken.setNumType(TokenizerAnnotator.TOKEN_NUM_TYPE_DECIMAL);
+					tokens.add(new DecimalTokenAdapter(numToken));
+				}
+			} else if (Character.isLetter(first)) {
+				WordToken wordToken = new WordToken(jcas, matcher.start(),
+						matcher.end());
+				wordToken.setCapitalization(Character.isUpperCase(first) ? TokenizerAnnotator.TOKEN_CAP_FIRST_ONLY
+						: TokenizerAnnotator.TOKEN_CAP_NONE);
+				wordToken.setNumPosition(TokenizerAnnotator.TOKEN_NUM_POS_NONE);
+				tokens.add(new WordTokenAdapter(wordToken));
+			} else {
+				tokens.add(new PunctuationTokenAdapter(new PunctuationToken(
+						jcas, matcher.start(), matcher.end())));
+			}
+		}
+		return tokens;
+	}
+}
@@ -73,6 +73,10 @@ import org.apache.uima.fit.factory.ExternalResourceFactory;
  *         misspelled. It seems that if you automatically normalize a word from
  *         the cache, this may be bad if it is misspelled in the case where the
  *         misspelling is a word in the lexicon.
+ *
+ *         Words that are not in the cache files are sent to LVG once and the
+ *         results are recorded in a runtime cache shared by all LVG annotators,
+ *         see {@link LvgCache}.  Only the calls to LVG itself are synchronized.
  */
 @PipeBitInfo(
 		name = "LVG Annotator",
@@ -198,6 +202,36 @@ public class LvgAnnotator extends JCasAnnotator_ImplBase {
 	    )
 	private String[] wordsToExclude = defaultExclusionWords;
   private Set<String> exclusionSet;
+
+	/**
+	 * Value is "UseRuntimeCache". This parameter determines whether canonical
+	 * forms and lemmas computed by LVG are recorded for reuse.
+	 */
+	public static final String PARAM_USE_RUNTIME_CACHE = "UseRuntimeCache";
+	@ConfigurationParameter(
+	    name = PARAM_USE_RUNTIME_CACHE,
+	    mandatory = false,
+	    defaultValue = "true",
+	    description = "Whether to record canonical forms and lemmas computed by LVG for reuse"
+	    )
+	private boolean useRuntimeCache;
+
+	public static final String PARAM_RUNTIME_CACHE_SIZE = "RuntimeCacheSize";
+	@ConfigurationParameter(
+	    name = PARAM_RUNTIME_CACHE_SIZE,
+	    mandatory = false,
+	    defaultValue = "500000",
+	    description = "Maximum number of words recorded in the runtime cache"
+	    )
+	private int runtimeCacheSize;
+
+	public static final String PARAM_RUNTIME_CACHE_FILE = "RuntimeCacheFile";
+	@ConfigurationParameter(
+	    name = PARAM_RUNTIME_CACHE_FILE,
+	    mandatory = false,
+	    description = "File from which the runtime cache is loaded at initialization and to which it is saved when processing is complete"
+	    )
+	private String runtimeCacheFile;
   
 	// LOG4J logger based on class name
 	private Logger logger = Logger.getLogger(getClass().getName());
@@ -234,6 +268,13 @@ public class LvgAnnotator extends JCasAnnotator_ImplBase {
 		try {
 			lvgCmd = lvgResource.getLvg();
 
+			if (useRuntimeCache) {
+				LvgCache.getInstance().setMaxSize(runtimeCacheSize);
+				if (runtimeCacheFile != null && !runtimeCacheFile.isEmpty()) {
+					LvgCache.getInstance().load(new File(runtimeCacheFile));
+				}
+			}
+
 			if (useCmdCache) {
 				logger.info("Loading Cmd cache=" + cmdCacheFileLocation);
 				loadCmdCacheFile(cmdCacheFileLocation);
@@ -315,6 +356,25 @@ public class LvgAnnotator extends JCasAnnotator_ImplBase {
 
 	}
 
+	/**
+	 * Logs runtime cache statistics and saves the runtime cache if a file is specified.
+	 */
+	@Override
+	public void collectionProcessComplete() throws AnalysisEngineProcessException {
+		super.collectionProcessComplete();
+		if (!useRuntimeCache) {
+			return;
+		}
+		LvgCache.getInstance().logStatistics();
+		if (runtimeCacheFile != null && !runtimeCacheFile.isEmpty()) {
+			try {
+				LvgCache.getInstance().save(new File(runtimeCacheFile));
+			} catch (IOException e) {
+				throw new AnalysisEngineProcessException(e);
+			}
+		}
+	}
+
 	/**
 	 * A utility method that annotates a given range.
 	 */
@@ -360,10 +420,18 @@ public class LvgAnnotator extends JCasAnnotator_ImplBase {
 			}
 		}
 
+		if (canonicalForm == null && useRuntimeCache) {
+			canonicalForm = LvgCache.getInstance().getCanonicalForm(word);
+		}
+
 		// only apply LVG processing if not found in cache first
 		if (canonicalForm == null) {
 			try {
-				String out = lvgCmd.MutateToString(word);
+				String out;
+				// LVG itself is not thread safe
+				synchronized (lvgCmd) {
+					out = lvgCmd.MutateToString(word);
+				}
 
 				String[] output = out.split("\\|");
 
@@ -374,10 +442,12 @@ public class LvgAnnotator extends JCasAnnotator_ImplBase {
 			} catch (Exception e) {
 				throw new AnalysisEngineProcessException(e);
 			}
-
+			if (useRuntimeCache) {
+				LvgCache.getInstance().putCanonicalForm(word, canonicalForm);
+			}
 		}
 
-		if (canonicalForm != null) {
+		if (canonicalForm != null && !canonicalForm.isEmpty()) {
 			wordAnnotation.setCanonicalForm(canonicalForm);
 		}
 	}
@@ -405,35 +475,22 @@ public class LvgAnnotator extends JCasAnnotator_ImplBase {
 
 		if (lemmaMap == null) {
 			lemmaMap = new HashMap<>();
-			try {
-				Vector<?> lexItems = lvgLexItem.MutateLexItem(word);
-				Iterator<?> lexItemItr = lexItems.iterator();
-				while (lexItemItr.hasNext()) {
-					LexItem li = (LexItem) lexItemItr.next();
-
-					Category c = li.GetTargetCategory();
-					String lemmaStr = li.GetTargetTerm();
-					long[] bitValues = Category.ToValuesArray(c.GetValue());
-					for (int i = 0; i < bitValues.length; i++) {
-						// note that POS is Xerox tagset
-						String lemmaPos = Category.ToName(bitValues[i]);
-						// convert Xerox tagset to PennTreebank tagset
-						String treebankTag = xeroxTreebankMap
-								.get(lemmaPos);
-						if (treebankTag != null) {
-							Set<String> posSet = null;
-							if (lemmaMap.containsKey(lemmaStr)) {
-								posSet = lemmaMap.get(lemmaStr);
-							} else {
-								posSet = new HashSet<>();
-							}
-							posSet.add(treebankTag);
+			// key = lemma string, value = Set of Xerox POS tags
+			Map<String, Set<String>> lexLemmaMap = getLexLemmas(word);
+			for (Map.Entry<String, Set<String>> lexLemma : lexLemmaMap.entrySet()) {
+				String lemmaStr = lexLemma.getKey();
+				for (String lemmaPos : lexLemma.getValue()) {
+					// convert Xerox tagset to PennTreebank tagset
+					String treebankTag = xeroxTreebankMap.get(lemmaPos);
+					if (treebankTag != null) {
+						Set<String> posSet = lemmaMap.get(lemmaStr);
+						if (posSet == null) {
+							posSet = new HashSet<>();
 							lemmaMap.put(lemmaStr, posSet);
 						}
+						posSet.add(treebankTag);
 					}
 				}
-			} catch (Exception e) {
-				throw new AnalysisEngineProcessException(e);
 			}
 		}
 
@@ -459,6 +516,51 @@ public class LvgAnnotator extends JCasAnnotator_ImplBase {
 		wordAnnotation.setLemmaEntries(fsList);
 	}
 
+	/**
+	 * @return lemmas for the word with their parts of speech in the Xerox
+	 *         tagset, from the runtime cache or from LVG
+	 */
+	private Map<String, Set<String>> getLexLemmas(String word)
+			throws AnalysisEngineProcessException {
+		if (useRuntimeCache) {
+			Map<String, Set<String>> cached = LvgCache.getInstance().getLemmas(word);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		Map<String, Set<String>> lexLemmaMap = new HashMap<>();
+		try {
+			Vector<?> lexItems;
+			// LVG itself is not thread safe
+			synchronized (lvgCmd) {
+				lexItems = lvgLexItem.MutateLexItem(word);
+			}
+			Iterator<?> lexItemItr = lexItems.iterator();
+			while (lexItemItr.hasNext()) {
+				LexItem li = (LexItem) lexItemItr.next();
+
+				Category c = li.GetTargetCategory();
+				String lemmaStr = li.GetTargetTerm();
+				long[] bitValues = Category.ToValuesArray(c.GetValue());
+				Set<String> posSet = lexLemmaMap.get(lemmaStr);
+				if (posSet == null) {
+					posSet = new HashSet<>();
+					lexLemmaMap.put(lemmaStr, posSet);
+				}
+				for (int i = 0; i < bitValues.length; i++) {
+					// note that POS is Xerox tagset
+					posSet.add(Category.ToName(bitValues[i]));
+				}
+			}
+		} catch (Exception e) {
+			throw new AnalysisEngineProcessException(e);
+		}
+		if (useRuntimeCache) {
+			return LvgCache.getInstance().putLemmas(word, lexLemmaMap);
+		}
+		return lexLemmaMap;
+	}
+
 	/**
 	 * Helper method that loads a Norm cache file.
 	 * 
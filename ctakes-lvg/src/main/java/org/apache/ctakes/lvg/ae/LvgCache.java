@@ -0,0 +1,251 @@
+package org.apache.ctakes.lvg.ae;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime cache of lvg results shared by all lvg annotators in the jvm.
+ * Canonical forms and lemmas are recorded as they are computed so that each word is only sent to lvg once.
+ * <p>
+ * The cache is bounded by entry count.  Once full, new words are no longer recorded;
+ * as word frequencies are heavily skewed the most common words are nearly always recorded before that happens.
+ * Lemma parts of speech are kept in the lvg (Xerox) tagset so that the cache does not depend upon
+ * any one annotator's tagset mapping.
+ * </p>
+ * <p>
+ * The cache can be saved to and loaded from a file with lines {@code N|word|canonical} and
+ * {@code L|word|lemma|pos,pos}.
+ * </p>
+ */
+enum LvgCache {
+   INSTANCE;
+
+   static public LvgCache getInstance() {
+      return INSTANCE;
+   }
+
+   static private final Logger LOGGER = Logger.getLogger( "LvgCache" );
+
+   static private final String NORM_PREFIX = "N";
+   static private final String LEMMA_PREFIX = "L";
+
+   private final Map<String, String> _canonicalForms = new ConcurrentHashMap<>();
+   private final Map<String, Map<String, Set<String>>> _lemmas = new ConcurrentHashMap<>();
+
+   private final LongAdder _normHits = new LongAdder();
+   private final LongAdder _normMisses = new LongAdder();
+   private final LongAdder _lemmaHits = new LongAdder();
+   private final LongAdder _lemmaMisses = new LongAdder();
+
+   static private final int DEFAULT_MAX_SIZE = 500000;
+
+   // largest size requested by any annotator, 0 if none has been requested
+   private volatile int _maxSize = 0;
+
+   /**
+    * @param maxSize maximum number of words for which canonical forms, and separately lemmas, are recorded.
+    *                The largest size requested by any annotator is used.
+    */
+   synchronized public void setMaxSize( final int maxSize ) {
+      _maxSize = Math.max( _maxSize, maxSize );
+   }
+
+   /**
+    * @return the largest size requested by any annotator, or the default size if none has been requested
+    */
+   public int getMaxSize() {
+      final int maxSize = _maxSize;
+      return maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+   }
+
+   /**
+    * @param word -
+    * @return canonical form for the word, an empty string if lvg has no canonical form for the word,
+    * or null if nothing has been recorded for the word
+    */
+   public String getCanonicalForm( final String word ) {
+      final String canonicalForm = _canonicalForms.get( word );
+      if ( canonicalForm == null ) {
+         _normMisses.increment();
+      } else {
+         _normHits.increment();
+      }
+      return canonicalForm;
+   }
+
+   /**
+    * @param word          -
+    * @param canonicalForm canonical form computed by lvg, null if there is none
+    */
+   public void putCanonicalForm( final String word, final String canonicalForm ) {
+      if ( _canonicalForms.size() < getMaxSize() ) {
+         _canonicalForms.put( word, canonicalForm == null ? "" : canonicalForm );
+      }
+   }
+
+   /**
+    * @param word -
+    * @return unmodifiable map of lemma to lvg parts of speech, or null if none has been recorded
+    */
+   public Map<String, Set<String>> getLemmas( final String word ) {
+      final Map<String, Set<String>> lemmas = _lemmas.get( word );
+      if ( lemmas == null ) {
+         _lemmaMisses.increment();
+      } else {
+         _lemmaHits.increment();
+      }
+      return lemmas;
+   }
+
+   /**
+    * @param word   -
+    * @param lemmas map of lemma to lvg parts of speech computed by lvg
+    * @return unmodifiable copy of the lemmas
+    */
+   public Map<String, Set<String>> putLemmas( final String word, final Map<String, Set<String>> lemmas ) {
+      final Map<String, Set<String>> copy = new HashMap<>( lemmas.size() );
+      lemmas.forEach( ( k, v ) -> copy.put( k, Collections.unmodifiableSet( new HashSet<>( v ) ) ) );
+      final Map<String, Set<String>> unmodifiable = Collections.unmodifiableMap( copy );
+      if ( _lemmas.size() < getMaxSize() ) {
+         _lemmas.put( word, unmodifiable );
+      }
+      return unmodifiable;
+   }
+
+   public long getNormHits() {
+      return _normHits.sum();
+   }
+
+   public long getNormMisses() {
+      return _normMisses.sum();
+   }
+
+   public long getLemmaHits() {
+      return _lemmaHits.sum();
+   }
+
+   public long getLemmaMisses() {
+      return _lemmaMisses.sum();
+   }
+
+   /**
+    * Removes all entries, statistics and requested sizes.  Used by tests.
+    */
+   synchronized void clear() {
+      _canonicalForms.clear();
+      _lemmas.clear();
+      _normHits.reset();
+      _normMisses.reset();
+      _lemmaHits.reset();
+      _lemmaMisses.reset();
+      _maxSize = 0;
+   }
+
+   public void logStatistics() {
+      LOGGER.info( "Cached canonical forms: " + _canonicalForms.size()
+                   + " , hits: " + getNormHits() + " , misses: " + getNormMisses() );
+      LOGGER.info( "Cached lemmas: " + _lemmas.size()
+                   + " , hits: " + getLemmaHits() + " , misses: " + getLemmaMisses() );
+   }
+
+   /**
+    * Load entries saved by {@link #save(File)}.  Entries that are already cached are kept,
+    * and no more entries are loaded than the cache can hold.
+    *
+    * @param file cache file
+    * @throws IOException -
+    */
+   public void load( final File file ) throws IOException {
+      if ( !file.isFile() ) {
+         return;
+      }
+      final Map<String, String> canonicalForms = new HashMap<>();
+      final Map<String, Map<String, Set<String>>> lemmas = new HashMap<>();
+      try ( BufferedReader reader = Files.newBufferedReader( file.toPath(), StandardCharsets.UTF_8 ) ) {
+         String line = reader.readLine();
+         while ( line != null ) {
+            final String[] splits = line.split( "\\|", -1 );
+            if ( splits.length == 3 && splits[ 0 ].equals( NORM_PREFIX ) ) {
+               canonicalForms.put( splits[ 1 ], splits[ 2 ] );
+            } else if ( splits.length == 4 && splits[ 0 ].equals( LEMMA_PREFIX ) ) {
+               lemmas.computeIfAbsent( splits[ 1 ], w -> new HashMap<>() )
+                     .computeIfAbsent( splits[ 2 ], l -> new HashSet<>() )
+                     .addAll( Arrays.asList( splits[ 3 ].split( "," ) ) );
+            } else if ( !line.isEmpty() ) {
+               LOGGER.warn( "Invalid LVG cache line: " + line );
+            }
+            line = reader.readLine();
+         }
+      }
+      canonicalForms.forEach( ( w, c ) -> {
+         if ( !_canonicalForms.containsKey( w ) ) {
+            putCanonicalForm( w, c );
+         }
+      } );
+      lemmas.forEach( ( w, l ) -> {
+         if ( !_lemmas.containsKey( w ) ) {
+            putLemmas( w, l );
+         }
+      } );
+      LOGGER.info( "Loaded " + canonicalForms.size() + " canonical forms and " + lemmas.size()
+                   + " lemma entries from " + file.getPath() );
+   }
+
+   /**
+    * Write all cached entries to a file, replacing any existing file.
+    *
+    * @param file cache file
+    * @throws IOException -
+    */
+   public void save( final File file ) throws IOException {
+      final File parent = file.getAbsoluteFile().getParentFile();
+      if ( parent != null && !parent.isDirectory() && !parent.mkdirs() ) {
+         throw new IOException( "Could not create directory " + parent.getPath() );
+      }
+      final File temp = new File( file.getPath() + ".tmp" );
+      try ( BufferedWriter writer = Files.newBufferedWriter( temp.toPath(), StandardCharsets.UTF_8 ) ) {
+         for ( Map.Entry<String, String> entry : _canonicalForms.entrySet() ) {
+            if ( !isSavable( entry.getKey() ) || !isSavable( entry.getValue() ) ) {
+               continue;
+            }
+            writer.write( NORM_PREFIX + "|" + entry.getKey() + "|" + entry.getValue() );
+            writer.newLine();
+         }
+         for ( Map.Entry<String, Map<String, Set<String>>> entry : _lemmas.entrySet() ) {
+            if ( !isSavable( entry.getKey() ) ) {
+               continue;
+            }
+            for ( Map.Entry<String, Set<String>> lemma : entry.getValue().entrySet() ) {
+               if ( !isSavable( lemma.getKey() ) ) {
+                  continue;
+               }
+               writer.write( LEMMA_PREFIX + "|" + entry.getKey() + "|" + lemma.getKey() + "|"
+                             + String.join( ",", lemma.getValue() ) );
+               writer.newLine();
+            }
+         }
+      }
+      Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+      LOGGER.info( "Saved " + _canonicalForms.size() + " canonical forms and " + _lemmas.size()
+                   + " lemma entries to " + file.getPath() );
+   }
+
+   /**
+    * @param text word, canonical form or lemma
+    * @return true if the text can be written to a line of the cache file
+    */
+   static private boolean isSavable( final String text ) {
+      return text.indexOf( '|' ) < 0 && text.indexOf( '\n' ) < 0 && text.indexOf( '\r' ) < 0;
+   }
+
+}
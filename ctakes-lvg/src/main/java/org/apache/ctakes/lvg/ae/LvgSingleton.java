@@ -56,9 +56,20 @@ enum LvgSingleton {
       }
    }
 
+   /**
+    * Documents are processed concurrently.  The LvgAnnotator synchronizes its calls to lvg itself,
+    * and words that lvg has already seen are answered by the shared {@link LvgCache} without any lock.
+    */
    public void process( final JCas jCas ) throws AnalysisEngineProcessException {
+      _lvgAnnotator.process( jCas );
+   }
+
+   /**
+    * Calls collectionProcessComplete on the single LVG instance, which logs and possibly saves the runtime cache.
+    */
+   public void collectionProcessComplete() throws AnalysisEngineProcessException {
       synchronized ( LOCK ) {
-         _lvgAnnotator.process( jCas );
+         _lvgAnnotator.collectionProcessComplete();
       }
    }
 
@@ -0,0 +1,101 @@
+package org.apache.ctakes.lvg.ae;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LvgCacheTest {
+
+   @Rule
+   public TemporaryFolder _folder = new TemporaryFolder();
+
+   private final LvgCache _cache = LvgCache.getInstance();
+
+   @Before
+   @After
+   public void clearCache() {
+      _cache.clear();
+   }
+
+   @Test
+   public void testDefaultMaxSize() {
+      assertEquals( 500000, _cache.getMaxSize() );
+   }
+
+   @Test
+   public void testSmallerMaxSize() {
+      _cache.setMaxSize( 3 );
+      assertEquals( 3, _cache.getMaxSize() );
+      for ( int i = 0; i < 5; i++ ) {
+         _cache.putCanonicalForm( "word" + i, "canonical" + i );
+         _cache.putLemmas( "word" + i, lemmas( "lemma" + i ) );
+      }
+      for ( int i = 0; i < 3; i++ ) {
+         assertEquals( "canonical" + i, _cache.getCanonicalForm( "word" + i ) );
+         assertEquals( lemmas( "lemma" + i ), _cache.getLemmas( "word" + i ) );
+      }
+      for ( int i = 3; i < 5; i++ ) {
+         assertNull( _cache.getCanonicalForm( "word" + i ) );
+         assertNull( _cache.getLemmas( "word" + i ) );
+      }
+      assertEquals( 3, _cache.getNormHits() );
+      assertEquals( 2, _cache.getNormMisses() );
+   }
+
+   @Test
+   public void testLargestMaxSize() {
+      _cache.setMaxSize( 3 );
+      _cache.setMaxSize( 2 );
+      assertEquals( 3, _cache.getMaxSize() );
+      _cache.setMaxSize( 4 );
+      assertEquals( 4, _cache.getMaxSize() );
+      for ( int i = 0; i < 5; i++ ) {
+         _cache.putCanonicalForm( "word" + i, null );
+      }
+      assertEquals( "", _cache.getCanonicalForm( "word3" ) );
+      assertNull( _cache.getCanonicalForm( "word4" ) );
+   }
+
+   @Test
+   public void testBoundedLoad() throws Exception {
+      for ( int i = 0; i < 5; i++ ) {
+         _cache.putCanonicalForm( "word" + i, "canonical" + i );
+         _cache.putLemmas( "word" + i, lemmas( "lemma" + i ) );
+      }
+      final File file = new File( _folder.getRoot(), "lvg.cache" );
+      _cache.save( file );
+      _cache.clear();
+      _cache.putCanonicalForm( "word0", "kept" );
+      _cache.setMaxSize( 2 );
+      _cache.load( file );
+      assertEquals( "kept", _cache.getCanonicalForm( "word0" ) );
+      int canonicalCount = 0;
+      int lemmaCount = 0;
+      for ( int i = 0; i < 5; i++ ) {
+         if ( _cache.getCanonicalForm( "word" + i ) != null ) {
+            canonicalCount++;
+         }
+         final Map<String, Set<String>> lemmas = _cache.getLemmas( "word" + i );
+         if ( lemmas != null ) {
+            assertEquals( lemmas( "lemma" + i ), lemmas );
+            lemmaCount++;
+         }
+      }
+      assertEquals( 2, canonicalCount );
+      assertEquals( 2, lemmaCount );
+   }
+
+   static private Map<String, Set<String>> lemmas( final String lemma ) {
+      return Collections.singletonMap( lemma, Collections.singleton( "noun" ) );
+   }
+
+}
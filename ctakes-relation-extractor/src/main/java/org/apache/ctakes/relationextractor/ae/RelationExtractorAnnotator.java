@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
+import org.apache.ctakes.core.cleartk.BatchClassifier;
 import org.apache.ctakes.relationextractor.ae.features.DependencyPathFeaturesExtractor;
 import org.apache.ctakes.relationextractor.ae.features.DependencyTreeFeaturesExtractor;
 import org.apache.ctakes.relationextractor.ae.features.NamedEntityFeaturesExtractor;
@@ -76,6 +77,10 @@ public abstract class RelationExtractorAnnotator extends CleartkAnnotator<String
 
 	private Class<? extends Annotation> coveringClass = getCoveringClass();
 
+	private BatchClassifier<String> batchClassifier;
+
+	private final boolean classifyOverridden = overridesClassify(this.getClass());
+
 	/**
 	 * Defines the list of feature extractors used by the classifier. Subclasses
 	 * may override this method to provide a different set of feature extractors.
@@ -133,6 +138,40 @@ public abstract class RelationExtractorAnnotator extends CleartkAnnotator<String
 	public void initialize(UimaContext context) throws ResourceInitializationException {
 		allowClassifierModelOnClasspath(context);
 		super.initialize(context);
+		if (!this.isTraining()) {
+			this.batchClassifier = new BatchClassifier<>(this.classifier);
+		}
+	}
+
+	/**
+	 * Whether the candidate pairs of a covering annotation are classified
+	 * together, after the features of all of them have been extracted. Pairs are
+	 * batched per covering annotation, not per document. By default this is false for subclasses that override {@link #classify(List)},
+	 * so that their classification is used for every pair. Subclasses that keep
+	 * state between the classification of a pair and its {@link #createRelation}
+	 * should also return false so that each relation is created right away.
+	 * 
+	 * @return true to classify the candidate pairs of a covering annotation
+	 *         with one {@link BatchClassifier} call
+	 */
+	protected boolean isBatchClassified() {
+		return !this.classifyOverridden;
+	}
+
+	/**
+	 * @return true if a subclass between the given class and this one declares
+	 *         {@link #classify(List)}
+	 */
+	private static boolean overridesClassify(Class<?> annotatorClass) {
+		for (Class<?> cls = annotatorClass; cls != RelationExtractorAnnotator.class; cls = cls.getSuperclass()) {
+			try {
+				cls.getDeclaredMethod("classify", List.class);
+				return true;
+			} catch (NoSuchMethodException e) {
+				// not declared by this class, check its superclass
+			}
+		}
+		return false;
 	}
 
 	/*
@@ -163,6 +202,10 @@ public abstract class RelationExtractorAnnotator extends CleartkAnnotator<String
 		// walk through each sentence in the text
 		for (Annotation coveringAnnotation : JCasUtil.select(jCas, coveringClass)) {
 
+			// candidate pairs and their features, classified together after the walk
+			List<IdentifiedAnnotationPair> candidates = new ArrayList<>();
+			List<List<Feature>> candidateFeatures = new ArrayList<>();
+
 			// walk through the pairs of annotations
 			for (IdentifiedAnnotationPair pair : this.getCandidateRelationArgumentPairs(jCas, coveringAnnotation)) {
 				IdentifiedAnnotation arg1 = pair.getArg1();
@@ -202,30 +245,53 @@ public abstract class RelationExtractorAnnotator extends CleartkAnnotator<String
 					this.dataWriter.write(new Instance<>(category, features));
 				}
 
+				// during batch classification keep the features for the classifier
+				else if (this.isBatchClassified()) {
+					candidates.add(pair);
+					candidateFeatures.add(features);
+				}
+
 				// during classification feed the features to the classifier and create
 				// annotations
 				else {
-					String predictedCategory = this.classify(features);
-
-					// add a relation annotation if a true relation was predicted
-					if (!predictedCategory.equals(NO_RELATION_CATEGORY)) {
-
-						// if we predict an inverted relation, reverse the order of the
-						// arguments
-						if (predictedCategory.endsWith("-1")) {
-							predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
-							IdentifiedAnnotation temp = arg1;
-							arg1 = arg2;
-							arg2 = temp;
-						}
-
-						createRelation(jCas, arg1, arg2, predictedCategory);
-					}
+					addPredictedRelation(jCas, arg1, arg2, this.classify(features));
 				}
 			} // end pair in pairs
+
+			// classify all candidates of the covering annotation and create annotations
+			if (!candidates.isEmpty()) {
+				List<String> predictedCategories = this.batchClassifier.classify(candidateFeatures);
+				for (int i = 0; i < candidates.size(); i++) {
+					IdentifiedAnnotationPair pair = candidates.get(i);
+					addPredictedRelation(jCas, pair.getArg1(), pair.getArg2(), predictedCategories.get(i));
+				}
+			}
 		} // end for(Sentence)
 	}
 
+	/**
+	 * Adds a relation annotation if a true relation was predicted.
+	 */
+	private void addPredictedRelation(
+			JCas jCas,
+			IdentifiedAnnotation arg1,
+			IdentifiedAnnotation arg2,
+			String predictedCategory) {
+		if (!predictedCategory.equals(NO_RELATION_CATEGORY)) {
+
+			// if we predict an inverted relation, reverse the order of the
+			// arguments
+			if (predictedCategory.endsWith("-1")) {
+				predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
+				IdentifiedAnnotation temp = arg1;
+				arg1 = arg2;
+				arg2 = temp;
+			}
+
+			createRelation(jCas, arg1, arg2, predictedCategory);
+		}
+	}
+
 	/**
 	 * Looks up the arguments in the specified lookup table and converts the
 	 * relation into a label for classification
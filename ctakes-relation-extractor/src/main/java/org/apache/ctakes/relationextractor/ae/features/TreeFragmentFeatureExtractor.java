@@ -27,11 +27,11 @@ import java.util.Scanner;
 
 import org.apache.ctakes.constituency.parser.treekernel.TreeExtractor;
 import org.apache.ctakes.constituency.parser.util.AnnotationTreeUtils;
-import org.apache.ctakes.constituency.parser.util.TreeUtils;
 import org.apache.ctakes.core.resource.FileLocator;
 import org.apache.ctakes.typesystem.type.syntax.TopTreebankNode;
 import org.apache.ctakes.typesystem.type.syntax.TreebankNode;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.utils.tree.FragmentIndex;
 import org.apache.ctakes.utils.tree.FragmentUtils;
 import org.apache.ctakes.utils.tree.SimpleTree;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -46,25 +46,34 @@ import org.cleartk.ml.Feature;
  */
 public class TreeFragmentFeatureExtractor implements RelationFeaturesExtractor<IdentifiedAnnotation,IdentifiedAnnotation> {
 
-	static HashSet<SimpleTree> frags = null;
+	static volatile HashSet<SimpleTree> frags = null;
+	static volatile FragmentIndex fragIndex = null;
 
 	public TreeFragmentFeatureExtractor(){
-		if(frags == null) initializeFrags();
+		initializeFrags();
 	}
 
 
-	private static void initializeFrags(){
-		frags = new HashSet<SimpleTree>();
+	/*
+	 * Both fields are built locally and published together under the class lock,
+	 * so a concurrent constructor never sees the fragments without their index.
+	 */
+	private static synchronized void initializeFrags(){
+		if(fragIndex != null) return;
+		HashSet<SimpleTree> newFrags = new HashSet<SimpleTree>();
 		try{
 //			File fragsFile = FileLocator.locateFile("resources/frags_args.txt");
 			File fragsFile = FileLocator.getFile("org/apache/ctakes/relationextractor/frags_nolex_args.txt");
 			Scanner scanner = new Scanner(fragsFile);
 			while(scanner.hasNextLine()){
-				frags.add(FragmentUtils.frag2tree(scanner.nextLine().trim()));
+				newFrags.add(FragmentUtils.frag2tree(scanner.nextLine().trim()));
 			}
 		}catch(FileNotFoundException e){
 			System.err.println("Missing fragment file!");
 		}
+		FragmentIndex newFragIndex = FragmentIndex.forTrees(newFrags, true);
+		frags = newFrags;
+		fragIndex = newFragIndex;
 	}
 
 	@Override
@@ -88,12 +97,8 @@ public class TreeFragmentFeatureExtractor implements RelationFeaturesExtractor<I
 			tree = TreeExtractor.extractPathEnclosedTree(t1, t2, jcas);
 		}
 
-		for(SimpleTree frag : frags){
-			if(TreeUtils.containsIgnoreCase(tree, frag)){
-				features.add(new Feature("TK_" + frag.toString()));
-				//			}else{
-				//				features.add(new Feature(frag.toString(), false));
-			}
+		for(SimpleTree frag : fragIndex.getContainedFragments(tree)){
+			features.add(new Feature("TK_" + frag.toString()));
 		}
 
 		return features;
@@ -19,11 +19,13 @@
 package org.apache.ctakes.relationextractor.ae;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.ctakes.typesystem.type.constants.CONST;
 import org.apache.ctakes.typesystem.type.relation.BinaryTextRelation;
@@ -44,6 +46,7 @@ import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.util.XMLInputSource;
 import org.apache.uima.util.XMLParser;
+import org.cleartk.ml.Feature;
 import org.junit.Test;
 
 public class RelationExtractorAnnotatorsTest {
@@ -112,6 +115,47 @@ public class RelationExtractorAnnotatorsTest {
     assertEquals(fibula, fractureFibula.getArg2().getArgument());
   }
 
+  @Test
+  public void testClassifyOverride() throws Exception {
+    assertTrue(new LocationOfRelationExtractorAnnotator().isBatchClassified());
+    assertFalse(new NoRelationLocationOfAnnotator().isBatchClassified());
+
+    // the model finds the location of the fracture, but the override finds none
+    AnalysisEngineDescription description = findDescription(LocationOfRelationExtractorAnnotator.class);
+    description.setAnnotatorImplementationName(NoRelationLocationOfAnnotator.class.getName());
+    AnalysisEngine engine = UIMAFramework.produceAnalysisEngine(description);
+    JCas jCas = engine.newJCas();
+    TokenBuilder<BaseToken, Sentence> tokenBuilder =
+        new TokenBuilder<BaseToken, Sentence>(BaseToken.class, Sentence.class, "partOfSpeech", null);
+    tokenBuilder.buildTokens(
+        jCas,
+        "He had a slight fracture in the proximal right fibula.",
+        "He had a slight fracture in the proximal right fibula .",
+        "PRP VBD DT JJ NN IN DT JJ JJ NN .");
+    DiseaseDisorderMention fracture = new DiseaseDisorderMention(jCas, 16, 24);
+    fracture.setTypeID(CONST.NE_TYPE_ID_DISORDER);
+    fracture.addToIndexes();
+    AnatomicalSiteMention fibula = new AnatomicalSiteMention(jCas, 32, 53);
+    fibula.setTypeID(CONST.NE_TYPE_ID_ANATOMICAL_SITE);
+    fibula.addToIndexes();
+    engine.process(jCas);
+    assertEquals(1, NoRelationLocationOfAnnotator.classifyCount);
+    assertTrue(JCasUtil.select(jCas, BinaryTextRelation.class).isEmpty());
+  }
+
+  /**
+   * Overrides the classification of every candidate pair.
+   */
+  public static class NoRelationLocationOfAnnotator extends LocationOfRelationExtractorAnnotator {
+    static int classifyCount = 0;
+
+    @Override
+    protected String classify(List<Feature> features) {
+      classifyCount++;
+      return NO_RELATION_CATEGORY;
+    }
+  }
+
   private static AnalysisEngineDescription findDescription(
       Class<? extends JCasAnnotator_ImplBase> cls) throws Exception {
     File directory = new File("desc/analysis_engine");
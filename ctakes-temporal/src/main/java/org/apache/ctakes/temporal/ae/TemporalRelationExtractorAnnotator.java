@@ -23,6 +23,7 @@ package org.apache.ctakes.temporal.ae;
 //import java.net.URI;//for normalization
 
 import com.google.common.collect.Lists;
+import org.apache.ctakes.core.cleartk.BatchClassifier;
 import org.apache.ctakes.relationextractor.ae.features.*;
 import org.apache.ctakes.typesystem.type.relation.BinaryTextRelation;
 import org.apache.ctakes.typesystem.type.relation.RelationArgument;
@@ -75,6 +76,10 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 
 	private Class<? extends Annotation> coveringClass = getCoveringClass();
 
+	private BatchClassifier<String> batchClassifier;
+
+	private final boolean classifyOverridden = overridesClassify(this.getClass());
+
 	//private ZscoreNormalizationExtractor<String, Annotation> featureTransformExtractor;//for normalization
 
 	//protected static URI minmaxExtractorURI;//for normalization
@@ -150,6 +155,9 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 
       allowClassifierModelOnClasspath(context);
 		super.initialize(context);
+		if (!this.isTraining()) {
+			this.batchClassifier = new BatchClassifier<>(this.classifier);
+		}
 		//		minmaxExtractor = createMinMaxNormalizationExtractor();
 		/**for normalization
 		if (this.minmaxExtractorURI != null) {
@@ -162,6 +170,39 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 		}*/
 	}
 
+	/**
+	 * Whether the candidate pairs of a covering annotation are classified
+	 * together, after the features of all of them have been extracted. Pairs are
+	 * batched per covering annotation, not per document. By default this is
+	 * false for subclasses that override {@link #classify(List)}, so that their
+	 * classification is used for every pair. Subclasses whose features depend on
+	 * relations created earlier in the same covering annotation, or that keep
+	 * state between the classification of a pair and its
+	 * {@link #createRelation}, should also return false.
+	 * 
+	 * @return true to classify the candidate pairs of a covering annotation
+	 *         with one {@link BatchClassifier} call
+	 */
+	protected boolean isBatchClassified() {
+		return !this.classifyOverridden;
+	}
+
+	/**
+	 * @return true if a subclass between the given class and this one declares
+	 *         {@link #classify(List)}
+	 */
+	private static boolean overridesClassify(Class<?> annotatorClass) {
+		for (Class<?> cls = annotatorClass; cls != TemporalRelationExtractorAnnotator.class; cls = cls.getSuperclass()) {
+			try {
+				cls.getDeclaredMethod("classify", List.class);
+				return true;
+			} catch (NoSuchMethodException e) {
+				// not declared by this class, check its superclass
+			}
+		}
+		return false;
+	}
+
 	/*
 	 * Implement the standard UIMA process method.
 	 */
@@ -195,6 +236,10 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 			List<IdentifiedAnnotationPair> candidatePairs =
 					this.getCandidateRelationArgumentPairs(jCas, coveringAnnotation);
 
+			// candidate pairs and their features, classified together after the walk
+			List<IdentifiedAnnotationPair> candidates = new ArrayList<>();
+			List<List<Feature>> candidateFeatures = new ArrayList<>();
+
 			// walk through the pairs of annotations
 			for (IdentifiedAnnotationPair pair : candidatePairs) {
 				IdentifiedAnnotation arg1 = pair.getArg1();
@@ -250,6 +295,12 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 					this.dataWriter.write(new Instance<>(category, features));
 				}
 
+				// during batch classification keep the features for the classifier
+				else if (this.isBatchClassified()) {
+					candidates.add(pair);
+					candidateFeatures.add(features);
+				}
+
 				// during classification feed the features to the classifier and create
 				// annotations
 				else {
@@ -287,25 +338,44 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 						}
 					}*/
 
-					// add a relation annotation if a true relation was predicted
-					if (predictedCategory != null && !predictedCategory.equals(NO_RELATION_CATEGORY)) {
-
-						// if we predict an inverted relation, reverse the order of the
-						// arguments
-						if (predictedCategory.endsWith("-1")) {
-							predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
-							IdentifiedAnnotation temp = arg1;
-							arg1 = arg2;
-							arg2 = temp;
-						}
-
-						createRelation(jCas, arg1, arg2, predictedCategory, 0.0);
-					}
+					addPredictedRelation(jCas, arg1, arg2, predictedCategory);
 				}
 			} // end pair in pairs
+
+			// classify all candidates of the covering annotation and create annotations
+			if (!candidates.isEmpty()) {
+				List<String> predictedCategories = this.batchClassifier.classify(candidateFeatures);
+				for (int i = 0; i < candidates.size(); i++) {
+					IdentifiedAnnotationPair pair = candidates.get(i);
+					addPredictedRelation(jCas, pair.getArg1(), pair.getArg2(), predictedCategories.get(i));
+				}
+			}
 		} // end for(Sentence)
 	}
 
+	/**
+	 * Adds a relation annotation if a true relation was predicted.
+	 */
+	private void addPredictedRelation(
+			JCas jCas,
+			IdentifiedAnnotation arg1,
+			IdentifiedAnnotation arg2,
+			String predictedCategory) {
+		if (predictedCategory != null && !predictedCategory.equals(NO_RELATION_CATEGORY)) {
+
+			// if we predict an inverted relation, reverse the order of the
+			// arguments
+			if (predictedCategory.endsWith("-1")) {
+				predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
+				IdentifiedAnnotation temp = arg1;
+				arg1 = arg2;
+				arg2 = temp;
+			}
+
+			createRelation(jCas, arg1, arg2, predictedCategory, 0.0);
+		}
+	}
+
 	/**
 	 * Looks up the arguments in the specified lookup table and converts the
 	 * relation into a label for classification
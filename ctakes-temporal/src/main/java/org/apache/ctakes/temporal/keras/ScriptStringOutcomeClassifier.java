@@ -5,12 +5,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.Locale;
 
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.util.Level;
 import org.apache.uima.util.Logger;
+import org.cleartk.ml.Classifier;
 import org.cleartk.ml.CleartkProcessingException;
 import org.cleartk.ml.Feature;
 import org.cleartk.ml.encoder.features.FeaturesEncoder;
@@ -21,23 +24,43 @@ import org.cleartk.ml.util.featurevector.FeatureVector;
 import com.google.common.annotations.Beta;
 
 /**
+ * Classifies instances by writing one line of features per instance to the standard input of an
+ * external classify.sh script and reading one prediction per line from its standard output.
+ * <p>
+ * {@link #classifyAll(List)} streams all instances of a batch to the script before reading back
+ * the predictions, so that a document's candidates cost one round trip instead of one per instance.
+ * Script processes are started on demand, up to the number given by the system property
+ * {@value #PROCESS_COUNT_PROPERTY} (default 1), so that multithreaded pipelines can classify in parallel.
+ * A process that fails or stops during a batch is destroyed and replaced by a new one when next needed.
+ *
  * <br>
  * Copyright (c) 2016, Regents of the University of Colorado <br>
  * All rights reserved.
- * 
+ *
  * @author Tim Miller
  * @version 2.0.1
- * 
+ *
  */
 @Beta
 public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<FeatureVector, String, Integer> {
+  /**
+   * System property with the maximum number of script processes per classifier.
+   */
+  public static final String PROCESS_COUNT_PROPERTY = "ctakes.script.classifier.processes";
+  // Number of instances written before their predictions are read back. Bounds the unread output
+  // so neither side can block on a full pipe while the other is blocked writing.
+  private static final int WINDOW_SIZE = 256;
+
   File modelDir = null;
-  Process classifierProcess = null;
-  PrintStream toClassifier = null;
-  BufferedReader reader = null;
-  BufferedReader errReader = null;
+  File classifyScript = null;
   Logger logger = UIMAFramework.getLogger(ScriptStringOutcomeClassifier.class);
 
+  private final int maxProcesses;
+  // all of the following are guarded by allProcesses
+  private final Deque<ScriptProcess> idleProcesses = new ArrayDeque<>();
+  private final List<ScriptProcess> allProcesses = new ArrayList<>();
+  private int startingProcesses = 0;
+
   public ScriptStringOutcomeClassifier(
       FeaturesEncoder<FeatureVector> featuresEncoder,
       OutcomeEncoder<String, Integer> outcomeEncoder,
@@ -45,8 +68,7 @@ public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<
       File scriptDir) {
     super(featuresEncoder, outcomeEncoder);
     this.modelDir = modelDir;
-    
-    File classifyScript = null;
+
     for(File file : scriptDir.listFiles()){
       if(file.getName().startsWith("classify.sh")){
         if(classifyScript != null){
@@ -55,24 +77,17 @@ public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<
         classifyScript = file;
       }
     }
-    
+
     if(classifyScript == null){
       throw new RuntimeException("There are no files named classify.*");
     }
-    
-    try {
-      this.classifierProcess = Runtime.getRuntime().exec(new String[]{
-          classifyScript.getAbsolutePath(),
-          modelDir.getAbsolutePath()});
-      // start the classifier process running, give it a chance to read the model, and
-      // set classifierProcess to the running classifier
-      toClassifier = new PrintStream(classifierProcess.getOutputStream());
-      reader = new BufferedReader(new InputStreamReader(classifierProcess.getInputStream()));
-      errReader = new BufferedReader(new InputStreamReader(classifierProcess.getErrorStream()));
-      errReader.readLine(); // read line about which backend it is using.
-    } catch (IOException e) {
-      e.printStackTrace();
-      throw new RuntimeException(e);
+
+    this.maxProcesses = Math.max(1, Integer.getInteger(PROCESS_COUNT_PROPERTY, 1));
+    // start the first classifier process running and give it a chance to read the model
+    ScriptProcess process = startProcess();
+    synchronized(allProcesses){
+      allProcesses.add(process);
+      idleProcesses.add(process);
     }
   }
 
@@ -80,12 +95,82 @@ public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<
       throws CleartkProcessingException {
     // Encode the features and pass them to the standard input of the classifier process
     // and then read the standard output prediction, which will be in the string format expected by
-    // the annotator.    
+    // the annotator.
+    List<List<Feature>> instances = new ArrayList<>(1);
+    instances.add(features);
+    return classifyAll(instances).get(0);
+  }
+
+  /**
+   * Classify a batch of instances, e.g. all candidates of a document.
+   * @param instances features of each instance
+   * @return the prediction for each instance, in the same order.  A prediction is null if the script
+   * stopped before producing it.
+   */
+  public List<String> classifyAll(List<List<Feature>> instances)
+      throws CleartkProcessingException {
+    List<String> predictions = new ArrayList<>(instances.size());
+    if(instances.isEmpty()){
+      return predictions;
+    }
+    ScriptProcess process = acquireProcess();
+    // only a process that answered every instance of the batch is in step to be reused
+    boolean answered = false;
+    try {
+      for(int start = 0; start < instances.size() && predictions.size() == start; start += WINDOW_SIZE){
+        int end = Math.min(instances.size(), start + WINDOW_SIZE);
+        for(int i = start; i < end; i++){
+          process.toClassifier.println(encode(instances.get(i)));
+        }
+        process.toClassifier.flush();
+        for(int i = start; i < end; i++){
+          String prediction = process.readPrediction();
+          if(prediction == null){
+            // the script has stopped, so no later window is written
+            break;
+          }
+          predictions.add(prediction);
+        }
+      }
+      answered = predictions.size() == instances.size();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      if(answered){
+        releaseProcess(process);
+      }else{
+        discardProcess(process);
+      }
+    }
+    while(predictions.size() < instances.size()){
+      predictions.add(null);
+    }
+    return predictions;
+  }
 
+  /**
+   * Classify a batch of instances with any classifier, using a single batch for script classifiers.
+   * @param classifier some classifier
+   * @param instances features of each instance
+   * @return the prediction for each instance, in the same order.
+   */
+  public static List<String> classifyAll(Classifier<String> classifier, List<List<Feature>> instances)
+      throws CleartkProcessingException {
+    if(classifier instanceof ScriptStringOutcomeClassifier){
+      return ((ScriptStringOutcomeClassifier)classifier).classifyAll(instances);
+    }
+    List<String> predictions = new ArrayList<>(instances.size());
+    for(List<Feature> features : instances){
+      predictions.add(classifier.classify(features));
+    }
+    return predictions;
+  }
+
+  private static String encode(List<Feature> features){
     StringBuilder buf = new StringBuilder();
-    
+
 //    for (FeatureVector.Entry featureNode : this.featuresEncoder.encodeAll(features)) {
-//      buf.append(String.format(Locale.US, " %d:%.7f", featureNode.index, featureNode.value));  
+//      buf.append(String.format(Locale.US, " %d:%.7f", featureNode.index, featureNode.value));
 //    }
     for (int i = 0; i < features.size(); i ++){
     	buf.append(features.get(i).getValue());
@@ -93,31 +178,115 @@ public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<
     		buf.append(" ");
     	}
     }
+    return buf.toString();
+  }
 
-    this.toClassifier.println(buf);
-    this.toClassifier.flush();
-    
-    String line = "";
-    String eLine = "";
+  private ScriptProcess acquireProcess() throws CleartkProcessingException {
+    synchronized(allProcesses){
+      while(idleProcesses.isEmpty() && allProcesses.size() + startingProcesses >= maxProcesses){
+        try {
+          allProcesses.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new CleartkProcessingException(e);
+        }
+      }
+      if(!idleProcesses.isEmpty()){
+        return idleProcesses.poll();
+      }
+      startingProcesses++;
+    }
+    // the script is started outside of the lock, as it may take a while to load the model
+    ScriptProcess process = null;
     try {
-      line = reader.readLine();
-      if(line == null){
-         while((eLine = errReader.readLine()) != null){
-           logger.log(Level.SEVERE, eLine);
-         }
+      process = startProcess();
+      return process;
+    } finally {
+      synchronized(allProcesses){
+        startingProcesses--;
+        if(process != null){
+          allProcesses.add(process);
+        }
+        allProcesses.notifyAll();
       }
+    }
+  }
+
+  private void releaseProcess(ScriptProcess process){
+    synchronized(allProcesses){
+      idleProcesses.add(process);
+      allProcesses.notifyAll();
+    }
+  }
+
+  private void discardProcess(ScriptProcess process){
+    logger.log(Level.WARNING, "Discarding classifier process that did not answer every instance");
+    process.classifierProcess.destroy();
+    synchronized(allProcesses){
+      allProcesses.remove(process);
+      allProcesses.notifyAll();
+    }
+  }
+
+  private ScriptProcess startProcess(){
+    Process classifierProcess;
+    try {
+      classifierProcess = Runtime.getRuntime().exec(new String[]{
+          classifyScript.getAbsolutePath(),
+          modelDir.getAbsolutePath()});
     } catch (IOException e) {
-      throw new RuntimeException(e);
+      throw new RuntimeException("Could not start " + classifyScript.getAbsolutePath(), e);
+    }
+    try {
+      return new ScriptProcess(classifierProcess);
+    } catch (IOException e) {
+      classifierProcess.destroy();
+      throw new RuntimeException("Could not start " + classifyScript.getAbsolutePath(), e);
+    }
+  }
+
+  private class ScriptProcess {
+    final Process classifierProcess;
+    final PrintStream toClassifier;
+    final BufferedReader reader;
+    final BufferedReader errReader;
+
+    ScriptProcess(Process classifierProcess) throws IOException {
+      this.classifierProcess = classifierProcess;
+      toClassifier = new PrintStream(classifierProcess.getOutputStream());
+      reader = new BufferedReader(new InputStreamReader(classifierProcess.getInputStream()));
+      errReader = new BufferedReader(new InputStreamReader(classifierProcess.getErrorStream()));
+      errReader.readLine(); // read line about which backend it is using.
+    }
+
+    String readPrediction() throws IOException {
+      String line = reader.readLine();
+      if(line == null){
+        String eLine;
+        while((eLine = errReader.readLine()) != null){
+          logger.log(Level.SEVERE, eLine);
+        }
+      }
+      return line;
+    }
+
+    void close() throws InterruptedException {
+      this.toClassifier.print('\n');
+      this.toClassifier.flush();
+      classifierProcess.waitFor();
     }
-    
-    return line;
   }
 
   @Override
   protected void finalize() throws Throwable {
     super.finalize();
-    
-    this.toClassifier.print('\n');
-    classifierProcess.waitFor();
+
+    List<ScriptProcess> processes;
+    synchronized(allProcesses){
+      processes = new ArrayList<>(allProcesses);
+    }
+    for(ScriptProcess process : processes){
+      process.close();
+    }
   }
 }
@@ -8,6 +8,7 @@ import java.util.Map;
 
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.temporal.ae.TemporalRelationExtractorAnnotator.IdentifiedAnnotationPair;
+import org.apache.ctakes.temporal.keras.ScriptStringOutcomeClassifier;
 import org.apache.ctakes.temporal.nn.data.ArgContextProvider;
 import org.apache.ctakes.typesystem.type.relation.BinaryTextRelation;
 import org.apache.ctakes.typesystem.type.relation.RelationArgument;
@@ -63,6 +64,9 @@ public class EventEventTokenAndBIOBasedAnnotator extends CleartkAnnotator<String
       }
     }
 
+    // candidates to classify, all in one batch after the loop
+    List<IdentifiedAnnotationPair> testPairs = new ArrayList<>();
+    List<List<Feature>> testInstances = new ArrayList<>();
     for(Sentence sentence : JCasUtil.select(jCas, Sentence.class)) {
       // collect all relevant relation arguments from the sentence
       List<IdentifiedAnnotationPair> candidatePairs = getCandidateRelationArgumentPairs(jCas, sentence);
@@ -108,25 +112,35 @@ public class EventEventTokenAndBIOBasedAnnotator extends CleartkAnnotator<String
           }
           this.dataWriter.write(new Instance<>(category, feats));
         } else {
-          String predictedCategory = this.classifier.classify(feats);
-
-          // add a relation annotation if a true relation was predicted
-          if (predictedCategory != null && !predictedCategory.equals(NO_RELATION_CATEGORY)) {
-
-            // if we predict an inverted relation, reverse the order of the
-            // arguments
-            if (predictedCategory.endsWith("-1")) {
-              predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
-              IdentifiedAnnotation temp = arg1;
-              arg1 = arg2;
-              arg2 = temp;
-            }
+          testPairs.add(new IdentifiedAnnotationPair(arg1, arg2));
+          testInstances.add(feats);
+        }
+      }
 
-            createRelation(jCas, arg1, arg2, predictedCategory.toUpperCase(), 0.0);
+    }
+    // classify all candidates of the document in one batch
+    if(!this.isTraining()) {
+      List<String> predictions = ScriptStringOutcomeClassifier.classifyAll(this.classifier, testInstances);
+      for(int i = 0; i < predictions.size(); i++) {
+        IdentifiedAnnotation arg1 = testPairs.get(i).getArg1();
+        IdentifiedAnnotation arg2 = testPairs.get(i).getArg2();
+        String predictedCategory = predictions.get(i);
+
+        // add a relation annotation if a true relation was predicted
+        if (predictedCategory != null && !predictedCategory.equals(NO_RELATION_CATEGORY)) {
+
+          // if we predict an inverted relation, reverse the order of the
+          // arguments
+          if (predictedCategory.endsWith("-1")) {
+            predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
+            IdentifiedAnnotation temp = arg1;
+            arg1 = arg2;
+            arg2 = temp;
           }
+
+          createRelation(jCas, arg1, arg2, predictedCategory.toUpperCase(), 0.0);
         }
       }
-
     }
   }
 
@@ -17,6 +17,7 @@ import java.util.Map.Entry;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.core.resource.FileLocator;
 import org.apache.ctakes.temporal.ae.TemporalRelationExtractorAnnotator.IdentifiedAnnotationPair;
+import org.apache.ctakes.temporal.keras.ScriptStringOutcomeClassifier;
 import org.apache.ctakes.temporal.nn.data.ArgContextProvider;
 import org.apache.ctakes.typesystem.type.relation.BinaryTextRelation;
 import org.apache.ctakes.typesystem.type.relation.RelationArgument;
@@ -136,6 +137,9 @@ public class EventTimeTokenBasedAnnotator extends CleartkAnnotator<String> {
 			}
 		}
 
+		// candidates to classify, all in one batch after the loop
+		List<IdentifiedAnnotationPair> testPairs = new ArrayList<>();
+		List<List<Feature>> testInstances = new ArrayList<>();
 		// go over sentences, extracting event-time relation instances
 		for(Sentence sentence : JCasUtil.select(jCas, Sentence.class)) {
 			// collect all relevant relation arguments from the sentence
@@ -184,32 +188,42 @@ public class EventTimeTokenBasedAnnotator extends CleartkAnnotator<String> {
 
 				// during classification feed the features to the classifier and create annotations
 				else {
-					String predictedCategory = this.classifier.classify(features);
-
-					// add a relation annotation if a true relation was predicted
-					if(predictedCategory != null && !predictedCategory.equals(NO_RELATION_CATEGORY)) {
-
-						// if we predict an inverted relation, reverse the order of the arguments
-						if(predictedCategory.endsWith("-1")) {
-							predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
-							if(arg1 instanceof TimeMention){
-								IdentifiedAnnotation temp = arg1;
-								arg1 = arg2;
-								arg2 = temp;
-							}
-						} else {
-							if(arg1 instanceof EventMention){
-								IdentifiedAnnotation temp = arg1;
-								arg1 = arg2;
-								arg2 = temp;
-							}
-						}
+					testPairs.add(new IdentifiedAnnotationPair(arg1, arg2));
+					testInstances.add(features);
+				}
+			}
 
-						createRelation(jCas, arg1, arg2, predictedCategory.toUpperCase(), 0.0);
+		}
+		// classify all candidates of the document in one batch
+		if(!this.isTraining()) {
+			List<String> predictions = ScriptStringOutcomeClassifier.classifyAll(this.classifier, testInstances);
+			for(int i = 0; i < predictions.size(); i++) {
+				IdentifiedAnnotation arg1 = testPairs.get(i).getArg1();
+				IdentifiedAnnotation arg2 = testPairs.get(i).getArg2();
+				String predictedCategory = predictions.get(i);
+
+				// add a relation annotation if a true relation was predicted
+				if(predictedCategory != null && !predictedCategory.equals(NO_RELATION_CATEGORY)) {
+
+					// if we predict an inverted relation, reverse the order of the arguments
+					if(predictedCategory.endsWith("-1")) {
+						predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
+						if(arg1 instanceof TimeMention){
+							IdentifiedAnnotation temp = arg1;
+							arg1 = arg2;
+							arg2 = temp;
+						}
+					} else {
+						if(arg1 instanceof EventMention){
+							IdentifiedAnnotation temp = arg1;
+							arg1 = arg2;
+							arg2 = temp;
+						}
 					}
+
+					createRelation(jCas, arg1, arg2, predictedCategory.toUpperCase(), 0.0);
 				}
 			}
-
 		}
 		if(timexMode== OutputMode.IndexTags && !this.isTraining()){//in test time update the hashmap file for each cas
 			try {
@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.ctakes.temporal.ae.TemporalRelationExtractorAnnotator.IdentifiedAnnotationPair;
+import org.apache.ctakes.temporal.keras.ScriptStringOutcomeClassifier;
 import org.apache.ctakes.temporal.nn.ae.EventTimeTokenBasedAnnotator.OutputMode;
 import org.apache.ctakes.temporal.utils.TokenPreprocForWord2Vec;
 import org.apache.ctakes.typesystem.type.relation.BinaryTextRelation;
@@ -142,6 +143,9 @@ public class WindowBasedAnnotator extends CleartkAnnotator<String> {
 			}
 		}
 
+		// candidates to classify, all in one batch after the loop
+		List<IdentifiedAnnotationPair> testPairs = new ArrayList<>();
+		List<List<Feature>> testInstances = new ArrayList<>();
 		// walk through the pairs of annotations
 		for (IdentifiedAnnotationPair pair : candidatePairs) {
 			IdentifiedAnnotation arg1 = pair.getArg1();
@@ -173,7 +177,17 @@ public class WindowBasedAnnotator extends CleartkAnnotator<String> {
 				}
 				this.dataWriter.write(new Instance<>(category, feats));
 			} else {
-				String predictedCategory = this.classifier.classify(feats);
+				testPairs.add(new IdentifiedAnnotationPair(arg1, arg2));
+				testInstances.add(feats);
+			}
+		}
+		// classify all candidates of the document in one batch
+		if(!this.isTraining()) {
+			List<String> predictions = ScriptStringOutcomeClassifier.classifyAll(this.classifier, testInstances);
+			for(int i = 0; i < predictions.size(); i++) {
+				IdentifiedAnnotation arg1 = testPairs.get(i).getArg1();
+				IdentifiedAnnotation arg2 = testPairs.get(i).getArg2();
+				String predictedCategory = predictions.get(i);
 
 				if (predictedCategory != null && !predictedCategory.equals(NO_RELATION_CATEGORY)) {
 
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.temporal.keras;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cleartk.ml.Feature;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs the classifier against a stub classify.sh that answers each line with its word count and
+ * first word, and exits when it reads the word "stop".
+ */
+public class ScriptStringOutcomeClassifierTest {
+
+  private static final String STUB_SCRIPT = "#!/bin/bash\n"
+      + "echo \"Using stub backend\" >&2\n"
+      + "while IFS= read -r line; do\n"
+      + "  if [ -z \"$line\" ]; then exit 0; fi\n"
+      + "  if [ \"$line\" = \"stop\" ]; then echo \"stopped\" >&2; exit 1; fi\n"
+      + "  set -- $line\n"
+      + "  echo \"$# $1\"\n"
+      + "done\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File modelDir;
+
+  @Before
+  public void writeScript() throws Exception {
+    modelDir = folder.newFolder("model");
+    File script = new File(modelDir, "classify.sh");
+    Files.write(script.toPath(), STUB_SCRIPT.getBytes(StandardCharsets.UTF_8));
+    script.setExecutable(true);
+  }
+
+  @After
+  public void clearProcessCount(){
+    System.clearProperty(ScriptStringOutcomeClassifier.PROCESS_COUNT_PROPERTY);
+  }
+
+  @Test
+  public void testBatch() throws Exception {
+    ScriptStringOutcomeClassifier classifier = createClassifier();
+    // more than one window
+    List<List<Feature>> instances = createInstances("batch", 600);
+    assertEquals(expectedPredictions("batch", 600), classifier.classifyAll(instances));
+    assertEquals("2 batch7", classifier.classify(instances.get(7)));
+    assertEquals(new ArrayList<String>(), classifier.classifyAll(new ArrayList<List<Feature>>()));
+  }
+
+  @Test
+  public void testConcurrentBatches() throws Exception {
+    System.setProperty(ScriptStringOutcomeClassifier.PROCESS_COUNT_PROPERTY, "3");
+    final ScriptStringOutcomeClassifier classifier = createClassifier();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for(int t = 0; t < 8; t++){
+        final String prefix = "thread" + t;
+        futures.add(executor.submit(() -> classifier.classifyAll(createInstances(prefix, 300))));
+      }
+      for(int t = 0; t < 8; t++){
+        assertEquals(expectedPredictions("thread" + t, 300), futures.get(t).get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testStoppedProcessIsReplaced() throws Exception {
+    ScriptStringOutcomeClassifier classifier = createClassifier();
+    List<List<Feature>> instances = createInstances("stop", 600);
+    instances.set(300, Arrays.asList(new Feature("stop")));
+    List<String> predictions = classifier.classifyAll(instances);
+    assertEquals(600, predictions.size());
+    assertEquals(expectedPredictions("stop", 300), predictions.subList(0, 300));
+    for(int i = 300; i < 600; i++){
+      assertNull(predictions.get(i));
+    }
+    // the only process slot must have been freed for a new process
+    assertEquals(expectedPredictions("next", 400), classifier.classifyAll(createInstances("next", 400)));
+  }
+
+  private ScriptStringOutcomeClassifier createClassifier(){
+    return new KerasStringOutcomeClassifier(null, null, modelDir, modelDir);
+  }
+
+  private static List<List<Feature>> createInstances(String prefix, int count){
+    List<List<Feature>> instances = new ArrayList<>(count);
+    for(int i = 0; i < count; i++){
+      instances.add(new ArrayList<>(Arrays.asList(new Feature(prefix + i), new Feature("token"))));
+    }
+    return instances;
+  }
+
+  private static List<String> expectedPredictions(String prefix, int count){
+    List<String> predictions = new ArrayList<>(count);
+    for(int i = 0; i < count; i++){
+      predictions.add("2 " + prefix + i);
+    }
+    return predictions;
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.utils.tree;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds all of a fixed set of tree fragments contained in a tree with a single
+ * bottom-up traversal of the tree, instead of one full traversal per fragment.
+ * <p>
+ * Identical sub-fragments are shared between fragments, and each shared
+ * sub-fragment is indexed by its root label (tree fragments) or by its root
+ * production (root label plus child labels).  At each node of the candidate
+ * tree only the sub-fragments with the same root label or production are
+ * checked, using the match results already computed for the node's children.
+ * <p>
+ * Two kinds of match are supported, with the same semantics as the
+ * constituency parser's TreeUtils:
+ * <ul>
+ * <li>{@link #forTrees} : the fragment's children must match the node's
+ * children in order and number, and a fragment node without children matches
+ * any subtree with the same label.</li>
+ * <li>{@link #forDependencyChains} : each fragment node has at most one child,
+ * which must match any one of the node's children.</li>
+ * </ul>
+ * An index is immutable and can be shared between threads.
+ */
+public class FragmentIndex {
+
+	private final List<SimpleTree> fragments;
+	private final boolean ignoreCase;
+	private final boolean dependencyChains;
+	// sub-fragment id of each fragment, in fragment order
+	private final int[] fragmentIds;
+	// children sub-fragment ids of each sub-fragment
+	private final List<int[]> subFragmentChildren = new ArrayList<int[]>();
+	// tree fragments: childless sub-fragments by label and the others by production.
+	// dependency chains: all sub-fragments by label.
+	private final Map<String,int[]> byLabel = new HashMap<String,int[]>();
+	private final Map<List<String>,int[]> byProduction = new HashMap<List<String>,int[]>();
+	// fragment indices of each sub-fragment that is a full fragment
+	private final Map<Integer,int[]> fragmentsBySubFragment = new HashMap<Integer,int[]>();
+
+	private FragmentIndex(Collection<SimpleTree> frags, boolean ignoreCase, boolean dependencyChains){
+		this.fragments = Collections.unmodifiableList(new ArrayList<SimpleTree>(frags));
+		this.ignoreCase = ignoreCase;
+		this.dependencyChains = dependencyChains;
+		fragmentIds = new int[fragments.size()];
+		Map<List<Object>,Integer> subFragmentIds = new HashMap<List<Object>,Integer>();
+		for(int i = 0; i < fragments.size(); i++){
+			fragmentIds[i] = addSubFragment(fragments.get(i), subFragmentIds);
+			fragmentsBySubFragment.put(fragmentIds[i], append(fragmentsBySubFragment.get(fragmentIds[i]), i));
+		}
+	}
+
+	/**
+	 * @param frags tree fragments, as read by {@link FragmentUtils#frag2tree(String)}
+	 * @param ignoreCase true to compare labels ignoring case
+	 * @return index matching fragments against constituency trees
+	 */
+	public static FragmentIndex forTrees(Collection<SimpleTree> frags, boolean ignoreCase){
+		return new FragmentIndex(frags, ignoreCase, false);
+	}
+
+	/**
+	 * @param frags chain fragments, each node having at most one child
+	 * @param ignoreCase true to compare labels ignoring case
+	 * @return index matching fragments against dependency trees
+	 * @throws UnsupportedOperationException if a fragment is not a chain
+	 */
+	public static FragmentIndex forDependencyChains(Collection<SimpleTree> frags, boolean ignoreCase){
+		return new FragmentIndex(frags, ignoreCase, true);
+	}
+
+	/**
+	 * @return the indexed fragments, in the order they were given
+	 */
+	public List<SimpleTree> getFragments(){
+		return fragments;
+	}
+
+	/**
+	 * @param tree candidate tree
+	 * @return the indexed fragments that the tree contains, in fragment order
+	 */
+	public List<SimpleTree> getContainedFragments(SimpleTree tree){
+		BitSet contained = getContainedIndices(tree);
+		List<SimpleTree> frags = new ArrayList<SimpleTree>(contained.cardinality());
+		for(int i = contained.nextSetBit(0); i >= 0; i = contained.nextSetBit(i+1)){
+			frags.add(fragments.get(i));
+		}
+		return frags;
+	}
+
+	/**
+	 * @param tree candidate tree
+	 * @return the positions in {@link #getFragments()} of the fragments that the tree contains
+	 */
+	public BitSet getContainedIndices(SimpleTree tree){
+		BitSet matched = new BitSet(subFragmentChildren.size());
+		match(tree, matched);
+		BitSet contained = new BitSet(fragments.size());
+		for(int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i+1)){
+			int[] fragIndices = fragmentsBySubFragment.get(i);
+			if(fragIndices != null){
+				for(int fragIndex : fragIndices){
+					contained.set(fragIndex);
+				}
+			}
+		}
+		return contained;
+	}
+
+	/**
+	 * Matches the node's subtree bottom-up.
+	 * @param node tree node
+	 * @param anywhere collects the sub-fragments matching any node in the subtree
+	 * @return the sub-fragments matching this node
+	 */
+	private BitSet match(SimpleTree node, BitSet anywhere){
+		int numChildren = node.children.size();
+		List<BitSet> childMatches = new ArrayList<BitSet>(numChildren);
+		for(SimpleTree child : node.children){
+			childMatches.add(match(child, anywhere));
+		}
+		BitSet here = new BitSet();
+		String label = key(node.cat);
+		int[] candidates = byLabel.get(label);
+		if(candidates != null){
+			for(int id : candidates){
+				int[] required = subFragmentChildren.get(id);
+				if(required.length == 0){
+					here.set(id);
+				}else{
+					// dependency chain: any child may continue the chain
+					for(BitSet childMatch : childMatches){
+						if(childMatch.get(required[0])){
+							here.set(id);
+							break;
+						}
+					}
+				}
+			}
+		}
+		if(!dependencyChains && numChildren > 0){
+			candidates = byProduction.get(production(label, node.children));
+			if(candidates != null){
+				for(int id : candidates){
+					int[] required = subFragmentChildren.get(id);
+					boolean same = true;
+					for(int i = 0; i < numChildren; i++){
+						if(!childMatches.get(i).get(required[i])){
+							same = false;
+							break;
+						}
+					}
+					if(same) here.set(id);
+				}
+			}
+		}
+		anywhere.or(here);
+		return here;
+	}
+
+	private int addSubFragment(SimpleTree frag, Map<List<Object>,Integer> subFragmentIds){
+		if(dependencyChains && frag.children.size() > 1){
+			throw new UnsupportedOperationException("Only chain fragments are currently supported: " + frag);
+		}
+		int[] children = new int[frag.children.size()];
+		for(int i = 0; i < children.length; i++){
+			children[i] = addSubFragment(frag.children.get(i), subFragmentIds);
+		}
+		String label = key(frag.cat);
+		List<Object> signature = new ArrayList<Object>(children.length+1);
+		signature.add(label);
+		for(int child : children){
+			signature.add(child);
+		}
+		Integer id = subFragmentIds.get(signature);
+		if(id == null){
+			id = subFragmentChildren.size();
+			subFragmentIds.put(signature, id);
+			subFragmentChildren.add(children);
+			if(dependencyChains || children.length == 0){
+				byLabel.put(label, append(byLabel.get(label), id));
+			}else{
+				List<String> production = production(label, frag.children);
+				byProduction.put(production, append(byProduction.get(production), id));
+			}
+		}
+		return id;
+	}
+
+	private List<String> production(String label, List<SimpleTree> children){
+		List<String> production = new ArrayList<String>(children.size()+1);
+		production.add(label);
+		for(SimpleTree child : children){
+			production.add(key(child.cat));
+		}
+		return production;
+	}
+
+	/**
+	 * @return a label that is equal for two categories exactly when
+	 * {@link String#equalsIgnoreCase(String)} is true, if ignoring case
+	 */
+	private String key(String cat){
+		if(!ignoreCase) return cat;
+		char[] chars = cat.toCharArray();
+		for(int i = 0; i < chars.length; i++){
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
+
+	private static int[] append(int[] array, int value){
+		if(array == null) return new int[]{ value };
+		int[] appended = new int[array.length+1];
+		System.arraycopy(array, 0, appended, 0, array.length);
+		appended[array.length] = value;
+		return appended;
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.utils.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Manual benchmark, not run by the build: times the fragment by fragment containment loop
+ * against {@link FragmentIndex}.
+ * Run with: java -cp ... org.apache.ctakes.utils.tree.FragmentIndexBenchmark [numFrags] [numTrees]
+ */
+public class FragmentIndexBenchmark {
+
+	public static void main(String[] args){
+		int numFrags = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		int numTrees = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		Random random = new Random(42);
+		List<SimpleTree> trees = new ArrayList<SimpleTree>();
+		for(int i = 0; i < numTrees; i++){
+			trees.add(FragmentIndexTest.randomTree(random, 7));
+		}
+		List<SimpleTree> frags = new ArrayList<SimpleTree>();
+		for(int i = 0; i < numFrags; i++){
+			frags.add(FragmentIndexTest.randomFragment(random, trees.get(random.nextInt(trees.size())), false));
+		}
+		FragmentIndex index = FragmentIndex.forTrees(frags, true);
+		for(int round = 0; round < 5; round++){
+			long start = System.nanoTime();
+			int loopCount = 0;
+			for(SimpleTree tree : trees){
+				loopCount += FragmentIndexTest.loop(tree, frags, true, false).size();
+			}
+			long loopTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			int indexCount = 0;
+			for(SimpleTree tree : trees){
+				indexCount += index.getContainedFragments(tree).size();
+			}
+			long indexTime = System.nanoTime() - start;
+			System.out.println(String.format("round %d: loop %d ms (%d matches), index %d ms (%d matches)",
+					round, loopTime/1000000, loopCount, indexTime/1000000, indexCount));
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.utils.tree;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FragmentIndexTest {
+
+	private static final String TREE = "(S (NP (DT The) (NN patient)) (VP (VBZ denies) (NP (NN chest) (NN pain))) (. .))";
+
+	@Test
+	public void testTreeFragments(){
+		SimpleTree tree = SimpleTree.fromString(TREE);
+		List<SimpleTree> frags = frags("(NP(DT)(NN))", "(np(dt)(nn))", "(VP(VBZ)(NP))", "(VP(VBZ(denies)))",
+				"(NP(NN))", "(S(NP)(VP)(.))", "(NN(pain))", "(NP(NN)(NN(pain)))", "(VP(NP))");
+		assertEquals(Arrays.asList(frags.get(0), frags.get(2), frags.get(5), frags.get(6), frags.get(7)),
+				FragmentIndex.forTrees(frags, false).getContainedFragments(tree));
+		assertEquals(Arrays.asList(frags.get(0), frags.get(1), frags.get(2), frags.get(5), frags.get(6), frags.get(7)),
+				FragmentIndex.forTrees(frags, true).getContainedFragments(tree));
+	}
+
+	@Test
+	public void testDependencyChains(){
+		SimpleTree tree = FragmentUtils.frag2tree("(TOP(denies(patient(The))(pain(chest))(.)))");
+		List<SimpleTree> frags = frags("(denies(pain(chest)))", "(DENIES(pain))", "(denies(chest))", "(pain)", "(TOP(denies(.)))");
+		assertEquals(Arrays.asList(frags.get(0), frags.get(3), frags.get(4)),
+				FragmentIndex.forDependencyChains(frags, false).getContainedFragments(tree));
+		assertEquals(Arrays.asList(frags.get(0), frags.get(1), frags.get(3), frags.get(4)),
+				FragmentIndex.forDependencyChains(frags, true).getContainedFragments(tree));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testBranchingDependencyFragment(){
+		FragmentIndex.forDependencyChains(frags("(denies(patient)(pain))"), true);
+	}
+
+	@Test
+	public void testRandomTrees(){
+		Random random = new Random(17);
+		for(int n = 0; n < 200; n++){
+			List<SimpleTree> trees = new ArrayList<SimpleTree>();
+			for(int i = 0; i < 20; i++){
+				trees.add(randomTree(random, 5));
+			}
+			List<SimpleTree> frags = new ArrayList<SimpleTree>();
+			List<SimpleTree> chains = new ArrayList<SimpleTree>();
+			for(int i = 0; i < 50; i++){
+				frags.add(randomFragment(random, trees.get(random.nextInt(trees.size())), false));
+				chains.add(randomFragment(random, trees.get(random.nextInt(trees.size())), true));
+			}
+			for(boolean ignoreCase : new boolean[]{ false, true }){
+				FragmentIndex fragIndex = FragmentIndex.forTrees(frags, ignoreCase);
+				FragmentIndex chainIndex = FragmentIndex.forDependencyChains(chains, ignoreCase);
+				for(SimpleTree tree : trees){
+					assertEquals(loop(tree, frags, ignoreCase, false), fragIndex.getContainedFragments(tree));
+					assertEquals(loop(tree, chains, ignoreCase, true), chainIndex.getContainedFragments(tree));
+				}
+			}
+		}
+	}
+
+	static List<SimpleTree> frags(String... strings){
+		List<SimpleTree> frags = new ArrayList<SimpleTree>();
+		for(String string : strings){
+			frags.add(FragmentUtils.frag2tree(string));
+		}
+		return frags;
+	}
+
+	static SimpleTree randomTree(Random random, int depth){
+		String[] labels = { "S", "NP", "VP", "PP", "nn", "NN", "DT" };
+		SimpleTree node = new SimpleTree(labels[random.nextInt(labels.length)]);
+		int numChildren = depth == 0 ? 0 : random.nextInt(4);
+		for(int i = 0; i < numChildren; i++){
+			SimpleTree child = randomTree(random, depth-1);
+			child.parent = node;
+			node.addChild(child);
+		}
+		return node;
+	}
+
+	/**
+	 * Copies a random subtree, cut off at random depths and, for chains, following one child.
+	 */
+	static SimpleTree randomFragment(Random random, SimpleTree tree, boolean chain){
+		SimpleTree node = tree;
+		while(!node.children.isEmpty() && random.nextBoolean()){
+			node = node.children.get(random.nextInt(node.children.size()));
+		}
+		return copy(random, node, chain);
+	}
+
+	private static SimpleTree copy(Random random, SimpleTree node, boolean chain){
+		SimpleTree copy = new SimpleTree(random.nextInt(8) == 0 ? node.cat.toLowerCase() : node.cat);
+		if(!node.children.isEmpty() && random.nextInt(3) > 0){
+			if(chain){
+				copy.addChild(copy(random, node.children.get(random.nextInt(node.children.size())), chain));
+			}else{
+				for(SimpleTree child : node.children){
+					copy.addChild(copy(random, child, chain));
+				}
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * The fragment by fragment loop that the index replaces.
+	 */
+	static List<SimpleTree> loop(SimpleTree tree, List<SimpleTree> frags, boolean ignoreCase, boolean chains){
+		List<SimpleTree> contained = new ArrayList<SimpleTree>();
+		for(SimpleTree frag : frags){
+			if(contains(tree, frag, ignoreCase, chains)){
+				contained.add(frag);
+			}
+		}
+		return contained;
+	}
+
+	private static boolean contains(SimpleTree node, SimpleTree frag, boolean ignoreCase, boolean chains){
+		if(chains ? depFragmentMatch(node, frag, ignoreCase) : fragmentMatch(node, frag, ignoreCase)) return true;
+		for(SimpleTree child : node.children){
+			if(contains(child, frag, ignoreCase, chains)) return true;
+		}
+		return false;
+	}
+
+	private static boolean fragmentMatch(SimpleTree node, SimpleTree frag, boolean ignoreCase){
+		if(!(ignoreCase ? node.cat.equalsIgnoreCase(frag.cat) : node.cat.equals(frag.cat))) return false;
+		if(frag.children.size() == 0) return true;
+		if(node.children.size() != frag.children.size()) return false;
+		for(int i = 0; i < frag.children.size(); i++){
+			if(!fragmentMatch(node.children.get(i), frag.children.get(i), ignoreCase)) return false;
+		}
+		return true;
+	}
+
+	private static boolean depFragmentMatch(SimpleTree node, SimpleTree frag, boolean ignoreCase){
+		if(!(ignoreCase ? node.cat.equalsIgnoreCase(frag.cat) : node.cat.equals(frag.cat))) return false;
+		if(frag.children.size() == 0) return true;
+		for(SimpleTree child : node.children){
+			if(depFragmentMatch(child, frag.children.get(0), ignoreCase)) return true;
+		}
+		return false;
+	}
+}
@@ -18,23 +18,29 @@
  */
 package org.apache.ctakes.rest.service;
 
-import org.apache.ctakes.core.pipeline.PipelineBuilder;
-import org.apache.ctakes.core.pipeline.PiperFileReader;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.ctakes.rest.util.JCasParser;
 import org.apache.log4j.Logger;
-import org.apache.uima.UIMAFramework;
-import org.apache.uima.analysis_engine.AnalysisEngine;
-import org.apache.uima.analysis_engine.AnalysisEngineDescription;
-import org.apache.uima.jcas.JCas;
-import org.apache.uima.util.JCasPool;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.ServletException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 
 
 /*
@@ -49,6 +55,11 @@ public class CtakesRestController {
     private static final String FULL_PIPER_FILE_PATH = "pipers/Full.piper";
     private static final String DEFAULT_PIPELINE = "Default";
     private static final String FULL_PIPELINE = "Full";
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+    private static final JCasParser DEFAULT_PARSER = new JCasParser();
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
     private static final Map<String, PipelineRunner> _pipelineRunners = new HashMap<>();
 
     @PostConstruct
@@ -58,10 +69,15 @@ public class CtakesRestController {
 //        _pipelineRunners.put(FULL_PIPELINE, new PipelineRunner(FULL_PIPER_FILE_PATH));
     }
 
+    /**
+     * Analyzes a single document.  The optional "types" parameter is a comma separated list of
+     * annotation class simple names to return, by default all are returned.
+     */
     @RequestMapping(value = "/analyze", method = RequestMethod.POST)
-    @ResponseBody
-    public Map<String, List<CuiResponse>> getAnalyzedJSON(@RequestBody String analysisText,
-                                                                  @RequestParam("pipeline") Optional<String> pipelineOptParam)
+    public void getAnalyzedJSON(@RequestBody String analysisText,
+                                @RequestParam("pipeline") Optional<String> pipelineOptParam,
+                                @RequestParam("types") Optional<String> typesOptParam,
+                                final HttpServletResponse response)
             throws Exception {
         String pipeline = DEFAULT_PIPELINE;
         if(pipelineOptParam.isPresent()) {
@@ -70,48 +86,195 @@ public class CtakesRestController {
             }
         }
         final PipelineRunner runner = _pipelineRunners.get(pipeline);
-        return runner.process(analysisText);
+        final byte[] json = runner.process(analysisText, getParser(typesOptParam));
+        response.setContentType(JSON_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        if (json != null) {
+            response.setContentLength(json.length);
+            response.getOutputStream().write(json);
+        }
+    }
 
+    /**
+     * Analyzes many documents in one request.  The body is a json array or newline delimited json,
+     * each document being a string of text or an object with "text" and an optional "id".
+     * Documents are processed in parallel across the engine pool and one json line per document
+     * with "index", "id" and "result" (or "error") is streamed back as soon as each completes,
+     * so results are not necessarily in request order.  The optional "types" parameter is as for /analyze.
+     */
+    @RequestMapping(value = "/analyze/batch", method = RequestMethod.POST)
+    public void getAnalyzedBatch(final HttpServletRequest request, final HttpServletResponse response,
+                                 @RequestParam("pipeline") Optional<String> pipelineOptParam,
+                                 @RequestParam("types") Optional<String> typesOptParam) throws Exception {
+        String pipeline = DEFAULT_PIPELINE;
+        if(pipelineOptParam.isPresent()) {
+            if(FULL_PIPELINE.equalsIgnoreCase(pipelineOptParam.get())) {
+                pipeline = FULL_PIPELINE;
+            }
+        }
+        final PipelineRunner runner = _pipelineRunners.get(pipeline);
+        final JCasParser parser = getParser(typesOptParam);
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        final OutputStream output = response.getOutputStream();
+        // Keep enough documents in flight to occupy every engine, but no more
+        final int maxInFlight = runner.getEngineCount();
+        final CompletionService<BatchDocument> completionService
+                = new ExecutorCompletionService<>(runner.getBatchExecutor());
+        int inFlight = 0;
+        Exception failure = null;
+        try (JsonParser jsonParser = JSON_MAPPER.getFactory().createParser(request.getInputStream())) {
+            JsonToken token = jsonParser.nextToken();
+            final boolean isArray = token == JsonToken.START_ARRAY;
+            if (isArray) {
+                token = jsonParser.nextToken();
+            }
+            int index = 0;
+            while (token != null && !(isArray && token == JsonToken.END_ARRAY)) {
+                final BatchDocument document = new BatchDocument(index, JSON_MAPPER.readTree(jsonParser));
+                index++;
+                if (inFlight >= maxInFlight) {
+                    final Future<BatchDocument> done = completionService.take();
+                    inFlight--;
+                    writeBatchDocument(done.get(), output);
+                }
+                // Wait for admission here, so that batch documents count against the pipeline queue
+                runner.admitBatchDocument();
+                try {
+                    completionService.submit(() -> document.process(runner, parser));
+                } catch (RuntimeException e) {
+                    runner.releaseBatchDocument();
+                    throw e;
+                }
+                inFlight++;
+                token = jsonParser.nextToken();
+            }
+        } catch (Exception e) {
+            failure = e;
+        }
+        // Documents already submitted are always waited for and their results written, even if the body is bad
+        final IOException writeE = drainBatch(completionService, inFlight, output);
+        if (failure != null) {
+            if (writeE != null) {
+                failure.addSuppressed(writeE);
+            }
+            throw failure;
+        }
+        if (writeE != null) {
+            throw writeE;
+        }
     }
 
-    static private Map<String, List<CuiResponse>> formatResults(JCas jcas) throws Exception {
-        JCasParser parser = new JCasParser();
-        return parser.parse(jcas);
+    /**
+     * @return the first failure to write a result, or null.  Once writing fails the remaining results are discarded,
+     * but every document is still waited for so that none is left running after the request ends.
+     */
+    private static IOException drainBatch(final CompletionService<BatchDocument> completionService,
+                                          final int inFlight, final OutputStream output)
+            throws InterruptedException {
+        IOException writeE = null;
+        for (int i = 0; i < inFlight; i++) {
+            final BatchDocument document;
+            try {
+                document = completionService.take().get();
+            } catch (ExecutionException e) {
+                LOGGER.error("Error processing batch document: " + e.getCause());
+                continue;
+            }
+            if (writeE == null) {
+                try {
+                    writeBatchDocument(document, output);
+                } catch (IOException e) {
+                    writeE = e;
+                }
+            }
+        }
+        return writeE;
+    }
+
+    private static void writeBatchDocument(final BatchDocument document, final OutputStream output)
+            throws IOException {
+        // The result is already json, so the line is assembled from bytes rather than re-serialized
+        output.write(("{\"index\":" + document._index + ",\"id\":").getBytes(StandardCharsets.UTF_8));
+        output.write(JSON_MAPPER.writeValueAsBytes(document._id));
+        if (document._error != null) {
+            output.write(",\"error\":".getBytes(StandardCharsets.UTF_8));
+            output.write(JSON_MAPPER.writeValueAsBytes(document._error));
+        } else {
+            output.write(",\"result\":".getBytes(StandardCharsets.UTF_8));
+            output.write(document._result);
+        }
+        output.write('}');
+        output.write('\n');
+        output.flush();
     }
 
-    static private final class PipelineRunner {
-        private final AnalysisEngine _engine;
-        private final JCasPool _pool;
+    /**
+     * A document of a batch request and, once processed, its results
+     */
+    private static final class BatchDocument {
+        private final int _index;
+        private final String _id;
+        private final String _text;
+        private byte[] _result;
+        private String _error;
 
-        private PipelineRunner(final String piperPath) throws ServletException {
+        private BatchDocument(final int index, final JsonNode node) {
+            _index = index;
+            if (node.isObject()) {
+                _id = node.hasNonNull("id") ? node.get("id").asText() : null;
+                _text = node.hasNonNull("text") ? node.get("text").asText() : null;
+            } else {
+                _id = null;
+                _text = node.isTextual() ? node.asText() : null;
+            }
+        }
+
+        /**
+         * Processes the document and releases its admission to the pipeline.
+         */
+        private BatchDocument process(final PipelineRunner runner, final JCasParser parser) {
+            if (_text == null) {
+                runner.releaseBatchDocument();
+                _error = "No document text";
+                return this;
+            }
             try {
-                PiperFileReader reader = new PiperFileReader(piperPath);
-                PipelineBuilder builder = reader.getBuilder();
-                AnalysisEngineDescription pipeline = builder.getAnalysisEngineDesc();
-                _engine = UIMAFramework.produceAnalysisEngine(pipeline);
-                _pool = new JCasPool(10, _engine);
+                _result = runner.processBatchDocument(_text, parser);
             } catch (Exception e) {
-                LOGGER.error("Error loading pipers");
-                throw new ServletException(e);
+                LOGGER.error("Error processing batch document " + _index + ": " + e.getMessage());
+                _error = e.getMessage();
             }
+            return this;
         }
+    }
 
-        public Map<String, List<CuiResponse>> process(final String text) throws ServletException {
-            JCas jcas = null;
-            Map<String, List<CuiResponse>> resultMap = null;
-            if (text != null) {
-                try {
-                    jcas = _pool.getJCas(-1);
-                    jcas.setDocumentText(text);
-                    _engine.process(jcas);
-                    resultMap = formatResults(jcas);
-                    _pool.releaseJCas(jcas);
-                } catch (Exception e) {
-                    LOGGER.error("Error processing Analysis engine");
-                    throw new ServletException(e);
-                }
-            }
-            return resultMap;
+    @RequestMapping(value = "/status", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Map<String, Long>> getStatus() {
+        final Map<String, Map<String, Long>> status = new HashMap<>();
+        for (Map.Entry<String, PipelineRunner> runner : _pipelineRunners.entrySet()) {
+            status.put(runner.getKey(), runner.getValue().getStatus());
+        }
+        return status;
+    }
+
+    private static JCasParser getParser(final Optional<String> typesOptParam) {
+        if (!typesOptParam.isPresent() || typesOptParam.get().trim().isEmpty()) {
+            return DEFAULT_PARSER;
+        }
+        final Collection<String> typeNames = new HashSet<>();
+        for (String typeName : typesOptParam.get().split(",")) {
+            typeNames.add(typeName.trim());
         }
+        return new JCasParser(typeNames);
+    }
+
+    @ExceptionHandler(PipelineBusyException.class)
+    public ResponseEntity<String> handleBusy(final PipelineBusyException busyE) {
+        LOGGER.warn(busyE.getMessage());
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        return new ResponseEntity<>(busyE.getMessage(), headers, HttpStatus.SERVICE_UNAVAILABLE);
     }
 }
@@ -0,0 +1,291 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.rest.service;
+
+import org.apache.ctakes.core.pipeline.PipelineBuilder;
+import org.apache.ctakes.core.pipeline.PiperFileReader;
+import org.apache.ctakes.rest.util.JCasParser;
+import org.apache.log4j.Logger;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.JCasPool;
+
+import javax.servlet.ServletException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs documents through a pool of analysis engine replicas built from a piper file.
+ * Each request borrows an engine for the duration of its processing, so requests run concurrently up to the
+ * number of engines.  Admission is bounded: up to the queue size of requests may wait for an engine,
+ * beyond that requests are refused with a {@link PipelineBusyException}.
+ * <p>
+ * The number of engines defaults to the piper thread count and can be set with the system property
+ * {@code ctakes.rest.engines}.  The queue size defaults to four waiting requests per engine and can be set
+ * with the system property {@code ctakes.rest.queue}.
+ * <p>
+ * Annotators that are not ThreadSafe load their own copy of their models in every engine replica.
+ * Default.piper uses the ThreadSafe annotators, but Full.piper does not (for instance the dictionary lookup,
+ * chunker, dependency parser and cleartk attribute engines), so each of its replicas holds all of its models.
+ * Engine counts above {@code ctakes.rest.maxEngines} (default 8) are refused.  The heap of one engine is taken from
+ * the system property {@code ctakes.rest.engineHeapMB} when it is set, otherwise it is the growth in used heap
+ * while the first engine is built.  That growth is read from the memory mx bean without forcing a collection, so it
+ * includes garbage left by loading and errs high.  The engine count is lowered to the number of replicas that fit
+ * in the free heap.
+ */
+final class PipelineRunner {
+
+    private static final Logger LOGGER = Logger.getLogger(PipelineRunner.class);
+    private static final String ENGINES_PROPERTY = "ctakes.rest.engines";
+    private static final String QUEUE_PROPERTY = "ctakes.rest.queue";
+    private static final String MAX_ENGINES_PROPERTY = "ctakes.rest.maxEngines";
+    private static final String ENGINE_HEAP_PROPERTY = "ctakes.rest.engineHeapMB";
+    private static final int DEFAULT_MAX_ENGINES = 8;
+    private static final int QUEUE_PER_ENGINE = 4;
+    // fraction of the free heap that engine replicas may use, the rest is left for documents
+    private static final double ENGINE_HEAP_FRACTION = 0.75;
+
+    private final BlockingQueue<AnalysisEngine> _engines;
+    private final JCasPool _pool;
+    private final int _engineCount;
+    private final int _queueSize;
+    private final Semaphore _admission;
+    private final Semaphore _batchAdmission;
+    private final ExecutorService _batchExecutor;
+    private final AtomicInteger _active = new AtomicInteger();
+    private final AtomicInteger _waiting = new AtomicInteger();
+    private final AtomicLong _processed = new AtomicLong();
+    private final AtomicLong _rejected = new AtomicLong();
+    private final AtomicLong _failed = new AtomicLong();
+    private final AtomicLong _waitMillis = new AtomicLong();
+    private final AtomicLong _processMillis = new AtomicLong();
+
+    PipelineRunner(final String piperPath) throws ServletException {
+        try {
+            PiperFileReader reader = new PiperFileReader(piperPath);
+            PipelineBuilder builder = reader.getBuilder();
+            AnalysisEngineDescription pipeline = builder.getAnalysisEngineDesc();
+            final int requestedCount = Integer.getInteger(ENGINES_PROPERTY, builder.getThreadCount());
+            final int maxEngines = Integer.getInteger(MAX_ENGINES_PROPERTY, DEFAULT_MAX_ENGINES);
+            if (requestedCount < 1 || requestedCount > maxEngines) {
+                throw new IllegalArgumentException("Engine count " + requestedCount + " for " + piperPath
+                        + " is not between 1 and " + MAX_ENGINES_PROPERTY + " " + maxEngines);
+            }
+            final long heapBefore = getUsedHeap();
+            final AnalysisEngine firstEngine = UIMAFramework.produceAnalysisEngine(pipeline);
+            final long heapAfter = getUsedHeap();
+            final long engineHeapMb = Long.getLong(ENGINE_HEAP_PROPERTY, 0);
+            final long engineHeap = engineHeapMb > 0 ? engineHeapMb * 1048576 : heapAfter - heapBefore;
+            final long freeHeap = getMaxHeap() - heapAfter;
+            _engineCount = getFittingEngineCount(requestedCount, engineHeap, freeHeap);
+            if (_engineCount < requestedCount) {
+                LOGGER.warn("Only " + _engineCount + " of " + requestedCount + " engines for " + piperPath
+                        + " fit in the heap, " + (engineHeap / 1048576) + " MB each with "
+                        + (freeHeap / 1048576) + " MB free.  Increase the heap (-Xmx) to run more engines.");
+            }
+            _queueSize = Integer.getInteger(QUEUE_PROPERTY, _engineCount * QUEUE_PER_ENGINE);
+            _engines = new ArrayBlockingQueue<>(_engineCount);
+            _engines.add(firstEngine);
+            for (int i = 1; i < _engineCount; i++) {
+                _engines.add(UIMAFramework.produceAnalysisEngine(pipeline));
+            }
+            _pool = new JCasPool(_engineCount, _engines.peek());
+            _admission = new Semaphore(_engineCount + _queueSize);
+            _batchAdmission = new Semaphore(_engineCount);
+            _batchExecutor = Executors.newFixedThreadPool(_engineCount, r -> {
+                final Thread thread = new Thread(r, "BatchRunner");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } catch (Exception e) {
+            LOGGER.error("Error loading pipers");
+            throw new ServletException(e);
+        }
+        LOGGER.info("Created " + _engineCount + " engines for " + piperPath + " with queue size " + _queueSize);
+    }
+
+    /**
+     * @param requestedCount number of engines requested
+     * @param engineHeap     heap used by building the first engine.  This includes models shared by ThreadSafe
+     *                       annotators, so it is an upper bound for the heap of each further engine.
+     * @param freeHeap       heap that is free after building the first engine
+     * @return the requested count, or fewer if the further engines would not fit in the free heap
+     */
+    static int getFittingEngineCount(final int requestedCount, final long engineHeap, final long freeHeap) {
+        if (requestedCount <= 1 || engineHeap <= 0) {
+            return requestedCount;
+        }
+        final long fitting = 1 + (long) (Math.max(0, freeHeap) * ENGINE_HEAP_FRACTION) / engineHeap;
+        return (int) Math.min(requestedCount, fitting);
+    }
+
+    private static long getUsedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long getMaxHeap() {
+        final long max = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+        return max > 0 ? max : Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * @param text   document text
+     * @param parser writes the annotations of interest as json
+     * @return utf8 json for the document, or null if there is no text
+     * @throws ServletException if the document could not be processed
+     */
+    byte[] process(final String text, final JCasParser parser) throws ServletException {
+        if (text == null) {
+            return null;
+        }
+        if (!_admission.tryAcquire()) {
+            _rejected.incrementAndGet();
+            throw new PipelineBusyException(_engineCount, _queueSize);
+        }
+        try {
+            return processAdmitted(text, parser);
+        } finally {
+            _admission.release();
+        }
+    }
+
+    /**
+     * @return the number of engine replicas
+     */
+    int getEngineCount() {
+        return _engineCount;
+    }
+
+    /**
+     * @return executor with one thread per engine, for documents of batch requests
+     */
+    Executor getBatchExecutor() {
+        return _batchExecutor;
+    }
+
+    /**
+     * Waits until a document of a batch may enter the pipeline.  Batch documents wait for admission instead of
+     * being refused, as the batch caller limits the number of its documents in flight.  They count against the
+     * same admission as single documents, but all batches together hold at most one admission per engine,
+     * so batches cannot take the queue away from single documents.
+     * Every admission must be released by {@link #processBatchDocument} or {@link #releaseBatchDocument}.
+     *
+     * @throws InterruptedException if interrupted while waiting for admission
+     */
+    void admitBatchDocument() throws InterruptedException {
+        _batchAdmission.acquire();
+        try {
+            _admission.acquire();
+        } catch (InterruptedException e) {
+            _batchAdmission.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the admission of a batch document that is not processed.
+     */
+    void releaseBatchDocument() {
+        _admission.release();
+        _batchAdmission.release();
+    }
+
+    /**
+     * Processes an admitted document of a batch and then releases its admission.
+     *
+     * @param text   document text
+     * @param parser writes the annotations of interest as json
+     * @return utf8 json for the document
+     * @throws ServletException if the document could not be processed
+     */
+    byte[] processBatchDocument(final String text, final JCasParser parser) throws ServletException {
+        try {
+            return processAdmitted(text, parser);
+        } finally {
+            releaseBatchDocument();
+        }
+    }
+
+    private byte[] processAdmitted(final String text, final JCasParser parser) throws ServletException {
+        final long queued = System.currentTimeMillis();
+        AnalysisEngine engine = null;
+        JCas jcas = null;
+        _waiting.incrementAndGet();
+        try {
+            engine = _engines.take();
+            // There are as many jcas as engines, so a jcas is always available to an engine holder
+            jcas = _pool.getJCas(-1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (engine != null) {
+                _engines.add(engine);
+            }
+            throw new ServletException(e);
+        } finally {
+            _waiting.decrementAndGet();
+        }
+        final long started = System.currentTimeMillis();
+        _waitMillis.addAndGet(started - queued);
+        _active.incrementAndGet();
+        try {
+            jcas.setDocumentText(text);
+            engine.process(jcas);
+            // Serialize while the jcas is held, but write to the client only after engine and jcas are released
+            final byte[] json = parser.toJson(jcas);
+            _processed.incrementAndGet();
+            return json;
+        } catch (Exception e) {
+            _failed.incrementAndGet();
+            LOGGER.error("Error processing Analysis engine");
+            throw new ServletException(e);
+        } finally {
+            _processMillis.addAndGet(System.currentTimeMillis() - started);
+            _active.decrementAndGet();
+            _pool.releaseJCas(jcas);
+            _engines.add(engine);
+        }
+    }
+
+    /**
+     * @return engine count, queue size, active and waiting requests, processed, failed and rejected request counts,
+     * and the average milliseconds that processed requests spent waiting and processing
+     */
+    Map<String, Long> getStatus() {
+        final Map<String, Long> status = new LinkedHashMap<>();
+        status.put("engines", (long) _engineCount);
+        status.put("queueSize", (long) _queueSize);
+        status.put("active", (long) _active.get());
+        status.put("waiting", (long) _waiting.get());
+        final long processed = _processed.get();
+        final long completed = processed + _failed.get();
+        status.put("processed", processed);
+        status.put("failed", _failed.get());
+        status.put("rejected", _rejected.get());
+        status.put("averageWaitMillis", completed == 0 ? 0 : _waitMillis.get() / completed);
+        status.put("averageProcessMillis", completed == 0 ? 0 : _processMillis.get() / completed);
+        return status;
+    }
+
+}
@@ -18,23 +18,35 @@
  */
 package org.apache.ctakes.rest.util;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.apache.ctakes.drugner.type.*;
 import org.apache.ctakes.rest.service.CuiResponse;
+import org.apache.ctakes.typesystem.type.refsem.UmlsConcept;
 import org.apache.ctakes.typesystem.type.textsem.*;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSArray;
 import org.apache.uima.jcas.tcas.Annotation;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by tmill on 12/20/18.
  */
 public class JCasParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int[] NO_CLASSES = new int[0];
+
     List<Class<? extends Annotation>> semClasses = new ArrayList<>();
+    // Indices of the semClasses that subsume each annotation type
+    private final Map<Type, int[]> _typeClassIndices = new ConcurrentHashMap<>();
 
     public JCasParser(){
         // CUI types:
@@ -58,6 +70,16 @@ public class JCasParser {
         semClasses.add(MeasurementAnnotation.class);
     }
 
+    /**
+     * @param typeNames simple names of the default annotation classes to write, null or empty for all
+     */
+    public JCasParser(final Collection<String> typeNames){
+        this();
+        if(typeNames != null && !typeNames.isEmpty()) {
+            semClasses.removeIf(c -> !typeNames.contains(c.getSimpleName()));
+        }
+    }
+
     public Map<String, List<CuiResponse>> parse(JCas jcas) throws Exception {
 
         Map<String, List<CuiResponse>> responseMap = new HashMap<>();
@@ -71,4 +93,91 @@ public class JCasParser {
         }
         return responseMap;
     }
+
+    /**
+     * Writes the same json as a serialized {@link #parse(JCas)}, but walks the annotation index only once
+     * and writes values directly without creating response objects.
+     *
+     * @param jcas -
+     * @return utf8 json bytes
+     * @throws IOException if the json could not be written
+     */
+    public byte[] toJson(final JCas jcas) throws IOException {
+        // Gather annotations by class in a single pass over the index
+        final List<List<Annotation>> classAnnotations = new ArrayList<>(semClasses.size());
+        for(int i = 0; i < semClasses.size(); i++) {
+            classAnnotations.add(new ArrayList<>());
+        }
+        for(Annotation annotation : jcas.getAnnotationIndex()) {
+            for(int classIndex : getClassIndices(jcas, annotation.getType())) {
+                classAnnotations.get(classIndex).add(annotation);
+            }
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(bytes)) {
+            generator.writeStartObject();
+            for(int i = 0; i < semClasses.size(); i++) {
+                generator.writeArrayFieldStart(semClasses.get(i).getSimpleName());
+                for(Annotation annotation : classAnnotations.get(i)) {
+                    writeAnnotation(annotation, generator);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param jcas -
+     * @param type annotation type
+     * @return indices of the semClasses that are the type or a supertype of it
+     */
+    private int[] getClassIndices(final JCas jcas, final Type type) {
+        return _typeClassIndices.computeIfAbsent(type, t -> {
+            final TypeSystem typeSystem = jcas.getTypeSystem();
+            final int[] indices = new int[semClasses.size()];
+            int count = 0;
+            for(int i = 0; i < semClasses.size(); i++) {
+                final Type classType = JCasUtil.getType(jcas, semClasses.get(i));
+                if(classType != null && typeSystem.subsumes(classType, t)) {
+                    indices[count] = i;
+                    count++;
+                }
+            }
+            return count == 0 ? NO_CLASSES : Arrays.copyOf(indices, count);
+        });
+    }
+
+    private static void writeAnnotation(final Annotation annotation, final JsonGenerator generator)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("begin", annotation.getBegin());
+        generator.writeNumberField("end", annotation.getEnd());
+        generator.writeStringField("text", annotation.getCoveredText());
+        int polarity = 0;
+        FSArray concepts = null;
+        if(annotation instanceof IdentifiedAnnotation) {
+            polarity = ((IdentifiedAnnotation) annotation).getPolarity();
+            concepts = ((IdentifiedAnnotation) annotation).getOntologyConceptArr();
+        }
+        generator.writeNumberField("polarity", polarity);
+        generator.writeArrayFieldStart("conceptAttributes");
+        if(concepts != null) {
+            for(int i = 0; i < concepts.size(); i++) {
+                final FeatureStructure concept = concepts.get(i);
+                if(concept instanceof UmlsConcept) {
+                    final UmlsConcept umlsConcept = (UmlsConcept) concept;
+                    generator.writeStartObject();
+                    generator.writeStringField("codingScheme", umlsConcept.getCodingScheme());
+                    generator.writeStringField("cui", umlsConcept.getCui());
+                    generator.writeStringField("code", umlsConcept.getCode());
+                    generator.writeStringField("tui", umlsConcept.getTui());
+                    generator.writeEndObject();
+                }
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
 }
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.rest.service;
+
+import org.apache.ctakes.rest.util.JCasParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class PipelineRunnerTest {
+
+    private static final String PIPER = "pipers/TwoEngines.piper";
+
+    @Before
+    public void setEngines() {
+        // the piper thread count is limited to the cores of the machine
+        System.setProperty("ctakes.rest.engines", "2");
+    }
+
+    @After
+    public void clear() {
+        BarrierAnnotator._barrier = null;
+        System.clearProperty("ctakes.rest.engines");
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        final PipelineRunner runner = new PipelineRunner(PIPER);
+        assertEquals(2, runner.getEngineCount());
+        // Each document waits in the pipeline until the other one is also being processed
+        BarrierAnnotator._barrier = new CyclicBarrier(2);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final List<Future<byte[]>> futures = new ArrayList<>();
+        for (String text : new String[]{"Patient denies chest pain.", "No fever."}) {
+            futures.add(executor.submit(() -> runner.process(text, new JCasParser())));
+        }
+        for (Future<byte[]> future : futures) {
+            final String json = new String(future.get(30, TimeUnit.SECONDS), StandardCharsets.UTF_8);
+            assertTrue(json, json.startsWith("{"));
+        }
+        executor.shutdown();
+        final Map<String, Long> status = runner.getStatus();
+        assertEquals(2L, status.get("processed").longValue());
+        assertEquals(0L, status.get("failed").longValue());
+        assertEquals(0L, status.get("active").longValue());
+    }
+
+    @Test
+    public void testBatchAdmission() throws Exception {
+        final PipelineRunner runner = new PipelineRunner(PIPER);
+        // batch documents hold at most one admission per engine
+        runner.admitBatchDocument();
+        runner.admitBatchDocument();
+        final Thread thirdBatchDocument = new Thread(() -> {
+            try {
+                runner.admitBatchDocument();
+                runner.releaseBatchDocument();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thirdBatchDocument.start();
+        thirdBatchDocument.join(500);
+        assertTrue(thirdBatchDocument.isAlive());
+        // single documents are still admitted
+        assertNotNull(runner.process("No fever.", new JCasParser()));
+        assertNotNull(runner.processBatchDocument("No fever.", new JCasParser()));
+        thirdBatchDocument.join(5000);
+        assertFalse(thirdBatchDocument.isAlive());
+        runner.releaseBatchDocument();
+        assertEquals(0L, runner.getStatus().get("rejected").longValue());
+    }
+
+    @Test
+    public void testEngineCap() {
+        System.setProperty("ctakes.rest.maxEngines", "1");
+        try {
+            new PipelineRunner(PIPER);
+            fail("Two engines are above the cap of one");
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        } finally {
+            System.clearProperty("ctakes.rest.maxEngines");
+        }
+    }
+
+    @Test
+    public void testFittingEngineCount() {
+        assertEquals(4, PipelineRunner.getFittingEngineCount(4, 100, 1000));
+        // three more engines of 100 fit in three quarters of 400
+        assertEquals(4, PipelineRunner.getFittingEngineCount(8, 100, 400));
+        assertEquals(1, PipelineRunner.getFittingEngineCount(8, 100, 50));
+        assertEquals(1, PipelineRunner.getFittingEngineCount(8, 100, -50));
+        assertEquals(8, PipelineRunner.getFittingEngineCount(8, 0, 50));
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.rest.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.ctakes.drugner.type.RouteAnnotation;
+import org.apache.ctakes.drugner.type.StrengthAnnotation;
+import org.apache.ctakes.typesystem.type.refsem.OntologyConcept;
+import org.apache.ctakes.typesystem.type.refsem.UmlsConcept;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.textsem.*;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the streamed json of {@link JCasParser#toJson(JCas)} is the json that the rest service wrote
+ * before, which was the response map of {@link JCasParser#parse(JCas)} serialized by jackson.
+ */
+public class JCasParserTest {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private static final String TEXT = "Patient denies chest pain, takes aspirin 81 mg by mouth.  Seen 10/17/2026 for \"fever\".";
+
+    @Test
+    public void testSameAsParsedResponse() throws Exception {
+        assertSameJson(new JCasParser(), createJCas());
+    }
+
+    @Test
+    public void testSameAsParsedResponseForTypes() throws Exception {
+        final JCasParser parser = new JCasParser(Arrays.asList("MedicationMention", "RouteAnnotation", "Unknown"));
+        assertSameJson(parser, createJCas());
+    }
+
+    @Test
+    public void testSameAsParsedResponseForEmptyDocument() throws Exception {
+        final JCas jcas = JCasFactory.createJCas();
+        jcas.setDocumentText("");
+        assertSameJson(new JCasParser(Collections.emptyList()), jcas);
+    }
+
+    private static void assertSameJson(final JCasParser parser, final JCas jcas) throws Exception {
+        final JsonNode expected = JSON_MAPPER.valueToTree(parser.parse(jcas));
+        final JsonNode actual = JSON_MAPPER.readTree(parser.toJson(jcas));
+        assertEquals(expected, actual);
+    }
+
+    private static JCas createJCas() throws Exception {
+        final JCas jcas = JCasFactory.createJCas();
+        jcas.setDocumentText(TEXT);
+        addMention(jcas, new SignSymptomMention(jcas), "chest pain", -1);
+        addMention(jcas, new DiseaseDisorderMention(jcas), "fever", 1);
+        final MedicationMention aspirin = addMention(jcas, new MedicationMention(jcas), "aspirin", 1);
+        aspirin.setOntologyConceptArr(createConcepts(jcas,
+                createConcept(jcas, "RXNORM", "C0004057", "1191", "T109"),
+                createConcept(jcas, "SNOMEDCT_US", "C0004057", "387458008", "T121"),
+                new OntologyConcept(jcas),
+                createConcept(jcas, null, "C0004057", null, null)));
+        addMention(jcas, new AnatomicalSiteMention(jcas), "chest", 1);
+        addAnnotation(new TimeMention(jcas), "10/17/2026");
+        addAnnotation(new StrengthAnnotation(jcas), "81 mg");
+        addAnnotation(new RouteAnnotation(jcas), "by mouth");
+        // annotations that are not returned
+        addMention(jcas, new EntityMention(jcas), "Patient", 1);
+        addAnnotation(new WordToken(jcas), "takes");
+        return jcas;
+    }
+
+    private static <T extends IdentifiedAnnotation> T addMention(final JCas jcas, final T mention, final String text,
+                                                                 final int polarity) {
+        addAnnotation(mention, text);
+        mention.setPolarity(polarity);
+        mention.setOntologyConceptArr(createConcepts(jcas,
+                createConcept(jcas, "SNOMEDCT_US", "C" + text.hashCode(), "" + text.length(), "T184")));
+        return mention;
+    }
+
+    private static void addAnnotation(final Annotation annotation, final String text) {
+        final int begin = TEXT.indexOf(text);
+        annotation.setBegin(begin);
+        annotation.setEnd(begin + text.length());
+        annotation.addToIndexes();
+    }
+
+    private static FSArray createConcepts(final JCas jcas, final OntologyConcept... concepts) {
+        final FSArray array = new FSArray(jcas, concepts.length);
+        for (int i = 0; i < concepts.length; i++) {
+            array.set(i, concepts[i]);
+        }
+        return array;
+    }
+
+    private static UmlsConcept createConcept(final JCas jcas, final String codingScheme, final String cui,
+                                             final String code, final String tui) {
+        final UmlsConcept concept = new UmlsConcept(jcas);
+        concept.setCodingScheme(codingScheme);
+        concept.setCui(cui);
+        concept.setCode(code);
+        concept.setTui(tui);
+        return concept;
+    }
+}
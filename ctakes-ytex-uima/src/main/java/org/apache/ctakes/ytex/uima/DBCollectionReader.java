@@ -21,14 +21,17 @@ package org.apache.ctakes.ytex.uima;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
+import org.apache.ctakes.ytex.uima.mapper.CasStorageFormat;
 import org.apache.ctakes.ytex.uima.types.DocKey;
 import org.apache.ctakes.ytex.uima.types.KeyValuePair;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
+import org.apache.uima.cas.FSIterator;
 import org.apache.uima.collection.CollectionException;
 import org.apache.uima.collection.CollectionReader_ImplBase;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
+import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.metadata.ConfigurationParameterSettings;
 import org.apache.uima.resource.metadata.ProcessingResourceMetaData;
@@ -50,6 +53,7 @@ import java.io.IOException;
 import java.sql.Driver;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -66,6 +70,9 @@ import java.util.Map;
  * defaults to org.apache.ctakes.ytex.uima.types.DocKey.
  * <li>keyNameToLowerCase convert the column names returned by
  * queryGetDocumentKeys to lower case, default true</li>
+ * <li>loadCAS queryGetDocument returns a serialized cas stored by the
+ * DBConsumer (document.cas) instead of the document text. The cas is loaded
+ * with the annotations it was saved with. default false</li>
  * </ul>
  * 
  * @TODO more doc
@@ -98,6 +105,7 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 	protected NamedParameterJdbcTemplate namedJdbcTemplate;
 	protected TransactionTemplate txTemplate;
 	protected boolean keyNameToLowerCase = true;
+	protected boolean loadCAS = false;
 
 	public boolean isKeyNameToLowerCase() {
 		return keyNameToLowerCase;
@@ -131,6 +139,9 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 				.getParameterValue("keyNameToLowerCase");
 		if (keyNameToLowerCase != null)
 			this.keyNameToLowerCase = keyNameToLowerCase.booleanValue();
+		Boolean loadCAS = (Boolean) paramSettings.getParameterValue("loadCAS");
+		if (loadCAS != null)
+			this.loadCAS = loadCAS.booleanValue();
 		String dbURL = (String) paramSettings.getParameterValue("dbURL");
 		String dbDriver = (String) paramSettings.getParameterValue("dbDriver");
 		initDB(dbDriver, dbURL);
@@ -208,8 +219,21 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 		}
 	}
 
+	/**
+	 * add a DocKey for the given id. A cas loaded from the database already
+	 * has the DocKey it was stored with, which is replaced.
+	 */
 	private void addDocKey(JCas aCAS, Map<String, Object> id)
 			throws CollectionException {
+		List<DocKey> storedKeys = new ArrayList<DocKey>();
+		FSIterator<Annotation> storedKeyIter = aCAS.getAnnotationIndex(
+				DocKey.type).iterator();
+		while (storedKeyIter.hasNext()) {
+			storedKeys.add((DocKey) storedKeyIter.next());
+		}
+		for (DocKey storedKey : storedKeys) {
+			storedKey.removeFromIndexes();
+		}
 		DocKey docKey = new DocKey(aCAS);
 		FSArray keyValuePairs = new FSArray(aCAS, id.size());
 		int i = 0;
@@ -235,7 +259,8 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 
 	}
 
-	protected void getDocumentById(final JCas aCAS, final Map<String, Object> id) {
+	protected void getDocumentById(final JCas aCAS, final Map<String, Object> id)
+			throws IOException {
 		Map<String, Object> idMapTmp = id;
 		if (this.isKeyNameToLowerCase()) {
 			idMapTmp = new HashMap<String, Object>();
@@ -244,6 +269,7 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 			}
 		}
 		final Map<String, Object> idQuery = idMapTmp;
+		final byte[][] casData = new byte[1][];
 		this.txTemplate.execute(new TransactionCallback<Object>() {
 
 			@Override
@@ -257,9 +283,16 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 									throws SQLException {
 								if (!bFirstRowRead) {
 									LobHandler lobHandler = new DefaultLobHandler();
-									String clobText = lobHandler
-											.getClobAsString(rs, 1);
-									aCAS.setDocumentText(clobText);
+									if (loadCAS) {
+										// deserialize outside of the
+										// transaction
+										casData[0] = lobHandler
+												.getBlobAsBytes(rs, 1);
+									} else {
+										String clobText = lobHandler
+												.getClobAsString(rs, 1);
+										aCAS.setDocumentText(clobText);
+									}
 									bFirstRowRead = true;
 								} else {
 									log.error("Multiple documents for document key: "
@@ -270,6 +303,8 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 				return null;
 			}
 		});
+		if (casData[0] != null)
+			CasStorageFormat.deserialize(casData[0], aCAS.getCas());
 	}
 
 	@Override
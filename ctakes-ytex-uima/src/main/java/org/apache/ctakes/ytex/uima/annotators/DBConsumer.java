@@ -30,9 +30,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.ytex.uima.ApplicationContextHolder;
+import org.apache.ctakes.ytex.uima.mapper.CasStorageFormat;
 import org.apache.ctakes.ytex.uima.mapper.DocumentMapperService;
+import org.apache.ctakes.ytex.uima.mapper.WriteBehindDocumentWriter;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.impl.XmiCasSerializer;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
@@ -52,11 +55,23 @@ import org.xml.sax.SAXException;
  * document.analysis_batch. Defaults to current date/time.
  * <li>storeDocText - boolean - should the document text be stored in the DB?
  * defaults to true
- * <li>storeCAS - boolean - should the serialized xmi cas be stored in the DB?
+ * <li>storeCAS - boolean - should the serialized cas be stored in the DB?
  * defaults to true
+ * <li>casFormat - String - format of the stored cas: XMI (gzipped xmi) or
+ * BINARY (uima compressed binary form 6). defaults to XMI
  * <li>typesToIngore - multivalued String - uima types not to be saved.
  * <li>insertAnnotationContainmentLinks - boolean - should we store containment
  * links? defaults to true
+ * <li>writeBehind - boolean - save documents asynchronously? The document is
+ * converted to rows in process(), and saved by writer threads. Cannot be
+ * combined with xmiOutputDirectory, as the document id is not known when
+ * process() returns. defaults to false
+ * <li>writerThreads - integer - number of writer threads for writeBehind.
+ * defaults to 1
+ * <li>writeBehindQueueSize - integer - maximum number of documents waiting to
+ * be saved; process() blocks when the queue is full. defaults to 100
+ * <li>commitSize - integer - maximum number of documents saved in a single
+ * transaction by a writer thread. defaults to 10
  * </ul>
  * 
  * @author vijay
@@ -75,8 +90,10 @@ public class DBConsumer extends JCasAnnotator_ImplBase {
 	private String analysisBatch;
 	private boolean bStoreDocText;
 	private boolean bStoreCAS;
+	private CasStorageFormat casFormat = CasStorageFormat.XMI;
 	private boolean bInsertAnnotationContainmentLinks;
 	private Set<String> setTypesToIgnore = new HashSet<String>();
+	private WriteBehindDocumentWriter writeBehindWriter;
 
 	/**
 	 * read config parameters
@@ -102,21 +119,71 @@ public class DBConsumer extends JCasAnnotator_ImplBase {
 		bStoreDocText = boolStoreDocText == null ? true : boolStoreDocText
 				.booleanValue();
 		bStoreCAS = boolStoreCAS == null ? true : boolStoreCAS.booleanValue();
+		String strCasFormat = (String) aContext
+				.getConfigParameterValue("casFormat");
+		if (strCasFormat != null && strCasFormat.length() > 0) {
+			try {
+				casFormat = CasStorageFormat.valueOf(strCasFormat.trim()
+						.toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new ResourceInitializationException(e);
+			}
+		}
 		bInsertAnnotationContainmentLinks = boolInsertAnnotationContainmentLinks == null ? true
 				: boolInsertAnnotationContainmentLinks.booleanValue();
 		documentMapperService = (DocumentMapperService) ApplicationContextHolder
 				.getApplicationContext().getBean("documentMapperService");
+		Boolean boolWriteBehind = (Boolean) aContext
+				.getConfigParameterValue("writeBehind");
+		if (boolWriteBehind != null && boolWriteBehind.booleanValue()) {
+			if (xmiOutputDirectory != null && xmiOutputDirectory.length() > 0) {
+				log.warn("writeBehind cannot be used with xmiOutputDirectory, saving documents synchronously");
+			} else {
+				writeBehindWriter = new WriteBehindDocumentWriter(
+						documentMapperService, getIntParameter(aContext,
+								"writerThreads", 1), getIntParameter(aContext,
+								"writeBehindQueueSize", 100), getIntParameter(
+								aContext, "commitSize", 10));
+			}
+		}
+	}
+
+	private int getIntParameter(UimaContext aContext, String name,
+			int defaultValue) throws ResourceInitializationException {
+		Integer value = (Integer) aContext.getConfigParameterValue(name);
+		if (value == null)
+			return defaultValue;
+		if (value.intValue() < 1)
+			throw new ResourceInitializationException(new IllegalArgumentException(
+					name + " must be positive: " + value));
+		return value.intValue();
 	}
 
 	/**
 	 * call the documentMapperService to save the document. if the
 	 * xmiOutputDirectory is defined, write the document to an xmi file. use the
-	 * name corresponding to the documentID.
+	 * name corresponding to the documentID. With writeBehind, the document is
+	 * queued for saving instead.
 	 */
 	@Override
-	public void process(JCas jcas) {
+	public void process(JCas jcas) throws AnalysisEngineProcessException {
+		if (writeBehindWriter != null) {
+			try {
+				writeBehindWriter.put(documentMapperService.extractDocument(
+						jcas, analysisBatch, bStoreDocText, bStoreCAS,
+						casFormat, bInsertAnnotationContainmentLinks,
+						setTypesToIgnore));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new AnalysisEngineProcessException(e);
+			} catch (RuntimeException e) {
+				throw new AnalysisEngineProcessException(e);
+			}
+			return;
+		}
 		Integer documentID = documentMapperService.saveDocument(jcas,
-				analysisBatch, bStoreDocText, bStoreCAS, bInsertAnnotationContainmentLinks, setTypesToIgnore);
+				analysisBatch, bStoreDocText, bStoreCAS, casFormat,
+				bInsertAnnotationContainmentLinks, setTypesToIgnore);
 		if (documentID != null && xmiOutputDirectory != null
 				&& xmiOutputDirectory.length() > 0) {
 			File dirOut = new File(xmiOutputDirectory);
@@ -148,4 +215,39 @@ public class DBConsumer extends JCasAnnotator_ImplBase {
 		}
 	}
 
+	/**
+	 * wait for queued documents to be saved
+	 */
+	@Override
+	public void collectionProcessComplete()
+			throws AnalysisEngineProcessException {
+		super.collectionProcessComplete();
+		closeWriteBehindWriter();
+	}
+
+	@Override
+	public void destroy() {
+		try {
+			closeWriteBehindWriter();
+		} catch (AnalysisEngineProcessException e) {
+			log.error("error saving documents", e);
+		}
+		super.destroy();
+	}
+
+	private void closeWriteBehindWriter() throws AnalysisEngineProcessException {
+		if (writeBehindWriter != null) {
+			try {
+				writeBehindWriter.close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new AnalysisEngineProcessException(e);
+			} catch (RuntimeException e) {
+				throw new AnalysisEngineProcessException(e);
+			} finally {
+				writeBehindWriter = null;
+			}
+		}
+	}
+
 }
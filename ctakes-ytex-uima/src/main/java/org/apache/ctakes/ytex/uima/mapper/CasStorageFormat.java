@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.uima.mapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.SerialFormat;
+import org.apache.uima.cas.impl.XmiCasDeserializer;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.util.CasIOUtils;
+import org.apache.uima.util.XMLSerializer;
+import org.xml.sax.SAXException;
+
+/**
+ * Format of the serialized cas stored in document.cas. A stored cas is read
+ * with {@link #deserialize}, which recognizes all formats.
+ */
+public enum CasStorageFormat {
+	/**
+	 * gzipped XMI
+	 */
+	XMI {
+		@Override
+		public byte[] serialize(CAS cas) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			GZIPOutputStream zipOut = new GZIPOutputStream(out);
+			XmiCasSerializer ser = new XmiCasSerializer(cas.getTypeSystem());
+			XMLSerializer xmlSer = new XMLSerializer(zipOut, false);
+			try {
+				ser.serialize(cas, xmlSer.getContentHandler());
+			} catch (SAXException e) {
+				throw new IOException(e);
+			}
+			zipOut.close();
+			return out.toByteArray();
+		}
+	},
+	/**
+	 * uima compressed binary serialization (form 6) with the type system
+	 * embedded. The cas can be loaded into a cas with a different type system;
+	 * types and features missing from the target type system are filtered
+	 * out.
+	 * <p>
+	 * Filtering happens only on load. The whole cas is saved with its own type
+	 * system, as the type system of the cas that will load it is not known
+	 * when it is saved.
+	 */
+	BINARY {
+		@Override
+		public byte[] serialize(CAS cas) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			CasIOUtils.save(cas, out, SerialFormat.COMPRESSED_FILTERED_TSI);
+			return out.toByteArray();
+		}
+	};
+
+	/**
+	 * serialize the cas
+	 * 
+	 * @param cas
+	 * @return serialized cas
+	 * @throws IOException
+	 */
+	public abstract byte[] serialize(CAS cas) throws IOException;
+
+	/**
+	 * load a cas stored in any of the formats.
+	 * 
+	 * @param data
+	 *            serialized cas
+	 * @param cas
+	 *            empty cas to load into
+	 * @throws IOException
+	 */
+	public static void deserialize(byte[] data, CAS cas) throws IOException {
+		InputStream in = new ByteArrayInputStream(data);
+		if (data.length > 1 && (data[0] & 0xff) == 0x1f
+				&& (data[1] & 0xff) == 0x8b) {
+			// gzip magic number - xmi
+			in = new GZIPInputStream(in);
+			try {
+				XmiCasDeserializer.deserialize(in, cas, true);
+			} catch (SAXException e) {
+				throw new IOException(e);
+			} finally {
+				in.close();
+			}
+		} else {
+			CasIOUtils.load(in, cas);
+		}
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.ctakes.ytex.uima.mapper;
 
+import java.util.List;
 import java.util.Set;
 
 import org.apache.uima.jcas.JCas;
@@ -36,4 +37,47 @@ public interface DocumentMapperService {
 			boolean bStoreDocText, boolean bStoreCAS,
 			boolean bInsertAnnotationContainmentLinks, Set<String> typesToIgnore);
 
+	/**
+	 * Save Document and all mapped annotations.
+	 * 
+	 * @param jcas
+	 * @param analysisBatch
+	 *            optional
+	 * @param casFormat
+	 *            format of the stored cas
+	 * @return document id
+	 */
+	public abstract Integer saveDocument(JCas jcas, String analysisBatch,
+			boolean bStoreDocText, boolean bStoreCAS,
+			CasStorageFormat casFormat,
+			boolean bInsertAnnotationContainmentLinks, Set<String> typesToIgnore);
+
+	/**
+	 * Convert the Document and all mapped annotations to rows that can be
+	 * saved after the cas has been reset.
+	 * 
+	 * @param jcas
+	 * @param analysisBatch
+	 *            optional
+	 * @param casFormat
+	 *            format of the stored cas
+	 * @return document rows
+	 * @see #saveDocuments(List)
+	 */
+	public abstract DocumentRows extractDocument(JCas jcas,
+			String analysisBatch, boolean bStoreDocText, boolean bStoreCAS,
+			CasStorageFormat casFormat,
+			boolean bInsertAnnotationContainmentLinks, Set<String> typesToIgnore);
+
+	/**
+	 * Save several documents in a single transaction, using one batch per
+	 * statement for all documents.
+	 * 
+	 * @param listDocumentRows
+	 *            rows created by {@link #extractDocument}
+	 * @return document ids, in the same order
+	 */
+	public abstract List<Integer> saveDocuments(
+			List<DocumentRows> listDocumentRows);
+
 }
\ No newline at end of file
@@ -18,7 +18,6 @@
  */
 package org.apache.ctakes.ytex.uima.mapper;
 
-import java.io.ByteArrayOutputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -31,16 +30,18 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.zip.GZIPOutputStream;
 
 import javax.sql.DataSource;
 
@@ -49,6 +50,8 @@ import org.apache.commons.jxpath.JXPathContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ctakes.ytex.dao.DBUtil;
+import org.apache.ctakes.ytex.uima.mapper.DocumentRows.AnnoRef;
+import org.apache.ctakes.ytex.uima.mapper.DocumentRows.SqlNull;
 import org.apache.ctakes.ytex.uima.model.Document;
 import org.apache.ctakes.ytex.uima.model.DocumentAnnotation;
 import org.apache.ctakes.ytex.uima.model.UimaType;
@@ -58,7 +61,6 @@ import org.apache.uima.cas.FSIterator;
 import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.FeatureStructure;
 import org.apache.uima.cas.Type;
-import org.apache.uima.cas.impl.XmiCasSerializer;
 import org.apache.uima.cas.text.AnnotationIndex;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.FSArray;
@@ -66,14 +68,17 @@ import org.apache.uima.jcas.cas.FSList;
 import org.apache.uima.jcas.cas.NonEmptyFSList;
 import org.apache.uima.jcas.cas.TOP;
 import org.apache.uima.jcas.tcas.Annotation;
-import org.apache.uima.util.XMLSerializer;
 import org.hibernate.Query;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.dialect.Dialect;
-import org.hibernate.jdbc.Work;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
 import org.hibernate.persister.entity.AbstractEntityPersister;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -248,7 +253,7 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 	private Properties ytexProperties;
 
 	private void addAnnoLinks(JCas jcas,
-			BiMap<Annotation, Integer> mapAnnoToId, List<AnnoLink> listAnnoLinks) {
+			BiMap<Annotation, Integer> mapAnnoToIndex, List<AnnoLink> listAnnoLinks) {
 		Collection<AnnoMappingInfo> annoLinkInfos = Collections2.filter(this
 				.getMapAnnoMappingInfo().values(),
 				new Predicate<AnnoMappingInfo>() {
@@ -259,12 +264,12 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 					}
 				});
 		for (AnnoMappingInfo mi : annoLinkInfos) {
-			addAnnoLinks(jcas, mapAnnoToId, listAnnoLinks, mi);
+			addAnnoLinks(jcas, mapAnnoToIndex, listAnnoLinks, mi);
 		}
 	}
 
 	private void addAnnoLinks(JCas jcas,
-			BiMap<Annotation, Integer> mapAnnoToId,
+			BiMap<Annotation, Integer> mapAnnoToIndex,
 			List<AnnoLink> listAnnoLinks, AnnoMappingInfo mi) {
 		Type t = jcas.getTypeSystem().getType(mi.getAnnoClassName());
 		if (t != null) {
@@ -286,24 +291,24 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 					// value
 					Object parentAnno = extractFeature(cip.getJxpath(), fsp);
 					if (parentAnno instanceof Annotation) {
-						Integer parentId = mapAnnoToId
+						Integer parentIndex = mapAnnoToIndex
 								.get((Annotation) parentAnno);
-						if (parentId != null) {
+						if (parentIndex != null) {
 							// parent is persisted, look for child(ren)
 							if (fsc instanceof FSList || fsc instanceof FSArray) {
 								// this is a one-to-many relationship
 								// iterate over children
 								List<FeatureStructure> children = extractList(fsc);
 								for (FeatureStructure child : children) {
-									addLink(mapAnnoToId, listAnnoLinks,
+									addLink(mapAnnoToIndex, listAnnoLinks,
 											t.getShortName(), cic.getJxpath(),
-											parentId, child);
+											parentIndex, child);
 								}
 							} else {
 								// this is a one-to-one relationship
-								addLink(mapAnnoToId, listAnnoLinks,
+								addLink(mapAnnoToIndex, listAnnoLinks,
 										t.getShortName(), cic.getJxpath(),
-										parentId, fsc);
+										parentIndex, fsc);
 							}
 						}
 					}
@@ -313,30 +318,31 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 	}
 
 	/**
-	 * add a link. apply jxpath as needed, get child anno id, and save the link
+	 * add a link. apply jxpath as needed, get child anno index, and save the
+	 * link
 	 * 
-	 * @param mapAnnoToId
-	 *            map to find existing annos
+	 * @param mapAnnoToIndex
+	 *            map to find the index of existing annos
 	 * @param listAnnoLinks
 	 *            list to populate
 	 * @param linkType
 	 *            anno_link.feature
 	 * @param childJxpath
 	 *            jxpath to child annotation feature value, can be null
-	 * @param parentId
-	 *            parent_anno_base_id
+	 * @param parentIndex
+	 *            index of the parent annotation
 	 * @param child
 	 *            child object to apply jxpath to, or which is already an
 	 *            annotation
 	 */
-	private void addLink(BiMap<Annotation, Integer> mapAnnoToId,
+	private void addLink(BiMap<Annotation, Integer> mapAnnoToIndex,
 			List<AnnoLink> listAnnoLinks, String linkType, String childJxpath,
-			Integer parentId, FeatureStructure child) {
+			Integer parentIndex, FeatureStructure child) {
 		Object childAnno = extractFeature(childJxpath, child);
 		if (childAnno instanceof Annotation) {
-			Integer childId = mapAnnoToId.get((Annotation) childAnno);
-			if (childId != null) {
-				listAnnoLinks.add(new AnnoLink(parentId, childId, linkType));
+			Integer childIndex = mapAnnoToIndex.get((Annotation) childAnno);
+			if (childIndex != null) {
+				listAnnoLinks.add(new AnnoLink(parentIndex, childIndex, linkType));
 			}
 		}
 	}
@@ -374,7 +380,7 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 	}
 
 	private Document createDocument(JCas jcas, String analysisBatch,
-			boolean bStoreDocText, boolean bStoreCAS) {
+			boolean bStoreDocText, boolean bStoreCAS, CasStorageFormat casFormat) {
 		Document doc = new Document();
 		if (bStoreDocText)
 			doc.setDocText(jcas.getDocumentText());
@@ -392,29 +398,14 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		// look for document
 		if (bStoreCAS) {
 			try {
-				ByteArrayOutputStream out = new ByteArrayOutputStream();
-				GZIPOutputStream zipOut = new GZIPOutputStream(out);
-				XmiCasSerializer ser = new XmiCasSerializer(
-						jcas.getTypeSystem());
-				XMLSerializer xmlSer = new XMLSerializer(zipOut, false);
-				ser.serialize(jcas.getCas(), xmlSer.getContentHandler());
-				zipOut.close();
-				doc.setCas(out.toByteArray());
-			} catch (Exception saxException) {
-				log.error("error serializing document cas", saxException);
+				doc.setCas(casFormat.serialize(jcas.getCas()));
+			} catch (Exception e) {
+				log.error("error serializing document cas", e);
 			}
 		}
 		return doc;
 	}
 
-	private void extractAndSaveDocKey(JCas jcas, Document doc) {
-		AnnotationIndex<Annotation> idx = jcas
-				.getAnnotationIndex(DocKey.typeIndexID);
-		FSIterator<Annotation> annoIterator = idx.iterator();
-		if (annoIterator.hasNext())
-			this.saveDocKey(doc, (DocKey) annoIterator.next());
-	}
-
 	/**
 	 * apply jxpath to object
 	 * 
@@ -624,9 +615,11 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 						.put(type.getName(), f.getShortName());
 			}
 		}
-		this.sessionFactory.getCurrentSession().doWork(new Work() {
+		// use jdbc - mapping info is loaded when the document is extracted,
+		// which need not happen within a transaction
+		this.jdbcTemplate.execute(new ConnectionCallback<Object>() {
 			@Override
-			public void execute(Connection conn) throws SQLException {
+			public Object doInConnection(Connection conn) throws SQLException {
 				ResultSet rs = null;
 
 				try {
@@ -724,6 +717,7 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 						}
 					}
 				}
+				return null;
 			}
 		});
 		// don't map this annotation if no fields match columns
@@ -772,154 +766,155 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 	}
 
 	/**
-	 * insert annotation containment links.
+	 * add annotation containment links. An annotation contains another if its
+	 * span includes the other's span, unless both have the same span and type.
+	 * <p>
+	 * Sort the annotations by begin, longest first, and sweep over them. The
+	 * active list holds the annotations that end at or after the current
+	 * annotation's begin; the active annotations that also end at or after
+	 * its end contain it.
 	 * 
-	 * @param documentId
+	 * @param mapAnnoToIndex
+	 *            saved annotations
+	 * @param rows
 	 */
-	private void insertAnnotationContainmentLinks(int documentId) {
+	private void extractAnnoContainmentLinks(
+			BiMap<Annotation, Integer> mapAnnoToIndex, DocumentRows rows) {
 		if (log.isTraceEnabled())
-			log.trace("begin insertAnnotationContainmentLinks");
-		Query q = sessionFactory.getCurrentSession().getNamedQuery(
-				"insertAnnotationContainmentLinks");
-		q.setInteger("documentID", documentId);
-		q.executeUpdate();
-		if (log.isTraceEnabled())
-			log.trace("end insertAnnotationContainmentLinks");
-	}
-
-	private BiMap<Annotation, Integer> saveAnnoBase(final JCas jcas,
-			final Set<String> setTypesToIgnore, final int docId) {
-		final AnnotationIndex<Annotation> annoIdx = jcas
-				.getAnnotationIndex(Annotation.typeIndexID);
-		final List<Annotation> listAnno = new ArrayList<Annotation>(
-				annoIdx.size());
-		final BiMap<Annotation, Integer> mapAnnoToId = HashBiMap.create();
-		final FSIterator<Annotation> annoIterator = annoIdx.iterator();
-		this.sessionFactory.getCurrentSession().doWork(new Work() {
-
+			log.trace("begin extractAnnoContainmentLinks");
+		String sql = "insert into "
+				+ getTablePrefix()
+				+ "anno_contain (parent_anno_base_id, parent_uima_type_id, child_anno_base_id, child_uima_type_id) values (?, ?, ?, ?)";
+		final int annoCount = mapAnnoToIndex.size();
+		final int[] begins = new int[annoCount];
+		final int[] ends = new int[annoCount];
+		int[] uimaTypeIds = new int[annoCount];
+		for (Map.Entry<Annotation, Integer> annoEntry : mapAnnoToIndex
+				.entrySet()) {
+			Annotation anno = annoEntry.getKey();
+			int annoIndex = annoEntry.getValue();
+			begins[annoIndex] = anno.getBegin();
+			ends[annoIndex] = anno.getEnd();
+			uimaTypeIds[annoIndex] = uimaTypeMap.get(anno.getClass().getName())
+					.getUimaTypeID();
+		}
+		Integer[] sorted = new Integer[annoCount];
+		for (int i = 0; i < annoCount; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, new Comparator<Integer>() {
 			@Override
-			public void execute(Connection conn) throws SQLException {
-				PreparedStatement ps = null;
-				ResultSet rs = null;
-				try {
-					ps = conn
-							.prepareStatement(
-									"insert into "
-											+ getTablePrefix()
-											+ "anno_base (document_id, span_begin, span_end, uima_type_id) values (?, ?, ?, ?)",
-									Statement.RETURN_GENERATED_KEYS);
-					while (annoIterator.hasNext()) {
-						Annotation anno = (Annotation) annoIterator.next();
-						String annoClass = anno.getClass().getName();
-						if (!setTypesToIgnore.contains(annoClass)
-								&& uimaTypeMap.containsKey(annoClass)) {
-							// should not ignore, and we know how to map this
-							// annotation
-							listAnno.add(anno);
-							ps.setInt(1, docId);
-							ps.setInt(2, anno.getBegin());
-							ps.setInt(3, anno.getEnd());
-							ps.setInt(4, uimaTypeMap.get(annoClass)
-									.getUimaTypeID());
-							ps.addBatch();
-						}
-					}
-					ps.executeBatch();
-					rs = ps.getGeneratedKeys();
-					int annoIndex = 0;
-					while (rs.next()) {
-						mapAnnoToId.put(listAnno.get(annoIndex), rs.getInt(1));
-						annoIndex++;
-					}
-				} catch (SQLException e) {
-					throw new RuntimeException(e);
-				} finally {
-					if (rs != null) {
-						try {
-							rs.close();
-						} catch (SQLException e) {
-						}
-					}
-					if (ps != null) {
-						try {
-							ps.close();
-						} catch (SQLException e) {
-						}
+			public int compare(Integer a1, Integer a2) {
+				if (begins[a1] != begins[a2])
+					return begins[a1] < begins[a2] ? -1 : 1;
+				return ends[a1] > ends[a2] ? -1 : (ends[a1] == ends[a2] ? 0
+						: 1);
+			}
+		});
+		int[] active = new int[annoCount];
+		int activeCount = 0;
+		for (int child : sorted) {
+			int nActive = 0;
+			for (int i = 0; i < activeCount; i++) {
+				int parent = active[i];
+				if (ends[parent] < begins[child]) {
+					// ends before this and all following annotations
+					continue;
+				}
+				active[nActive++] = parent;
+				if (ends[parent] >= ends[child]) {
+					boolean sameSpan = begins[parent] == begins[child]
+							&& ends[parent] == ends[child];
+					if (!sameSpan || uimaTypeIds[parent] != uimaTypeIds[child]) {
+						rows.addRow(sql, new Object[] { new AnnoRef(parent),
+								uimaTypeIds[parent], new AnnoRef(child),
+								uimaTypeIds[child] });
+						// an annotation with the same span sorts after
+						// its parent - it contains the parent as well
+						if (sameSpan)
+							rows.addRow(sql, new Object[] {
+									new AnnoRef(child), uimaTypeIds[child],
+									new AnnoRef(parent), uimaTypeIds[parent] });
 					}
 				}
 			}
-		});
-		return mapAnnoToId;
+			active[nActive++] = child;
+			activeCount = nActive;
+		}
+		if (log.isTraceEnabled())
+			log.trace("end extractAnnoContainmentLinks");
 	}
 
-	private BiMap<Annotation, Integer> saveAnnoBaseHib(JCas jcas,
-			Set<String> setTypesToIgnore, Document doc) {
+	/**
+	 * add an anno_base row for each annotation that should be saved.
+	 * 
+	 * @param jcas
+	 * @param setTypesToIgnore
+	 * @param rows
+	 *            document rows to populate
+	 * @return map of annotation to the index of the annotation in the document
+	 */
+	private BiMap<Annotation, Integer> extractAnnoBase(JCas jcas,
+			Set<String> setTypesToIgnore, DocumentRows rows) {
 		if (log.isTraceEnabled())
-			log.trace("begin saveAnnoBaseHib");
+			log.trace("begin extractAnnoBase");
+		String sql = "insert into "
+				+ getTablePrefix()
+				+ "anno_base (anno_base_id, document_id, span_begin, span_end, uima_type_id) values (?, ?, ?, ?, ?)";
 		AnnotationIndex<Annotation> annoIdx = jcas
 				.getAnnotationIndex(Annotation.typeIndexID);
-		List<Annotation> listAnno = new ArrayList<Annotation>(annoIdx.size());
-		Map<Annotation, DocumentAnnotation> mapAnnoToHib = new HashMap<Annotation, DocumentAnnotation>();
+		BiMap<Annotation, Integer> mapAnnoToIndex = HashBiMap.create();
 		FSIterator<Annotation> annoIterator = annoIdx.iterator();
-		int count = 0;
-		// iterate over annotations and save them
+		// iterate over annotations and add them
 		while (annoIterator.hasNext()) {
 			Annotation anno = (Annotation) annoIterator.next();
 			String annoClass = anno.getClass().getName();
 			if (!setTypesToIgnore.contains(annoClass)
 					&& this.uimaTypeMap.containsKey(annoClass)) {
 				// should not ignore, and we know how to map this annotation
-				listAnno.add(anno);
-				DocumentAnnotation hibAnno = new DocumentAnnotation();
-				hibAnno.setDocument(doc);
-				hibAnno.setBegin(anno.getBegin());
-				hibAnno.setEnd(anno.getEnd());
-				hibAnno.setUimaType(uimaTypeMap.get(annoClass));
-				sessionFactory.getCurrentSession().save(hibAnno);
-				if (++count % batchSize == 0)
-					sessionFactory.getCurrentSession().flush();
-				doc.getDocumentAnnotations().add(hibAnno);
-				mapAnnoToHib.put(anno, hibAnno);
+				int annoIndex = mapAnnoToIndex.size();
+				mapAnnoToIndex.put(anno, annoIndex);
+				rows.addRow(sql, new Object[] { new AnnoRef(annoIndex),
+						DocumentRows.DOCUMENT_ID, anno.getBegin(),
+						anno.getEnd(),
+						uimaTypeMap.get(annoClass).getUimaTypeID() });
 			}
 		}
-		sessionFactory.getCurrentSession().flush();
-		BiMap<Annotation, Integer> mapAnnoToId = HashBiMap.create();
-		for (Map.Entry<Annotation, DocumentAnnotation> e : mapAnnoToHib
-				.entrySet()) {
-			mapAnnoToId.put(e.getKey(), e.getValue().getDocumentAnnotationID());
-		}
+		rows.setAnnoCount(mapAnnoToIndex.size());
 		if (log.isTraceEnabled())
-			log.trace("end saveAnnoBaseHib");
-		return mapAnnoToId;
+			log.trace("end extractAnnoBase");
+		return mapAnnoToIndex;
 	}
 
 	/**
-	 * bind the variables to the prepared statement
+	 * get the bind variables for the insert statement of the mapped type
 	 * 
 	 * @param type
 	 * @param mapInfo
-	 * @param ps
-	 * @param annoId
+	 * @param annoIndex
+	 *            index of the annotation, used for the anno_base_id
 	 * @param anno
-	 * @throws SQLException
+	 * @param mapAnnoToIndex
+	 *            map to find the index of referenced annotations
+	 * @return bind variables
 	 */
-	private void saveAnnoBindVariables(final Type type,
-			final AnnoMappingInfo mapInfo, PreparedStatement ps, int annoId,
-			FeatureStructure anno, final BiMap<Annotation, Integer> mapAnnoToId)
-			throws SQLException {
+	private Object[] extractAnnoValues(final Type type,
+			final AnnoMappingInfo mapInfo, int annoIndex,
+			FeatureStructure anno,
+			final BiMap<Annotation, Integer> mapAnnoToIndex) {
+		List<Object> values = new ArrayList<Object>();
 		// set anno_base_id
-		int argIdx = 1;
-		ps.setInt(argIdx++, annoId);
+		values.add(new AnnoRef(annoIndex));
 		if (mapInfo.getCoveredTextColumn() != null) {
 			String trunc = null;
 			if (anno instanceof Annotation) {
 				trunc = truncateString(((Annotation) anno).getCoveredText(),
 						mapInfo.getCoveredTextColumn().getSize());
 			}
-			ps.setString(argIdx++, trunc);
+			values.add(stringValue(trunc));
 		}
 		if (!Strings.isNullOrEmpty(mapInfo.getUimaTypeIdColumnName())) {
-			ps.setInt(argIdx++, mapInfo.getUimaTypeId());
+			values.add(mapInfo.getUimaTypeId());
 		}
 		// iterate over fields
 		for (Map.Entry<String, ColumnMappingInfo> fieldEntry : mapInfo
@@ -930,10 +925,8 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 			if (fieldMapInfo.getConverter() != null) {
 				try {
 					String prop = anno.getFeatureValueAsString(feat);
-					ps.setObject(
-							argIdx,
-							fieldMapInfo.getConverter().convert(
-									fieldMapInfo.getTargetType(), prop));
+					values.add(fieldMapInfo.getConverter().convert(
+							fieldMapInfo.getTargetType(), prop));
 				} catch (Exception e) {
 					throw new RuntimeException(e);
 				}
@@ -942,7 +935,7 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 				FeatureStructure fs = anno.getFeatureValue(feat);
 				if (fs == null) {
 					// feature is null - set the column to null
-					ps.setNull(argIdx, fieldMapInfo.getSqlType());
+					values.add(new SqlNull(fieldMapInfo.getSqlType()));
 				} else {
 					if (fieldMapInfo.getJxpath() != null) {
 						// jxpath to pull out feature attribute
@@ -950,62 +943,67 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 								fieldMapInfo.getJxpath(), fs);
 						if (o == null) {
 							// extracted value null - set column to null
-							ps.setNull(argIdx, fieldMapInfo.getSqlType());
+							values.add(new SqlNull(fieldMapInfo.getSqlType()));
 						} else if (o instanceof String) {
 							// string - truncate as needed
-							String trunc = truncateString((String) o,
-									fieldMapInfo.getSize());
-							ps.setString(argIdx, trunc);
+							values.add(truncateString((String) o,
+									fieldMapInfo.getSize()));
 						} else {
 							// set value
-							ps.setObject(argIdx, o);
+							values.add(o);
 						}
 					} else {
 						// reference to another annotation - get the other
-						// anno's id
-						Integer refAnnoId = null;
+						// anno's index
+						Integer refAnnoIndex = null;
 						if (fs instanceof Annotation) {
-							refAnnoId = mapAnnoToId.get(fs);
+							refAnnoIndex = mapAnnoToIndex.get(fs);
 						}
-						if (refAnnoId != null) {
-							ps.setInt(argIdx, refAnnoId);
+						if (refAnnoIndex != null) {
+							values.add(new AnnoRef(refAnnoIndex));
 						} else {
-							ps.setNull(argIdx, Types.INTEGER);
+							values.add(new SqlNull(Types.INTEGER));
 						}
 					}
 				}
 			} else {
-				if ("uima.cas.Integer".equals(feat.getRange().getName())) {
-					ps.setInt(argIdx, anno.getIntValue(feat));
-				} else if ("uima.cas.Short".equals(feat.getRange().getName())) {
-					ps.setShort(argIdx, anno.getShortValue(feat));
-				} else if ("uima.cas.Long".equals(feat.getRange().getName())) {
-					ps.setLong(argIdx, anno.getLongValue(feat));
-				} else if ("uima.cas.Float".equals(feat.getRange().getName())) {
-					ps.setFloat(argIdx, anno.getFloatValue(feat));
-				} else if ("uima.cas.Double".equals(feat.getRange().getName())) {
-					ps.setDouble(argIdx, anno.getDoubleValue(feat));
-				} else if ("uima.cas.Byte".equals(feat.getRange().getName())) {
-					ps.setByte(argIdx, anno.getByteValue(feat));
-				} else if ("uima.cas.Boolean".equals(feat.getRange().getName())) {
-					ps.setBoolean(argIdx, anno.getBooleanValue(feat));
-				} else if ("uima.cas.String".equals(feat.getRange().getName())) {
-					String trunc = truncateString(anno.getStringValue(feat),
-							fieldMapInfo.getSize());
-					ps.setString(argIdx, trunc);
+				String rangeName = feat.getRange().getName();
+				if ("uima.cas.Integer".equals(rangeName)) {
+					values.add(anno.getIntValue(feat));
+				} else if ("uima.cas.Short".equals(rangeName)) {
+					values.add(anno.getShortValue(feat));
+				} else if ("uima.cas.Long".equals(rangeName)) {
+					values.add(anno.getLongValue(feat));
+				} else if ("uima.cas.Float".equals(rangeName)) {
+					values.add(anno.getFloatValue(feat));
+				} else if ("uima.cas.Double".equals(rangeName)) {
+					values.add(anno.getDoubleValue(feat));
+				} else if ("uima.cas.Byte".equals(rangeName)) {
+					values.add(anno.getByteValue(feat));
+				} else if ("uima.cas.Boolean".equals(rangeName)) {
+					values.add(anno.getBooleanValue(feat));
+				} else if ("uima.cas.String".equals(rangeName)) {
+					values.add(stringValue(truncateString(
+							anno.getStringValue(feat), fieldMapInfo.getSize())));
+				} else {
+					values.add(new SqlNull(fieldMapInfo.getSqlType()));
 				}
 			}
-			argIdx++;
 		}
+		return values.toArray();
 	}
 
 	/**
-	 * insert composite attributes.
+	 * add rows for composite attributes.
 	 * 
 	 * @param listFSA
+	 *            attributes, the annoBaseId is the index of the owning
+	 *            annotation
+	 * @param mapAnnoToIndex
+	 * @param rows
 	 */
-	private void saveAnnoFS(final List<AnnoFSAttribute> listFSA,
-			final BiMap<Annotation, Integer> mapAnnoToId) {
+	private void extractAnnoFS(final List<AnnoFSAttribute> listFSA,
+			final BiMap<Annotation, Integer> mapAnnoToIndex, DocumentRows rows) {
 		if (listFSA.size() == 0)
 			return;
 		FeatureStructure fs = listFSA.get(0).getFs();
@@ -1014,46 +1012,22 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		// don't know how to map this feature
 		if (mapInfo == null)
 			return;
-		// int chunks = (int) Math.ceil((double) listFSA.size()
-		// / (double) this.batchSize);
-		// for (int i = 0; i < chunks; i++) {
-		// int start = i * this.batchSize;
-		// int end = (i + 1) * this.batchSize;
-		// if (end > listFSA.size())
-		// end = listFSA.size();
-		// final List<AnnoFSAttribute> chunkList = listFSA.subList(start, end);
-		// jdbcTemplate.batchUpdate(mapInfo.getSql(),
-		// new BatchPreparedStatementSetter() {
-		//
-		// @Override
-		// public int getBatchSize() {
-		// return chunkList.size();
-		// }
-		//
-		// @Override
-		// public void setValues(PreparedStatement ps, int idx)
-		// throws SQLException {
-		// AnnoFSAttribute fsa = chunkList.get(idx);
-		// // todo pass array index for storage
-		// saveAnnoBindVariables(type, mapInfo, ps,
-		// fsa.getAnnoBaseId(), fsa.getFs(),
-		// mapAnnoToId);
-		// }
-		// });
-		// }
-		chunkedBatchUpdate(mapInfo.getSql(), listFSA,
-				new ChunkPreparedStatementSetter<AnnoFSAttribute>() {
-
-					@Override
-					public void setValues(PreparedStatement ps, int idx,
-							AnnoFSAttribute fsa) throws SQLException {
-						// todo pass array index for storage
-						saveAnnoBindVariables(type, mapInfo, ps,
-								fsa.getAnnoBaseId(), fsa.getFs(), mapAnnoToId);
-					}
-				});
+		for (AnnoFSAttribute fsa : listFSA) {
+			// todo pass array index for storage
+			rows.addRow(
+					mapInfo.getSql(),
+					extractAnnoValues(type, mapInfo, fsa.getAnnoBaseId(),
+							fsa.getFs(), mapAnnoToIndex));
+		}
 	}
 
+	/**
+	 * @param value
+	 * @return value, or a varchar null if the value is null
+	 */
+	private Object stringValue(String value) {
+		return value != null ? value : new SqlNull(Types.VARCHAR);
+	}
 	/**
 	 * @see #chunkedBatchUpdate
 	 * @author vijay
@@ -1103,78 +1077,49 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 	}
 
 	/**
-	 * save annotation to annotation links (many-to-many relationships)
+	 * add annotation to annotation links (many-to-many relationships)
 	 * 
 	 * @param listAnnoLinks
+	 *            links between annotation indices
+	 * @param rows
 	 */
-	private void saveAnnoLinks(final List<AnnoLink> listAnnoLinks) {
-		if (log.isTraceEnabled())
-			log.trace("begin saveAnnoLinks");
-		// jdbcTemplate
-		// .batchUpdate(
-		// "insert into "
-		// + this.getTablePrefix()
-		// +
-		// "anno_link(parent_anno_base_id, child_anno_base_id, feature) values (?, ?, ?)",
-		// new BatchPreparedStatementSetter() {
-		//
-		// @Override
-		// public int getBatchSize() {
-		// return listAnnoLinks.size();
-		// }
-		//
-		// @Override
-		// public void setValues(PreparedStatement ps, int idx)
-		// throws SQLException {
-		// AnnoLink l = listAnnoLinks.get(idx);
-		// ps.setInt(1, l.getParentAnnoBaseId());
-		// ps.setInt(2, l.getChildAnnoBaseId());
-		// ps.setString(3, l.getFeature());
-		// }
-		// });
-		chunkedBatchUpdate(
-				"insert into "
-						+ this.getTablePrefix()
-						+ "anno_link(parent_anno_base_id, child_anno_base_id, feature) values (?, ?, ?)",
-				listAnnoLinks, new ChunkPreparedStatementSetter<AnnoLink>() {
-
-					@Override
-					public void setValues(PreparedStatement ps, int idx,
-							AnnoLink l) throws SQLException {
-						ps.setInt(1, l.getParentAnnoBaseId());
-						ps.setInt(2, l.getChildAnnoBaseId());
-						ps.setString(3, l.getFeature());
-					}
-				});
-		if (log.isTraceEnabled())
-			log.trace("end saveAnnoLinks");
+	private void extractAnnoLinks(final List<AnnoLink> listAnnoLinks,
+			DocumentRows rows) {
+		String sql = "insert into "
+				+ this.getTablePrefix()
+				+ "anno_link(parent_anno_base_id, child_anno_base_id, feature) values (?, ?, ?)";
+		for (AnnoLink l : listAnnoLinks) {
+			rows.addRow(sql,
+					new Object[] { new AnnoRef(l.getParentAnnoBaseId()),
+							new AnnoRef(l.getChildAnnoBaseId()), l.getFeature() });
+		}
 	}
 
 	/**
-	 * save the annotation properties for a given type
+	 * add rows for the annotation properties of a given type
 	 * 
-	 * @param mapIdToAnno
-	 *            map of all annoIDs to Annotation
-	 * @param annoIds
-	 *            annotation ids for a single type
+	 * @param mapAnnoToIndex
+	 *            map of all annotations to their index
+	 * @param annoIndexes
+	 *            annotation indices for a single type
 	 * @param listAnnoLinks
 	 *            annotation to annotation links to save
+	 * @param rows
 	 */
-	private void saveAnnoPrimitive(
-			final BiMap<Annotation, Integer> mapAnnoToId,
-			final Set<Integer> annoIds, final List<AnnoLink> listAnnoLinks) {
+	private void extractAnnoPrimitive(
+			final BiMap<Annotation, Integer> mapAnnoToIndex,
+			final Set<Integer> annoIndexes, final List<AnnoLink> listAnnoLinks,
+			DocumentRows rows) {
 		if (log.isTraceEnabled())
-			log.trace("begin saveAnnoPrimitive");
-		final BiMap<Integer, Annotation> mapIdToAnno = mapAnnoToId.inverse();
+			log.trace("begin extractAnnoPrimitive");
+		final BiMap<Integer, Annotation> mapIndexToAnno = mapAnnoToIndex
+				.inverse();
 		// nothing to do
-		if (annoIds.size() == 0)
+		if (annoIndexes.size() == 0)
 			return;
-		// covert to array for spring batch update
-		// final Integer[] annoIdArray = annoIds.toArray(new Integer[] {});
-		final List<Integer> annoIdList = new ArrayList<Integer>(annoIds);
+		final List<Integer> annoIndexList = new ArrayList<Integer>(annoIndexes);
 		// get mappinginfo
-		// final TOP t = mapIdToAnno.get(annoIdArray[0]);
-		final TOP t = mapIdToAnno.get(annoIdList.get(0));
+		final TOP t = mapIndexToAnno.get(annoIndexList.get(0));
 		final Type type = t.getType();
 		final AnnoMappingInfo mapInfo = this.getMapInfo(t);
 		// get non primitive fields, insert them after inserting the annotation
@@ -1185,144 +1130,98 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		// don't know how to map this annotation
 		if (mapInfo == null)
 			return;
-		// jdbcTemplate.batchUpdate(mapInfo.getSql(),
-		// new BatchPreparedStatementSetter() {
-		//
-		// @Override
-		// public int getBatchSize() {
-		// return annoIdArray.length;
-		// }
-		this.chunkedBatchUpdate(mapInfo.getSql(), annoIdList,
-				new ChunkPreparedStatementSetter<Integer>() {
-
-					@Override
-					public void setValues(PreparedStatement ps, int idx,
-							Integer annoId) throws SQLException {
-						// get the entry
-						// int annoId = annoIdArray[idx];
-						Annotation anno = mapIdToAnno.get(annoId);
-						saveAnnoBindVariables(type, mapInfo, ps, annoId, anno,
-								mapAnnoToId);
-						// pull out the composite fields for storage
-						for (String fieldName : fsNames) {
-							Feature feat = type.getFeatureByBaseName(fieldName);
-							if (!feat.getRange().isPrimitive()) {
-								// handle arrays and lists
-								FeatureStructure fsCol = anno
-										.getFeatureValue(feat);
-								if (fsCol != null
-										&& (fsCol instanceof FSArray || fsCol instanceof FSList)) {
-									List<FeatureStructure> fsList = extractList(fsCol);
-									int i = 0;
-									for (FeatureStructure fs : fsList) {
-										if (fs instanceof Annotation) {
-											// annotations are linked via the
-											// anno_link table
-											Integer childAnnoId = mapAnnoToId
-													.get(fs);
-											if (childAnnoId != null) {
-												listAnnoLinks.add(new AnnoLink(
-														annoId, childAnnoId,
-														feat.getShortName()));
-											}
-										} else {
-											// featureStructs that are not
-											// annotations get stored in their
-											// own tables
-											// with a many to one relationship
-											// to the annotation
-											mapAnnoToFS.put(fs.getType()
-													.getName(),
-													new AnnoFSAttribute(annoId,
-															fs, i++));
-										}
-									}
+		for (Integer annoIndex : annoIndexList) {
+			Annotation anno = mapIndexToAnno.get(annoIndex);
+			rows.addRow(
+					mapInfo.getSql(),
+					extractAnnoValues(type, mapInfo, annoIndex, anno,
+							mapAnnoToIndex));
+			// pull out the composite fields for storage
+			for (String fieldName : fsNames) {
+				Feature feat = type.getFeatureByBaseName(fieldName);
+				if (!feat.getRange().isPrimitive()) {
+					// handle arrays and lists
+					FeatureStructure fsCol = anno.getFeatureValue(feat);
+					if (fsCol != null
+							&& (fsCol instanceof FSArray || fsCol instanceof FSList)) {
+						List<FeatureStructure> fsList = extractList(fsCol);
+						int i = 0;
+						for (FeatureStructure fs : fsList) {
+							if (fs instanceof Annotation) {
+								// annotations are linked via the
+								// anno_link table
+								Integer childAnnoIndex = mapAnnoToIndex.get(fs);
+								if (childAnnoIndex != null) {
+									listAnnoLinks.add(new AnnoLink(annoIndex,
+											childAnnoIndex, feat.getShortName()));
 								}
 							} else {
-								// handle primitive attributes
-								mapAnnoToFS.put(
-										feat.getRange().getName(),
-										new AnnoFSAttribute(annoId, anno
-												.getFeatureValue(feat), null));
+								// featureStructs that are not
+								// annotations get stored in their
+								// own tables
+								// with a many to one relationship
+								// to the annotation
+								mapAnnoToFS.put(fs.getType().getName(),
+										new AnnoFSAttribute(annoIndex, fs, i++));
 							}
 						}
 					}
+				} else {
+					// handle primitive attributes
+					mapAnnoToFS.put(feat.getRange().getName(),
+							new AnnoFSAttribute(annoIndex, anno
+									.getFeatureValue(feat), null));
 				}
-
-		);
+			}
+		}
 		for (String fsType : mapAnnoToFS.keySet()) {
-			this.saveAnnoFS(mapAnnoToFS.get(fsType), mapAnnoToId);
+			this.extractAnnoFS(mapAnnoToFS.get(fsType), mapAnnoToIndex, rows);
 		}
 		if (log.isTraceEnabled())
-			log.trace("end saveAnnoPrimitive");
+			log.trace("end extractAnnoPrimitive");
 	}
 
-	// private void saveAnnotations(JCas jcas, Set<String> setTypesToIgnore,
-	// int documentId) {
-	// BiMap<Annotation, Integer> mapAnnoToId = saveAnnoBase(jcas,
-	// setTypesToIgnore, documentId);
-	// // split the annotations up by type
-	// // create a map of class name to anno id
-	// SetMultimap<String, Integer> mapTypeToAnnoId = HashMultimap.create();
-	// for (Map.Entry<Annotation, Integer> annoEntry : mapAnnoToId.entrySet()) {
-	// mapTypeToAnnoId.put(annoEntry.getKey().getClass().getName(),
-	// annoEntry.getValue());
-	// }
-	// // allocate a list to store annotation links
-	// List<AnnoLink> listAnnoLinks = new ArrayList<AnnoLink>();
-	// // save annotation properties
-	// for (String annoClass : mapTypeToAnnoId.keySet()) {
-	// saveAnnoPrimitive(mapAnnoToId, mapTypeToAnnoId.get(annoClass),
-	// listAnnoLinks);
-	// }
-	// addAnnoLinks(jcas, mapAnnoToId, listAnnoLinks);
-	// // saveMarkablePairs(jcas, mapAnnoToId, listAnnoLinks);
-	// // saveCoref(jcas, mapAnnoToId, listAnnoLinks);
-	// saveAnnoLinks(listAnnoLinks);
-	// }
-
-	private void saveAnnotationsHib(JCas jcas,
+	private void extractAnnotations(JCas jcas,
 			boolean bInsertAnnotationContainmentLinks,
-			Set<String> setTypesToIgnore, Document doc) {
+			Set<String> setTypesToIgnore, DocumentRows rows) {
 		if (log.isTraceEnabled())
-			log.trace("begin saveAnnotationsHib");
-		BiMap<Annotation, Integer> mapAnnoToId = saveAnnoBaseHib(jcas,
-				setTypesToIgnore, doc);
+			log.trace("begin extractAnnotations");
+		BiMap<Annotation, Integer> mapAnnoToIndex = extractAnnoBase(jcas,
+				setTypesToIgnore, rows);
 		if (bInsertAnnotationContainmentLinks)
-			insertAnnotationContainmentLinks(doc.getDocumentID());
+			extractAnnoContainmentLinks(mapAnnoToIndex, rows);
 		// split the annotations up by type
-		// create a map of class name to anno id
-		SetMultimap<String, Integer> mapTypeToAnnoId = HashMultimap.create();
-		for (Map.Entry<Annotation, Integer> annoEntry : mapAnnoToId.entrySet()) {
-			mapTypeToAnnoId.put(annoEntry.getKey().getClass().getName(),
+		// create a map of class name to anno index
+		SetMultimap<String, Integer> mapTypeToAnnoIndex = HashMultimap
+				.create();
+		for (Map.Entry<Annotation, Integer> annoEntry : mapAnnoToIndex
+				.entrySet()) {
+			mapTypeToAnnoIndex.put(annoEntry.getKey().getClass().getName(),
 					annoEntry.getValue());
 		}
 		// allocate a list to store annotation links
 		List<AnnoLink> listAnnoLinks = new ArrayList<AnnoLink>();
-		// save annotation properties
-		for (String annoClass : mapTypeToAnnoId.keySet()) {
-			saveAnnoPrimitive(mapAnnoToId, mapTypeToAnnoId.get(annoClass),
-					listAnnoLinks);
+		// add annotation properties
+		for (String annoClass : mapTypeToAnnoIndex.keySet()) {
+			extractAnnoPrimitive(mapAnnoToIndex,
+					mapTypeToAnnoIndex.get(annoClass), listAnnoLinks, rows);
 		}
-		addAnnoLinks(jcas, mapAnnoToId, listAnnoLinks);
-		// saveMarkablePairs(jcas, mapAnnoToId, listAnnoLinks);
-		// saveCoref(jcas, mapAnnoToId, listAnnoLinks);
-		saveAnnoLinks(listAnnoLinks);
+		addAnnoLinks(jcas, mapAnnoToIndex, listAnnoLinks);
+		extractAnnoLinks(listAnnoLinks, rows);
 		if (log.isTraceEnabled())
-			log.trace("end saveAnnotationsHib");
+			log.trace("end extractAnnotations");
 	}
 
 	/**
-	 * update the document table - set key values from dockey for the give
-	 * document_id
+	 * add an update of the document table - set key values from dockey
 	 * 
-	 * @param document
-	 *            document
 	 * @param dk
 	 *            key
+	 * @param rows
+	 *            rows of the document
 	 */
-	private void saveDocKey(Document document, DocKey dk) {
-		int documentId = document.getDocumentID();
+	private void extractDocKey(DocKey dk, DocumentRows rows) {
+		Document document = rows.getDocument();
 		FSArray fsa = dk.getKeyValuePairs();
 		if (fsa == null || fsa.size() == 0)
 			return;
@@ -1353,7 +1252,7 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 				} else {
 					// invalid type for argument
 					badArg = true;
-					log.warn("document_id: " + documentId
+					log.warn("instance_key: " + document.getInstanceKey()
 							+ ", bad type for key=" + key + ", value="
 							+ kp.getValueString() == null ? kp.getValueLong()
 							: kp.getValueString());
@@ -1369,19 +1268,19 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 				}
 			} else {
 				// don't know what to do with this key attribute
-				log.warn("document_id: " + documentId
+				log.warn("instance_key: " + document.getInstanceKey()
 						+ ", could not map key attribute " + kp.getKey());
 			}
 		}
 		if (args.size() > 0) {
 			// have something to update - add the where condition
 			queryBuilder.append(" where document_id = ?");
-			args.add(documentId);
+			args.add(DocumentRows.DOCUMENT_ID);
 			String sql = queryBuilder.toString();
 			if (log.isDebugEnabled()) {
 				log.debug(sql);
 			}
-			jdbcTemplate.update(sql, args.toArray());
+			rows.addRow(sql, args.toArray());
 		}
 	}
 
@@ -1396,35 +1295,157 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 			final boolean bStoreDocText, final boolean bStoreCAS,
 			final boolean bInsertAnnotationContainmentLinks,
 			final Set<String> setTypesToIgnore) {
+		return saveDocument(jcas, analysisBatch, bStoreDocText, bStoreCAS,
+				CasStorageFormat.XMI, bInsertAnnotationContainmentLinks,
+				setTypesToIgnore);
+	}
+
+	public Integer saveDocument(JCas jcas, String analysisBatch,
+			boolean bStoreDocText, boolean bStoreCAS,
+			CasStorageFormat casFormat,
+			boolean bInsertAnnotationContainmentLinks,
+			Set<String> setTypesToIgnore) {
 		if (log.isTraceEnabled())
 			log.trace("begin saveDocument");
-		// communicate options to mappers using thread local variable
+		DocumentRows rows = extractDocument(jcas, analysisBatch, bStoreDocText,
+				bStoreCAS, casFormat, bInsertAnnotationContainmentLinks,
+				setTypesToIgnore);
+		Integer documentId = saveDocuments(Collections.singletonList(rows))
+				.get(0);
+		if (log.isTraceEnabled())
+			log.trace("end saveDocument");
+		return documentId;
+	}
+
+	public DocumentRows extractDocument(JCas jcas, String analysisBatch,
+			boolean bStoreDocText, boolean bStoreCAS,
+			CasStorageFormat casFormat,
+			boolean bInsertAnnotationContainmentLinks,
+			Set<String> setTypesToIgnore) {
+		if (log.isTraceEnabled())
+			log.trace("begin extractDocument");
+		DocumentRows rows = new DocumentRows(createDocument(jcas,
+				analysisBatch, bStoreDocText, bStoreCAS, casFormat));
+		extractAnnotations(jcas, bInsertAnnotationContainmentLinks,
+				setTypesToIgnore, rows);
+		AnnotationIndex<Annotation> idx = jcas
+				.getAnnotationIndex(DocKey.typeIndexID);
+		FSIterator<Annotation> annoIterator = idx.iterator();
+		if (annoIterator.hasNext())
+			this.extractDocKey((DocKey) annoIterator.next(), rows);
+		if (log.isTraceEnabled())
+			log.trace("end extractDocument");
+		return rows;
+	}
+
+	/**
+	 * Save the documents, then insert the rows of all documents with one
+	 * chunked batch per statement. The anno_base ids are allocated from the
+	 * hibernate id generator of DocumentAnnotation, so that we don't depend
+	 * on generated keys being returned in batch order.
+	 */
+	public List<Integer> saveDocuments(final List<DocumentRows> listDocumentRows) {
+		if (log.isTraceEnabled())
+			log.trace("begin saveDocuments");
 		final DefaultTransactionDefinition txDef = new DefaultTransactionDefinition(
 				TransactionDefinition.PROPAGATION_REQUIRES_NEW);
 		txDef.setIsolationLevel("orcl".equals(this.dbType) ? TransactionDefinition.ISOLATION_READ_COMMITTED
 				: TransactionDefinition.ISOLATION_READ_UNCOMMITTED);
 		final TransactionTemplate txTemplate = new TransactionTemplate(
 				this.getTransactionManager(), txDef);
-		final int documentId = txTemplate
-				.execute(new TransactionCallback<Integer>() {
+		final List<Integer> documentIds = txTemplate
+				.execute(new TransactionCallback<List<Integer>>() {
 
 					@Override
-					public Integer doInTransaction(TransactionStatus arg0) {
-						Document doc = createDocument(jcas, analysisBatch,
-								bStoreDocText, bStoreCAS);
-						sessionFactory.getCurrentSession().save(doc);
-						// make sure the document has been saved
-						getSessionFactory().getCurrentSession().flush();
-						saveAnnotationsHib(jcas,
-								bInsertAnnotationContainmentLinks,
-								setTypesToIgnore, doc);
-						extractAndSaveDocKey(jcas, doc);
-						return doc.getDocumentID();
+					public List<Integer> doInTransaction(TransactionStatus arg0) {
+						Session session = sessionFactory.getCurrentSession();
+						IdentifierGenerator annoIdGenerator = ((SessionFactoryImplementor) sessionFactory)
+								.getIdentifierGenerator(DocumentAnnotation.class
+										.getName());
+						List<Integer> documentIds = new ArrayList<Integer>(
+								listDocumentRows.size());
+						// rows of all documents, keyed by statement
+						Map<String, List<Object[]>> mapSqlToRows = new LinkedHashMap<String, List<Object[]>>();
+						for (DocumentRows rows : listDocumentRows) {
+							session.save(rows.getDocument());
+							int documentId = rows.getDocument().getDocumentID();
+							int annoIds[] = new int[rows.getAnnoCount()];
+							for (int i = 0; i < annoIds.length; i++) {
+								annoIds[i] = ((Number) annoIdGenerator.generate(
+										(SessionImplementor) session, null))
+										.intValue();
+							}
+							resolveRows(rows, documentId, annoIds, mapSqlToRows);
+							documentIds.add(documentId);
+						}
+						// make sure the documents have been saved
+						session.flush();
+						for (Map.Entry<String, List<Object[]>> sqlRows : mapSqlToRows
+								.entrySet()) {
+							chunkedBatchUpdate(sqlRows.getKey(),
+									sqlRows.getValue(),
+									new ChunkPreparedStatementSetter<Object[]>() {
+
+										@Override
+										public void setValues(
+												PreparedStatement ps, int idx,
+												Object[] row)
+												throws SQLException {
+											for (int i = 0; i < row.length; i++) {
+												if (row[i] instanceof SqlNull) {
+													ps.setNull(i + 1,
+															((SqlNull) row[i])
+																	.getSqlType());
+												} else {
+													ps.setObject(i + 1, row[i]);
+												}
+											}
+										}
+									});
+						}
+						return documentIds;
 					}
 				});
 		if (log.isTraceEnabled())
-			log.trace("end saveDocument");
-		return documentId;
+			log.trace("end saveDocuments");
+		return documentIds;
+	}
+
+	/**
+	 * replace the anno_base_id and document_id references of the document's
+	 * rows with the ids, and add them to the rows of their statement
+	 * 
+	 * @param rows
+	 * @param documentId
+	 * @param annoIds
+	 *            anno_base_id of each annotation of the document
+	 * @param mapSqlToRows
+	 *            rows of all documents
+	 */
+	private void resolveRows(DocumentRows rows, int documentId,
+			int[] annoIds, Map<String, List<Object[]>> mapSqlToRows) {
+		for (Map.Entry<String, List<Object[]>> sqlRows : rows
+				.getMapSqlToRows().entrySet()) {
+			List<Object[]> resolvedRows = mapSqlToRows.get(sqlRows.getKey());
+			if (resolvedRows == null) {
+				resolvedRows = new ArrayList<Object[]>();
+				mapSqlToRows.put(sqlRows.getKey(), resolvedRows);
+			}
+			for (Object[] row : sqlRows.getValue()) {
+				Object[] resolvedRow = new Object[row.length];
+				for (int i = 0; i < row.length; i++) {
+					if (row[i] instanceof AnnoRef) {
+						resolvedRow[i] = annoIds[((AnnoRef) row[i])
+								.getAnnoIndex()];
+					} else if (row[i] == DocumentRows.DOCUMENT_ID) {
+						resolvedRow[i] = documentId;
+					} else {
+						resolvedRow[i] = row[i];
+					}
+				}
+				resolvedRows.add(resolvedRow);
+			}
+		}
 	}
 
 	/**
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.uima.mapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ctakes.ytex.uima.model.Document;
+
+/**
+ * A document and its annotations converted to plain insert/update statement
+ * rows, so that they can be saved without access to the CAS - e.g. by a
+ * write-behind thread after the CAS has been reset.
+ * <p>
+ * Ids are not known until the rows are saved. Row values refer to an
+ * annotation's anno_base_id with an {@link AnnoRef} holding the annotation's
+ * index in this document, and to the document_id with {@link #DOCUMENT_ID}.
+ * Null values are represented by a {@link SqlNull} with the column's sql type.
+ */
+public class DocumentRows {
+	/**
+	 * reference to the anno_base_id of an annotation of this document
+	 */
+	public static class AnnoRef {
+		private int annoIndex;
+
+		public AnnoRef(int annoIndex) {
+			this.annoIndex = annoIndex;
+		}
+
+		public int getAnnoIndex() {
+			return annoIndex;
+		}
+	}
+
+	/**
+	 * null column value
+	 */
+	public static class SqlNull {
+		private int sqlType;
+
+		public SqlNull(int sqlType) {
+			this.sqlType = sqlType;
+		}
+
+		public int getSqlType() {
+			return sqlType;
+		}
+	}
+
+	/**
+	 * placeholder for the document_id of this document
+	 */
+	public static final Object DOCUMENT_ID = new Object() {
+		@Override
+		public String toString() {
+			return "DOCUMENT_ID";
+		}
+	};
+
+	private int annoCount;
+	private Document document;
+	/**
+	 * sql statement to rows, in the order the statements must be executed
+	 */
+	private Map<String, List<Object[]>> mapSqlToRows = new LinkedHashMap<String, List<Object[]>>();
+
+	public DocumentRows(Document document) {
+		this.document = document;
+	}
+
+	/**
+	 * add a row to the rows of the given statement
+	 * 
+	 * @param sql
+	 *            insert or update statement
+	 * @param row
+	 *            bind variables
+	 */
+	public void addRow(String sql, Object[] row) {
+		List<Object[]> rows = mapSqlToRows.get(sql);
+		if (rows == null) {
+			rows = new ArrayList<Object[]>();
+			mapSqlToRows.put(sql, rows);
+		}
+		rows.add(row);
+	}
+
+	/**
+	 * @return number of annotations that need an anno_base_id
+	 */
+	public int getAnnoCount() {
+		return annoCount;
+	}
+
+	/**
+	 * @return the document to save, without a document_id
+	 */
+	public Document getDocument() {
+		return document;
+	}
+
+	public Map<String, List<Object[]>> getMapSqlToRows() {
+		return mapSqlToRows;
+	}
+
+	public void setAnnoCount(int annoCount) {
+		this.annoCount = annoCount;
+	}
+}
@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.uima.mapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Saves documents asynchronously. Documents converted to rows by
+ * {@link DocumentMapperService#extractDocument} are put on a bounded queue,
+ * which is drained by writer threads. Each writer saves the documents
+ * available on the queue, up to commitSize, in a single transaction with
+ * {@link DocumentMapperService#saveDocuments}.
+ * <p>
+ * {@link #put} blocks when the queue is full, so the pipeline can't run ahead
+ * of the database by more than queueSize documents. {@link #close} waits for
+ * all queued documents to be saved. If a writer fails, all writers stop and
+ * the error is rethrown by the current or next call to put or close. Documents
+ * still queued at that point are not saved.
+ */
+public class WriteBehindDocumentWriter {
+	private static final Log log = LogFactory
+			.getLog(WriteBehindDocumentWriter.class);
+
+	/**
+	 * queued once per writer thread to stop it
+	 */
+	private static final DocumentRows END_OF_QUEUE = new DocumentRows(null);
+
+	/**
+	 * how long to wait on the queue before checking for a failed writer
+	 */
+	private static final long WAIT_MILLIS = 100;
+
+	private int commitSize;
+	private DocumentMapperService documentMapperService;
+	private BlockingQueue<DocumentRows> queue;
+	private volatile Throwable writeException;
+	private List<Thread> writerThreads = new ArrayList<Thread>();
+
+	/**
+	 * start the writer threads
+	 * 
+	 * @param documentMapperService
+	 * @param nWriterThreads
+	 *            number of writer threads
+	 * @param queueSize
+	 *            maximum number of documents waiting to be saved
+	 * @param commitSize
+	 *            maximum number of documents saved in a single transaction
+	 */
+	public WriteBehindDocumentWriter(
+			DocumentMapperService documentMapperService, int nWriterThreads,
+			int queueSize, int commitSize) {
+		this.documentMapperService = documentMapperService;
+		this.queue = new ArrayBlockingQueue<DocumentRows>(queueSize);
+		this.commitSize = commitSize;
+		for (int i = 0; i < nWriterThreads; i++) {
+			Thread t = new Thread(new Writer(), "ytex-document-writer-" + i);
+			t.setDaemon(true);
+			t.start();
+			writerThreads.add(t);
+		}
+	}
+
+	/**
+	 * wait for the queued documents to be saved, and stop the writer threads.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void close() throws InterruptedException {
+		for (int i = 0; i < writerThreads.size(); i++) {
+			if (!offer(END_OF_QUEUE))
+				break;
+		}
+		for (Thread t : writerThreads) {
+			t.join();
+		}
+		writerThreads.clear();
+		checkWriteException();
+	}
+
+	/**
+	 * queue a document for saving; blocks while the queue is full.
+	 * 
+	 * @param rows
+	 * @throws InterruptedException
+	 */
+	public void put(DocumentRows rows) throws InterruptedException {
+		checkWriteException();
+		if (!offer(rows))
+			checkWriteException();
+	}
+
+	/**
+	 * queue rows, waiting while the queue is full.
+	 * 
+	 * @param rows
+	 * @return false if a writer failed before the rows could be queued
+	 * @throws InterruptedException
+	 */
+	private boolean offer(DocumentRows rows) throws InterruptedException {
+		while (!queue.offer(rows, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+			if (writeException != null)
+				return false;
+		}
+		return true;
+	}
+
+	private void checkWriteException() {
+		Throwable t = writeException;
+		if (t instanceof RuntimeException)
+			throw (RuntimeException) t;
+		if (t != null)
+			throw new RuntimeException("error saving documents", t);
+	}
+
+	private synchronized void setWriteException(Throwable t) {
+		if (writeException == null)
+			writeException = t;
+	}
+
+	private class Writer implements Runnable {
+		@Override
+		public void run() {
+			List<DocumentRows> batch = new ArrayList<DocumentRows>(commitSize);
+			try {
+				// stop draining as soon as any writer has failed
+				while (writeException == null) {
+					DocumentRows rows = queue.poll(WAIT_MILLIS,
+							TimeUnit.MILLISECONDS);
+					if (rows == null)
+						continue;
+					if (rows == END_OF_QUEUE)
+						return;
+					batch.add(rows);
+					queue.drainTo(batch, commitSize - 1);
+					// stop markers meant for other writers are put back after
+					// saving what we have
+					int nEnd = 0;
+					while (batch.remove(END_OF_QUEUE))
+						nEnd++;
+					documentMapperService.saveDocuments(batch);
+					if (log.isDebugEnabled())
+						log.debug("saved " + batch.size() + " documents");
+					batch.clear();
+					for (int i = 0; i < nEnd; i++) {
+						if (!offer(END_OF_QUEUE))
+							return;
+					}
+				}
+				if (!queue.isEmpty())
+					log.warn("another document writer failed, queued documents not saved");
+			} catch (InterruptedException e) {
+				log.warn("document writer interrupted, "
+						+ (batch.size() + queue.size())
+						+ " documents not saved");
+				setWriteException(e);
+			} catch (Throwable t) {
+				log.error("error saving " + batch.size() + " documents", t);
+				setWriteException(t);
+			}
+		}
+	}
+}
@@ -20,7 +20,10 @@ package org.apache.ctakes.ytex.uima;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import org.apache.ctakes.ytex.dao.DBUtil;
 import org.apache.ctakes.ytex.uima.annotators.DBConsumer;
@@ -40,6 +43,8 @@ import com.google.common.base.Strings;
 public class TestUtils {
 	static final String queryGetDocumentKeys = "select note_id instance_id from %s%s";
 	static final String queryGetDocument = "select note_text from %s%s where note_id = :instance_id";
+	static final String queryGetDocumentCasKeys = "select document_id from %sdocument where instance_id = %s";
+	static final String queryGetDocumentCas = "select cas from %sdocument where document_id = :document_id";
 
 	public static void addDescriptor(AggregateBuilder builder, String path)
 			throws IOException, InvalidXMLException {
@@ -66,6 +71,17 @@ public class TestUtils {
 	public static AnalysisEngine createTokenizerAE(String analysisBatch)
 			throws IOException, InvalidXMLException,
 			ResourceInitializationException {
+		return createTokenizerAE(analysisBatch, new Object[] {});
+	}
+
+	/**
+	 * @see #createTokenizerAE(String)
+	 * @param dbConsumerParams
+	 *            additional DBConsumer parameter names and values
+	 */
+	public static AnalysisEngine createTokenizerAE(String analysisBatch,
+			Object... dbConsumerParams) throws IOException,
+			InvalidXMLException, ResourceInitializationException {
 		String dbAnalysisBatch = analysisBatch;
 		if (Strings.isNullOrEmpty(dbAnalysisBatch))
 			dbAnalysisBatch = "test-" + System.currentTimeMillis();
@@ -75,9 +91,12 @@ public class TestUtils {
 				"desc/analysis_engine/SentenceDetectorAnnotator.xml");
 		addDescriptor(builder,
 				"../ctakes-core/desc/analysis_engine/TokenizerAnnotator.xml");
+		List<Object> params = new ArrayList<Object>(Arrays.asList(
+				"analysisBatch", dbAnalysisBatch, "storeDocText", false,
+				"storeCAS", true));
+		params.addAll(Arrays.asList(dbConsumerParams));
 		builder.add(AnalysisEngineFactory.createEngineDescription(
-				DBConsumer.class, "analysisBatch", dbAnalysisBatch,
-				"storeDocText", false, "storeCAS", true));
+				DBConsumer.class, params.toArray()));
 		AnalysisEngine engine = builder.createAggregate();
 		return engine;
 	}
@@ -97,4 +116,18 @@ public class TestUtils {
 								DBUtil.formatTableName("fracture_demo")));
 		return colReader;
 	}
+
+	/**
+	 * @param instanceId
+	 *            document.instance_id
+	 * @return reader that loads the cas stored for the document
+	 */
+	public static CollectionReader getDocumentCasCollectionReader(
+			long instanceId) throws ResourceInitializationException {
+		return CollectionReaderFactory.createReader(DBCollectionReader.class,
+				"queryGetDocumentKeys", String.format(queryGetDocumentCasKeys,
+						DBUtil.getYTEXTablePrefix(), instanceId),
+				"queryGetDocument", String.format(queryGetDocumentCas,
+						DBUtil.getYTEXTablePrefix()), "loadCAS", true);
+	}
 }
@@ -20,14 +20,19 @@ package org.apache.ctakes.ytex.uima.annotators;
 
 import java.io.IOException;
 
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
 import org.apache.ctakes.ytex.uima.TestUtils;
+import org.apache.ctakes.ytex.uima.mapper.CasStorageFormat;
 import org.apache.ctakes.ytex.uima.types.DocKey;
+import org.apache.ctakes.ytex.uima.types.KeyValuePair;
 import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.cas.CASRuntimeException;
 import org.apache.uima.cas.admin.CASAdminException;
 import org.apache.uima.collection.CollectionReader;
 import org.apache.uima.collection.metadata.CpeDescriptorException;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSArray;
 import org.junit.Assert;
 import org.junit.Test;
 import org.apache.uima.fit.factory.JCasFactory;
@@ -50,6 +55,53 @@ public class DBCollectionReaderTest {
 		Assert.assertTrue("should have read some documents", count > 0);
 	}
 
-
+	/**
+	 * Verify that a cas stored by the DBConsumer is loaded with its
+	 * annotations, for each storage format.
+	 */
+	@Test
+	public void testLoadCAS() throws IOException, UIMAException {
+		long key = System.currentTimeMillis() * 10 + 5;
+		for (CasStorageFormat casFormat : CasStorageFormat.values()) {
+			String text = "Dr. Doolitle asked patient to take a deep breath. Patient coughed.";
+			AnalysisEngine engine = TestUtils.createTokenizerAE(null,
+					"casFormat", casFormat.name());
+			JCas jCas = engine.newJCas();
+			jCas.setDocumentText(text);
+			DocKey docKey = new DocKey(jCas);
+			KeyValuePair kvp = new KeyValuePair(jCas);
+			kvp.setKey("instance_id");
+			kvp.setValueLong(key);
+			FSArray fsa = new FSArray(jCas, 1);
+			fsa.set(0, kvp);
+			docKey.setKeyValuePairs(fsa);
+			docKey.addToIndexes();
+			engine.process(jCas);
+			int nTokens = jCas.getAnnotationIndex(WordToken.type).size();
+			Assert.assertTrue(nTokens > 0);
+			jCas.reset();
+			CollectionReader colReader = TestUtils
+					.getDocumentCasCollectionReader(key);
+			Assert.assertTrue(colReader.hasNext());
+			colReader.getNext(jCas.getCas());
+			Assert.assertEquals(casFormat.name(), text, jCas.getDocumentText());
+			Assert.assertEquals(casFormat.name(), nTokens, jCas
+					.getAnnotationIndex(WordToken.type).size());
+			// the stored DocKey is replaced by the one read from the key query
+			Assert.assertEquals(casFormat.name(), 1, jCas
+					.getAnnotationIndex(DocKey.type).size());
+			DocKey loadedKey = (DocKey) jCas.getAnnotationIndex(DocKey.type)
+					.iterator().next();
+			Assert.assertEquals(casFormat.name(), 1, loadedKey
+					.getKeyValuePairs().size());
+			Assert.assertEquals(casFormat.name(), "document_id",
+					((KeyValuePair) loadedKey.getKeyValuePairs(0)).getKey()
+							.toLowerCase());
+			Assert.assertFalse(colReader.hasNext());
+			colReader.destroy();
+			engine.destroy();
+			key++;
+		}
+	}
 
 }
@@ -19,7 +19,11 @@
 package org.apache.ctakes.ytex.uima.annotators;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
@@ -149,4 +153,108 @@ public class DBConsumerTest {
 		Assert.assertTrue(query, jt.queryForObject(query,Integer.class) > 1);
 	}
 
+	/**
+	 * Verify that all documents queued by a write-behind DBConsumer are saved
+	 * when the collection is complete, even though the cas is reused.
+	 * 
+	 * @throws UIMAException
+	 * @throws Exception
+	 */
+	@Test
+	public void testWriteBehind() throws UIMAException, IOException {
+		String text = "Title: US Abdomen\n\nDr. Doolitle asked patient\nto take a deep breath\nand exhale slowly.  Patient coughed.  Prescribed acetominophen";
+		int nDocs = 7;
+		AnalysisEngine engine = TestUtils.createTokenizerAE(null,
+				"writeBehind", true, "writerThreads", 2,
+				"writeBehindQueueSize", 2, "commitSize", 3);
+		JCas jCas = engine.newJCas();
+		long key = System.currentTimeMillis() * 10;
+		for (int i = 0; i < nDocs; i++) {
+			jCas.reset();
+			jCas.setDocumentText(text);
+			DocKey docKey = new DocKey(jCas);
+			KeyValuePair kvp = new KeyValuePair(jCas);
+			kvp.setKey("instance_id");
+			kvp.setValueLong(key + i);
+			FSArray fsa = new FSArray(jCas, 1);
+			fsa.set(0, kvp);
+			docKey.setKeyValuePairs(fsa);
+			docKey.addToIndexes();
+			engine.process(jCas);
+		}
+		// wait for the writer threads
+		engine.collectionProcessComplete();
+		DataSource ds = ctx.getBean(DataSource.class);
+		Properties ytexProperties = (Properties) ctx.getBean("ytexProperties");
+		String schema = ytexProperties.getProperty("db.schema");
+		String schemaPrefix = Strings.isNullOrEmpty(schema) ? "" : schema + ".";
+		JdbcTemplate jt = new JdbcTemplate(ds);
+		String query = String.format(
+				"select count(*) from %sdocument where instance_id >= %s and instance_id < %s",
+				schemaPrefix, key, key + nDocs);
+		Assert.assertEquals(query, nDocs,
+				jt.queryForObject(query, Integer.class).intValue());
+		query = String
+				.format("select count(distinct d.document_id) from %sdocument d inner join %sanno_base ab on ab.document_id = d.document_id inner join %sanno_token s on s.anno_base_id = ab.anno_base_id where d.instance_id >= %s and d.instance_id < %s",
+						schemaPrefix, schemaPrefix, schemaPrefix, key, key
+								+ nDocs);
+		Assert.assertEquals(query, nDocs,
+				jt.queryForObject(query, Integer.class).intValue());
+		query = String
+				.format("select count(distinct d.document_id) from %sdocument d inner join %sanno_base ab on ab.document_id = d.document_id inner join %sanno_contain ac on ac.parent_anno_base_id = ab.anno_base_id where d.instance_id >= %s and d.instance_id < %s",
+						schemaPrefix, schemaPrefix, schemaPrefix, key, key
+								+ nDocs);
+		Assert.assertEquals(query, nDocs,
+				jt.queryForObject(query, Integer.class).intValue());
+	}
+
+	/**
+	 * Verify that the containment links computed from the cas are the same as
+	 * the links found by joining anno_base with itself.
+	 * 
+	 * @throws UIMAException
+	 * @throws Exception
+	 */
+	@Test
+	public void testAnnotationContainmentLinks() throws UIMAException,
+			IOException {
+		String text = "Title: US Abdomen\n\nDr. Doolitle asked patient\nto take a deep breath\nand exhale slowly.  Patient coughed.  Prescribed acetominophen";
+		AnalysisEngine engine = TestUtils.createTokenizerAE(null);
+		JCas jCas = engine.newJCas();
+		jCas.setDocumentText(text);
+		long key = System.currentTimeMillis() * 10 + 9;
+		DocKey docKey = new DocKey(jCas);
+		KeyValuePair kvp = new KeyValuePair(jCas);
+		kvp.setKey("instance_id");
+		kvp.setValueLong(key);
+		FSArray fsa = new FSArray(jCas, 1);
+		fsa.set(0, kvp);
+		docKey.setKeyValuePairs(fsa);
+		docKey.addToIndexes();
+		engine.process(jCas);
+		DataSource ds = ctx.getBean(DataSource.class);
+		Properties ytexProperties = (Properties) ctx.getBean("ytexProperties");
+		String schema = ytexProperties.getProperty("db.schema");
+		String schemaPrefix = Strings.isNullOrEmpty(schema) ? "" : schema + ".";
+		JdbcTemplate jt = new JdbcTemplate(ds);
+		String query = String
+				.format("select ac.parent_anno_base_id, ac.parent_uima_type_id, ac.child_anno_base_id, ac.child_uima_type_id from %sanno_contain ac inner join %sanno_base ab on ab.anno_base_id = ac.child_anno_base_id inner join %sdocument d on d.document_id = ab.document_id where d.instance_id = %s",
+						schemaPrefix, schemaPrefix, schemaPrefix, key);
+		Set<String> links = toSet(jt.queryForList(query));
+		query = String
+				.format("select p.anno_base_id parent_anno_base_id, p.uima_type_id parent_uima_type_id, c.anno_base_id child_anno_base_id, c.uima_type_id child_uima_type_id from %sanno_base p inner join %sanno_base c on p.document_id = c.document_id inner join %sdocument d on d.document_id = p.document_id where d.instance_id = %s and p.span_begin <= c.span_begin and p.span_end >= c.span_end and p.anno_base_id <> c.anno_base_id and not (p.span_begin = c.span_begin and p.span_end = c.span_end and p.uima_type_id = c.uima_type_id)",
+						schemaPrefix, schemaPrefix, schemaPrefix, key);
+		Set<String> expectedLinks = toSet(jt.queryForList(query));
+		Assert.assertFalse(expectedLinks.isEmpty());
+		Assert.assertEquals(expectedLinks, links);
+	}
+
+	private Set<String> toSet(List<Map<String, Object>> rows) {
+		Set<String> set = new HashSet<String>();
+		for (Map<String, Object> row : rows) {
+			set.add(row.values().toString());
+		}
+		return set;
+	}
+
 }
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.uima.mapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.uima.jcas.JCas;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WriteBehindDocumentWriterTest {
+
+	/**
+	 * saves documents in memory, throwing the given error once failAfter
+	 * documents have been saved
+	 */
+	private static class SavingService implements DocumentMapperService {
+		private final List<DocumentRows> saved = Collections
+				.synchronizedList(new ArrayList<DocumentRows>());
+		private final int failAfter;
+		private final Error error;
+
+		SavingService(int failAfter, Error error) {
+			this.failAfter = failAfter;
+			this.error = error;
+		}
+
+		@Override
+		public List<Integer> saveDocuments(List<DocumentRows> listDocumentRows) {
+			if (error != null && saved.size() + listDocumentRows.size() > failAfter)
+				throw error;
+			saved.addAll(listDocumentRows);
+			return new ArrayList<Integer>();
+		}
+
+		@Override
+		public Integer saveDocument(JCas jcas, String analysisBatch,
+				boolean bStoreDocText, boolean bStoreCAS,
+				boolean bInsertAnnotationContainmentLinks,
+				Set<String> typesToIgnore) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Integer saveDocument(JCas jcas, String analysisBatch,
+				boolean bStoreDocText, boolean bStoreCAS,
+				CasStorageFormat casFormat,
+				boolean bInsertAnnotationContainmentLinks,
+				Set<String> typesToIgnore) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public DocumentRows extractDocument(JCas jcas, String analysisBatch,
+				boolean bStoreDocText, boolean bStoreCAS,
+				CasStorageFormat casFormat,
+				boolean bInsertAnnotationContainmentLinks,
+				Set<String> typesToIgnore) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testSaveAll() throws InterruptedException {
+		SavingService service = new SavingService(0, null);
+		WriteBehindDocumentWriter writer = new WriteBehindDocumentWriter(
+				service, 3, 2, 4);
+		for (int i = 0; i < 50; i++) {
+			writer.put(new DocumentRows(null));
+		}
+		writer.close();
+		Assert.assertEquals(50, service.saved.size());
+	}
+
+	@Test(timeout = 20000)
+	public void testErrorStopsPut() throws InterruptedException {
+		AssertionError error = new AssertionError("no more connections");
+		SavingService service = new SavingService(3, error);
+		WriteBehindDocumentWriter writer = new WriteBehindDocumentWriter(
+				service, 2, 1, 1);
+		try {
+			// with a queue of one document, put blocks until the failure
+			for (int i = 0; i < 100; i++) {
+				writer.put(new DocumentRows(null));
+			}
+			Assert.fail("a failed save should be rethrown by put");
+		} catch (RuntimeException e) {
+			Assert.assertSame(error, e.getCause());
+		}
+		try {
+			writer.close();
+			Assert.fail("a failed save should be rethrown by close");
+		} catch (RuntimeException e) {
+			Assert.assertSame(error, e.getCause());
+		}
+		Assert.assertEquals(3, service.saved.size());
+	}
+}
@@ -52,6 +52,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.ctakes.ytex.kernel.FileUtil;
 import org.apache.ctakes.ytex.kernel.IntrinsicInfoContentEvaluator;
 import org.apache.ctakes.ytex.kernel.KernelContextHolder;
+import org.apache.ctakes.ytex.kernel.model.CompactConceptGraph;
 import org.apache.ctakes.ytex.kernel.model.ConcRel;
 import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
 import org.hibernate.SessionFactory;
@@ -354,10 +355,12 @@ public class ConceptDaoImpl implements ConceptDao {
 	public ConceptGraph getConceptGraph(String name) {
 		ConceptGraph cg = this.readConceptGraph(name);
 		if (cg != null) {
-			this.initializeConceptGraph(cg);
+			// a compact graph builds its ConcRel view on demand
+			if (cg.getCompactGraph() == null)
+				this.initializeConceptGraph(cg);
 			if (log.isInfoEnabled()) {
 				log.info(String.format("concept graph %s, vertices: %s", name,
-						cg.getConceptList().size()));
+						cg.getNodeCount()));
 			}
 		}
 		return cg;
@@ -478,7 +481,58 @@ public class ConceptDaoImpl implements ConceptDao {
 		return cg;
 	}
 
+	/**
+	 * load the concept graph. prefer the compact format ([name].cgb), fall
+	 * back to the serialized format ([name].gz). A compact graph is not
+	 * expanded into ConcRel objects unless the concept list or map is used.
+	 */
 	private ConceptGraph readConceptGraph(String name) {
+		CompactConceptGraph ccg = readCompactConceptGraph(name);
+		if (ccg != null)
+			return ccg.toConceptGraph();
+		return readSerializedConceptGraph(name);
+	}
+
+	/**
+	 * load the compact concept graph from the classpath or the default
+	 * concept graph directory. files are memory mapped.
+	 * 
+	 * @return null if there is no compact concept graph with this name
+	 */
+	private CompactConceptGraph readCompactConceptGraph(String name) {
+		String resName = CONCEPT_GRAPH_PATH + name
+				+ CompactConceptGraph.FILE_EXTENSION;
+		try {
+			URL url = this.getClass().getClassLoader().getResource(resName);
+			if (url != null) {
+				log.info("loading concept graph from " + url);
+				File f = urlToFile(url);
+				if (f != null)
+					return CompactConceptGraph.map(f);
+				InputStream resIs = url.openStream();
+				try {
+					return CompactConceptGraph.read(resIs);
+				} finally {
+					resIs.close();
+				}
+			}
+			String cdir = this.getDefaultConceptGraphDir();
+			if (cdir != null) {
+				File f = new File(cdir + "/" + name
+						+ CompactConceptGraph.FILE_EXTENSION);
+				if (f.exists()) {
+					log.info("loading concept graph from "
+							+ f.getAbsolutePath());
+					return CompactConceptGraph.map(f);
+				}
+			}
+			return null;
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+	}
+
+	private ConceptGraph readSerializedConceptGraph(String name) {
 		ObjectInputStream is = null;
 		try {
 			// try loading from classpath
@@ -608,6 +662,14 @@ public class ConceptDaoImpl implements ConceptDao {
 					e.printStackTrace();
 				}
 		}
+		File ccgFile = new File(outputDir + "/" + name
+				+ CompactConceptGraph.FILE_EXTENSION);
+		log.info("writing compact concept graph: " + ccgFile.getAbsolutePath());
+		try {
+			CompactConceptGraph.write(cg, ccgFile);
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
 	}
 
 }
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.dao;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ctakes.ytex.kernel.model.CompactConceptGraph;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
+
+/**
+ * convert a serialized concept graph ([name].gz) to the compact format
+ * ([name].cgb). {@link ConceptDaoImpl} picks up the compact file if it sits
+ * next to the serialized one.
+ *
+ * <pre>
+ * java org.apache.ctakes.ytex.kernel.dao.ConceptGraphConverter in.gz [out.cgb]
+ * </pre>
+ */
+public class ConceptGraphConverter {
+	private static final Log log = LogFactory
+			.getLog(ConceptGraphConverter.class);
+
+	public static void main(String args[]) throws IOException,
+			ClassNotFoundException {
+		if (args.length < 1 || args.length > 2) {
+			System.out.println("java " + ConceptGraphConverter.class.getName()
+					+ " <concept graph .gz> [<compact concept graph .cgb>]");
+			return;
+		}
+		File in = new File(args[0]);
+		File out;
+		if (args.length > 1) {
+			out = new File(args[1]);
+		} else {
+			String path = in.getPath();
+			if (path.endsWith(".gz"))
+				path = path.substring(0, path.length() - ".gz".length());
+			out = new File(path + CompactConceptGraph.FILE_EXTENSION);
+		}
+		convert(in, out);
+	}
+
+	public static void convert(File in, File out) throws IOException,
+			ClassNotFoundException {
+		log.info("reading concept graph: " + in.getAbsolutePath());
+		ConceptGraph cg;
+		ObjectInputStream is = new ObjectInputStream(new BufferedInputStream(
+				new GZIPInputStream(new FileInputStream(in))));
+		try {
+			cg = (ConceptGraph) is.readObject();
+		} finally {
+			is.close();
+		}
+		log.info("writing compact concept graph: " + out.getAbsolutePath()
+				+ ", vertices: " + cg.getConceptList().size());
+		CompactConceptGraph.write(cg, out);
+	}
+}
@@ -200,5 +200,46 @@ public interface ConceptSimilarityService {
 			List<ConceptPair> conceptPairs, List<SimilarityMetricEnum> metrics,
 			Map<String, Double> conceptFilter, boolean lcs);
 
+	/**
+	 * receives the results of
+	 * {@link ConceptSimilarityService#similarity(List, List, Map, boolean, int, SimilaritySink)}
+	 * . Calls are serialized, so implementations need not be thread safe.
+	 */
+	public interface SimilaritySink {
+		/**
+		 * @param index
+		 *            index of the concept pair in the input list
+		 * @param similarity
+		 *            similarities for the concept pair
+		 */
+		public void similarity(int index, ConceptPairSimilarity similarity);
+	}
+
+	/**
+	 * compute similarity for a large list of concept pairs on multiple
+	 * threads. Pairs with the same concepts share their lcs through the lcs
+	 * cache, as long as it is still cached. Results are passed to the sink as
+	 * they are computed, i.e. not in input order.
+	 * 
+	 * @param conceptPairs
+	 *            required, concept pairs for which similarity should be
+	 *            computed
+	 * @param metrics
+	 *            required, similarity metrics to compute
+	 * @param conceptFilter
+	 *            optional - only lcs's in this set will be used.
+	 * @param lcs
+	 *            compute lcs paths
+	 * @param threads
+	 *            number of threads; 0 or less to use all processors
+	 * @param sink
+	 *            required, receives the similarities
+	 * @return throughput in concept pairs per second
+	 */
+	public double similarity(List<ConceptPair> conceptPairs,
+			List<SimilarityMetricEnum> metrics,
+			Map<String, Double> conceptFilter, boolean lcs, int threads,
+			SimilaritySink sink);
+
 	public abstract int getDepth(String concept);
 }
\ No newline at end of file
@@ -38,6 +38,13 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
@@ -59,7 +66,6 @@ import org.apache.ctakes.ytex.kernel.OrderedPair;
 import org.apache.ctakes.ytex.kernel.SimSvcContextHolder;
 import org.apache.ctakes.ytex.kernel.dao.ClassifierEvaluationDao;
 import org.apache.ctakes.ytex.kernel.dao.ConceptDao;
-import org.apache.ctakes.ytex.kernel.model.ConcRel;
 import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
 import org.apache.ctakes.ytex.kernel.model.FeatureRank;
 import org.apache.ctakes.ytex.kernel.pagerank.PageRankService;
@@ -79,6 +85,15 @@ import com.google.common.collect.ImmutableMap;
 public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 	private static final Log log = LogFactory
 			.getLog(ConceptSimilarityServiceImpl.class);
+	/**
+	 * number of concept pairs a thread takes at a time in bulk similarity
+	 * computations
+	 */
+	private static final int BULK_CHUNK_SIZE = 1024;
+	/**
+	 * log bulk similarity throughput every this many concept pairs
+	 */
+	private static final int BULK_LOG_INTERVAL = 100000;
 
 	private static String formatPaths(List<LCSPath> lcsPaths) {
 		StringBuilder b = new StringBuilder();
@@ -120,6 +135,12 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 		options.addOption(OptionBuilder.withArgName("lcs")
 				.withDescription("output lcs and path for each concept pair")
 				.create("lcs"));
+		options.addOption(OptionBuilder
+				.withArgName("threads")
+				.hasArg()
+				.withDescription(
+						"compute similarities on the specified number of threads (0 for all processors), writing each concept pair as soon as it is done.  Output is not in input order.")
+				.create("threads"));
 		try {
 			CommandLineParser parser = new GnuParser();
 			CommandLine line = parser.parse(options, args);
@@ -127,6 +148,7 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 			String metrics = line.getOptionValue("metrics");
 			String out = line.getOptionValue("out");
 			boolean lcs = line.hasOption("lcs");
+			String threads = line.getOptionValue("threads");
 			PrintStream os = null;
 			try {
 				if (out != null) {
@@ -140,12 +162,27 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 				ConceptSimilarityService simSvc = SimSvcContextHolder
 						.getApplicationContext().getBean(
 								ConceptSimilarityService.class);
-				List<SimilarityInfo> simInfos = lcs ? new ArrayList<SimilarityInfo>(
-						conceptPairs.size()) : null;
-				List<ConceptPairSimilarity> conceptSimMap = simSvc.similarity(
-						conceptPairs, metricList, null, lcs);
-				printSimilarities(conceptPairs, conceptSimMap, metricList,
-						simInfos, lcs, os);
+				if (threads != null) {
+					final boolean printLcs = lcs;
+					final PrintStream sinkOs = os;
+					printHeader(metricList, lcs, os);
+					simSvc.similarity(conceptPairs, metricList, null, lcs,
+							Integer.parseInt(threads), new SimilaritySink() {
+								@Override
+								public void similarity(int index,
+										ConceptPairSimilarity similarity) {
+									printSimilarity(similarity, printLcs,
+											sinkOs);
+								}
+							});
+				} else {
+					List<SimilarityInfo> simInfos = lcs ? new ArrayList<SimilarityInfo>(
+							conceptPairs.size()) : null;
+					List<ConceptPairSimilarity> conceptSimMap = simSvc
+							.similarity(conceptPairs, metricList, null, lcs);
+					printSimilarities(conceptPairs, conceptSimMap, metricList,
+							simInfos, lcs, os);
+				}
 				// try {
 				// Thread.sleep(60*1000);
 				// } catch (InterruptedException e) {
@@ -216,7 +253,15 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 			List<ConceptPairSimilarity> conceptSimList,
 			List<SimilarityMetricEnum> metricList,
 			List<SimilarityInfo> simInfos, boolean lcs, PrintStream os) {
-		// print header
+		printHeader(metricList, lcs, os);
+		// print content
+		for (ConceptPairSimilarity csim : conceptSimList) {
+			printSimilarity(csim, lcs, os);
+		}
+	}
+
+	private static void printHeader(List<SimilarityMetricEnum> metricList,
+			boolean lcs, PrintStream os) {
 		os.print("Concept 1\tConcept 2");
 		for (SimilarityMetricEnum metric : metricList) {
 			os.print("\t");
@@ -226,45 +271,51 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 			os.print("\tlcs(s)\tcorpus lcs\tintrinsic lcs\tpaths");
 		}
 		os.println();
-		// print content
-		for (ConceptPairSimilarity csim : conceptSimList) {
-			ConceptPair p = csim.getConceptPair();
-			os.print(p.getConcept1());
+	}
+
+	private static void printSimilarity(ConceptPairSimilarity csim,
+		boolean lcs, PrintStream os) {
+		ConceptPair p = csim.getConceptPair();
+		os.print(p.getConcept1());
+		os.print("\t");
+		os.print(p.getConcept2());
+		for (Double sim : csim.getSimilarities()) {
 			os.print("\t");
-			os.print(p.getConcept2());
-			for (Double sim : csim.getSimilarities()) {
-				os.print("\t");
-				if (sim != null)
-					os.print(String.format("%6f", sim));
-				else
-					os.print(0d);
-			}
-			if (lcs) {
-				SimilarityInfo simInfo = csim.getSimilarityInfo();
-				os.print("\t");
-				Iterator<String> lcsIter = simInfo.getLcses().iterator();
-				while (lcsIter.hasNext()) {
-					os.print(lcsIter.next());
-					if (lcsIter.hasNext())
-						os.print('|');
-				}
-				os.print("\t");
-				os.print(simInfo.getCorpusLcs() == null ? "" : simInfo
-						.getCorpusLcs());
-				os.print("\t");
-				os.print(simInfo.getIntrinsicLcs() == null ? "" : simInfo
-						.getIntrinsicLcs());
-				os.print("\t");
-				os.print(formatPaths(simInfo.getLcsPaths()));
+			if (sim != null)
+				os.print(String.format("%6f", sim));
+			else
+				os.print(0d);
+		}
+		if (lcs) {
+			SimilarityInfo simInfo = csim.getSimilarityInfo();
+			os.print("\t");
+			Iterator<String> lcsIter = simInfo.getLcses().iterator();
+			while (lcsIter.hasNext()) {
+				os.print(lcsIter.next());
+				if (lcsIter.hasNext())
+					os.print('|');
 			}
-			os.println();
+			os.print("\t");
+			os.print(simInfo.getCorpusLcs() == null ? "" : simInfo
+					.getCorpusLcs());
+			os.print("\t");
+			os.print(simInfo.getIntrinsicLcs() == null ? "" : simInfo
+					.getIntrinsicLcs());
+			os.print("\t");
+			os.print(formatPaths(simInfo.getLcsPaths()));
 		}
+		os.println();
 	}
 
 	private CacheManager cacheManager;
 
 	private ConceptGraph cg = null;
 
+	/**
+	 * lcs search over node indices of cg
+	 */
+	private LCSEngine lcsEngine = null;
+
 	private ClassifierEvaluationDao classifierEvaluationDao;
 
 	private ConceptDao conceptDao;
@@ -528,9 +579,9 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 		// if (frMap.containsKey(concept))
 		// return frMap.get(concept).getRank();
 		// }
-		ConcRel cr = this.cg.getConceptMap().get(concept);
-		if (cr != null)
-			return cr.getDepth();
+		int node = this.cg.getNodeIndex(concept);
+		if (node >= 0)
+			return this.cg.getDepth(node);
 		return 0;
 	}
 
@@ -538,9 +589,9 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 	public double getIC(String concept, boolean intrinsicICMap) {
 		double ic = 0d;
 		if (intrinsicICMap) {
-			ConcRel cr = this.cg.getConceptMap().get(concept);
-			if (cr != null)
-				ic = cr.getIntrinsicInfoContent();
+			int node = this.cg.getNodeIndex(concept);
+			if (node >= 0)
+				ic = this.cg.getIntrinsicInfoContent(node);
 		} else {
 			Double icC = null;
 			if (isPreload()) {
@@ -616,13 +667,13 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 	public int getLCS(String concept1, String concept2, Set<String> lcses,
 			List<LCSPath> lcsPaths) {
 		int lcsDist = 0;
-		ConcRel cr1 = getConceptGraph().getConceptMap().get(concept1);
-		ConcRel cr2 = getConceptGraph().getConceptMap().get(concept2);
-		if (cr1 != null && cr2 != null) {
+		boolean found1 = getConceptGraph().getNodeIndex(concept1) >= 0;
+		boolean found2 = getConceptGraph().getNodeIndex(concept2) >= 0;
+		if (found1 && found2) {
 			lcses.clear();
 			if (lcsPaths == null) {
 				// no need to get paths which we don't cache - look in the cache
-				lcsDist = getLCSFromCache(cr1, cr2, lcses);
+				lcsDist = getLCSFromCache(concept1, concept2, lcses);
 			} else {
 				lcsPaths.clear();
 				// need to get paths - compute the lcses and their paths
@@ -633,9 +684,9 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 			}
 		} else {
 			if (log.isDebugEnabled()) {
-				if (cr1 == null)
+				if (!found1)
 					log.debug("could not find concept:" + concept1);
-				if (cr2 == null)
+				if (!found2)
 					log.debug("could not find concept:" + concept2);
 			}
 		}
@@ -647,14 +698,13 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 	}
 
 	@SuppressWarnings("unchecked")
-	private int getLCSFromCache(ConcRel cr1, ConcRel cr2, Set<String> lcses) {
+	private int getLCSFromCache(String concept1, String concept2,
+			Set<String> lcses) {
+		// key on the unordered pair, the lesser concept first
+		boolean ordered = concept1.compareTo(concept2) < 0;
 		StringBuilder cacheKeyBuilder = new StringBuilder(this.conceptGraphName);
-		cacheKeyBuilder
-				.append(cr1.getConceptID().compareTo(cr2.getConceptID()) < 0 ? cr1
-						.getConceptID() : cr2.getConceptID());
-		cacheKeyBuilder
-				.append(cr1.getConceptID().compareTo(cr2.getConceptID()) >= 0 ? cr2
-						.getConceptID() : cr1.getConceptID());
+		cacheKeyBuilder.append('\t').append(ordered ? concept1 : concept2);
+		cacheKeyBuilder.append('\t').append(ordered ? concept2 : concept1);
 		String cacheKey = cacheKeyBuilder.toString();
 		Element e = this.lcsCache != null ? this.lcsCache.get(cacheKey) : null;
 		if (e != null) {
@@ -669,15 +719,14 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 		} else {
 			// missed the cache - save the lcs
 			Object[] val = null;
-			Set<ConcRel> lcsCRSet = new HashSet<ConcRel>(2);
-			int dist = ConcRel.getLeastCommonConcept(cr1, cr2, lcsCRSet, null);
+			int dist = lcsEngine.getLeastCommonConcept(concept1, concept2,
+					lcses, null);
 			if (dist >= 0) {
 				val = new Object[2];
 				val[0] = dist;
-				for (ConcRel cr : lcsCRSet) {
-					lcses.add(cr.getConceptID());
-				}
-				val[1] = lcses;
+				// the cached set is read by other threads, keep it apart from
+				// the caller's set
+				val[1] = new HashSet<String>(lcses);
 			}
 			if (this.lcsCache != null) {
 				e = new Element(cacheKey, val);
@@ -714,6 +763,7 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 		if (cg == null) {
 			log.warn("concept graph null, name: " + conceptGraphName);
 		} else {
+			lcsEngine = LCSEngine.forGraph(cg);
 			initSimilarityMetricMap();
 			if (isPreload()) {
 				try {
@@ -826,9 +876,8 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 		}
 		ImmutableMap.Builder<String, Double> mb = new ImmutableMap.Builder<String, Double>();
 		for (Map.Entry<String, Double> corpusICEntry : corpusICMap.entrySet()) {
-			ConcRel cr = cg.getConceptMap().get(corpusICEntry.getKey());
-			if (cr != null) {
-				mb.put(cr.getConceptID(), corpusICEntry.getValue());
+			if (cg.getNodeIndex(corpusICEntry.getKey()) >= 0) {
+				mb.put(corpusICEntry.getKey(), corpusICEntry.getValue());
 			}
 		}
 		this.corpusICMap = mb.build();
@@ -894,16 +943,8 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 	}
 
 	public int lcs(String concept1, String concept2, List<LCSPath> lcsPaths) {
-		ConcRel cr1 = cg.getConceptMap().get(concept1);
-		ConcRel cr2 = cg.getConceptMap().get(concept2);
-		int dist = -1;
-		if (cr1 != null && cr2 != null) {
-			Set<ConcRel> crlcses = new HashSet<ConcRel>();
-			Map<ConcRel, LCSPath> crpaths = new HashMap<ConcRel, LCSPath>();
-			dist = ConcRel.getLeastCommonConcept(cr1, cr2, crlcses, crpaths);
-			lcsPaths.addAll(crpaths.values());
-		}
-		return dist;
+		return lcsEngine.getLeastCommonConcept(concept1, concept2,
+				new HashSet<String>(), lcsPaths);
 	}
 
 	// /*
@@ -1073,15 +1114,100 @@ public class ConceptSimilarityServiceImpl implements ConceptSimilarityService {
 		return conceptSimMap;
 	}
 
-	/**
-	 * 
-	 */
+	@Override
+	public double similarity(final List<ConceptPair> conceptPairs,
+			final List<SimilarityMetricEnum> metrics,
+			final Map<String, Double> conceptFilter, final boolean lcs,
+			int threads, final SimilaritySink sink) {
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		// concept pairs that share concepts share their lcs through the
+		// bounded lcs cache, not through a per run map that would grow with
+		// the number of distinct pairs
+		final AtomicInteger nextChunk = new AtomicInteger();
+		final AtomicLong pairsDone = new AtomicLong();
+		final long start = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>(
+					threads);
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						int chunk;
+						// threads grab chunks of pairs until all are done
+						while ((chunk = nextChunk.getAndIncrement())
+								* BULK_CHUNK_SIZE < conceptPairs.size()) {
+							int begin = chunk * BULK_CHUNK_SIZE;
+							int end = Math.min(conceptPairs.size(), begin
+									+ BULK_CHUNK_SIZE);
+							for (int i = begin; i < end; i++) {
+								ConceptPair pair = conceptPairs.get(i);
+								ConceptPairSimilarity csim = similarity(
+										metrics, pair.getConcept1(),
+										pair.getConcept2(), conceptFilter, lcs);
+								synchronized (sink) {
+									sink.similarity(i, csim);
+								}
+							}
+							long done = pairsDone.addAndGet(end - begin);
+							// log when we cross a multiple of the interval
+							if (log.isInfoEnabled()
+									&& done / BULK_LOG_INTERVAL != (done - end + begin)
+											/ BULK_LOG_INTERVAL) {
+								log.info(String.format(
+										"%d/%d concept pairs, %.0f pairs/s",
+										done, conceptPairs.size(),
+										pairsPerSecond(done, start)));
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Object> future : futures) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		double pairsPerSecond = pairsPerSecond(pairsDone.get(), start);
+		if (log.isInfoEnabled()) {
+			log.info(String.format(
+					"computed similarity for %d concept pairs, %.0f pairs/s",
+					pairsDone.get(), pairsPerSecond));
+		}
+		return pairsPerSecond;
+	}
+
+	private static double pairsPerSecond(long pairs, long start) {
+		return pairs * 1000d
+				/ Math.max(1, System.currentTimeMillis() - start);
+	}
+
 	@Override
 	public ConceptPairSimilarity similarity(List<SimilarityMetricEnum> metrics,
 			String concept1, String concept2,
 			Map<String, Double> conceptFilter, boolean lcs) {
-		// allocate simInfo if this isn't provided
-		SimilarityInfo simInfo = new SimilarityInfo();
+		return similarity(metrics, concept1, concept2, conceptFilter, lcs,
+				new SimilarityInfo());
+	}
+
+	/**
+	 * 
+	 */
+	private ConceptPairSimilarity similarity(List<SimilarityMetricEnum> metrics,
+			String concept1, String concept2,
+			Map<String, Double> conceptFilter, boolean lcs,
+			SimilarityInfo simInfo) {
 		if (lcs)
 			simInfo.setLcsPaths(new ArrayList<LCSPath>(1));
 		// allocate result map
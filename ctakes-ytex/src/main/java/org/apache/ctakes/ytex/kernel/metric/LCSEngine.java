@@ -0,0 +1,461 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.metric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ctakes.ytex.kernel.model.CompactConceptGraph;
+import org.apache.ctakes.ytex.kernel.model.ConcRel;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
+
+/**
+ * least common subsumer search on node indices.
+ * <p/>
+ * Implements the same dual breadth-first search as
+ * {@link ConcRel#getLeastCommonConcept(ConcRel, ConcRel, Set, java.util.Map)}
+ * , but over a CSR parent array. The visited/distance/frontier arrays are
+ * allocated once per thread and reset in constant time by stamping each entry
+ * with the number of the current search (epoch), so a search does not
+ * allocate anything besides its results.
+ * <p/>
+ * Optionally, {@link #buildAncestorIndex()} computes interval labels (a
+ * post-order number and the minimum post-order number of all descendants) that
+ * answer most negative {@link #isAncestor(int, int)} queries without a
+ * traversal.
+ */
+public class LCSEngine {
+
+	/**
+	 * per-thread scratch space for one side of the search
+	 */
+	private static class Side {
+		int[] visited;
+		int[] dist;
+		int[] queued;
+		int[] pred;
+		int[] frontier;
+		int frontierSize;
+		int[] next;
+		int nextSize;
+		int[] added;
+		int addedSize;
+
+		Side(int n) {
+			visited = new int[n];
+			dist = new int[n];
+			queued = new int[n];
+			pred = new int[n];
+			frontier = new int[n];
+			next = new int[n];
+			added = new int[n];
+		}
+	}
+
+	private static class Scratch {
+		int epoch = 0;
+		final Side side1;
+		final Side side2;
+		final int[] candidate;
+		final int[] newCandidates;
+		final int[] lcses;
+		int lcsCount;
+
+		Scratch(int n) {
+			side1 = new Side(n);
+			side2 = new Side(n);
+			candidate = new int[n];
+			newCandidates = new int[n];
+			lcses = new int[n];
+		}
+
+		int nextEpoch() {
+			if (++epoch == Integer.MAX_VALUE) {
+				// wrap around - clear the stamps
+				for (Side side : new Side[] { side1, side2 }) {
+					Arrays.fill(side.visited, 0);
+					Arrays.fill(side.queued, 0);
+				}
+				Arrays.fill(candidate, 0);
+				epoch = 1;
+			}
+			return epoch;
+		}
+	}
+
+	/**
+	 * create an engine for the specified graph. Uses the parent arrays of the
+	 * compact graph if available, else the ConcRel parents.
+	 */
+	public static LCSEngine forGraph(ConceptGraph cg) {
+		CompactConceptGraph ccg = cg.getCompactGraph();
+		int[][] csr;
+		// graphs without depth keep their parents as unresolved arrays; the
+		// ConcRel search sees no parents there, so neither do we
+		if (ccg != null && cg.getDepthMax() > 0) {
+			csr = ccg.getParentCsr();
+		} else if (ccg != null) {
+			csr = new int[][] { new int[ccg.getNodeCount() + 1], new int[0] };
+		} else {
+			List<ConcRel> concepts = cg.getConceptList();
+			int[] offsets = new int[concepts.size() + 1];
+			for (int i = 0; i < concepts.size(); i++)
+				offsets[i + 1] = offsets[i]
+						+ concepts.get(i).getParents().size();
+			int[] parents = new int[offsets[concepts.size()]];
+			for (int i = 0; i < concepts.size(); i++) {
+				int j = offsets[i];
+				for (ConcRel parent : concepts.get(i).getParents())
+					parents[j++] = parent.getNodeIndex();
+			}
+			csr = new int[][] { offsets, parents };
+		}
+		return new LCSEngine(cg, csr[0], csr[1]);
+	}
+
+	private final ConceptGraph cg;
+	private final int nodeCount;
+	private final int[] parentOffsets;
+	private final int[] parents;
+	private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch(nodeCount);
+		}
+	};
+	/**
+	 * post order number of each node, null if the ancestor index was not built
+	 */
+	private volatile int[] postOrder;
+	/**
+	 * minimum post order number over each node's descendants
+	 */
+	private volatile int[] minPostOrder;
+
+	public LCSEngine(ConceptGraph cg, int[] parentOffsets, int[] parents) {
+		this.cg = cg;
+		this.nodeCount = parentOffsets.length - 1;
+		this.parentOffsets = parentOffsets;
+		this.parents = parents;
+	}
+
+	/**
+	 * @return node index of the concept, -1 if it is not in the graph
+	 */
+	public int getNodeIndex(String conceptId) {
+		return cg.getNodeIndex(conceptId);
+	}
+
+	public String getConceptId(int node) {
+		return cg.getConceptId(node);
+	}
+
+	/**
+	 * compute the least common subsumers of 2 concepts.
+	 *
+	 * @param concept1
+	 * @param concept2
+	 * @param lcses
+	 *            least common subsumers, required
+	 * @param lcsPaths
+	 *            paths between concepts via lcses, optional.
+	 * @return path length, -1 if no lcs or either concept is not in the graph
+	 */
+	public int getLeastCommonConcept(String concept1, String concept2,
+			Set<String> lcses, List<LCSPath> lcsPaths) {
+		int node1 = getNodeIndex(concept1);
+		int node2 = getNodeIndex(concept2);
+		if (node1 < 0 || node2 < 0)
+			return -1;
+		Scratch s = scratch.get();
+		int dist = search(s, node1, node2);
+		for (int i = 0; i < s.lcsCount; i++) {
+			int lcs = s.lcses[i];
+			lcses.add(getConceptId(lcs));
+			if (lcsPaths != null) {
+				LCSPath lcsPath = new LCSPath();
+				lcsPath.setLcs(getConceptId(lcs));
+				lcsPath.setConcept1Path(path(s.side1, node1, lcs));
+				lcsPath.setConcept2Path(path(s.side2, node2, lcs));
+				lcsPaths.add(lcsPath);
+			}
+		}
+		return dist;
+	}
+
+	/**
+	 * dual breadth first search, see ConcRel.getLeastCommonConcept for the
+	 * reasoning behind the termination criteria.
+	 */
+	private int search(Scratch s, int node1, int node2) {
+		int epoch = s.nextEpoch();
+		Side s1 = s.side1;
+		Side s2 = s.side2;
+		start(s1, node1, epoch);
+		start(s2, node2, epoch);
+		s.lcsCount = 0;
+		int maxIter = -1;
+		int dist = 0;
+		int minDist = Integer.MAX_VALUE - 1;
+		while ((s1.frontierSize > 0 || s2.frontierSize > 0) && maxIter != 0) {
+			expand(s1, dist, epoch);
+			expand(s2, dist, epoch);
+			// nodes reached by both searches that are not yet candidates
+			int newCount = collectCandidates(s, s1, s2, epoch, 0);
+			newCount = collectCandidates(s, s2, s1, epoch, newCount);
+			if (newCount > 0) {
+				// candidates' parents are not searched any further
+				for (int i = 0; i < newCount; i++) {
+					removeParents(s.newCandidates[i], s1);
+					removeParents(s.newCandidates[i], s2);
+				}
+				compactFrontier(s1, epoch);
+				compactFrontier(s2, epoch);
+				for (int i = 0; i < newCount; i++) {
+					int lcs = s.newCandidates[i];
+					int distTmp = s1.dist[lcs] + s2.dist[lcs] + 1;
+					if (distTmp <= minDist) {
+						if (distTmp < minDist)
+							s.lcsCount = 0;
+						minDist = distTmp;
+						s.lcses[s.lcsCount++] = lcs;
+					}
+					int minLcsToConceptLen = Math.min(s1.dist[lcs],
+							s2.dist[lcs]);
+					if (maxIter < 0 || maxIter > minLcsToConceptLen)
+						maxIter = minLcsToConceptLen;
+				}
+			}
+			maxIter--;
+			++dist;
+		}
+		return s.lcsCount == 0 ? -1 : minDist;
+	}
+
+	private static void start(Side side, int node, int epoch) {
+		side.frontier[0] = node;
+		side.frontierSize = 1;
+		side.queued[node] = epoch;
+		side.pred[node] = -1;
+	}
+
+	/**
+	 * visit the current frontier and queue the parents as the next frontier
+	 */
+	private void expand(Side side, int dist, int epoch) {
+		side.addedSize = 0;
+		side.nextSize = 0;
+		for (int i = 0; i < side.frontierSize; i++) {
+			int node = side.frontier[i];
+			if (side.visited[node] == epoch)
+				continue;
+			side.visited[node] = epoch;
+			side.dist[node] = dist;
+			side.added[side.addedSize++] = node;
+			for (int p = parentOffsets[node]; p < parentOffsets[node + 1]; p++) {
+				int parent = parents[p];
+				if (side.visited[parent] == epoch)
+					continue;
+				if (side.queued[parent] != epoch) {
+					side.queued[parent] = epoch;
+					side.pred[parent] = node;
+					side.next[side.nextSize++] = parent;
+				}
+			}
+		}
+		int[] tmp = side.frontier;
+		side.frontier = side.next;
+		side.frontierSize = side.nextSize;
+		side.next = tmp;
+	}
+
+	private static int collectCandidates(Scratch s, Side side, Side other,
+			int epoch, int count) {
+		for (int i = 0; i < side.addedSize; i++) {
+			int node = side.added[i];
+			if (other.visited[node] == epoch && s.candidate[node] != epoch) {
+				s.candidate[node] = epoch;
+				s.newCandidates[count++] = node;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * unqueue the parents of the node from the next frontier
+	 */
+	private void removeParents(int node, Side side) {
+		for (int p = parentOffsets[node]; p < parentOffsets[node + 1]; p++)
+			side.queued[parents[p]] = 0;
+	}
+
+	/**
+	 * drop unqueued nodes from the frontier, so they can be queued again by
+	 * later iterations
+	 */
+	private static void compactFrontier(Side side, int epoch) {
+		int size = 0;
+		for (int i = 0; i < side.frontierSize; i++) {
+			int node = side.frontier[i];
+			if (side.queued[node] == epoch)
+				side.frontier[size++] = node;
+		}
+		side.frontierSize = size;
+	}
+
+	/**
+	 * path from the concept to (but not including) the lcs, null if the
+	 * concept is the lcs
+	 */
+	private List<String> path(Side side, int node, int lcs) {
+		if (node == lcs)
+			return null;
+		List<String> path = new ArrayList<String>(side.dist[lcs]);
+		for (int n = side.pred[lcs]; n >= 0; n = side.pred[n])
+			path.add(getConceptId(n));
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * compute interval labels for {@link #isAncestor(int, int)}. Idempotent;
+	 * uses memory proportional to the number of nodes.
+	 */
+	public synchronized void buildAncestorIndex() {
+		if (postOrder != null)
+			return;
+		// child CSR from the parent CSR
+		int[] childOffsets = new int[nodeCount + 1];
+		for (int p : parents)
+			childOffsets[p + 1]++;
+		for (int i = 0; i < nodeCount; i++)
+			childOffsets[i + 1] += childOffsets[i];
+		int[] children = new int[parents.length];
+		int[] fill = Arrays.copyOf(childOffsets, nodeCount);
+		for (int node = 0; node < nodeCount; node++)
+			for (int p = parentOffsets[node]; p < parentOffsets[node + 1]; p++)
+				children[fill[parents[p]]++] = node;
+		int[] post = new int[nodeCount];
+		int[] minPost = new int[nodeCount];
+		Arrays.fill(post, -1);
+		// iterative dfs from every root; stack of (node, next child position)
+		int[] stackNode = new int[nodeCount];
+		int[] stackChild = new int[nodeCount];
+		int counter = 0;
+		for (int root = 0; root < nodeCount; root++) {
+			if (post[root] >= 0 || parentOffsets[root] != parentOffsets[root + 1])
+				continue;
+			counter = visit(root, childOffsets, children, post, minPost,
+					stackNode, stackChild, counter);
+		}
+		// nodes only reachable through cycles
+		for (int node = 0; node < nodeCount; node++) {
+			if (post[node] < 0)
+				counter = visit(node, childOffsets, children, post, minPost,
+						stackNode, stackChild, counter);
+		}
+		minPostOrder = minPost;
+		postOrder = post;
+	}
+
+	private static int visit(int root, int[] childOffsets, int[] children,
+			int[] post, int[] minPost, int[] stackNode, int[] stackChild,
+			int counter) {
+		int top = 0;
+		stackNode[0] = root;
+		stackChild[0] = childOffsets[root];
+		// mark as in progress
+		post[root] = Integer.MAX_VALUE;
+		minPost[root] = Integer.MAX_VALUE;
+		while (top >= 0) {
+			int node = stackNode[top];
+			if (stackChild[top] < childOffsets[node + 1]) {
+				int child = children[stackChild[top]++];
+				if (post[child] < 0) {
+					post[child] = Integer.MAX_VALUE;
+					minPost[child] = Integer.MAX_VALUE;
+					stackNode[++top] = child;
+					stackChild[top] = childOffsets[child];
+				} else if (post[child] != Integer.MAX_VALUE) {
+					minPost[node] = Math.min(minPost[node], minPost[child]);
+				}
+			} else {
+				post[node] = counter++;
+				minPost[node] = Math.min(minPost[node], post[node]);
+				top--;
+				if (top >= 0)
+					minPost[stackNode[top]] = Math.min(
+							minPost[stackNode[top]], minPost[node]);
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * is ancestor an ancestor of (or equal to) node? uses the interval labels
+	 * from {@link #buildAncestorIndex()} to reject most non-ancestors, falls
+	 * back to a pruned search of the node's ancestors.
+	 */
+	public boolean isAncestor(int ancestor, int node) {
+		if (ancestor == node)
+			return true;
+		int[] post = postOrder;
+		int[] minPost = minPostOrder;
+		if (post != null && !contains(post, minPost, ancestor, node))
+			return false;
+		Scratch s = scratch.get();
+		int epoch = s.nextEpoch();
+		Side side = s.side1;
+		int top = 0;
+		side.frontier[top++] = node;
+		side.visited[node] = epoch;
+		while (top > 0) {
+			int n = side.frontier[--top];
+			for (int p = parentOffsets[n]; p < parentOffsets[n + 1]; p++) {
+				int parent = parents[p];
+				if (parent == ancestor)
+					return true;
+				if (side.visited[parent] == epoch)
+					continue;
+				side.visited[parent] = epoch;
+				if (post == null || contains(post, minPost, ancestor, parent))
+					side.frontier[top++] = parent;
+			}
+		}
+		return false;
+	}
+
+	public boolean isAncestor(String ancestor, String concept) {
+		int a = getNodeIndex(ancestor);
+		int n = getNodeIndex(concept);
+		return a >= 0 && n >= 0 && isAncestor(a, n);
+	}
+
+	/**
+	 * if node is a descendant of ancestor, then node's label interval lies
+	 * within ancestor's
+	 */
+	private static boolean contains(int[] post, int[] minPost, int ancestor,
+			int node) {
+		return minPost[ancestor] <= minPost[node] && post[node] <= post[ancestor];
+	}
+}
@@ -0,0 +1,407 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read-only concept graph stored as primitive arrays.
+ * <p/>
+ * Parents and children are kept in compressed sparse row form: the neighbours
+ * of node <tt>i</tt> are the node indices between offset <tt>i</tt> and offset
+ * <tt>i+1</tt>. Depth and intrinsic information content are primitive arrays
+ * indexed by node, concept ids live in a single UTF-8 string table with a
+ * sorted index for lookup. The file layout mirrors these arrays, so a graph
+ * can be memory mapped and used without deserializing any objects.
+ * <p/>
+ * File layout (big endian):
+ *
+ * <pre>
+ * int magic, int version, int nodes, int parentEdges, int childEdges,
+ * int cuiBytes, int rootIndex, int depthMax, double intrinsicICMax
+ * double[nodes] intrinsic IC
+ * int[nodes+1] parent offsets, int[parentEdges] parents
+ * int[nodes+1] child offsets, int[childEdges] children
+ * short[nodes] depth
+ * int[nodes+1] cui offsets, int[nodes] node indices sorted by cui
+ * byte[cuiBytes] cui text
+ * </pre>
+ *
+ * @see org.apache.ctakes.ytex.kernel.dao.ConceptGraphConverter
+ */
+public class CompactConceptGraph {
+	public static final int MAGIC = 0x59434731; // "YCG1"
+	public static final int VERSION = 1;
+	/**
+	 * file extension used for the compact format, next to the legacy
+	 * <tt>.gz</tt> serialized graphs
+	 */
+	public static final String FILE_EXTENSION = ".cgb";
+	private static final int HEADER_SIZE = 8 * 4 + 8;
+
+	/**
+	 * write the concept graph in the compact format
+	 *
+	 * @param cg
+	 *            graph either freshly built or deserialized from a
+	 *            <tt>.gz</tt> file
+	 * @param file
+	 *            output file
+	 * @throws IOException
+	 */
+	public static void write(ConceptGraph cg, File file) throws IOException {
+		List<ConcRel> concepts = cg.getConceptList();
+		int n = concepts.size();
+		int[] parentOffsets = new int[n + 1];
+		int[] childOffsets = new int[n + 1];
+		int[][] parents = new int[n][];
+		int[][] children = new int[n][];
+		byte[][] cuis = new byte[n][];
+		int cuiBytes = 0;
+		for (int i = 0; i < n; i++) {
+			ConcRel cr = concepts.get(i);
+			if (cr.getNodeIndex() != i)
+				throw new IllegalArgumentException("node index " + i
+						+ " out of order: " + cr);
+			parents[i] = relArray(cr.getParentsArray(), cr.getParents());
+			children[i] = relArray(cr.getChildrenArray(), cr.getChildren());
+			parentOffsets[i + 1] = parentOffsets[i] + parents[i].length;
+			childOffsets[i + 1] = childOffsets[i] + children[i].length;
+			cuis[i] = cr.getConceptID().getBytes(StandardCharsets.UTF_8);
+			cuiBytes += cuis[i].length;
+		}
+		Integer[] sorted = sortByConceptId(concepts);
+		int rootIndex = -1;
+		if (cg.getRoot() != null) {
+			int pos = Arrays.binarySearch(sorted, cg.getRoot(),
+					conceptIdComparator(concepts));
+			if (pos >= 0)
+				rootIndex = sorted[pos];
+		}
+		if (!file.getAbsoluteFile().getParentFile().exists())
+			file.getAbsoluteFile().getParentFile().mkdirs();
+		DataOutputStream os = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		try {
+			os.writeInt(MAGIC);
+			os.writeInt(VERSION);
+			os.writeInt(n);
+			os.writeInt(parentOffsets[n]);
+			os.writeInt(childOffsets[n]);
+			os.writeInt(cuiBytes);
+			os.writeInt(rootIndex);
+			os.writeInt(cg.getDepthMax());
+			os.writeDouble(cg.getIntrinsicICMax());
+			for (ConcRel cr : concepts)
+				os.writeDouble(cr.getIntrinsicInfoContent());
+			writeCsr(os, parentOffsets, parents);
+			writeCsr(os, childOffsets, children);
+			for (ConcRel cr : concepts)
+				os.writeShort(cr.getDepth());
+			int offset = 0;
+			os.writeInt(offset);
+			for (byte[] cui : cuis) {
+				offset += cui.length;
+				os.writeInt(offset);
+			}
+			for (Integer index : sorted)
+				os.writeInt(index);
+			for (byte[] cui : cuis)
+				os.write(cui);
+		} finally {
+			os.close();
+		}
+	}
+
+	/**
+	 * memory map a compact concept graph file
+	 */
+	public static CompactConceptGraph map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			// the mapping remains valid after the channel is closed
+			return new CompactConceptGraph(channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * read a compact concept graph from a stream, e.g. a classpath resource
+	 * that cannot be mapped
+	 */
+	public static CompactConceptGraph read(InputStream is) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(1 << 16);
+		byte[] buf = new byte[1 << 16];
+		int len;
+		while ((len = is.read(buf)) != -1)
+			bos.write(buf, 0, len);
+		return new CompactConceptGraph(ByteBuffer.wrap(bos.toByteArray()));
+	}
+
+	private static int[] relArray(int[] relArray, Iterable<ConcRel> rels) {
+		if (relArray != null)
+			return relArray;
+		List<Integer> indices = new ArrayList<Integer>();
+		for (ConcRel cr : rels)
+			indices.add(cr.getNodeIndex());
+		int[] array = new int[indices.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = indices.get(i);
+		return array;
+	}
+
+	private static void writeCsr(DataOutputStream os, int[] offsets,
+			int[][] rels) throws IOException {
+		for (int offset : offsets)
+			os.writeInt(offset);
+		for (int[] rel : rels)
+			for (int index : rel)
+				os.writeInt(index);
+	}
+
+	private static Integer[] sortByConceptId(List<ConcRel> concepts) {
+		Integer[] sorted = new Integer[concepts.size()];
+		for (int i = 0; i < sorted.length; i++)
+			sorted[i] = i;
+		Arrays.sort(sorted, conceptIdComparator(concepts));
+		return sorted;
+	}
+
+	/**
+	 * compares node indices by concept id; a String key is compared as is.
+	 * String.compareTo order is used both when writing and when searching.
+	 */
+	private static Comparator<Object> conceptIdComparator(
+			final List<ConcRel> concepts) {
+		return new Comparator<Object>() {
+			@Override
+			public int compare(Object o1, Object o2) {
+				return id(o1).compareTo(id(o2));
+			}
+
+			private String id(Object o) {
+				return o instanceof String ? (String) o : concepts.get(
+						(Integer) o).getConceptID();
+			}
+		};
+	}
+
+	private final ByteBuffer buffer;
+	private final int nodeCount;
+	private final int rootIndex;
+	private final short depthMax;
+	private final double intrinsicICMax;
+	private final int icStart;
+	private final int parentOffsetStart;
+	private final int parentStart;
+	private final int childOffsetStart;
+	private final int childStart;
+	private final int depthStart;
+	private final int cuiOffsetStart;
+	private final int sortedStart;
+	private final int cuiStart;
+
+	private CompactConceptGraph(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+			throw new IOException("not a compact concept graph");
+		if (buffer.getInt(4) != VERSION)
+			throw new IOException("unsupported compact concept graph version "
+					+ buffer.getInt(4));
+		nodeCount = buffer.getInt(8);
+		int parentEdges = buffer.getInt(12);
+		int childEdges = buffer.getInt(16);
+		int cuiBytes = buffer.getInt(20);
+		rootIndex = buffer.getInt(24);
+		depthMax = (short) buffer.getInt(28);
+		intrinsicICMax = buffer.getDouble(32);
+		icStart = HEADER_SIZE;
+		parentOffsetStart = icStart + 8 * nodeCount;
+		parentStart = parentOffsetStart + 4 * (nodeCount + 1);
+		childOffsetStart = parentStart + 4 * parentEdges;
+		childStart = childOffsetStart + 4 * (nodeCount + 1);
+		depthStart = childStart + 4 * childEdges;
+		cuiOffsetStart = depthStart + 2 * nodeCount;
+		sortedStart = cuiOffsetStart + 4 * (nodeCount + 1);
+		cuiStart = sortedStart + 4 * nodeCount;
+		if (buffer.capacity() < cuiStart + cuiBytes)
+			throw new IOException("truncated compact concept graph");
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public short getDepthMax() {
+		return depthMax;
+	}
+
+	public double getIntrinsicICMax() {
+		return intrinsicICMax;
+	}
+
+	/**
+	 * @return concept id of the root, null if the graph has no root
+	 */
+	public String getRoot() {
+		return rootIndex < 0 ? null : getConceptId(rootIndex);
+	}
+
+	public String getConceptId(int node) {
+		int start = buffer.getInt(cuiOffsetStart + 4 * node);
+		int end = buffer.getInt(cuiOffsetStart + 4 * (node + 1));
+		byte[] bytes = new byte[end - start];
+		ByteBuffer dup = buffer.duplicate();
+		dup.position(cuiStart + start);
+		dup.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return node index of the concept, -1 if it is not in the graph
+	 */
+	public int getNodeIndex(String conceptId) {
+		int low = 0;
+		int high = nodeCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int node = buffer.getInt(sortedStart + 4 * mid);
+			int cmp = getConceptId(node).compareTo(conceptId);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return node;
+		}
+		return -1;
+	}
+
+	public short getDepth(int node) {
+		return buffer.getShort(depthStart + 2 * node);
+	}
+
+	public double getIntrinsicInfoContent(int node) {
+		return buffer.getDouble(icStart + 8 * node);
+	}
+
+	public int getParentCount(int node) {
+		return buffer.getInt(parentOffsetStart + 4 * (node + 1))
+				- buffer.getInt(parentOffsetStart + 4 * node);
+	}
+
+	public int getChildCount(int node) {
+		return buffer.getInt(childOffsetStart + 4 * (node + 1))
+				- buffer.getInt(childOffsetStart + 4 * node);
+	}
+
+	public int[] getParents(int node) {
+		return rel(parentOffsetStart, parentStart, node);
+	}
+
+	public int[] getChildren(int node) {
+		return rel(childOffsetStart, childStart, node);
+	}
+
+	/**
+	 * copy the parent offsets and parent indices into heap arrays, for
+	 * traversals that touch many nodes.
+	 *
+	 * @return 2 element array: offsets (length nodes+1) and parent indices
+	 */
+	public int[][] getParentCsr() {
+		return csr(parentOffsetStart, parentStart);
+	}
+
+	/**
+	 * @see #getParentCsr()
+	 */
+	public int[][] getChildCsr() {
+		return csr(childOffsetStart, childStart);
+	}
+
+	/**
+	 * @return a concept graph backed by this graph. The ConcRel
+	 *         representation is only built if the concept list or map is
+	 *         requested.
+	 * @see ConceptGraph#ConceptGraph(CompactConceptGraph)
+	 */
+	public ConceptGraph toConceptGraph() {
+		return new ConceptGraph(this);
+	}
+
+	/**
+	 * build the ConcRel representation of the graph. parent/child
+	 * relationships are left as index arrays, to be resolved via
+	 * {@link ConcRel#constructRel(List)} exactly like a deserialized graph.
+	 */
+	List<ConcRel> createConceptList() {
+		int[][] parentCsr = getParentCsr();
+		int[][] childCsr = getChildCsr();
+		List<ConcRel> concepts = new ArrayList<ConcRel>(nodeCount);
+		for (int i = 0; i < nodeCount; i++) {
+			ConcRel cr = new ConcRel(getConceptId(i), i);
+			cr.setDepth(getDepth(i));
+			cr.setIntrinsicInfoContent(getIntrinsicInfoContent(i));
+			cr.setParentsArray(Arrays.copyOfRange(parentCsr[1],
+					parentCsr[0][i], parentCsr[0][i + 1]));
+			cr.setChildrenArray(Arrays.copyOfRange(childCsr[1],
+					childCsr[0][i], childCsr[0][i + 1]));
+			concepts.add(cr);
+		}
+		return concepts;
+	}
+
+	private int[] rel(int offsetStart, int relStart, int node) {
+		int start = buffer.getInt(offsetStart + 4 * node);
+		int end = buffer.getInt(offsetStart + 4 * (node + 1));
+		int[] rel = new int[end - start];
+		for (int i = 0; i < rel.length; i++)
+			rel[i] = buffer.getInt(relStart + 4 * (start + i));
+		return rel;
+	}
+
+	private int[][] csr(int offsetStart, int relStart) {
+		int[] offsets = new int[nodeCount + 1];
+		ByteBuffer dup = buffer.duplicate();
+		dup.position(offsetStart);
+		dup.asIntBuffer().get(offsets);
+		int[] rels = new int[offsets[nodeCount]];
+		dup.position(relStart);
+		dup.asIntBuffer().get(rels);
+		return new int[][] { offsets, rels };
+	}
+}
@@ -18,12 +18,16 @@
  */
 package org.apache.ctakes.ytex.kernel.model;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.google.common.collect.ImmutableMap;
+
 /**
  * A directed graph that spans a subset of the UMLS connecting concepts with
  * IS-A links.
@@ -35,11 +39,34 @@ public class ConceptGraph implements Serializable {
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
-	private List<ConcRel> conceptList = new ArrayList<ConcRel>();
-	private transient Map<String, ConcRel> conceptMap = new HashMap<String, ConcRel>();
+	private volatile List<ConcRel> conceptList = new ArrayList<ConcRel>();
+	private transient volatile Map<String, ConcRel> conceptMap = new HashMap<String, ConcRel>();
 	private short depthMax = 0;
 	private double intrinsicICMax = 0d;
 	private String root = null;
+	/**
+	 * primitive array representation, set if the graph was loaded from the
+	 * compact format
+	 */
+	private transient CompactConceptGraph compactGraph = null;
+
+	public ConceptGraph() {
+	}
+
+	/**
+	 * create a graph backed by the compact format. The ConcRel view is only
+	 * built on the first call to {@link #getConceptList()} or
+	 * {@link #getConceptMap()}; the node methods of this class and the
+	 * similarity computations read the compact arrays directly.
+	 */
+	public ConceptGraph(CompactConceptGraph compactGraph) {
+		this.compactGraph = compactGraph;
+		this.conceptList = null;
+		this.conceptMap = null;
+		this.depthMax = compactGraph.getDepthMax();
+		this.intrinsicICMax = compactGraph.getIntrinsicICMax();
+		this.root = compactGraph.getRoot();
+	}
 
 	public ConcRel addConcept(String conceptID) {
 		// get position at which concept would be added to list
@@ -52,14 +79,56 @@ public class ConceptGraph implements Serializable {
 		return cr;
 	}
 
+	public CompactConceptGraph getCompactGraph() {
+		return compactGraph;
+	}
+
 	public List<ConcRel> getConceptList() {
+		if (conceptList == null && compactGraph != null)
+			buildConcepts();
 		return conceptList;
 	}
 
 	public Map<String, ConcRel> getConceptMap() {
+		if (conceptMap == null && compactGraph != null)
+			buildConcepts();
 		return conceptMap;
 	}
 
+	/**
+	 * @return number of concepts in the graph
+	 */
+	public int getNodeCount() {
+		return compactGraph != null ? compactGraph.getNodeCount()
+				: getConceptList().size();
+	}
+
+	/**
+	 * @return node index of the concept, -1 if it is not in the graph
+	 */
+	public int getNodeIndex(String conceptId) {
+		if (compactGraph != null)
+			return compactGraph.getNodeIndex(conceptId);
+		ConcRel cr = getConceptMap().get(conceptId);
+		return cr != null ? cr.getNodeIndex() : -1;
+	}
+
+	public String getConceptId(int node) {
+		return compactGraph != null ? compactGraph.getConceptId(node)
+				: getConceptList().get(node).getConceptID();
+	}
+
+	public short getDepth(int node) {
+		return compactGraph != null ? compactGraph.getDepth(node)
+				: getConceptList().get(node).getDepth();
+	}
+
+	public double getIntrinsicInfoContent(int node) {
+		return compactGraph != null ? compactGraph
+				.getIntrinsicInfoContent(node) : getConceptList().get(node)
+				.getIntrinsicInfoContent();
+	}
+
 	public short getDepthMax() {
 		return depthMax;
 	}
@@ -72,6 +141,10 @@ public class ConceptGraph implements Serializable {
 		return root;
 	}
 
+	public void setCompactGraph(CompactConceptGraph compactGraph) {
+		this.compactGraph = compactGraph;
+	}
+
 	public void setConceptList(List<ConcRel> conceptList) {
 		this.conceptList = conceptList;
 	}
@@ -92,4 +165,28 @@ public class ConceptGraph implements Serializable {
 		this.root = root;
 	}
 
+	/**
+	 * build the ConcRel view of the compact graph, resolving parents and
+	 * children like a deserialized graph
+	 */
+	private synchronized void buildConcepts() {
+		if (conceptList != null)
+			return;
+		List<ConcRel> concepts = compactGraph.createConceptList();
+		ImmutableMap.Builder<String, ConcRel> mb = new ImmutableMap.Builder<String, ConcRel>();
+		for (ConcRel cr : concepts) {
+			// graphs without depth keep their relationships as arrays
+			if (depthMax > 0)
+				cr.constructRel(concepts);
+			mb.put(cr.getConceptID(), cr);
+		}
+		conceptMap = mb.build();
+		conceptList = concepts;
+	}
+
+	private void writeObject(ObjectOutputStream os) throws IOException {
+		getConceptList();
+		os.defaultWriteObject();
+	}
+
 }
@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+
+import org.apache.ctakes.ytex.kernel.dao.ConceptDao;
+import org.apache.ctakes.ytex.kernel.metric.ConceptSimilarityService.SimilarityMetricEnum;
+import org.apache.ctakes.ytex.kernel.metric.ConceptSimilarityService.SimilaritySink;
+import org.apache.ctakes.ytex.kernel.model.ConcRel;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConceptSimilarityServiceImplTest {
+
+	private static final String[] CONCEPTS = { "root", "animal",
+			"vertebrate", "cat", "dog", "bacteria", "e coli", "fungus" };
+	private static final List<SimilarityMetricEnum> METRICS = Arrays.asList(
+			SimilarityMetricEnum.PATH, SimilarityMetricEnum.LCH,
+			SimilarityMetricEnum.WUPALMER, SimilarityMetricEnum.INTRINSIC_PATH,
+			SimilarityMetricEnum.INTRINSIC_LIN);
+
+	private CacheManager cacheManager;
+	private Cache lcsCache;
+	private ConceptSimilarityServiceImpl simSvc;
+
+	private static void addRel(ConceptGraph cg, String parent, String child) {
+		ConcRel crPar = cg.getConceptMap().get(parent);
+		if (crPar == null)
+			crPar = cg.addConcept(parent);
+		ConcRel crChild = cg.addConcept(child);
+		crChild.getParents().add(crPar);
+		crPar.getChildren().add(crChild);
+		crChild.setDepth((short) (crPar.getDepth() + 1));
+		crChild.setIntrinsicInfoContent(crChild.getDepth() * 0.5d);
+	}
+
+	/**
+	 * root - animal - vertebrate - (cat, dog); root - bacteria - e coli
+	 */
+	@Before
+	public void setUp() {
+		final ConceptGraph cg = new ConceptGraph();
+		addRel(cg, "root", "animal");
+		addRel(cg, "animal", "vertebrate");
+		addRel(cg, "vertebrate", "cat");
+		addRel(cg, "vertebrate", "dog");
+		addRel(cg, "root", "bacteria");
+		addRel(cg, "bacteria", "e coli");
+		cg.setRoot("root");
+		cg.setDepthMax((short) 3);
+		cg.setIntrinsicICMax(1.5d);
+		cacheManager = CacheManager.create();
+		lcsCache = new Cache("testLcsCache", 5, false, false, 0, 0);
+		cacheManager.addCache(lcsCache);
+		simSvc = new ConceptSimilarityServiceImpl();
+		simSvc.setPreload(false);
+		simSvc.setConceptGraphName("test");
+		simSvc.setLcsCache(lcsCache);
+		simSvc.setConceptDao(new ConceptDao() {
+			@Override
+			public ConceptGraph getConceptGraph(String name) {
+				return cg;
+			}
+
+			@Override
+			public void createConceptGraph(String dir, String name,
+					String query, boolean checkCycle,
+					Set<String> forbiddenConcepts) throws IOException {
+			}
+		});
+		simSvc.init();
+	}
+
+	@After
+	public void tearDown() {
+		cacheManager.removeCache(lcsCache.getName());
+	}
+
+	/**
+	 * every unordered pair of concepts, twice and in both orders
+	 */
+	private static List<ConceptPair> allPairs() {
+		List<ConceptPair> pairs = new ArrayList<ConceptPair>();
+		for (int repeat = 0; repeat < 2; repeat++) {
+			for (int i = 0; i < CONCEPTS.length; i++) {
+				for (int j = i; j < CONCEPTS.length; j++) {
+					pairs.add(repeat == 0 ? new ConceptPair(CONCEPTS[i],
+							CONCEPTS[j]) : new ConceptPair(CONCEPTS[j],
+							CONCEPTS[i]));
+				}
+			}
+		}
+		return pairs;
+	}
+
+	private ConceptPairSimilarity[] bulk(List<ConceptPair> pairs,
+			boolean lcs, int threads) {
+		final ConceptPairSimilarity[] results = new ConceptPairSimilarity[pairs
+				.size()];
+		double pairsPerSecond = simSvc.similarity(pairs, METRICS, null, lcs,
+				threads, new SimilaritySink() {
+					@Override
+					public void similarity(int index,
+							ConceptPairSimilarity similarity) {
+						assertEquals(null, results[index]);
+						results[index] = similarity;
+					}
+				});
+		assertTrue(pairsPerSecond > 0);
+		return results;
+	}
+
+	private void assertSameAsSequential(List<ConceptPair> pairs,
+			ConceptPairSimilarity[] results, boolean lcs) {
+		List<ConceptPairSimilarity> expected = simSvc.similarity(pairs,
+				METRICS, null, lcs);
+		for (int i = 0; i < pairs.size(); i++) {
+			assertNotNull(results[i]);
+			assertEquals(pairs.get(i), results[i].getConceptPair());
+			assertEquals(pairs.get(i).toString(), expected.get(i)
+					.getSimilarities(), results[i].getSimilarities());
+			assertEquals(expected.get(i).getSimilarityInfo().getLcses(),
+					results[i].getSimilarityInfo().getLcses());
+		}
+	}
+
+	@Test
+	public void testCachedLcs() {
+		// ancestors share the lesser concept id with other pairs
+		for (String concept : new String[] { "root", "vertebrate", "animal" }) {
+			simSvc.similarity(METRICS, "root", concept, null, false);
+		}
+		assertEquals(3, simSvc.getLCS("vertebrate", "root",
+				new HashSet<String>(), null));
+		assertEquals(2, simSvc.getLCS("animal", "root", new HashSet<String>(),
+				null));
+	}
+
+	@Test
+	public void testBulkSimilarity() {
+		List<ConceptPair> pairs = allPairs();
+		ConceptPairSimilarity[] results = bulk(pairs, false, 3);
+		assertSameAsSequential(pairs, results, false);
+		ConceptPairSimilarity catDog = results[pairs.indexOf(new ConceptPair(
+				"cat", "dog"))];
+		assertEquals(Arrays.asList("vertebrate"), new ArrayList<String>(
+				catDog.getSimilarityInfo().getLcses()));
+		// path metric: 1 / (number of nodes on the path)
+		assertEquals(1 / 3d, catDog.getSimilarities().get(0), 1e-9);
+	}
+
+	@Test
+	public void testBulkSimilarityPaths() {
+		List<ConceptPair> pairs = allPairs();
+		ConceptPairSimilarity[] results = bulk(pairs, true, 2);
+		assertSameAsSequential(pairs, results, true);
+		ConceptPairSimilarity dogCat = results[pairs.indexOf(new ConceptPair(
+				"dog", "cat"))];
+		List<LCSPath> paths = dogCat.getSimilarityInfo().getLcsPaths();
+		assertEquals(1, paths.size());
+		assertEquals(Arrays.asList("dog"), paths.get(0).getConcept1Path());
+	}
+
+	@Test
+	public void testBulkSimilarityBoundedCache() {
+		List<ConceptPair> pairs = allPairs();
+		bulk(pairs, false, 4);
+		// 36 distinct pairs went through a cache of 5
+		assertTrue(lcsCache.getSize() <= 5);
+		// unknown concepts have no lcs and no similarity
+		ConceptPairSimilarity[] results = bulk(
+				Arrays.asList(new ConceptPair("cat", "fungus")), false, 1);
+		assertTrue(results[0].getSimilarityInfo().getLcses().isEmpty());
+		assertEquals(0d, results[0].getSimilarities().get(0), 1e-9);
+	}
+}
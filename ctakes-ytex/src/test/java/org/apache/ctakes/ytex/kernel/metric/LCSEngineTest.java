@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.ctakes.ytex.kernel.model.ConcRel;
+import org.apache.ctakes.ytex.kernel.model.ConceptGraph;
+import org.junit.Test;
+
+public class LCSEngineTest {
+
+	private static void addRel(ConceptGraph cg, String parent, String child) {
+		ConcRel crPar = cg.getConceptMap().get(parent);
+		if (crPar == null)
+			crPar = cg.addConcept(parent);
+		ConcRel crChild = cg.getConceptMap().get(child);
+		if (crChild == null)
+			crChild = cg.addConcept(child);
+		crChild.getParents().add(crPar);
+		crPar.getChildren().add(crChild);
+	}
+
+	@Test
+	public void testTree() {
+		ConceptGraph cg = new ConceptGraph();
+		addRel(cg, "root", "animal");
+		addRel(cg, "animal", "vertebrate");
+		addRel(cg, "vertebrate", "cat");
+		addRel(cg, "vertebrate", "dog");
+		addRel(cg, "root", "bacteria");
+		addRel(cg, "bacteria", "e coli");
+		LCSEngine engine = LCSEngine.forGraph(cg);
+
+		Set<String> lcses = new HashSet<String>();
+		List<LCSPath> paths = new ArrayList<LCSPath>();
+		assertEquals(3,
+				engine.getLeastCommonConcept("cat", "dog", lcses, paths));
+		assertEquals(new HashSet<String>(Arrays.asList("vertebrate")), lcses);
+		assertEquals(Arrays.asList("cat"), paths.get(0).getConcept1Path());
+		lcses.clear();
+		paths.clear();
+		assertEquals(6,
+				engine.getLeastCommonConcept("cat", "e coli", lcses, paths));
+		assertEquals(Arrays.asList("cat", "vertebrate", "animal"), paths
+				.get(0).getConcept1Path());
+		lcses.clear();
+		paths.clear();
+		assertEquals(3,
+				engine.getLeastCommonConcept("animal", "cat", lcses, paths));
+		assertNull(paths.get(0).getConcept1Path());
+		assertEquals(-1, engine.getLeastCommonConcept("cat", "fungus",
+				lcses, null));
+
+		engine.buildAncestorIndex();
+		assertTrue(engine.isAncestor("root", "cat"));
+		assertTrue(engine.isAncestor("vertebrate", "dog"));
+		assertFalse(engine.isAncestor("bacteria", "dog"));
+		assertFalse(engine.isAncestor("cat", "vertebrate"));
+	}
+
+	/**
+	 * compare against ConcRel.getLeastCommonConcept on a random DAG
+	 */
+	@Test
+	public void testRandomDag() {
+		Random random = new Random(42);
+		ConceptGraph cg = new ConceptGraph();
+		cg.addConcept("c0");
+		for (int i = 1; i < 300; i++) {
+			String child = "c" + i;
+			int nParents = 1 + random.nextInt(3);
+			for (int j = 0; j < nParents; j++)
+				addRel(cg, "c" + random.nextInt(i), child);
+		}
+		LCSEngine engine = LCSEngine.forGraph(cg);
+		engine.buildAncestorIndex();
+		for (int i = 0; i < 2000; i++) {
+			ConcRel cr1 = cg.getConceptList().get(random.nextInt(300));
+			ConcRel cr2 = cg.getConceptList().get(random.nextInt(300));
+			Set<ConcRel> expectedLcses = new HashSet<ConcRel>();
+			int expected = ConcRel.getLeastCommonConcept(cr1, cr2,
+					expectedLcses, null);
+			Set<String> lcses = new HashSet<String>();
+			assertEquals(expected, engine.getLeastCommonConcept(
+					cr1.getConceptID(), cr2.getConceptID(), lcses, null));
+			assertEquals(new HashSet<String>(
+					ConcRel.crListToString(new ArrayList<ConcRel>(
+							expectedLcses))), lcses);
+			assertEquals(cr2.hasAncestor(cr1.getConceptID()),
+					engine.isAncestor(cr1.getConceptID(), cr2.getConceptID()));
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.ctakes.ytex.kernel.dao.ConceptGraphConverter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompactConceptGraphTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * root - animal - vertebrate - (cat, dog); root - bacteria - e coli
+	 */
+	private ConceptGraph createGraph() {
+		ConceptGraph cg = new ConceptGraph();
+		String[][] rels = new String[][] { { "root", "animal" },
+				{ "animal", "vertebrate" }, { "vertebrate", "cat" },
+				{ "vertebrate", "dog" }, { "root", "bacteria" },
+				{ "bacteria", "e coli" } };
+		for (String[] rel : rels) {
+			ConcRel parent = cg.getConceptMap().get(rel[0]);
+			if (parent == null)
+				parent = cg.addConcept(rel[0]);
+			ConcRel child = cg.addConcept(rel[1]);
+			child.getParents().add(parent);
+			parent.getChildren().add(child);
+			child.setDepth((short) (parent.getDepth() + 1));
+			child.setIntrinsicInfoContent(child.getDepth() * 0.5d);
+		}
+		cg.setRoot("root");
+		cg.setDepthMax((short) 3);
+		cg.setIntrinsicICMax(1.5d);
+		return cg;
+	}
+
+	@Test
+	public void testConvertSerializedGraph() throws Exception {
+		File gz = folder.newFile("test.gz");
+		ObjectOutputStream os = new ObjectOutputStream(
+				new BufferedOutputStream(new GZIPOutputStream(
+						new FileOutputStream(gz))));
+		try {
+			os.writeObject(createGraph());
+		} finally {
+			os.close();
+		}
+		File cgb = new File(folder.getRoot(), "test"
+				+ CompactConceptGraph.FILE_EXTENSION);
+		ConceptGraphConverter.convert(gz, cgb);
+
+		CompactConceptGraph ccg = CompactConceptGraph.map(cgb);
+		assertEquals(7, ccg.getNodeCount());
+		assertEquals("root", ccg.getRoot());
+		assertEquals(3, ccg.getDepthMax());
+		assertEquals(1.5d, ccg.getIntrinsicICMax(), 1e-9);
+		int vertebrate = ccg.getNodeIndex("vertebrate");
+		int animal = ccg.getNodeIndex("animal");
+		assertEquals("vertebrate", ccg.getConceptId(vertebrate));
+		assertEquals(-1, ccg.getNodeIndex("fungus"));
+		assertArrayEquals(new int[] { animal }, ccg.getParents(vertebrate));
+		assertEquals(2, ccg.getChildCount(vertebrate));
+		assertEquals(2, ccg.getDepth(vertebrate));
+		assertEquals(1.0d, ccg.getIntrinsicInfoContent(vertebrate), 1e-9);
+		assertEquals(0, ccg.getParentCount(ccg.getNodeIndex("root")));
+
+		ConceptGraph cg = ccg.toConceptGraph();
+		ConcRel cat = cg.getConceptList().get(ccg.getNodeIndex("cat"));
+		assertEquals("vertebrate", cat.getParents().iterator().next()
+				.getConceptID());
+		assertTrue(cat.isLeaf());
+	}
+
+	@Test
+	public void testLazyConceptGraph() throws Exception {
+		File cgb = new File(folder.getRoot(), "test"
+				+ CompactConceptGraph.FILE_EXTENSION);
+		CompactConceptGraph.write(createGraph(), cgb);
+		ConceptGraph cg = CompactConceptGraph.map(cgb).toConceptGraph();
+		Field conceptList = ConceptGraph.class.getDeclaredField("conceptList");
+		conceptList.setAccessible(true);
+		// node queries read the compact arrays
+		int dog = cg.getNodeIndex("dog");
+		assertEquals("dog", cg.getConceptId(dog));
+		assertEquals(3, cg.getDepth(dog));
+		assertEquals(1.5d, cg.getIntrinsicInfoContent(dog), 1e-9);
+		assertEquals(-1, cg.getNodeIndex("fungus"));
+		assertEquals(7, cg.getNodeCount());
+		assertEquals("root", cg.getRoot());
+		assertNull(conceptList.get(cg));
+		// the ConcRel view is built on demand, with resolved relationships
+		ConcRel vertebrate = cg.getConceptMap().get("vertebrate");
+		assertNotNull(conceptList.get(cg));
+		assertEquals(2, vertebrate.getChildren().size());
+		assertEquals("animal", vertebrate.getParents().iterator().next()
+				.getConceptID());
+		assertSame(vertebrate, cg.getConceptList().get(vertebrate.getNodeIndex()));
+	}
+}